@@ -213,7 +213,15 @@ class Controller(threading.Thread):
     certVerifFailed = False
     hb_interval = self.config.get('heartbeat', 'state_interval')
 
+    # the server may hold a heartbeat for up to command_wait_ms until commands
+    # are queued for this host, so that they don't wait for the next heartbeat
+    command_wait_ms = int(self.config.get('heartbeat', 'command_wait_ms', '0'))
+    heartbeat_url = self.heartbeatUrl
+    if command_wait_ms > 0:
+      heartbeat_url += '?wait=' + str(command_wait_ms)
+
     while not self.DEBUG_STOP_HEARTBEATING:
+      heartbeat_start = time.time()
       try:
         if not retry:
           data = json.dumps(
@@ -225,7 +233,7 @@ class Controller(threading.Thread):
         if logger.isEnabledFor(logging.DEBUG):
           logger.debug("Sending Heartbeat (id = %s): %s", self.responseId, data)
 
-        response = self.sendRequest(self.heartbeatUrl, data)
+        response = self.sendRequest(heartbeat_url, data)
 
         exitStatus = 0
         if 'exitstatus' in response.keys():
@@ -324,6 +332,9 @@ class Controller(threading.Thread):
       # Sleep for some time
       timeout = self.netutil.HEARTBEAT_IDDLE_INTERVAL_SEC \
                 - self.netutil.MINIMUM_INTERVAL_BETWEEN_HEARTBEATS
+      if command_wait_ms > 0:
+        # time held by the server counts towards the heartbeat interval
+        timeout = max(0, timeout - (time.time() - heartbeat_start))
       if 0 == self.heartbeat_stop_callback.wait(timeout, self.netutil.MINIMUM_INTERVAL_BETWEEN_HEARTBEATS):
         # Stop loop when stop event received
         logger.info("Stop event received")
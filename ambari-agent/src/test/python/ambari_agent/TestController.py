@@ -554,6 +554,46 @@ class TestController(unittest.TestCase):
     self.controller.sendRequest = Controller.Controller.addToStatusQueue
 
 
+  @patch.object(threading._Event, "wait")
+  @patch("time.sleep")
+  @patch("json.dumps")
+  def test_heartbeatWithServer_commandWait(self, dumpsMock, sleepMock, event_mock):
+    self.controller.heartbeat = MagicMock()
+    self.controller.alert_scheduler_handler = MagicMock()
+    event_mock.return_value = False
+    dumpsMock.return_value = "data"
+
+    response = {"responseId":"2", "restartAgent":"false"}
+    def one_heartbeat(*args, **kwargs):
+      self.controller.DEBUG_STOP_HEARTBEATING = True
+      return response
+
+    sendRequest = MagicMock(name="sendRequest", side_effect=one_heartbeat)
+    self.controller.sendRequest = sendRequest
+
+    # the configured wait is passed to the server
+    self.controller.responseId = 1
+    self.controller.config.get.return_value = "5000"
+    self.controller.heartbeatWithServer()
+
+    sendRequest.assert_called_once_with(
+      self.controller.heartbeatUrl + "?wait=5000", "data")
+
+    # heartbeats don't wait unless configured to
+    def config_get(section, option, default=None):
+      if option == 'command_wait_ms':
+        return default
+      return "5"
+
+    self.controller.responseId = 1
+    self.controller.config.get.side_effect = config_get
+    sendRequest.reset_mock()
+    self.controller.DEBUG_STOP_HEARTBEATING = False
+    self.controller.heartbeatWithServer()
+
+    sendRequest.assert_called_once_with(self.controller.heartbeatUrl, "data")
+
+
   @patch("pprint.pformat")
   @patch("time.sleep")
   @patch("json.loads")
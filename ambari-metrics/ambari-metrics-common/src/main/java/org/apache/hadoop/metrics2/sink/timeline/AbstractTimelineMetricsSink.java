@@ -17,29 +17,53 @@
  */
 package org.apache.hadoop.metrics2.sink.timeline;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
 import java.net.ConnectException;
 import java.net.SocketAddress;
+import java.util.zip.GZIPOutputStream;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.AnnotationIntrospector;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
 
-public abstract class AbstractTimelineMetricsSink {
+public abstract class AbstractTimelineMetricsSink implements TimelineMetricsSinkMBean {
   public static final String TAGS_FOR_PREFIX_PROPERTY_PREFIX = "tagsForPrefix.";
   public static final String MAX_METRIC_ROW_CACHE_SIZE = "maxRowCacheSize";
   public static final String METRICS_SEND_INTERVAL = "sendInterval";
   public static final String COLLECTOR_HOST_PROPERTY = "collector";
   public static final String COLLECTOR_PORT_PROPERTY = "port";
+  public static final String ASYNC_EMIT_PROPERTY = "asyncEmit";
+  public static final String EMIT_QUEUE_SIZE_PROPERTY = "emitQueueSize";
+  public static final String EMIT_RETRIES_PROPERTY = "emitRetries";
+  public static final String EMIT_RETRY_INTERVAL_PROPERTY = "emitRetryInterval";
+  public static final String COMPRESS_PROPERTY = "compress";
+  public static final String SPILL_DIR_PROPERTY = "spillDir";
+
+  public static final boolean ASYNC_EMIT_DEFAULT = true;
+  public static final int EMIT_QUEUE_SIZE_DEFAULT = 100;
+  public static final int EMIT_RETRIES_DEFAULT = 3;
+  public static final long EMIT_RETRY_INTERVAL_DEFAULT = 1000; // ms
+  public static final boolean COMPRESS_DEFAULT = false;
 
   protected final Log LOG;
   private HttpClient httpClient = new HttpClient();
+  private boolean compressionEnabled = COMPRESS_DEFAULT;
+  private TimelineMetricsEmitter emitter;
 
   protected static ObjectMapper mapper;
 
@@ -55,19 +79,24 @@ public abstract class AbstractTimelineMetricsSink {
     LOG = LogFactory.getLog(this.getClass());
   }
 
+  /**
+   * Send the metrics to the collector. Once {@link #startEmitter} was called
+   * the metrics are only queued, and sent from a background thread.
+   */
   protected void emitMetrics(TimelineMetrics metrics) throws IOException {
+    TimelineMetricsEmitter emitter = this.emitter;
+    if (emitter != null) {
+      emitter.submit(metrics);
+      return;
+    }
+
     String connectUrl = getCollectorUri();
     try {
-      String jsonData = mapper.writeValueAsString(metrics);
-
       SocketAddress socketAddress = getServerSocketAddress();
 
       if (socketAddress != null) {
-        StringRequestEntity requestEntity = new StringRequestEntity(jsonData, "application/json", "UTF-8");
-        
-        PostMethod postMethod = new PostMethod(connectUrl);
-        postMethod.setRequestEntity(requestEntity);
-        int statusCode = httpClient.executeMethod(postMethod);
+        int statusCode = post(new TimelineMetricsEmitter.TimelineMetricsRequestEntity(
+            metrics, compressionEnabled), compressionEnabled);
         if (statusCode != 200) {
           LOG.info("Unable to POST metrics to collector, " + connectUrl);
         } else {
@@ -79,6 +108,175 @@ public abstract class AbstractTimelineMetricsSink {
     }
   }
 
+  /**
+   * Send the metrics from a background thread from now on.
+   *
+   * @param queueSize            the number of batches waiting to be sent
+   *                             before the oldest are dropped
+   * @param retries              the number of retries of a failed POST
+   * @param retryIntervalMillis  the delay before the first retry
+   * @param spillDir             the directory batches which couldn't be sent
+   *                             are written to; null to drop them
+   */
+  protected synchronized void startEmitter(int queueSize, int retries,
+                                           long retryIntervalMillis, String spillDir) {
+    if (emitter != null) {
+      return;
+    }
+    TimelineMetricsEmitter.Poster poster = new TimelineMetricsEmitter.Poster() {
+      @Override
+      public int post(RequestEntity entity, boolean compressed) throws IOException {
+        if (getServerSocketAddress() == null) {
+          throw new ConnectException("No metric collector configured");
+        }
+        return AbstractTimelineMetricsSink.this.post(entity, compressed);
+      }
+    };
+    emitter = new TimelineMetricsEmitter(poster, queueSize, retries, retryIntervalMillis,
+        compressionEnabled, spillDir == null || spillDir.trim().isEmpty() ? null : new File(spillDir.trim()));
+    emitter.start();
+  }
+
+  /**
+   * Stop the background thread; later metrics are sent synchronously.
+   */
+  protected synchronized void stopEmitter() {
+    if (emitter != null) {
+      emitter.stop();
+      emitter = null;
+    }
+  }
+
+  /**
+   * Publish the emitter statistics on the platform MBean server.
+   *
+   * @param name  the object name
+   * @return the registered name, null if it couldn't be registered
+   */
+  protected ObjectName registerMBean(String name) {
+    try {
+      ObjectName objectName = new ObjectName(name);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(
+          new StandardMBean(this, TimelineMetricsSinkMBean.class), objectName);
+      return objectName;
+    } catch (JMException e) {
+      LOG.warn("Unable to register MBean " + name, e);
+      return null;
+    }
+  }
+
+  /**
+   * @param objectName  the name returned by {@link #registerMBean}, may be
+   *                    null
+   */
+  protected void unregisterMBean(ObjectName objectName) {
+    if (objectName == null) {
+      return;
+    }
+    try {
+      ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+    } catch (JMException e) {
+      LOG.warn("Unable to unregister MBean " + objectName, e);
+    }
+  }
+
+  /**
+   * @param compressionEnabled  whether request bodies are gzipped; only
+   *                            affects emitters started afterwards. Off by
+   *                            default since collectors without the gzip
+   *                            request filter reject compressed bodies
+   */
+  public void setCompressionEnabled(boolean compressionEnabled) {
+    this.compressionEnabled = compressionEnabled;
+  }
+
+  // ----- emitter statistics, 0 unless the emitter was started -----
+
+  /**
+   * @return the number of batches the collector accepted
+   */
+  @Override
+  public long getEmittedBatchCount() {
+    TimelineMetricsEmitter emitter = this.emitter;
+    return emitter == null ? 0 : emitter.getEmittedCount();
+  }
+
+  /**
+   * @return the number of batches dropped because the spool was full or the
+   *         collector couldn't be reached
+   */
+  @Override
+  public long getDroppedBatchCount() {
+    TimelineMetricsEmitter emitter = this.emitter;
+    return emitter == null ? 0 : emitter.getDroppedCount();
+  }
+
+  /**
+   * @return the number of batches written to the spill directory
+   */
+  @Override
+  public long getSpilledBatchCount() {
+    TimelineMetricsEmitter emitter = this.emitter;
+    return emitter == null ? 0 : emitter.getSpilledCount();
+  }
+
+  /**
+   * @return the number of batches waiting to be sent
+   */
+  @Override
+  public int getQueuedBatchCount() {
+    TimelineMetricsEmitter emitter = this.emitter;
+    return emitter == null ? 0 : emitter.getQueueSize();
+  }
+
+  /**
+   * @return the time in ms the last accepted batch took to send, retries
+   *         included
+   */
+  @Override
+  public long getLastEmitLatency() {
+    TimelineMetricsEmitter emitter = this.emitter;
+    return emitter == null ? 0 : emitter.getLastEmitLatency();
+  }
+
+  /**
+   * @return the average time in ms the accepted batches took to send
+   */
+  @Override
+  public long getAverageEmitLatency() {
+    TimelineMetricsEmitter emitter = this.emitter;
+    return emitter == null ? 0 : emitter.getAverageEmitLatency();
+  }
+
+  private int post(RequestEntity entity, boolean compressed) throws IOException {
+    PostMethod postMethod = new PostMethod(getCollectorUri());
+    try {
+      postMethod.setRequestEntity(entity);
+      if (compressed) {
+        postMethod.setRequestHeader("Content-Encoding", "gzip");
+      }
+      return httpClient.executeMethod(postMethod);
+    } finally {
+      postMethod.releaseConnection();
+    }
+  }
+
+  /**
+   * Write the metrics as JSON to the given stream, which is left open.
+   */
+  static void writeMetrics(TimelineMetrics metrics, OutputStream out,
+                           boolean compressed) throws IOException {
+    GZIPOutputStream gzipOut = compressed ? new GZIPOutputStream(out) : null;
+    JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(
+        gzipOut == null ? out : gzipOut, JsonEncoding.UTF8);
+    generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    mapper.writeValue(generator, metrics);
+    generator.flush();
+    if (gzipOut != null) {
+      gzipOut.finish();
+    }
+  }
+
   public void setHttpClient(HttpClient httpClient) {
     this.httpClient = httpClient;
   }
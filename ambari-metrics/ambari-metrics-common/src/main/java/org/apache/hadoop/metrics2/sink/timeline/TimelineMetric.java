@@ -24,7 +24,6 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlElement;
 import javax.xml.bind.annotation.XmlRootElement;
 import java.util.Map;
-import java.util.TreeMap;
 
 @XmlRootElement(name = "metric")
 @XmlAccessorType(XmlAccessType.NONE)
@@ -39,7 +38,7 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
   private long timestamp;
   private long startTime;
   private String type;
-  private Map<Long, Double> metricValues = new TreeMap<Long, Double>();
+  private Map<Long, Double> metricValues = new TimelineMetricValues();
 
   @XmlElement(name = "metricname")
   public String getMetricName() {
@@ -109,7 +108,15 @@ public class TimelineMetric implements Comparable<TimelineMetric> {
     return metricValues;
   }
 
+  /**
+   * Set the values keyed by timestamp.  Values held in any other kind of map
+   * are copied into {@link TimelineMetricValues}, unless they contain nulls.
+   */
   public void setMetricValues(Map<Long, Double> metricValues) {
+    if (metricValues != null && !(metricValues instanceof TimelineMetricValues)
+        && TimelineMetricValues.isSupported(metricValues)) {
+      metricValues = new TimelineMetricValues(metricValues);
+    }
     this.metricValues = metricValues;
   }
 
@@ -0,0 +1,385 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.apache.commons.httpclient.methods.FileRequestEntity;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the metrics of a sink to the collector from a background thread, so
+ * the daemon hosting the sink never blocks on the collector.
+ * <p/>
+ * Batches wait in a bounded in-memory spool; when it is full the oldest batch
+ * is dropped. A failed POST is retried with jittered exponential backoff.
+ * Batches which still can't be sent are dropped, or written to the spill
+ * directory if one is configured, and sent again once the collector accepts
+ * metrics again.
+ */
+class TimelineMetricsEmitter implements Runnable {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsEmitter.class);
+
+  static final String SPILL_FILE_PREFIX = "metrics-";
+  static final String SPILL_FILE_SUFFIX = ".json";
+  static final String COMPRESSED_SPILL_FILE_SUFFIX = ".json.gz";
+
+  /**
+   * The most spill files kept; the oldest are deleted beyond that.
+   */
+  static final int MAX_SPILL_FILES = 1000;
+
+  private static final long MAX_BACKOFF_MILLIS = 60000;
+  private static final long POLL_INTERVAL_MILLIS = 1000;
+  private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+  /**
+   * Posts a request body to the collector.
+   */
+  interface Poster {
+    /**
+     * @param entity      the request body
+     * @param compressed  whether the body is gzipped
+     *
+     * @return the HTTP status code
+     */
+    int post(RequestEntity entity, boolean compressed) throws IOException;
+  }
+
+  private final Poster poster;
+  private final BlockingQueue<TimelineMetrics> queue;
+  private final int retries;
+  private final long retryIntervalMillis;
+  private final boolean compressed;
+  private final File spillDir;
+  private final Random random = new Random();
+
+  private final AtomicLong emittedCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong spilledCount = new AtomicLong();
+  private final AtomicLong lastEmitLatency = new AtomicLong();
+  private final AtomicLong totalEmitLatency = new AtomicLong();
+  private final AtomicInteger spillSequence = new AtomicInteger();
+
+  private volatile boolean running;
+  private Thread thread;
+
+  /**
+   * @param poster               posts the request bodies
+   * @param queueSize            the number of batches the spool holds
+   * @param retries              the number of retries of a failed POST
+   * @param retryIntervalMillis  the delay before the first retry, doubled
+   *                             for each further retry
+   * @param compressed           whether to gzip the request bodies
+   * @param spillDir             the directory batches which couldn't be sent
+   *                             are written to; null to drop them
+   */
+  TimelineMetricsEmitter(Poster poster, int queueSize, int retries,
+                         long retryIntervalMillis, boolean compressed,
+                         File spillDir) {
+    this.poster = poster;
+    this.queue = new LinkedBlockingQueue<TimelineMetrics>(Math.max(queueSize, 1));
+    this.retries = Math.max(retries, 0);
+    this.retryIntervalMillis = Math.max(retryIntervalMillis, 1);
+    this.compressed = compressed;
+    this.spillDir = spillDir;
+  }
+
+  synchronized void start() {
+    if (running) {
+      return;
+    }
+    if (spillDir != null && !spillDir.isDirectory() && !spillDir.mkdirs()) {
+      LOG.warn("Unable to create metrics spill directory " + spillDir);
+    }
+    running = true;
+    thread = new Thread(this, "timeline-metrics-emitter");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Stop the background thread. Batches still in the spool are spilled if
+   * a spill directory is configured, and dropped otherwise.
+   */
+  synchronized void stop() {
+    if (!running) {
+      return;
+    }
+    running = false;
+    thread.interrupt();
+    try {
+      thread.join(STOP_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    List<TimelineMetrics> remaining = new ArrayList<TimelineMetrics>();
+    queue.drainTo(remaining);
+    for (TimelineMetrics metrics : remaining) {
+      spillOrDrop(metrics);
+    }
+  }
+
+  /**
+   * Queue the given metrics to be sent; never blocks.
+   *
+   * @param metrics  the metrics
+   */
+  void submit(TimelineMetrics metrics) {
+    while (!queue.offer(metrics)) {
+      // drop the oldest batch to make room
+      if (queue.poll() != null) {
+        if (droppedCount.getAndIncrement() == 0) {
+          LOG.warn("Metrics spool is full, dropping the oldest metrics");
+        }
+      }
+    }
+  }
+
+  @Override
+  public void run() {
+    while (running) {
+      TimelineMetrics metrics;
+      try {
+        metrics = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        continue;
+      }
+
+      try {
+        if (metrics != null) {
+          if (emit(metrics)) {
+            resendSpilled();
+          } else {
+            spillOrDrop(metrics);
+          }
+        }
+      } catch (Throwable t) {
+        LOG.error("Unexpected error emitting metrics", t);
+      }
+    }
+  }
+
+  // ----- statistics -----
+
+  long getEmittedCount() {
+    return emittedCount.get();
+  }
+
+  long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  long getSpilledCount() {
+    return spilledCount.get();
+  }
+
+  int getQueueSize() {
+    return queue.size();
+  }
+
+  long getLastEmitLatency() {
+    return lastEmitLatency.get();
+  }
+
+  long getAverageEmitLatency() {
+    long count = emittedCount.get();
+    return count == 0 ? 0 : totalEmitLatency.get() / count;
+  }
+
+  // ----- helper methods -----
+
+  // send the metrics, retrying on failure; true if they were accepted
+  private boolean emit(TimelineMetrics metrics) {
+    long start = System.currentTimeMillis();
+    boolean sent = post(new TimelineMetricsRequestEntity(metrics, compressed), compressed);
+    if (sent) {
+      long latency = System.currentTimeMillis() - start;
+      lastEmitLatency.set(latency);
+      totalEmitLatency.addAndGet(latency);
+      emittedCount.incrementAndGet();
+    }
+    return sent;
+  }
+
+  private boolean post(RequestEntity entity, boolean compressed) {
+    for (int attempt = 0; attempt <= retries; attempt++) {
+      if (attempt > 0 && !backoff(attempt)) {
+        return false;
+      }
+      try {
+        int status = poster.post(entity, compressed);
+        if (status == 200) {
+          return true;
+        }
+        LOG.info("Unable to POST metrics to collector, status " + status);
+        if (!isRetryable(status)) {
+          return false;
+        }
+      } catch (IOException e) {
+        LOG.info("Unable to POST metrics to collector: " + e);
+      }
+    }
+    return false;
+  }
+
+  // client errors other than timeouts and throttling won't succeed on retry
+  private static boolean isRetryable(int status) {
+    return status >= 500 || status == 408 || status == 429;
+  }
+
+  // sleep before the given retry; false if stopped meanwhile
+  private boolean backoff(int attempt) {
+    long delay = Math.min(retryIntervalMillis << Math.min(attempt - 1, 20), MAX_BACKOFF_MILLIS);
+    // full jitter over the upper half, so senders don't retry in lockstep
+    delay = delay / 2 + (long) (random.nextDouble() * (delay / 2 + 1));
+    try {
+      Thread.sleep(delay);
+    } catch (InterruptedException e) {
+      // interrupted by stop
+    }
+    return running;
+  }
+
+  private void spillOrDrop(TimelineMetrics metrics) {
+    if (spillDir != null) {
+      try {
+        spill(metrics);
+        spilledCount.incrementAndGet();
+        return;
+      } catch (IOException e) {
+        LOG.warn("Unable to spill metrics to " + spillDir, e);
+      }
+    }
+    droppedCount.incrementAndGet();
+  }
+
+  private void spill(TimelineMetrics metrics) throws IOException {
+    File[] spilled = listSpilled();
+    for (int i = 0; i <= spilled.length - MAX_SPILL_FILES; i++) {
+      if (spilled[i].delete()) {
+        droppedCount.incrementAndGet();
+      }
+    }
+
+    // the timestamp keeps the files in spill order across restarts
+    String name = String.format("%s%013d-%06d%s", SPILL_FILE_PREFIX,
+        System.currentTimeMillis(), spillSequence.getAndIncrement() % 1000000,
+        compressed ? COMPRESSED_SPILL_FILE_SUFFIX : SPILL_FILE_SUFFIX);
+    File file = new File(spillDir, name);
+    File tmp = new File(spillDir, name + ".tmp");
+
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp));
+    try {
+      AbstractTimelineMetricsSink.writeMetrics(metrics, out, compressed);
+    } finally {
+      out.close();
+    }
+    if (!tmp.renameTo(file)) {
+      tmp.delete();
+      throw new IOException("Unable to rename " + tmp + " to " + file);
+    }
+  }
+
+  // send the spilled batches, oldest first, until one fails
+  private void resendSpilled() {
+    if (spillDir == null) {
+      return;
+    }
+    for (File file : listSpilled()) {
+      if (!running) {
+        return;
+      }
+      boolean fileCompressed = file.getName().endsWith(COMPRESSED_SPILL_FILE_SUFFIX);
+      if (!post(new FileRequestEntity(file, "application/json"), fileCompressed)) {
+        return;
+      }
+      if (!file.delete()) {
+        LOG.warn("Unable to delete spilled metrics " + file);
+        return;
+      }
+      emittedCount.incrementAndGet();
+    }
+  }
+
+  private File[] listSpilled() {
+    File[] files = spillDir.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith(SPILL_FILE_PREFIX) &&
+            (name.endsWith(SPILL_FILE_SUFFIX) || name.endsWith(COMPRESSED_SPILL_FILE_SUFFIX));
+      }
+    });
+    if (files == null) {
+      return new File[0];
+    }
+    Arrays.sort(files);
+    return files;
+  }
+
+  /**
+   * Streams the metrics as JSON straight into the request body.
+   */
+  static class TimelineMetricsRequestEntity implements RequestEntity {
+    private final TimelineMetrics metrics;
+    private final boolean compressed;
+
+    TimelineMetricsRequestEntity(TimelineMetrics metrics, boolean compressed) {
+      this.metrics = metrics;
+      this.compressed = compressed;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+      return true;
+    }
+
+    @Override
+    public void writeRequest(OutputStream out) throws IOException {
+      AbstractTimelineMetricsSink.writeMetrics(metrics, out, compressed);
+    }
+
+    @Override
+    public long getContentLength() {
+      // sent chunked
+      return -1;
+    }
+
+    @Override
+    public String getContentType() {
+      return "application/json";
+    }
+  }
+}
@@ -17,164 +17,453 @@
  */
 package org.apache.hadoop.metrics2.sink.timeline.cache;
 
-import com.google.common.base.Optional;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.classification.InterfaceAudience;
 import org.apache.hadoop.classification.InterfaceStability;
 import org.apache.hadoop.metrics2.MetricType;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Buffers the values of each metric until it is time to send them.
+ * <p/>
+ * The values of each metric name are kept in a primitive ring buffer, which
+ * grows on demand up to a fixed number of points; beyond that the oldest
+ * points are overwritten. Callers appending to different metrics never
+ * contend, since only the buffer of the metric itself is locked.
+ * <p/>
+ * Memory stays bounded when the number of metric names explodes: once
+ * either the number of metrics or their estimated weight in bytes exceeds
+ * its limit, the least recently updated metrics are evicted.
+ */
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
 public class TimelineMetricsCache {
 
-  private final TimelineMetricHolder timelineMetricCache = new TimelineMetricHolder();
-  private static final Log LOG = LogFactory.getLog(TimelineMetric.class);
+  private static final Log LOG = LogFactory.getLog(TimelineMetricsCache.class);
   public static final int MAX_RECS_PER_NAME_DEFAULT = 10000;
   public static final int MAX_EVICTION_TIME_MILLIS = 59000; // ~ 1 min
+  public static final int MAX_POINTS_PER_METRIC_DEFAULT = 256;
+  public static final long MAX_WEIGHT_BYTES_DEFAULT = 16L * 1024 * 1024;
+
+  // the estimated bytes taken by a buffer besides its name and points
+  private static final int BUFFER_OVERHEAD_BYTES = 256;
+  private static final int BYTES_PER_POINT = 16;
+  private static final int INITIAL_POINTS = 4;
+  // evict down to this share of the limits, so eviction doesn't run per put
+  private static final double EVICTION_TARGET = 0.9;
+
   private final int maxRecsPerName;
   private final int maxEvictionTimeInMillis;
-  private final Map<String, Double> counterMetricLastValue = new HashMap<String, Double>();
+  private final int maxPointsPerMetric;
+  private final long maxWeightBytes;
 
+  private final ConcurrentMap<String, MetricBuffer> buffers =
+      new ConcurrentHashMap<String, MetricBuffer>();
+  private final AtomicLong weight = new AtomicLong();
+  private final AtomicBoolean evicting = new AtomicBoolean();
+  private final AtomicLong evictedCount = new AtomicLong();
+  private final AtomicLong overwrittenCount = new AtomicLong();
+  // orders the updates of the buffers for eviction
+  private final AtomicLong updateSequence = new AtomicLong();
+
+  /**
+   * @param maxRecsPerName           the most metric names buffered
+   * @param maxEvictionTimeInMillis  the time span of the values buffered
+   *                                 for a metric before they are sent
+   */
   public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis) {
+    this(maxRecsPerName, maxEvictionTimeInMillis, MAX_POINTS_PER_METRIC_DEFAULT,
+        MAX_WEIGHT_BYTES_DEFAULT);
+  }
+
+  /**
+   * @param maxRecsPerName           the most metric names buffered
+   * @param maxEvictionTimeInMillis  the time span of the values buffered
+   *                                 for a metric before they are sent
+   * @param maxPointsPerMetric       the most values buffered per metric
+   * @param maxWeightBytes           the most bytes, estimated, taken by all
+   *                                 buffered metrics
+   */
+  public TimelineMetricsCache(int maxRecsPerName, int maxEvictionTimeInMillis,
+                              int maxPointsPerMetric, long maxWeightBytes) {
     this.maxRecsPerName = maxRecsPerName;
     this.maxEvictionTimeInMillis = maxEvictionTimeInMillis;
+    this.maxPointsPerMetric = Math.max(maxPointsPerMetric, 1);
+    this.maxWeightBytes = maxWeightBytes;
   }
 
-  class TimelineMetricWrapper {
-    private long timeDiff = -1;
-    private long oldestTimestamp = -1;
-    private TimelineMetric timelineMetric;
+  /**
+   * Get the buffered values of the given metric, if they span at least the
+   * eviction time, and remove them from the cache.
+   *
+   * @param metricName  the metric name
+   *
+   * @return the metric; null if it isn't due to be sent yet
+   */
+  public TimelineMetric getTimelineMetric(String metricName) {
+    MetricBuffer buffer = buffers.get(metricName);
+    if (buffer == null) {
+      return null;
+    }
+    synchronized (buffer) {
+      if (buffer.evicted || buffer.timeDiff < maxEvictionTimeInMillis) {
+        return null;
+      }
+      return buffer.drain(metricName);
+    }
+  }
+
+  /**
+   * Remove and return the buffered values of all metrics which are due to
+   * be sent.
+   *
+   * @return the metrics
+   */
+  public List<TimelineMetric> drainTimelineMetrics() {
+    return drain(false);
+  }
+
+  /**
+   * Remove and return the buffered values of all metrics, whether they are
+   * due to be sent or not; e.g. when the sink is stopped.
+   *
+   * @return the metrics
+   */
+  public List<TimelineMetric> drainAllTimelineMetrics() {
+    return drain(true);
+  }
+
+  /**
+   * Getter method to help testing eviction
+   * @return @int
+   */
+  public int getMaxEvictionTimeInMillis() {
+    return maxEvictionTimeInMillis;
+  }
+
+  public void putTimelineMetric(TimelineMetric timelineMetric) {
+    put(timelineMetric, false);
+  }
+
+  /**
+   * Buffer the values of the given metric. The values of counters are
+   * buffered as the difference to the previous value.
+   *
+   * @param timelineMetric  the metric
+   * @param type            the metric type
+   */
+  public void putTimelineMetric(TimelineMetric timelineMetric, MetricType type) {
+    put(timelineMetric, type == MetricType.COUNTER);
+  }
+
+  // ----- statistics -----
+
+  /**
+   * @return the number of metric names buffered
+   */
+  public int getMetricCount() {
+    return buffers.size();
+  }
+
+  /**
+   * @return the estimated bytes taken by the buffered metrics
+   */
+  public long getWeight() {
+    return weight.get();
+  }
+
+  /**
+   * @return the number of metrics evicted to stay within the limits
+   */
+  public long getEvictedMetricCount() {
+    return evictedCount.get();
+  }
+
+  /**
+   * @return the number of values overwritten in full buffers
+   */
+  public long getOverwrittenPointCount() {
+    return overwrittenCount.get();
+  }
+
+  // ----- helper methods -----
 
-    TimelineMetricWrapper(TimelineMetric timelineMetric) {
-      this.timelineMetric = timelineMetric;
-      this.oldestTimestamp = timelineMetric.getStartTime();
+  private void put(TimelineMetric timelineMetric, boolean counter) {
+    String metricName = timelineMetric.getMetricName();
+    while (true) {
+      MetricBuffer buffer = getBuffer(metricName);
+      synchronized (buffer) {
+        if (buffer.evicted) {
+          // lost a race with eviction; start over with a new buffer
+          continue;
+        }
+        // account for the change before an evictor can subtract the weight
+        long weightDelta = buffer.put(timelineMetric, counter);
+        if (weightDelta != 0) {
+          weight.addAndGet(weightDelta);
+        }
+      }
+      break;
     }
+    evictIfNeeded();
+  }
 
-    private void updateTimeDiff(long timestamp) {
-      if (oldestTimestamp != -1 && timestamp > oldestTimestamp) {
-        timeDiff = timestamp - oldestTimestamp;
+  private MetricBuffer getBuffer(String metricName) {
+    MetricBuffer buffer = buffers.get(metricName);
+    if (buffer == null) {
+      MetricBuffer newBuffer = new MetricBuffer(metricName);
+      // account for the buffer before it can be evicted
+      weight.addAndGet(newBuffer.weight);
+      buffer = buffers.putIfAbsent(metricName, newBuffer);
+      if (buffer == null) {
+        buffer = newBuffer;
       } else {
-        oldestTimestamp = timestamp;
+        weight.addAndGet(-newBuffer.weight);
       }
     }
+    return buffer;
+  }
 
-    public void putMetric(TimelineMetric metric) {
-      this.timelineMetric.addMetricValues(metric.getMetricValues());
-      updateTimeDiff(metric.getStartTime());
+  private List<TimelineMetric> drain(boolean all) {
+    List<TimelineMetric> metrics = new ArrayList<TimelineMetric>();
+    for (Map.Entry<String, MetricBuffer> entry : buffers.entrySet()) {
+      MetricBuffer buffer = entry.getValue();
+      synchronized (buffer) {
+        if (!buffer.evicted && buffer.count > 0
+            && (all || buffer.timeDiff >= maxEvictionTimeInMillis)) {
+          metrics.add(buffer.drain(entry.getKey()));
+        }
+      }
     }
+    return metrics;
+  }
 
-    public long getTimeDiff() {
-      return timeDiff;
+  // evict the least recently updated metrics once over either limit;
+  // only one caller evicts at a time, the others carry on
+  private void evictIfNeeded() {
+    if (!isOverLimit(1.0) || !evicting.compareAndSet(false, true)) {
+      return;
     }
+    try {
+      List<Map.Entry<String, MetricBuffer>> entries =
+          new ArrayList<Map.Entry<String, MetricBuffer>>(buffers.entrySet());
 
-    public TimelineMetric getTimelineMetric() {
-      return timelineMetric;
-    }
-  }
+      // snapshot the update times, they keep changing while sorting
+      final long[] lastUpdates = new long[entries.size()];
+      Integer[] order = new Integer[entries.size()];
+      for (int i = 0; i < order.length; i++) {
+        lastUpdates[i] = entries.get(i).getValue().lastUpdate;
+        order[i] = i;
+      }
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          return lastUpdates[a] < lastUpdates[b] ? -1 : lastUpdates[a] > lastUpdates[b] ? 1 : 0;
+        }
+      });
+
+      long evicted = 0;
+      for (int i = 0; i < order.length && isOverLimit(EVICTION_TARGET); i++) {
+        Map.Entry<String, MetricBuffer> entry = entries.get(order[i]);
+        MetricBuffer buffer = entry.getValue();
+        long bufferWeight;
+        synchronized (buffer) {
+          buffer.evicted = true;
+          bufferWeight = buffer.weight;
+        }
+        if (buffers.remove(entry.getKey(), buffer)) {
+          weight.addAndGet(-bufferWeight);
+          evicted++;
+        }
+      }
 
-  // TODO: Change to ConcurentHashMap with weighted eviction
-  class TimelineMetricHolder extends LinkedHashMap<String, TimelineMetricWrapper> {
-    private static final long serialVersionUID = 1L;
-    private boolean gotOverflow = false;
-    // To avoid duplication at the end of the buffer and beginning of the next
-    // segment of values
-    private Map<String, Long> endOfBufferTimestamps = new HashMap<String, Long>();
-
-    @Override
-    protected boolean removeEldestEntry(Map.Entry<String, TimelineMetricWrapper> eldest) {
-      boolean overflow = size() > maxRecsPerName;
-      if (overflow && !gotOverflow) {
-        LOG.warn("Metrics cache overflow at "+ size() +" for "+ eldest);
-        gotOverflow = true;
+      if (evicted > 0 && evictedCount.getAndAdd(evicted) == 0) {
+        LOG.warn("Metrics cache overflow at " + (buffers.size() + evicted) + " metrics, "
+            + weight.get() + " bytes; evicting the least recently updated metrics");
       }
-      return overflow;
+    } finally {
+      evicting.set(false);
     }
+  }
 
-    public TimelineMetric evict(String metricName) {
-      TimelineMetricWrapper metricWrapper = this.get(metricName);
+  private boolean isOverLimit(double share) {
+    return buffers.size() > maxRecsPerName * share || weight.get() > maxWeightBytes * share;
+  }
 
-      if (metricWrapper == null
-        || metricWrapper.getTimeDiff() < getMaxEvictionTimeInMillis()) {
-        return null;
-      }
+  // ----- inner classes -----
 
-      TimelineMetric timelineMetric = metricWrapper.getTimelineMetric();
-      this.remove(metricName);
+  /**
+   * The buffered values of a metric name, guarded by the buffer itself.
+   * The buffer outlives the values it drains, keeping the state needed for
+   * the next values: the last counter value and the last start time.
+   */
+  private class MetricBuffer {
+    // the metric the values belong to, as of the first values since the last drain
+    private boolean hasHeader;
+    private String appId;
+    private String instanceId;
+    private String hostName;
+    private String type;
+    private long startTime;
+    private long timestamp;
 
-      return timelineMetric;
+    // ring buffer of the values, oldest at head
+    private long[] timestamps = new long[0];
+    private double[] values = new double[0];
+    private int head;
+    private int count;
+
+    private long oldestTimestamp = -1;
+    private long timeDiff = -1;
+
+    // to avoid duplication at the end of the buffer and beginning of the
+    // next segment of values
+    private boolean hasLastStartTime;
+    private long lastStartTime;
+
+    private double lastCounterValue = Double.NaN;
+
+    private volatile long lastUpdate = updateSequence.incrementAndGet();
+    private volatile long weight;
+    private boolean evicted;
+
+    private MetricBuffer(String metricName) {
+      weight = BUFFER_OVERHEAD_BYTES + 2L * metricName.length();
     }
 
-    public void put(String metricName, TimelineMetric timelineMetric) {
-      if (isDuplicate(timelineMetric)) {
-        return;
+    // buffer the values of the metric; returns the change in weight
+    private long put(TimelineMetric timelineMetric, boolean counter) {
+      lastUpdate = updateSequence.incrementAndGet();
+      boolean first = !hasHeader;
+      Map<Long, Double> metricValues = timelineMetric.getMetricValues();
+      boolean duplicate = hasLastStartTime && lastStartTime == timelineMetric.getStartTime();
+
+      if (counter && !metricValues.isEmpty()) {
+        double previousValue = Double.isNaN(lastCounterValue)
+            ? metricValues.values().iterator().next() : lastCounterValue;
+        for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+          if (!duplicate) {
+            append(entry.getKey(), entry.getValue() - previousValue);
+          }
+          previousValue = entry.getValue();
+        }
+        lastCounterValue = previousValue;
+      } else if (!duplicate) {
+        for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+          append(entry.getKey(), entry.getValue());
+        }
       }
-      TimelineMetricWrapper metric = this.get(metricName);
-      if (metric == null) {
-        this.put(metricName, new TimelineMetricWrapper(timelineMetric));
+
+      if (duplicate) {
+        return 0;
+      }
+
+      if (first) {
+        setHeader(timelineMetric);
+        oldestTimestamp = timelineMetric.getStartTime();
       } else {
-        metric.putMetric(timelineMetric);
+        updateTimeDiff(timelineMetric.getStartTime());
       }
-      // Buffer last ts value
-      endOfBufferTimestamps.put(metricName, timelineMetric.getStartTime());
+      hasLastStartTime = true;
+      lastStartTime = timelineMetric.getStartTime();
+
+      long newWeight = BUFFER_OVERHEAD_BYTES + 2L * timelineMetric.getMetricName().length()
+          + (long) BYTES_PER_POINT * timestamps.length;
+      long delta = newWeight - weight;
+      weight = newWeight;
+      return delta;
     }
 
-    /**
-     * Test whether last buffered timestamp is same as the newly received.
-     * @param timelineMetric @TimelineMetric
-     * @return true/false
-     */
-    private boolean isDuplicate(TimelineMetric timelineMetric) {
-      return endOfBufferTimestamps.containsKey(timelineMetric.getMetricName())
-        && endOfBufferTimestamps.get(timelineMetric.getMetricName()).equals(timelineMetric.getStartTime());
+    private void append(long timestamp, double value) {
+      int capacity = timestamps.length;
+      if (count == capacity) {
+        if (capacity < maxPointsPerMetric) {
+          grow(Math.min(Math.max(capacity * 2, INITIAL_POINTS), maxPointsPerMetric));
+          capacity = timestamps.length;
+        } else {
+          // full; overwrite the oldest value
+          head = (head + 1) % capacity;
+          count--;
+          overwrittenCount.incrementAndGet();
+        }
+      }
+      int index = (head + count) % capacity;
+      timestamps[index] = timestamp;
+      values[index] = value;
+      count++;
     }
-  }
 
-  public TimelineMetric getTimelineMetric(String metricName) {
-    if (timelineMetricCache.containsKey(metricName)) {
-      return timelineMetricCache.evict(metricName);
+    private void grow(int capacity) {
+      long[] newTimestamps = new long[capacity];
+      double[] newValues = new double[capacity];
+      for (int i = 0; i < count; i++) {
+        int index = (head + i) % timestamps.length;
+        newTimestamps[i] = timestamps[index];
+        newValues[i] = values[index];
+      }
+      timestamps = newTimestamps;
+      values = newValues;
+      head = 0;
     }
 
-    return null;
-  }
+    private void updateTimeDiff(long timestamp) {
+      if (oldestTimestamp != -1 && timestamp > oldestTimestamp) {
+        timeDiff = timestamp - oldestTimestamp;
+      } else {
+        oldestTimestamp = timestamp;
+      }
+    }
 
-  /**
-   * Getter method to help testing eviction
-   * @return @int
-   */
-  public int getMaxEvictionTimeInMillis() {
-    return maxEvictionTimeInMillis;
-  }
+    private void setHeader(TimelineMetric timelineMetric) {
+      hasHeader = true;
+      appId = timelineMetric.getAppId();
+      instanceId = timelineMetric.getInstanceId();
+      hostName = timelineMetric.getHostName();
+      type = timelineMetric.getType();
+      startTime = timelineMetric.getStartTime();
+      timestamp = timelineMetric.getTimestamp();
+    }
 
-  public void putTimelineMetric(TimelineMetric timelineMetric) {
-    timelineMetricCache.put(timelineMetric.getMetricName(), timelineMetric);
-  }
+    // take the buffered values, keeping the arrays for the next ones
+    private TimelineMetric drain(String metricName) {
+      TimelineMetricValues metricValues = new TimelineMetricValues(count);
+      for (int i = 0; i < count; i++) {
+        int index = (head + i) % timestamps.length;
+        metricValues.putValue(timestamps[index], values[index]);
+      }
 
-  private void transformMetricValuesToDerivative(TimelineMetric timelineMetric) {
-    String metricName = timelineMetric.getMetricName();
-    double firstValue = timelineMetric.getMetricValues().size() > 0
-        ? timelineMetric.getMetricValues().entrySet().iterator().next().getValue() : 0;
-    double previousValue = Optional.fromNullable(counterMetricLastValue.get(metricName)).or(firstValue);
-    Map<Long, Double> metricValues = timelineMetric.getMetricValues();
-    Map<Long, Double>   newMetricValues = new TreeMap<Long, Double>();
-    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
-      newMetricValues.put(entry.getKey(), entry.getValue() - previousValue);
-      previousValue = entry.getValue();
-    }
-    timelineMetric.setMetricValues(newMetricValues);
-    counterMetricLastValue.put(metricName, previousValue);
-  }
+      TimelineMetric timelineMetric = new TimelineMetric();
+      timelineMetric.setMetricName(metricName);
+      timelineMetric.setAppId(appId);
+      timelineMetric.setInstanceId(instanceId);
+      timelineMetric.setHostName(hostName);
+      timelineMetric.setType(type);
+      timelineMetric.setStartTime(startTime);
+      timelineMetric.setTimestamp(timestamp);
+      timelineMetric.setMetricValues(metricValues);
 
-  public void putTimelineMetric(TimelineMetric timelineMetric, MetricType type) {
-    if (type == MetricType.COUNTER) {
-      transformMetricValuesToDerivative(timelineMetric);
+      head = 0;
+      count = 0;
+      oldestTimestamp = -1;
+      timeDiff = -1;
+      hasHeader = false;
+      appId = null;
+      instanceId = null;
+      hostName = null;
+      type = null;
+      return timelineMetric;
     }
-    putTimelineMetric(timelineMetric);
   }
 }
@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the metric values held in a {@link TreeMap} with
+ * {@link TimelineMetricValues} for a series of 10k points, sampled every 10
+ * seconds as the sinks do.
+ * <p/>
+ * The build benchmarks append a whole series, so the bytes allocated per
+ * operation reported by the GC profiler approximate the heap footprint of a
+ * series.  Not run as part of the unit tests; run {@link #main} from the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimelineMetricValuesBenchmark {
+
+  private static final long START_TIME = 1411023766000L;
+  private static final long INTERVAL = 10000L;
+
+  @Param({"10000"})
+  private int points;
+
+  private TreeMap<Long, Double> treeMap;
+  private TimelineMetricValues metricValues;
+
+  private TreeMap<Long, Double> treeMapTail;
+  private TimelineMetricValues metricValuesTail;
+
+  @Setup
+  public void setUp() {
+    treeMap = new TreeMap<Long, Double>();
+    metricValues = new TimelineMetricValues();
+    fill(treeMap, 0, points);
+    fill(metricValues, 0, points);
+
+    // the second half of the series, overlapping by one point
+    treeMapTail = new TreeMap<Long, Double>();
+    metricValuesTail = new TimelineMetricValues();
+    fill(treeMapTail, points / 2 - 1, points);
+    fill(metricValuesTail, points / 2 - 1, points);
+  }
+
+  @Benchmark
+  public Map<Long, Double> buildTreeMap() {
+    TreeMap<Long, Double> map = new TreeMap<Long, Double>();
+    fill(map, 0, points);
+    return map;
+  }
+
+  @Benchmark
+  public Map<Long, Double> buildTimelineMetricValues() {
+    TimelineMetricValues map = new TimelineMetricValues();
+    for (int i = 0; i < points; i++) {
+      map.putValue(START_TIME + i * INTERVAL, i);
+    }
+    return map;
+  }
+
+  @Benchmark
+  public Map<Long, Double> mergeTreeMap() {
+    TreeMap<Long, Double> map = new TreeMap<Long, Double>();
+    fill(map, 0, points / 2);
+    map.putAll(treeMapTail);
+    return map;
+  }
+
+  @Benchmark
+  public Map<Long, Double> mergeTimelineMetricValues() {
+    TimelineMetricValues map = new TimelineMetricValues();
+    fill(map, 0, points / 2);
+    map.putAll(metricValuesTail);
+    return map;
+  }
+
+  @Benchmark
+  public double iterateTreeMap() {
+    return sum(treeMap);
+  }
+
+  @Benchmark
+  public double iterateTimelineMetricValues() {
+    return sum(metricValues);
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .include(TimelineMetricValuesBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .build();
+    new Runner(options).run();
+  }
+
+  private static void fill(Map<Long, Double> map, int from, int to) {
+    for (int i = from; i < to; i++) {
+      map.put(START_TIME + i * INTERVAL, (double) i);
+    }
+  }
+
+  private static double sum(Map<Long, Double> map) {
+    double sum = 0;
+    for (Map.Entry<Long, Double> entry : map.entrySet()) {
+      sum += entry.getValue();
+    }
+    return sum;
+  }
+}
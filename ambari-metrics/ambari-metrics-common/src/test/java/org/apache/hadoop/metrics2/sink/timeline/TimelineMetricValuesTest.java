@@ -0,0 +1,164 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricValuesTest {
+
+  private static final double delta = 0.00001;
+
+  @Test
+  public void testPutKeepsTimestampOrder() throws Exception {
+    TimelineMetricValues values = new TimelineMetricValues();
+    values.put(3L, 3.0);
+    values.put(1L, 1.0);
+    values.putValue(5L, 5.0);
+    values.put(2L, 2.0);
+    assertEquals(3.0, values.put(3L, 30.0), delta);
+
+    assertEquals(4, values.size());
+    long[] expected = {1L, 2L, 3L, 5L};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(expected[i], values.getTimestamp(i));
+    }
+    assertEquals(30.0, values.get(3L), delta);
+    assertNull(values.get(4L));
+    assertFalse(values.containsKey(4L));
+
+    assertEquals(2.0, values.remove(2L), delta);
+    assertNull(values.remove(2L));
+    assertEquals(3, values.size());
+  }
+
+  @Test
+  public void testEqualsTreeMap() throws Exception {
+    TreeMap<Long, Double> treeMap = new TreeMap<Long, Double>();
+    TimelineMetricValues values = new TimelineMetricValues();
+    for (long i = 10; i > 0; i--) {
+      treeMap.put(i * 1000, i * 1.5);
+      values.put(i * 1000, i * 1.5);
+    }
+
+    assertEquals(treeMap, values);
+    assertEquals(values, treeMap);
+    assertEquals(treeMap.hashCode(), values.hashCode());
+    assertEquals(treeMap.toString(), values.toString());
+  }
+
+  @Test
+  public void testPutAllMerges() throws Exception {
+    TimelineMetricValues values = new TimelineMetricValues();
+    values.putValue(1L, 1.0);
+    values.putValue(3L, 3.0);
+    values.putValue(5L, 5.0);
+
+    TimelineMetricValues other = new TimelineMetricValues();
+    other.putValue(2L, 2.0);
+    other.putValue(3L, 30.0);
+    other.putValue(6L, 6.0);
+    values.putAll(other);
+
+    TreeMap<Long, Double> expected = new TreeMap<Long, Double>();
+    expected.put(1L, 1.0);
+    expected.put(2L, 2.0);
+    expected.put(3L, 30.0);
+    expected.put(5L, 5.0);
+    expected.put(6L, 6.0);
+    assertEquals(expected, values);
+
+    // later values are appended
+    TimelineMetricValues later = new TimelineMetricValues();
+    later.putValue(7L, 7.0);
+    values.putAll(later);
+    expected.put(7L, 7.0);
+    assertEquals(expected, values);
+  }
+
+  @Test
+  public void testEntryIterator() throws Exception {
+    TimelineMetricValues values = new TimelineMetricValues();
+    for (long i = 1; i <= 6; i++) {
+      values.putValue(i, i);
+    }
+
+    Iterator<Map.Entry<Long, Double>> iterator = values.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Long, Double> entry = iterator.next();
+      if (entry.getKey() % 2 == 0) {
+        iterator.remove();
+      } else {
+        entry.setValue(entry.getValue() * 10);
+      }
+    }
+
+    assertEquals(3, values.size());
+    assertEquals(10.0, values.get(1L), delta);
+    assertEquals(30.0, values.get(3L), delta);
+    assertEquals(50.0, values.get(5L), delta);
+  }
+
+  @Test
+  public void testSetMetricValues() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    assertTrue(metric.getMetricValues() instanceof TimelineMetricValues);
+
+    Map<Long, Double> hashMap = new HashMap<Long, Double>();
+    hashMap.put(2L, 2.0);
+    hashMap.put(1L, 1.0);
+    metric.setMetricValues(hashMap);
+    assertTrue(metric.getMetricValues() instanceof TimelineMetricValues);
+    assertEquals(hashMap, metric.getMetricValues());
+
+    TimelineMetricValues values = new TimelineMetricValues();
+    metric.setMetricValues(values);
+    assertSame(values, metric.getMetricValues());
+
+    // nulls are kept as given
+    hashMap.put(3L, null);
+    metric.setMetricValues(hashMap);
+    assertSame(hashMap, metric.getMetricValues());
+  }
+
+  @Test
+  public void testJsonWireFormat() throws Exception {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName("cpu_user");
+    metric.getMetricValues().put(1411023766L, 1.5);
+    metric.getMetricValues().put(1411023776L, 2.5);
+
+    ObjectMapper mapper = new ObjectMapper();
+    String json = mapper.writeValueAsString(metric);
+    assertTrue(json.contains("{\"1411023766\":1.5,\"1411023776\":2.5}"));
+
+    TimelineMetric read = mapper.readValue(json, TimelineMetric.class);
+    assertEquals(metric.getMetricValues(), read.getMetricValues());
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimelineMetricsEmitterTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testEmitCompressed() throws Exception {
+    TestPoster poster = new TestPoster();
+    TimelineMetricsEmitter emitter = new TimelineMetricsEmitter(poster, 10, 0, 1, true, null);
+    emitter.start();
+    try {
+      emitter.submit(createMetrics("cpu_user"));
+      waitFor(emitter, 1);
+    } finally {
+      emitter.stop();
+    }
+
+    assertEquals(1, poster.bodies.size());
+    String json = read(new GZIPInputStream(new ByteArrayInputStream(poster.bodies.get(0))));
+    TimelineMetrics metrics = AbstractTimelineMetricsSink.mapper.readValue(json, TimelineMetrics.class);
+    assertEquals("cpu_user", metrics.getMetrics().get(0).getMetricName());
+    assertEquals(1.5, metrics.getMetrics().get(0).getMetricValues().get(1000L), 0.00001);
+  }
+
+  @Test
+  public void testRetry() throws Exception {
+    TestPoster poster = new TestPoster(503, 503);
+    TimelineMetricsEmitter emitter = new TimelineMetricsEmitter(poster, 10, 3, 1, false, null);
+    emitter.start();
+    try {
+      emitter.submit(createMetrics("cpu_user"));
+      waitFor(emitter, 1);
+    } finally {
+      emitter.stop();
+    }
+
+    assertEquals(3, poster.attempts);
+    assertEquals(0, emitter.getDroppedCount());
+  }
+
+  @Test
+  public void testDropOldestWhenFull() throws Exception {
+    TimelineMetricsEmitter emitter =
+        new TimelineMetricsEmitter(new TestPoster(), 2, 0, 1, false, null);
+
+    emitter.submit(createMetrics("m1"));
+    emitter.submit(createMetrics("m2"));
+    emitter.submit(createMetrics("m3"));
+
+    assertEquals(2, emitter.getQueueSize());
+    assertEquals(1, emitter.getDroppedCount());
+  }
+
+  @Test
+  public void testSpillAndResend() throws Exception {
+    File spillDir = folder.newFolder("spill");
+    TestPoster poster = new TestPoster();
+    poster.down = true;
+
+    TimelineMetricsEmitter emitter = new TimelineMetricsEmitter(poster, 10, 1, 1, true, spillDir);
+    emitter.start();
+    try {
+      emitter.submit(createMetrics("m1"));
+      for (int i = 0; i < 500 && emitter.getSpilledCount() == 0; i++) {
+        Thread.sleep(10);
+      }
+      assertEquals(1, emitter.getSpilledCount());
+      assertEquals(1, spillDir.list().length);
+      assertTrue(spillDir.list()[0].endsWith(TimelineMetricsEmitter.COMPRESSED_SPILL_FILE_SUFFIX));
+
+      // the spilled metrics follow the next ones accepted
+      poster.down = false;
+      emitter.submit(createMetrics("m2"));
+      waitFor(emitter, 2);
+    } finally {
+      emitter.stop();
+    }
+
+    assertEquals(0, spillDir.list().length);
+    assertEquals(0, emitter.getDroppedCount());
+  }
+
+  private static TimelineMetrics createMetrics(String name) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(name);
+    metric.setHostName("h1");
+    metric.setAppId("datanode");
+    metric.setStartTime(1000L);
+    metric.getMetricValues().put(1000L, 1.5);
+
+    TimelineMetrics metrics = new TimelineMetrics();
+    metrics.setMetrics(Collections.singletonList(metric));
+    return metrics;
+  }
+
+  private static void waitFor(TimelineMetricsEmitter emitter, long emitted) throws InterruptedException {
+    for (int i = 0; i < 500 && emitter.getEmittedCount() < emitted; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(emitted, emitter.getEmittedCount());
+  }
+
+  private static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int n;
+    while ((n = in.read(buffer)) > 0) {
+      out.write(buffer, 0, n);
+    }
+    return out.toString("UTF-8");
+  }
+
+  /**
+   * Records the request bodies, answering with the given status codes first
+   * and 200 afterwards.
+   */
+  private static class TestPoster implements TimelineMetricsEmitter.Poster {
+    private final List<byte[]> bodies = new ArrayList<byte[]>();
+    private final int[] statusCodes;
+    private volatile boolean down;
+    private int attempts;
+
+    TestPoster(int... statusCodes) {
+      this.statusCodes = statusCodes;
+    }
+
+    @Override
+    public synchronized int post(RequestEntity entity, boolean compressed) throws IOException {
+      attempts++;
+      if (down) {
+        throw new ConnectException("Connection refused");
+      }
+      if (attempts <= statusCodes.length) {
+        return statusCodes[attempts - 1];
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      entity.writeRequest(out);
+      bodies.add(out.toByteArray());
+      return 200;
+    }
+  }
+}
@@ -21,10 +21,12 @@ import org.apache.hadoop.metrics2.MetricType;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.junit.Test;
 
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class TimelineMetricsCacheTest {
 
@@ -73,10 +75,96 @@ public class TimelineMetricsCacheTest {
     assertEquals(70, cachedMetric.getMetricValues().get(8L), delta);
   }
 
+  @Test
+  public void testRingBufferOverwritesOldestPoints() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(
+        TimelineMetricsCache.MAX_RECS_PER_NAME_DEFAULT,
+        TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS, 4,
+        TimelineMetricsCache.MAX_WEIGHT_BYTES_DEFAULT);
+    for (long i = 1; i <= 6; i++) {
+      TimelineMetric metric = createTimelineMetric(METRIC_NAME,
+          new TreeMap<Long, Double>(), DEFAULT_START_TIME + i);
+      metric.getMetricValues().put(i, (double) i);
+      cache.putTimelineMetric(metric);
+    }
+
+    List<TimelineMetric> drained = cache.drainAllTimelineMetrics();
+    assertEquals(1, drained.size());
+    Map<Long, Double> values = drained.get(0).getMetricValues();
+    assertEquals(4, values.size());
+    assertEquals(3, values.get(3L), delta);
+    assertEquals(6, values.get(6L), delta);
+    assertEquals(2, cache.getOverwrittenPointCount());
+    assertEquals(0, cache.drainAllTimelineMetrics().size());
+  }
+
+  @Test
+  public void testEvictLeastRecentlyUpdatedMetrics() throws Exception {
+    TimelineMetricsCache cache = new TimelineMetricsCache(
+        10, TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS);
+    for (int i = 0; i < 100; i++) {
+      cache.putTimelineMetric(createTimelineMetric(METRIC_NAME + i,
+          new TreeMap<Long, Double>() {{
+            put(1L, 1.0);
+          }}, DEFAULT_START_TIME));
+    }
+
+    assertTrue(cache.getMetricCount() <= 10);
+    assertEquals(100, cache.getMetricCount() + cache.getEvictedMetricCount());
+    // the most recently updated metric survives
+    boolean found = false;
+    for (TimelineMetric metric : cache.drainAllTimelineMetrics()) {
+      found |= (METRIC_NAME + 99).equals(metric.getMetricName());
+    }
+    assertTrue(found);
+  }
+
+  @Test
+  public void testWeightStaysConsistentUnderConcurrentEviction() throws Exception {
+    final int maxPoints = 8;
+    final TimelineMetricsCache cache = new TimelineMetricsCache(
+        10, TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS, maxPoints,
+        TimelineMetricsCache.MAX_WEIGHT_BYTES_DEFAULT);
+
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int offset = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < 5000; i++) {
+            TimelineMetric metric = createTimelineMetric(METRIC_NAME + ((i + offset) % 50),
+                new TreeMap<Long, Double>(), DEFAULT_START_TIME + i);
+            metric.getMetricValues().put(DEFAULT_START_TIME + i, (double) i);
+            cache.putTimelineMetric(metric);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    // every remaining buffer weighs at least its overhead and at most its
+    // overhead, name and a full ring of points
+    int count = cache.getMetricCount();
+    long maxBufferWeight = 256 + 2 * (METRIC_NAME.length() + 2) + 16 * maxPoints;
+    assertTrue(cache.getEvictedMetricCount() > 0);
+    assertTrue(cache.getWeight() >= count * 256L);
+    assertTrue(cache.getWeight() <= count * maxBufferWeight);
+  }
+
   private TimelineMetric createTimelineMetric(Map<Long, Double> metricValues,
                                               long startTime) {
+    return createTimelineMetric(METRIC_NAME, metricValues, startTime);
+  }
+
+  private TimelineMetric createTimelineMetric(String metricName,
+                                              Map<Long, Double> metricValues,
+                                              long startTime) {
     TimelineMetric timelineMetric = new TimelineMetric();
-    timelineMetric.setMetricName(METRIC_NAME);
+    timelineMetric.setMetricName(metricName);
     timelineMetric.setHostName("Test hostName");
     timelineMetric.setAppId("test serviceName");
     timelineMetric.setStartTime(startTime);
@@ -47,6 +47,7 @@ import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.management.ObjectName;
 
 public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implements MonitorService {
   private SocketAddress socketAddress;
@@ -57,6 +58,7 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   private String hostname;
   private final static String COUNTER_METRICS_PROPERTY = "counters";
   private final Set<String> counterMetrics = new HashSet<String>();
+  private ObjectName mbeanName;
 
   @Override
   public void start() {
@@ -67,12 +69,20 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     }
     scheduledExecutorService.scheduleWithFixedDelay(timelineMetricsCollector, 0,
         pollFrequency, TimeUnit.MILLISECONDS);
+    // in the flume domain, so the statistics are polled with the other
+    // flume metrics
+    if (mbeanName == null) {
+      mbeanName = registerMBean("org.apache.flume.timeline:type=TimelineMetricsSink");
+    }
   }
 
   @Override
   public void stop() {
     LOG.info("Stopping Flume Metrics Sink");
     scheduledExecutorService.shutdown();
+    stopEmitter();
+    unregisterMBean(mbeanName);
+    mbeanName = null;
   }
 
   @Override
@@ -100,6 +110,19 @@ public class FlumeTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     }
     pollFrequency = Long.parseLong(configuration.getProperty("collectionFrequency"));
 
+    setCompressionEnabled(Boolean.parseBoolean(configuration.getProperty(COMPRESS_PROPERTY,
+        String.valueOf(COMPRESS_DEFAULT))));
+    if (Boolean.parseBoolean(configuration.getProperty(ASYNC_EMIT_PROPERTY,
+        String.valueOf(ASYNC_EMIT_DEFAULT)))) {
+      startEmitter(Integer.parseInt(configuration.getProperty(EMIT_QUEUE_SIZE_PROPERTY,
+              String.valueOf(EMIT_QUEUE_SIZE_DEFAULT))),
+          Integer.parseInt(configuration.getProperty(EMIT_RETRIES_PROPERTY,
+              String.valueOf(EMIT_RETRIES_DEFAULT))),
+          Long.parseLong(configuration.getProperty(EMIT_RETRY_INTERVAL_PROPERTY,
+              String.valueOf(EMIT_RETRY_INTERVAL_DEFAULT))),
+          configuration.getProperty(SPILL_DIR_PROPERTY));
+    }
+
     String[] metrics = configuration.getProperty(COUNTER_METRICS_PROPERTY).trim().split(",");
     Collections.addAll(counterMetrics, metrics);
   }
@@ -27,14 +27,16 @@ import org.apache.hadoop.metrics2.sink.timeline.cache.TimelineMetricsCache;
 import org.apache.hadoop.metrics2.util.Servers;
 import org.apache.hadoop.net.DNS;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.SocketAddress;
 import java.net.UnknownHostException;
 import java.util.*;
+import javax.management.ObjectName;
 
 @InterfaceAudience.Public
 @InterfaceStability.Evolving
-public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink implements MetricsSink {
+public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink implements MetricsSink, Closeable {
   private Map<String, Set<String>> useTagsMap = new HashMap<String, Set<String>>();
   private TimelineMetricsCache metricsCache;
   private String hostName = "UNKNOWN.example.com";
@@ -42,6 +44,7 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
   private List<? extends SocketAddress> metricsServers;
   private String collectorUri;
   private static final String SERVICE_NAME_PREFIX = "serviceName-prefix";
+  private ObjectName mbeanName;
 
   @Override
   public void init(SubsetConfiguration conf) {
@@ -79,6 +82,15 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
       TimelineMetricsCache.MAX_EVICTION_TIME_MILLIS); // ~ 1 min
     metricsCache = new TimelineMetricsCache(maxRowCacheSize, metricsSendInterval);
 
+    setCompressionEnabled(conf.getBoolean(COMPRESS_PROPERTY, COMPRESS_DEFAULT));
+    if (conf.getBoolean(ASYNC_EMIT_PROPERTY, ASYNC_EMIT_DEFAULT)) {
+      startEmitter(conf.getInt(EMIT_QUEUE_SIZE_PROPERTY, EMIT_QUEUE_SIZE_DEFAULT),
+          conf.getInt(EMIT_RETRIES_PROPERTY, EMIT_RETRIES_DEFAULT),
+          conf.getLong(EMIT_RETRY_INTERVAL_PROPERTY, EMIT_RETRY_INTERVAL_DEFAULT),
+          conf.getString(SPILL_DIR_PROPERTY));
+    }
+    mbeanName = registerMBean("Hadoop:service=" + serviceName + ",name=TimelineMetricsSink");
+
     conf.setListDelimiter(',');
     Iterator<String> it = (Iterator<String>) conf.getKeys();
     while (it.hasNext()) {
@@ -216,4 +228,14 @@ public class HadoopTimelineMetricsSink extends AbstractTimelineMetricsSink imple
   public void flush() {
     // TODO: Buffering implementation
   }
+
+  /**
+   * Called by the metrics system when the sink is stopped.
+   */
+  @Override
+  public void close() {
+    stopEmitter();
+    unregisterMBean(mbeanName);
+    mbeanName = null;
+  }
 }
@@ -65,6 +65,12 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink im
   private static final String TIMELINE_HOST_PROPERTY = "kafka.timeline.metrics.host";
   private static final String TIMELINE_PORT_PROPERTY = "kafka.timeline.metrics.port";
   private static final String TIMELINE_REPORTER_ENABLED_PROPERTY = "kafka.timeline.metrics.reporter.enabled";
+  private static final String TIMELINE_ASYNC_EMIT_PROPERTY = "kafka.timeline.metrics.asyncEmit";
+  private static final String TIMELINE_EMIT_QUEUE_SIZE_PROPERTY = "kafka.timeline.metrics.emitQueueSize";
+  private static final String TIMELINE_EMIT_RETRIES_PROPERTY = "kafka.timeline.metrics.emitRetries";
+  private static final String TIMELINE_EMIT_RETRY_INTERVAL_PROPERTY = "kafka.timeline.metrics.emitRetryInterval";
+  private static final String TIMELINE_COMPRESS_PROPERTY = "kafka.timeline.metrics.compress";
+  private static final String TIMELINE_SPILL_DIR_PROPERTY = "kafka.timeline.metrics.spillDir";
   private static final String TIMELINE_DEFAULT_HOST = "localhost";
   private static final String TIMELINE_DEFAULT_PORT = "8188";
 
@@ -76,6 +82,7 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink im
   private SocketAddress socketAddress;
   private TimelineScheduledReporter reporter;
   private TimelineMetricsCache metricsCache;
+  private VerifiableProperties props;
 
   @Override
   protected SocketAddress getServerSocketAddress() {
@@ -115,6 +122,9 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink im
         if (socketAddresses != null && !socketAddresses.isEmpty()) {
           socketAddress = socketAddresses.get(0);
         }
+        setCompressionEnabled(props.getBoolean(TIMELINE_COMPRESS_PROPERTY, COMPRESS_DEFAULT));
+        this.props = props;
+        startEmitter();
         initializeReporter();
         if (props.getBoolean(TIMELINE_REPORTER_ENABLED_PROPERTY, false)) {
           startReporter(metricsConfig.pollingIntervalSecs());
@@ -136,6 +146,8 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink im
   public synchronized void startReporter(long period) {
     synchronized (lock) {
       if (initialized && !running) {
+        // the emitter is stopped along with the reporter
+        startEmitter();
         reporter.start(period, TimeUnit.SECONDS);
         running = true;
         LOG.info(String.format("Started Kafka Timeline metrics reporter with polling period %d seconds", period));
@@ -148,12 +160,22 @@ public class KafkaTimelineMetricsReporter extends AbstractTimelineMetricsSink im
       if (initialized && running) {
         reporter.stop();
         running = false;
+        stopEmitter();
         LOG.info("Stopped Kafka Timeline metrics reporter");
         initializeReporter();
       }
     }
   }
 
+  private void startEmitter() {
+    if (props.getBoolean(TIMELINE_ASYNC_EMIT_PROPERTY, ASYNC_EMIT_DEFAULT)) {
+      startEmitter(props.getInt(TIMELINE_EMIT_QUEUE_SIZE_PROPERTY, EMIT_QUEUE_SIZE_DEFAULT),
+          props.getInt(TIMELINE_EMIT_RETRIES_PROPERTY, EMIT_RETRIES_DEFAULT),
+          props.getLong(TIMELINE_EMIT_RETRY_INTERVAL_PROPERTY, EMIT_RETRY_INTERVAL_DEFAULT),
+          props.getString(TIMELINE_SPILL_DIR_PROPERTY, null));
+    }
+  }
+
   private void initializeReporter() {
     reporter = new TimelineScheduledReporter(Metrics.defaultRegistry(), "timeline-scheduled-reporter",
         TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
@@ -19,7 +19,8 @@
 package org.apache.hadoop.metrics2.sink.kafka;
 
 import kafka.metrics.KafkaMetricsReporterMBean;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricsSinkMBean;
 
-public interface KafkaTimelineMetricsReporterMBean extends KafkaMetricsReporterMBean {
-
+public interface KafkaTimelineMetricsReporterMBean extends KafkaMetricsReporterMBean,
+    TimelineMetricsSinkMBean {
 }
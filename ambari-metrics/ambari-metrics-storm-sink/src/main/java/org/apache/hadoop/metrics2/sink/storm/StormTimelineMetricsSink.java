@@ -41,12 +41,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import javax.management.ObjectName;
 
 public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implements IMetricsConsumer {
   private SocketAddress socketAddress;
   private String collectorUri;
   private TimelineMetricsCache metricsCache;
   private String hostname;
+  private ObjectName mbeanName;
 
   @Override
   protected SocketAddress getServerSocketAddress() {
@@ -79,6 +81,22 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
     if (socketAddresses != null && !socketAddresses.isEmpty()) {
       socketAddress = socketAddresses.get(0);
     }
+
+    setCompressionEnabled(Boolean.parseBoolean(configuration.getProperty(COMPRESS_PROPERTY,
+        String.valueOf(COMPRESS_DEFAULT))));
+    if (Boolean.parseBoolean(configuration.getProperty(ASYNC_EMIT_PROPERTY,
+        String.valueOf(ASYNC_EMIT_DEFAULT)))) {
+      startEmitter(Integer.parseInt(configuration.getProperty(EMIT_QUEUE_SIZE_PROPERTY,
+              String.valueOf(EMIT_QUEUE_SIZE_DEFAULT))),
+          Integer.parseInt(configuration.getProperty(EMIT_RETRIES_PROPERTY,
+              String.valueOf(EMIT_RETRIES_DEFAULT))),
+          Long.parseLong(configuration.getProperty(EMIT_RETRY_INTERVAL_PROPERTY,
+              String.valueOf(EMIT_RETRY_INTERVAL_DEFAULT))),
+          configuration.getProperty(SPILL_DIR_PROPERTY));
+    }
+    mbeanName = registerMBean("storm:type=TimelineMetricsSink,topology="
+        + ObjectName.quote(topologyContext.getStormId()) + ",task="
+        + topologyContext.getThisTaskId());
   }
 
   @Override
@@ -116,6 +134,9 @@ public class StormTimelineMetricsSink extends AbstractTimelineMetricsSink implem
   @Override
   public void cleanup() {
     LOG.info("Stopping Storm Metrics Sink");
+    stopEmitter();
+    unregisterMBean(mbeanName);
+    mbeanName = null;
   }
 
   private TimelineMetric createTimelineMetric(long currentTimeMillis, String component, String attributeName, String attributeValue) {
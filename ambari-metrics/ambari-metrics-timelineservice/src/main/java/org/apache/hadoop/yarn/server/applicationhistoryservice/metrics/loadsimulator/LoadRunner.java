@@ -67,17 +67,31 @@ public class LoadRunner {
                     int collectIntervalMillis,
                     int sendIntervalMillis,
                     boolean createMaster) {
+    this(hostName, threadCount, new RestMetricsSender(metricsHostName),
+      collectIntervalMillis, sendIntervalMillis, createMaster);
+  }
+
+  /**
+   * Creates a runner which pushes the metrics of all simulated hosts through
+   * the given sender.
+   */
+  public LoadRunner(String hostName,
+                    int threadCount,
+                    MetricsSender sender,
+                    int collectIntervalMillis,
+                    int sendIntervalMillis,
+                    boolean createMaster) {
     this.collectIntervalMillis = collectIntervalMillis;
     this.workersPool = Executors.newFixedThreadPool(threadCount);
     this.timer = Executors.newScheduledThreadPool(1);
     this.sendIntervalMillis = sendIntervalMillis;
 
-    workers = prepareWorkers(hostName, threadCount, metricsHostName, createMaster);
+    workers = prepareWorkers(hostName, threadCount, sender, createMaster);
   }
 
   private Collection<Callable<String>> prepareWorkers(String hostName,
                                                       int threadCount,
-                                                      String metricsHost,
+                                                      MetricsSender sender,
                                                       Boolean createMaster) {
     Collection<Callable<String>> senderWorkers =
       new ArrayList<Callable<String>>(threadCount);
@@ -85,13 +99,13 @@ public class LoadRunner {
     int startIndex = 0;
     if (createMaster) {
       String simHost = hostName + ".0";
-      addMetricsWorkers(senderWorkers, simHost, metricsHost, MASTER_APPS);
+      addMetricsWorkers(senderWorkers, simHost, sender, MASTER_APPS);
       startIndex++;
     }
 
     for (int i = startIndex; i < threadCount; i++) {
       String simHost = hostName + "." + i;
-      addMetricsWorkers(senderWorkers, simHost, metricsHost, SLAVE_APPS);
+      addMetricsWorkers(senderWorkers, simHost, sender, SLAVE_APPS);
     }
 
     return senderWorkers;
@@ -99,12 +113,11 @@ public class LoadRunner {
 
   private void addMetricsWorkers(Collection<Callable<String>> senderWorkers,
                                  String specificHostName,
-                                 String metricsHostName,
+                                 MetricsSender sender,
                                  AppID[] apps) {
     for (AppID app : apps) {
       HostMetricsGenerator metricsGenerator =
         createApplicationMetrics(specificHostName, app);
-      MetricsSender sender = new RestMetricsSender(metricsHostName);
       senderWorkers.add(new MetricsSenderWorker(sender, metricsGenerator));
     }
   }
@@ -145,6 +158,23 @@ public class LoadRunner {
     LOG.info("Finished successfully " + done + " tasks ");
   }
 
+  /**
+   * Sends the metrics of all simulated hosts back to back, without waiting
+   * for the send interval, until the duration has elapsed. This measures the
+   * sustained rate at which the receiving side accepts metrics.
+   *
+   * @return the number of rounds of metrics sent
+   */
+  public int runContinuously(long durationMillis) throws InterruptedException {
+    long end = System.currentTimeMillis() + durationMillis;
+    int rounds = 0;
+    while (System.currentTimeMillis() < end) {
+      workersPool.invokeAll(workers);
+      rounds++;
+    }
+    return rounds;
+  }
+
   public void shutdown() {
     timer.shutdownNow();
     workersPool.shutdownNow();
@@ -18,10 +18,22 @@
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
   .loadsimulator;
 
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .loadsimulator.net.LocalMetricsSender;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline.ConnectionProvider;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline.PhoenixHBaseAccessor;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline.TimelineMetricWriterPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -31,6 +43,12 @@ import java.util.Map;
  * $ java -cp "dependency/*":LoadSimulator-1.0-SNAPSHOT.jar \
  * org.apache.ambari.metrics.MetricsLoadSimulator \
  * -h "bartosz.laptop" -n 2 -m "162.216.148.45" -c 10000 -s 30000</pre>
+ *
+ * To measure the sustained ingestion rate of the collector's writer pool
+ * without a running collector, send to a local Phoenix (by default the
+ * connectionless Phoenix driver, which discards the upserts):
+ * <pre>
+ * $ java ... MetricsLoadSimulator -h "host" -n 100 -S local -D 60 -w 4</pre>
  */
 public class MetricsLoadSimulator {
   private final static Logger LOG = LoggerFactory.getLogger(MetricsLoadSimulator
@@ -39,6 +57,11 @@ public class MetricsLoadSimulator {
   public static void main(String[] args) throws IOException, InterruptedException {
     Map<String, String> mapArgs = parseArgs(args);
 
+    if ("local".equals(mapArgs.get("sender"))) {
+      runLocal(mapArgs);
+      return;
+    }
+
     LoadRunner loadRunner = new LoadRunner(
       mapArgs.get("hostName"),
       Integer.valueOf(mapArgs.get("numberOfHosts")),
@@ -51,6 +74,52 @@ public class MetricsLoadSimulator {
     loadRunner.start();
   }
 
+  /**
+   * Pushes the simulated metrics as fast as the writer pool accepts them for
+   * the configured duration and reports the sustained points/sec written.
+   */
+  private static void runLocal(Map<String, String> mapArgs)
+    throws InterruptedException {
+    final String jdbcUrl = mapArgs.get("jdbcUrl");
+    Configuration metricsConf = new Configuration(false);
+    PhoenixHBaseAccessor hBaseAccessor = new PhoenixHBaseAccessor(
+      new Configuration(false), metricsConf, new ConnectionProvider() {
+        @Override
+        public Connection getConnection() throws SQLException {
+          return DriverManager.getConnection(jdbcUrl);
+        }
+      });
+    hBaseAccessor.initMetricSchema();
+
+    TimelineMetricWriterPool writerPool = new TimelineMetricWriterPool(
+      hBaseAccessor, Integer.valueOf(mapArgs.get("writerThreads")),
+      100000, 1000);
+    writerPool.start();
+
+    LoadRunner loadRunner = new LoadRunner(
+      mapArgs.get("hostName"),
+      Integer.valueOf(mapArgs.get("numberOfHosts")),
+      new LocalMetricsSender(writerPool),
+      Integer.valueOf(mapArgs.get("collectInterval")),
+      Integer.valueOf(mapArgs.get("sendInterval")),
+      Boolean.valueOf(mapArgs.get("master"))
+    );
+
+    long start = System.currentTimeMillis();
+    int rounds = loadRunner.runContinuously(
+      Long.valueOf(mapArgs.get("duration")) * 1000);
+    loadRunner.shutdown();
+    writerPool.stop(60000);
+    long elapsed = Math.max(1, System.currentTimeMillis() - start);
+
+    LOG.info("Sent {} rounds in {} ms: wrote {} points ({} metrics), " +
+        "{} points/sec; rejected {} metrics, failed {} metrics",
+      rounds, elapsed, writerPool.getWrittenPoints(),
+      writerPool.getWrittenMetrics(),
+      writerPool.getWrittenPoints() * 1000 / elapsed,
+      writerPool.getRejectedMetrics(), writerPool.getFailedMetrics());
+  }
+
   private static Map<String, String> parseArgs(String[] args) {
     Map<String, String> mapProps = new HashMap<String, String>();
     mapProps.put("hostName", "host");
@@ -59,6 +128,10 @@ public class MetricsLoadSimulator {
     mapProps.put("metricsHostName", "localhost");
     mapProps.put("collectInterval", "10000");
     mapProps.put("sendInterval", "60000");
+    mapProps.put("sender", "rest");
+    mapProps.put("duration", "60");
+    mapProps.put("writerThreads", "2");
+    mapProps.put("jdbcUrl", "jdbc:phoenix:none");
 
     if (args.length == 0) {
       printUsage();
@@ -80,6 +153,14 @@ public class MetricsLoadSimulator {
           mapProps.put("sendInterval", args[i + 1]);
         } else if (arg.equals("-M")) {
           mapProps.put("master", args[i + 1]);
+        } else if (arg.equals("-S")) {
+          mapProps.put("sender", args[i + 1]);
+        } else if (arg.equals("-D")) {
+          mapProps.put("duration", args[i + 1]);
+        } else if (arg.equals("-w")) {
+          mapProps.put("writerThreads", args[i + 1]);
+        } else if (arg.equals("-u")) {
+          mapProps.put("jdbcUrl", args[i + 1]);
         } else if (arg.equals("-d")) {
           // a dummy switch - it says that we agree with defaults
         } else {
@@ -91,14 +172,15 @@ public class MetricsLoadSimulator {
 
     LOG.info("Recognized options: baseHostName={} hosts#={} trafficMode={} " +
         "metricsHostName={} collectIntervalMillis={} sendIntervalMillis={} " +
-        "simulateMaster={}",
+        "simulateMaster={} sender={}",
       mapProps.get("hostName"),
       Integer.valueOf(mapProps.get("numberOfHosts")),
       mapProps.get("trafficType"),
       mapProps.get("metricsHostName"),
       Integer.valueOf(mapProps.get("collectInterval")),
       Integer.valueOf(mapProps.get("sendInterval")),
-      Boolean.valueOf(mapProps.get("master"))
+      Boolean.valueOf(mapProps.get("master")),
+      mapProps.get("sender")
     );
 
     return mapProps;
@@ -110,7 +192,10 @@ public class MetricsLoadSimulator {
     System.err.println("[-h hostName] [-n numberOfHosts] "
       + "[-t trafficMode {burst, staggered}] [-m metricsHostName] "
       + "[-c collectIntervalMillis {10 sec}] [-s sendIntervalMillis {60 sec}]"
-      + "[-M simulateMaster {true, false}] ");
+      + "[-M simulateMaster {true, false}] "
+      + "[-S sender {rest, local}] [-D durationSeconds {60, local only}] "
+      + "[-w writerThreads {2, local only}] "
+      + "[-u jdbcUrl {jdbc:phoenix:none, local only}] ");
     System.err.println();
     System.err.println("When you select a master, then one simulated host will play");
     System.err.println("a role of a master, and the rest will be slaves. Otherwise");
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.loadsimulator.net;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline.MetricsOverloadedException;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline.TimelineMetricWriterPool;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * LocalMetricsSender hands metrics straight to an in-process
+ * {@link TimelineMetricWriterPool}, bypassing HTTP, so that the ingestion path
+ * of the collector can be load tested on its own.
+ */
+public class LocalMetricsSender implements MetricsSender {
+  private final static Logger LOG = LoggerFactory.getLogger(LocalMetricsSender.class);
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final TimelineMetricWriterPool writerPool;
+
+  /**
+   * @param writerPool the pool that the metrics are queued to
+   */
+  public LocalMetricsSender(TimelineMetricWriterPool writerPool) {
+    this.writerPool = writerPool;
+  }
+
+  /**
+   * Parses the payload the same way the collector would and queues it.
+   *
+   * @param payload the payload with metrics
+   * @return "OK", or the reason the metrics were not accepted
+   */
+  @Override
+  public String pushMetrics(String payload) {
+    try {
+      writerPool.putMetrics(parse(payload));
+      return "OK";
+    } catch (MetricsOverloadedException e) {
+      LOG.debug("Metrics rejected: {}", e.getMessage());
+      return "503 " + e.getMessage();
+    } catch (IOException e) {
+      LOG.error("", e);
+      return "";
+    }
+  }
+
+  private TimelineMetrics parse(String payload) throws IOException {
+    JsonNode root = mapper.readTree(payload);
+    List<TimelineMetric> metrics = new ArrayList<TimelineMetric>();
+
+    for (JsonNode node : root.path("metrics")) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName(node.path("metricname").getTextValue());
+      metric.setAppId(node.path("appid").getTextValue());
+      metric.setInstanceId(node.path("instanceid").getTextValue());
+      metric.setHostName(node.path("hostname").getTextValue());
+      metric.setStartTime(node.path("starttime").asLong());
+
+      Map<Long, Double> values = new TreeMap<Long, Double>();
+      Iterator<Map.Entry<String, JsonNode>> fields =
+        node.path("metrics").getFields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        values.put(Long.valueOf(field.getKey()), field.getValue().asDouble());
+      }
+      metric.setMetricValues(values);
+      metrics.add(metric);
+    }
+
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(metrics);
+    return timelineMetrics;
+  }
+}
@@ -30,12 +30,34 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_CHECKPOINT_DELAY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_PARTITION_BOUNDARIES;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.RESULTSET_FETCH_SIZE;
 
+/**
+ * Aggregates the metrics written since the last checkpoint, one sleep
+ * interval at a time.
+ * <p/>
+ * The metric names can be split into partitions at the configured
+ * boundaries. Each partition is read by a range scan of its own, keeps its
+ * own checkpoint, and is aggregated in parallel with the others when an
+ * executor is set; a partition which fails is retried without aggregating
+ * the others again.
+ */
 public abstract class AbstractTimelineAggregator implements Runnable {
   protected final PhoenixHBaseAccessor hBaseAccessor;
   private final Log LOG;
@@ -45,6 +67,12 @@ public abstract class AbstractTimelineAggregator implements Runnable {
   protected final Integer resultsetFetchSize;
   protected Configuration metricsConf;
 
+  private final List<Partition> partitions;
+  private ExecutorService executor;
+
+  private volatile long lastExecutionTimeMillis;
+  private final AtomicLong failedPartitionRuns = new AtomicLong();
+
   public AbstractTimelineAggregator(PhoenixHBaseAccessor hBaseAccessor,
                                     Configuration metricsConf) {
     this(hBaseAccessor, metricsConf, new SystemClock());
@@ -59,6 +87,16 @@ public abstract class AbstractTimelineAggregator implements Runnable {
     this.resultsetFetchSize = metricsConf.getInt(RESULTSET_FETCH_SIZE, 2000);
     this.LOG = LogFactory.getLog(this.getClass());
     this.clock = clk;
+    this.partitions = createPartitions(
+      metricsConf.getTrimmedStrings(AGGREGATOR_PARTITION_BOUNDARIES));
+  }
+
+  /**
+   * Aggregate the partitions on the given pool, which may be shared with
+   * other aggregators; without one they are aggregated one after another.
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
   }
 
   @Override
@@ -80,21 +118,35 @@ public abstract class AbstractTimelineAggregator implements Runnable {
   /**
    * Access relaxed for tests
    */
-  protected long runOnce(Long SLEEP_INTERVAL) {
-    long currentTime = clock.getTime();
-    long lastCheckPointTime = readLastCheckpointSavingOnFirstRun(currentTime);
+  protected long runOnce(final Long SLEEP_INTERVAL) {
+    final long currentTime = clock.getTime();
     long sleepTime = SLEEP_INTERVAL;
 
-    if (lastCheckPointTime != -1) {
-      LOG.info("Last check point time: " + lastCheckPointTime + ", lagBy: "
-        + ((clock.getTime() - lastCheckPointTime) / 1000)
-        + " seconds.");
+    long startTime = clock.getTime();
+    boolean aggregated;
+    if (partitions.size() == 1) {
+      aggregated = runOnce(partitions.get(0), currentTime, SLEEP_INTERVAL);
+    } else {
+      List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+      for (final Partition partition : partitions) {
+        tasks.add(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            return runOnce(partition, currentTime, SLEEP_INTERVAL);
+          }
+        });
+      }
+      aggregated = false;
+      for (Boolean partitionAggregated : invokeAll(tasks)) {
+        aggregated |= partitionAggregated;
+      }
+      saveMinimumCheckPoint();
+    }
 
-      long startTime = clock.getTime();
-      boolean success = doWork(lastCheckPointTime,
-        lastCheckPointTime + SLEEP_INTERVAL);
+    if (aggregated) {
       long executionTime = clock.getTime() - startTime;
       long delta = SLEEP_INTERVAL - executionTime;
+      lastExecutionTimeMillis = executionTime;
 
       if (delta > 0) {
         // Sleep for (configured sleep - time to execute task)
@@ -107,34 +159,61 @@ public abstract class AbstractTimelineAggregator implements Runnable {
       }
 
       LOG.debug("Aggregator sleep interval = " + sleepTime);
-
-      if (success) {
-        try {
-          // Comment to bug fix:
-          // cannot just save lastCheckPointTime + SLEEP_INTERVAL,
-          // it has to be verified so it is not a time in the future
-          // checkpoint says what was aggregated, and there is no way
-          // the future metrics were aggregated!
-          saveCheckPoint(Math.min(currentTime, lastCheckPointTime +
-            SLEEP_INTERVAL));
-        } catch (IOException io) {
-          LOG.warn("Error saving checkpoint, restarting aggregation at " +
-            "previous checkpoint.");
-        }
-      }
     }
 
     return sleepTime;
   }
 
-  private long readLastCheckpointSavingOnFirstRun(long currentTime) {
+  /**
+   * Aggregate the next interval of the partition; false if there was no
+   * checkpoint to start from.
+   */
+  private boolean runOnce(Partition partition, long currentTime,
+                          long SLEEP_INTERVAL) {
+    long lastCheckPointTime =
+      readLastCheckpointSavingOnFirstRun(partition, currentTime);
+
+    if (lastCheckPointTime == -1) {
+      return false;
+    }
+
+    LOG.info("Last check point time: " + lastCheckPointTime + ", lagBy: "
+      + ((clock.getTime() - lastCheckPointTime) / 1000)
+      + " seconds" + describe(partition) + ".");
+
+    // all of the metrics in a single partition
+    boolean success = partitions.size() == 1
+      ? doWork(lastCheckPointTime, lastCheckPointTime + SLEEP_INTERVAL)
+      : doWork(partition, lastCheckPointTime, lastCheckPointTime + SLEEP_INTERVAL);
+
+    if (success) {
+      try {
+        // Comment to bug fix:
+        // cannot just save lastCheckPointTime + SLEEP_INTERVAL,
+        // it has to be verified so it is not a time in the future
+        // checkpoint says what was aggregated, and there is no way
+        // the future metrics were aggregated!
+        saveCheckPoint(partition, Math.min(currentTime, lastCheckPointTime +
+          SLEEP_INTERVAL));
+      } catch (IOException io) {
+        LOG.warn("Error saving checkpoint, restarting aggregation at " +
+          "previous checkpoint" + describe(partition) + ".");
+      }
+    } else {
+      failedPartitionRuns.incrementAndGet();
+    }
+    return true;
+  }
+
+  private long readLastCheckpointSavingOnFirstRun(Partition partition,
+                                                  long currentTime) {
     long lastCheckPointTime = -1;
 
     try {
-      lastCheckPointTime = readCheckPoint();
+      lastCheckPointTime = readCheckPoint(partition);
       if (isLastCheckPointTooOld(lastCheckPointTime)) {
         LOG.warn("Last Checkpoint is too old, discarding last checkpoint. " +
-          "lastCheckPointTime = " + lastCheckPointTime);
+          "lastCheckPointTime = " + lastCheckPointTime + describe(partition));
         lastCheckPointTime = -1;
       }
       if (lastCheckPointTime == -1) {
@@ -143,7 +222,7 @@ public abstract class AbstractTimelineAggregator implements Runnable {
         // agents/collectors to catch up
         LOG.info("Saving checkpoint time on first run." +
           (currentTime - checkpointDelayMillis));
-        saveCheckPoint(currentTime - checkpointDelayMillis);
+        saveCheckPoint(partition, currentTime - checkpointDelayMillis);
       }
     } catch (IOException io) {
       LOG.warn("Unable to write last checkpoint time. Resuming sleep.", io);
@@ -160,8 +239,61 @@ public abstract class AbstractTimelineAggregator implements Runnable {
   }
 
   protected long readCheckPoint() {
+    return readCheckPoint(getCheckpointLocation());
+  }
+
+  protected void saveCheckPoint(long checkpointTime) throws IOException {
+    saveCheckPoint(getCheckpointLocation(), checkpointTime);
+  }
+
+  private long readCheckPoint(Partition partition) {
+    long checkpointTime;
+    if (partitions.size() == 1) {
+      checkpointTime = readCheckPoint();
+    } else {
+      checkpointTime = readCheckPoint(partition.getCheckpointLocation());
+      if (checkpointTime == -1) {
+        // carry on from where the aggregator stopped before it was
+        // partitioned, or partitioned differently
+        checkpointTime = readCheckPoint();
+      }
+    }
+    partition.checkpointTime = checkpointTime;
+    return checkpointTime;
+  }
+
+  private void saveCheckPoint(Partition partition, long checkpointTime)
+    throws IOException {
+    if (partitions.size() == 1) {
+      saveCheckPoint(checkpointTime);
+    } else {
+      saveCheckPoint(partition.getCheckpointLocation(), checkpointTime);
+    }
+    partition.checkpointTime = checkpointTime;
+  }
+
+  /**
+   * Keep the checkpoint of the whole aggregator at the oldest of the
+   * partitions, which is safe to resume from whatever the partitioning.
+   */
+  private void saveMinimumCheckPoint() {
+    long checkpointTime = Long.MAX_VALUE;
+    for (Partition partition : partitions) {
+      if (partition.checkpointTime == -1) {
+        return;
+      }
+      checkpointTime = Math.min(checkpointTime, partition.checkpointTime);
+    }
     try {
-      File checkpoint = new File(getCheckpointLocation());
+      saveCheckPoint(checkpointTime);
+    } catch (IOException io) {
+      LOG.warn("Error saving checkpoint " + getCheckpointLocation(), io);
+    }
+  }
+
+  private long readCheckPoint(String location) {
+    try {
+      File checkpoint = new File(location);
       if (checkpoint.exists()) {
         String contents = FileUtils.readFileToString(checkpoint);
         if (contents != null && !contents.isEmpty()) {
@@ -174,13 +306,14 @@ public abstract class AbstractTimelineAggregator implements Runnable {
     return -1;
   }
 
-  protected void saveCheckPoint(long checkpointTime) throws IOException {
-    File checkpoint = new File(getCheckpointLocation());
+  private void saveCheckPoint(String location, long checkpointTime)
+    throws IOException {
+    File checkpoint = new File(location);
     if (!checkpoint.exists()) {
       boolean done = checkpoint.createNewFile();
       if (!done) {
         throw new IOException("Could not create checkpoint at location, " +
-          getCheckpointLocation());
+          location);
       }
     }
     FileUtils.writeStringToFile(checkpoint, String.valueOf(checkpointTime));
@@ -193,13 +326,39 @@ public abstract class AbstractTimelineAggregator implements Runnable {
    * @param startTime Sample start time
    * @param endTime Sample end time
    */
-  protected boolean doWork(long startTime, long endTime) {
+  protected boolean doWork(final long startTime, final long endTime) {
+    if (partitions.size() == 1) {
+      return doWork(partitions.get(0), startTime, endTime);
+    }
+
+    List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+    for (final Partition partition : partitions) {
+      tasks.add(new Callable<Boolean>() {
+        @Override
+        public Boolean call() {
+          return doWork(partition, startTime, endTime);
+        }
+      });
+    }
+    boolean success = true;
+    for (Boolean partitionSuccess : invokeAll(tasks)) {
+      success &= partitionSuccess;
+    }
+    return success;
+  }
+
+  /**
+   * Aggregate the metrics of a partition written during the time interval.
+   */
+  protected boolean doWork(Partition partition, long startTime, long endTime) {
     LOG.info("Start aggregation cycle @ " + new Date() + ", " +
-      "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime));
+      "startTime = " + new Date(startTime) + ", endTime = " + new Date(endTime)
+      + describe(partition));
 
     boolean success = true;
     PhoenixTransactSQL.Condition condition =
       prepareMetricQueryCondition(startTime, endTime);
+    condition.setMetricNameRange(partition.getFrom(), partition.getTo());
 
     Connection conn = null;
     PreparedStatement stmt = null;
@@ -218,10 +377,10 @@ public abstract class AbstractTimelineAggregator implements Runnable {
       LOG.info("End aggregation cycle @ " + new Date());
 
     } catch (SQLException e) {
-      LOG.error("Exception during aggregating metrics.", e);
+      LOG.error("Exception during aggregating metrics" + describe(partition) + ".", e);
       success = false;
     } catch (IOException e) {
-      LOG.error("Exception during aggregating metrics.", e);
+      LOG.error("Exception during aggregating metrics" + describe(partition) + ".", e);
       success = false;
     } finally {
       if (rs != null) {
@@ -251,6 +410,104 @@ public abstract class AbstractTimelineAggregator implements Runnable {
     return success;
   }
 
+  // run the tasks on the executor if there is one; false for a task which
+  // failed unexpectedly
+  private List<Boolean> invokeAll(List<Callable<Boolean>> tasks) {
+    List<Boolean> results = new ArrayList<Boolean>(tasks.size());
+    if (executor == null) {
+      for (Callable<Boolean> task : tasks) {
+        try {
+          results.add(task.call());
+        } catch (Exception e) {
+          LOG.error("Exception during aggregating metrics.", e);
+          results.add(false);
+        }
+      }
+      return results;
+    }
+
+    List<Future<Boolean>> futures;
+    try {
+      futures = executor.invokeAll(tasks);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Collections.nCopies(tasks.size(), false);
+    } catch (RejectedExecutionException e) {
+      // the pool is shut down with the store
+      return Collections.nCopies(tasks.size(), false);
+    }
+    for (Future<Boolean> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        results.add(false);
+      } catch (ExecutionException e) {
+        LOG.error("Exception during aggregating metrics.", e.getCause());
+        results.add(false);
+      }
+    }
+    return results;
+  }
+
+  private String describe(Partition partition) {
+    return partitions.size() == 1 ? "" : ", partition = " + partition;
+  }
+
+  private List<Partition> createPartitions(String[] boundaries) {
+    SortedSet<String> sortedBoundaries = new TreeSet<String>();
+    for (String boundary : boundaries) {
+      if (!boundary.isEmpty()) {
+        sortedBoundaries.add(boundary);
+      }
+    }
+
+    List<Partition> partitions = new ArrayList<Partition>();
+    String from = null;
+    for (String to : sortedBoundaries) {
+      partitions.add(new Partition(partitions.size(), sortedBoundaries.size() + 1,
+        from, to));
+      from = to;
+    }
+    partitions.add(new Partition(partitions.size(), sortedBoundaries.size() + 1,
+      from, null));
+    return Collections.unmodifiableList(partitions);
+  }
+
+  // ----- statistics -----
+
+  public int getPartitionCount() {
+    return partitions.size();
+  }
+
+  /**
+   * @return how far the checkpoint of the partition furthest behind is
+   *         from now, or 0 before the first checkpoint
+   */
+  public long getCheckpointLagMillis() {
+    long oldest = Long.MAX_VALUE;
+    for (Partition partition : partitions) {
+      if (partition.checkpointTime != -1) {
+        oldest = Math.min(oldest, partition.checkpointTime);
+      }
+    }
+    return oldest == Long.MAX_VALUE ? 0 : Math.max(0, clock.getTime() - oldest);
+  }
+
+  /**
+   * @return how long the last aggregation of all of the partitions took
+   */
+  public long getLastExecutionTimeMillis() {
+    return lastExecutionTimeMillis;
+  }
+
+  /**
+   * @return the number of times a partition failed to aggregate
+   */
+  public long getFailedPartitionRuns() {
+    return failedPartitionRuns.get();
+  }
+
   protected abstract PhoenixTransactSQL.Condition
   prepareMetricQueryCondition(long startTime, long endTime);
 
@@ -268,4 +525,51 @@ public abstract class AbstractTimelineAggregator implements Runnable {
   protected abstract boolean isDisabled();
 
   protected abstract String getCheckpointLocation();
+
+  /**
+   * The metrics with names in a range, aggregated and checkpointed on their
+   * own.
+   */
+  protected class Partition {
+    private final int index;
+    private final int count;
+    private final String from;
+    private final String to;
+    private volatile long checkpointTime = -1;
+
+    private Partition(int index, int count, String from, String to) {
+      this.index = index;
+      this.count = count;
+      this.from = from;
+      this.to = to;
+    }
+
+    /**
+     * @return the first metric name, inclusive; null if unbounded
+     */
+    public String getFrom() {
+      return from;
+    }
+
+    /**
+     * @return the last metric name, exclusive; null if unbounded
+     */
+    public String getTo() {
+      return to;
+    }
+
+    String getCheckpointLocation() {
+      // named by a hash of the range too, so a partition with other bounds
+      // never picks up the checkpoint, even if the partition count is the
+      // same; metric names may not be valid in file names
+      String range = String.valueOf(from) + '\0' + String.valueOf(to);
+      return AbstractTimelineAggregator.this.getCheckpointLocation() + "-" +
+        index + "-of-" + count + "-" + Integer.toHexString(range.hashCode());
+    }
+
+    @Override
+    public String toString() {
+      return "[" + (from == null ? "" : from) + ", " + (to == null ? "" : to) + ")";
+    }
+  }
 }
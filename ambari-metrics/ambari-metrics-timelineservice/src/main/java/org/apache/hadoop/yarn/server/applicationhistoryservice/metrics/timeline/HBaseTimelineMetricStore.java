@@ -21,7 +21,9 @@ package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.service.AbstractService;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
@@ -32,9 +34,17 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.Condition;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.DefaultCondition;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_THREADS;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INSERT_COMMIT_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_QUEUE_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.WRITER_THREADS;
 
 public class HBaseTimelineMetricStore extends AbstractService
     implements TimelineMetricStore {
@@ -42,6 +52,10 @@ public class HBaseTimelineMetricStore extends AbstractService
   static final Log LOG = LogFactory.getLog(HBaseTimelineMetricStore.class);
   private final TimelineMetricConfiguration configuration;
   private PhoenixHBaseAccessor hBaseAccessor;
+  private TimelineMetricWriterPool writerPool;
+  private ExecutorService aggregatorPool;
+  private final TimelineMetricAggregatorSource aggregatorSource =
+    new TimelineMetricAggregatorSource();
 
   /**
    * Construct the service.
@@ -63,49 +77,90 @@ public class HBaseTimelineMetricStore extends AbstractService
     hBaseAccessor = new PhoenixHBaseAccessor(hbaseConf, metricsConf);
     hBaseAccessor.initMetricSchema();
 
+    // Write posted metrics in the background unless disabled
+    int writerThreads = metricsConf.getInt(WRITER_THREADS, 2);
+    if (writerThreads > 0) {
+      writerPool = new TimelineMetricWriterPool(hBaseAccessor, writerThreads,
+        metricsConf.getInt(WRITER_QUEUE_SIZE, 100000),
+        metricsConf.getInt(INSERT_COMMIT_SIZE, 1000));
+      writerPool.start();
+    }
+
+    // Partitions of all of the aggregators are aggregated on a shared pool
+    int aggregatorThreads = metricsConf.getInt(AGGREGATOR_THREADS,
+      Runtime.getRuntime().availableProcessors());
+    if (aggregatorThreads > 0) {
+      aggregatorPool = Executors.newFixedThreadPool(aggregatorThreads,
+        new ThreadFactory() {
+          private final AtomicInteger count = new AtomicInteger();
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r,
+              "timeline-metrics-aggregator-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    }
+
     // Start the cluster aggregator
     TimelineMetricClusterAggregator minuteClusterAggregator =
       new TimelineMetricClusterAggregator(hBaseAccessor, metricsConf);
-    if (!minuteClusterAggregator.isDisabled()) {
-      Thread aggregatorThread = new Thread(minuteClusterAggregator);
-      aggregatorThread.start();
-    }
+    startAggregator("ClusterAggregatorMinute", minuteClusterAggregator);
 
     // Start the cluster aggregator hourly
     TimelineMetricClusterAggregatorHourly hourlyClusterAggregator =
       new TimelineMetricClusterAggregatorHourly(hBaseAccessor, metricsConf);
-    if (!hourlyClusterAggregator.isDisabled()) {
-      Thread aggregatorThread = new Thread(hourlyClusterAggregator);
-      aggregatorThread.start();
-    }
+    startAggregator("ClusterAggregatorHourly", hourlyClusterAggregator);
 
     // Start the 5 minute aggregator
     TimelineMetricAggregator minuteHostAggregator =
       TimelineMetricAggregatorFactory.createTimelineMetricAggregatorMinute
         (hBaseAccessor, metricsConf);
-    if (!minuteHostAggregator.isDisabled()) {
-      Thread minuteAggregatorThread = new Thread(minuteHostAggregator);
-      minuteAggregatorThread.start();
-    }
+    startAggregator("HostAggregatorMinute", minuteHostAggregator);
 
     // Start hourly host aggregator
     TimelineMetricAggregator hourlyHostAggregator =
       TimelineMetricAggregatorFactory.createTimelineMetricAggregatorHourly
         (hBaseAccessor, metricsConf);
-    if (!hourlyHostAggregator.isDisabled()) {
-      Thread aggregatorHourlyThread = new Thread(hourlyHostAggregator);
-      aggregatorHourlyThread.start();
+    startAggregator("HostAggregatorHourly", hourlyHostAggregator);
+  }
+
+  private void startAggregator(String name,
+                               AbstractTimelineAggregator aggregator) {
+    if (aggregator.isDisabled()) {
+      return;
     }
+    aggregator.setExecutor(aggregatorPool);
+    aggregatorSource.addAggregator(name, aggregator);
+    Thread aggregatorThread = new Thread(aggregator);
+    aggregatorThread.start();
+  }
+
+  @Override
+  protected void serviceStart() throws Exception {
+    DefaultMetricsSystem.instance().register(TimelineMetricAggregatorSource.NAME,
+      TimelineMetricAggregatorSource.DESCRIPTION, aggregatorSource);
+    super.serviceStart();
   }
 
   @Override
   protected void serviceStop() throws Exception {
+    if (writerPool != null) {
+      writerPool.stop(SECONDS.toMillis(30));
+    }
+    if (aggregatorPool != null) {
+      aggregatorPool.shutdownNow();
+    }
+    DefaultMetricsSystem.instance().unregisterSource(
+      TimelineMetricAggregatorSource.NAME);
     super.serviceStop();
   }
 
   @Override
   public TimelineMetrics getTimelineMetrics(List<String> metricNames,
-      String hostname, String applicationId, String instanceId,
+      List<String> hostnames, String applicationId, String instanceId,
       Long startTime, Long endTime, Precision precision, Integer limit,
       boolean groupedByHosts) throws SQLException, IOException {
 
@@ -126,12 +181,13 @@ public class HBaseTimelineMetricStore extends AbstractService
     Map<String, List<Function>> metricFunctions =
       parseMetricNamesToAggregationFunctions(metricNames);
 
-    Condition condition = new DefaultCondition(
+    DefaultCondition condition = new DefaultCondition(
       new ArrayList<String>(metricFunctions.keySet()),
-      hostname, applicationId, instanceId, startTime, endTime,
+      null, applicationId, instanceId, startTime, endTime,
       precision, limit, groupedByHosts);
+    condition.setHostnames(hostnames);
 
-    if (hostname == null) {
+    if (condition.getHostnames() == null) {
       TimelineMetrics metrics = hBaseAccessor.getAggregateMetricRecords
         (condition,  metricFunctions);
 
@@ -254,7 +310,7 @@ public class HBaseTimelineMetricStore extends AbstractService
       metric.setHostName(metricList.get(0).getHostName());
       // Assumption that metrics are ordered by start time
       metric.setStartTime(metricList.get(0).getStartTime());
-      Map<Long, Double> metricRecords = new TreeMap<Long, Double>();
+      TimelineMetricValues metricRecords = new TimelineMetricValues();
       for (TimelineMetric timelineMetric : metricList) {
         metricRecords.putAll(timelineMetric.getMetricValues());
       }
@@ -272,7 +328,11 @@ public class HBaseTimelineMetricStore extends AbstractService
     // Error indicated by the Sql exception
     TimelinePutResponse response = new TimelinePutResponse();
 
-    hBaseAccessor.insertMetricRecords(metrics);
+    if (writerPool != null) {
+      writerPool.putMetrics(metrics);
+    } else {
+      hBaseAccessor.insertMetricRecords(metrics);
+    }
 
     return response;
   }
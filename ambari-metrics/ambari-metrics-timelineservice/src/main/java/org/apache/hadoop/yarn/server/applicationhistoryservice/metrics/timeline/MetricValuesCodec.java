@@ -0,0 +1,431 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import com.google.common.io.BaseEncoding;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Encodes the values of a metric, stored in the METRICS column, in a compact
+ * binary form in the style of Facebook's Gorilla: timestamps are stored as
+ * delta-of-deltas and values as the XOR with the previous value, each using
+ * variable length bit fields. Regularly sampled metrics need only a few bits
+ * per point.
+ * <p/>
+ * Since METRICS is a VARCHAR column, the bits are stored Base64 encoded after
+ * a version prefix. Rows written before this encoding was introduced contain
+ * a JSON object, which always starts with '{', and are still read by
+ * {@link #decode(String)}.
+ * <p/>
+ * Entries with a {@code null} value are not encoded.
+ */
+public class MetricValuesCodec {
+
+  /**
+   * Marks a value written by {@link #encode(Map)}.
+   */
+  static final String ENCODING_PREFIX = "~1";
+
+  private static final BaseEncoding BASE64 = BaseEncoding.base64();
+
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private MetricValuesCodec() {
+  }
+
+  /**
+   * Encodes the metric values, ordered by timestamp.
+   *
+   * @param metricValues the values keyed by timestamp, may be null
+   * @return the encoded values
+   */
+  public static String encode(Map<Long, Double> metricValues) {
+    int count = 0;
+    long[] timestamps = new long[metricValues == null ? 0 : metricValues.size()];
+    double[] values = new double[timestamps.length];
+
+    if (metricValues instanceof TimelineMetricValues) {
+      // already ordered, without nulls
+      TimelineMetricValues primitiveValues = (TimelineMetricValues) metricValues;
+      for (; count < timestamps.length; count++) {
+        timestamps[count] = primitiveValues.getTimestamp(count);
+        values[count] = primitiveValues.getValue(count);
+      }
+    } else if (metricValues != null) {
+      SortedMap<Long, Double> sorted = metricValues instanceof SortedMap
+        && ((SortedMap<Long, Double>) metricValues).comparator() == null
+        ? (SortedMap<Long, Double>) metricValues
+        : new TreeMap<Long, Double>(metricValues);
+
+      for (Map.Entry<Long, Double> entry : sorted.entrySet()) {
+        if (entry.getKey() != null && entry.getValue() != null) {
+          timestamps[count] = entry.getKey();
+          values[count] = entry.getValue();
+          count++;
+        }
+      }
+    }
+
+    return encode(timestamps, values, count);
+  }
+
+  /**
+   * Encodes metric values which are already ordered by timestamp.
+   *
+   * @param timestamps the timestamps, in ascending order
+   * @param values the value at each timestamp
+   * @param count the number of values to encode
+   * @return the encoded values
+   */
+  public static String encode(long[] timestamps, double[] values, int count) {
+    BitWriter writer = new BitWriter(16 + count * 4);
+    writer.writeBits(count, 32);
+
+    if (count > 0) {
+      writer.writeBits(timestamps[0], 64);
+      writer.writeBits(Double.doubleToRawLongBits(values[0]), 64);
+    }
+
+    long previousDelta = 0;
+    long previousValue = count > 0 ? Double.doubleToRawLongBits(values[0]) : 0;
+    int previousLeading = -1;
+    int previousTrailing = 0;
+
+    for (int i = 1; i < count; i++) {
+      long delta = timestamps[i] - timestamps[i - 1];
+      writeDeltaOfDelta(writer, delta - previousDelta);
+      previousDelta = delta;
+
+      long value = Double.doubleToRawLongBits(values[i]);
+      long xor = value ^ previousValue;
+      previousValue = value;
+
+      if (xor == 0) {
+        writer.writeBit(false);
+        continue;
+      }
+
+      writer.writeBit(true);
+      int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+      int trailing = Long.numberOfTrailingZeros(xor);
+
+      if (previousLeading != -1 && leading >= previousLeading
+          && trailing >= previousTrailing) {
+        // the meaningful bits fit in the previous window
+        writer.writeBit(false);
+        writer.writeBits(xor >>> previousTrailing,
+          64 - previousLeading - previousTrailing);
+      } else {
+        int significant = 64 - leading - trailing;
+        writer.writeBit(true);
+        writer.writeBits(leading, 5);
+        writer.writeBits(significant - 1, 6);
+        writer.writeBits(xor >>> trailing, significant);
+        previousLeading = leading;
+        previousTrailing = trailing;
+      }
+    }
+
+    return ENCODING_PREFIX + BASE64.encode(writer.toByteArray());
+  }
+
+  /**
+   * Decodes the METRICS column, either in the binary encoding or as the JSON
+   * written by earlier versions.
+   *
+   * @param encoded the column value, may be null
+   * @return the values ordered by timestamp
+   * @throws IOException if the column cannot be decoded
+   */
+  public static MetricValues decode(String encoded) throws IOException {
+    if (encoded == null || encoded.isEmpty()) {
+      return new MetricValues(new long[0], new double[0], 0);
+    }
+
+    if (encoded.startsWith(ENCODING_PREFIX)) {
+      try {
+        return decodeBinary(BASE64.decode(
+          encoded.substring(ENCODING_PREFIX.length())));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Unable to decode metric values", e);
+      } catch (ArrayIndexOutOfBoundsException e) {
+        throw new IOException("Truncated metric values", e);
+      }
+    }
+
+    return decodeJSON(encoded);
+  }
+
+  private static MetricValues decodeBinary(byte[] bytes) {
+    BitReader reader = new BitReader(bytes);
+    int count = (int) reader.readBits(32);
+    long[] timestamps = new long[count];
+    double[] values = new double[count];
+
+    if (count == 0) {
+      return new MetricValues(timestamps, values, 0);
+    }
+
+    timestamps[0] = reader.readBits(64);
+    long previousValue = reader.readBits(64);
+    values[0] = Double.longBitsToDouble(previousValue);
+
+    long previousDelta = 0;
+    int previousLeading = 0;
+    int previousTrailing = 0;
+
+    for (int i = 1; i < count; i++) {
+      long delta = previousDelta + readDeltaOfDelta(reader);
+      timestamps[i] = timestamps[i - 1] + delta;
+      previousDelta = delta;
+
+      if (reader.readBit()) {
+        if (reader.readBit()) {
+          previousLeading = (int) reader.readBits(5);
+          int significant = (int) reader.readBits(6) + 1;
+          previousTrailing = 64 - previousLeading - significant;
+        }
+
+        long xor = reader.readBits(64 - previousLeading - previousTrailing)
+          << previousTrailing;
+        previousValue ^= xor;
+      }
+
+      values[i] = Double.longBitsToDouble(previousValue);
+    }
+
+    return new MetricValues(timestamps, values, count);
+  }
+
+  /**
+   * Reads the JSON object of timestamps to values written by earlier versions
+   * without building an intermediate map.
+   */
+  private static MetricValues decodeJSON(String json) throws IOException {
+    JsonParser parser = mapper.getJsonFactory().createJsonParser(json);
+    try {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Metric values are not a JSON object: " + json);
+      }
+
+      long[] timestamps = new long[16];
+      double[] values = new double[16];
+      int count = 0;
+      boolean sorted = true;
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        long timestamp = Long.parseLong(parser.getCurrentName());
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NULL) {
+          continue;
+        }
+
+        if (count == timestamps.length) {
+          timestamps = Arrays.copyOf(timestamps, count * 2);
+          values = Arrays.copyOf(values, count * 2);
+        }
+
+        sorted &= count == 0 || timestamps[count - 1] <= timestamp;
+        timestamps[count] = timestamp;
+        values[count] = parser.getDoubleValue();
+        count++;
+      }
+
+      MetricValues metricValues = new MetricValues(timestamps, values, count);
+      if (!sorted) {
+        metricValues.sort();
+      }
+
+      return metricValues;
+    } finally {
+      parser.close();
+    }
+  }
+
+  /**
+   * Uses the control bits '0', '10', '110', '1110' and '1111' followed by 0,
+   * 7, 9, 12 and 64 bits of two's complement delta-of-delta.
+   */
+  private static void writeDeltaOfDelta(BitWriter writer, long deltaOfDelta) {
+    if (deltaOfDelta == 0) {
+      writer.writeBit(false);
+    } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+      writer.writeBits(0x2, 2);
+      writer.writeBits(deltaOfDelta, 7);
+    } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+      writer.writeBits(0x6, 3);
+      writer.writeBits(deltaOfDelta, 9);
+    } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+      writer.writeBits(0xE, 4);
+      writer.writeBits(deltaOfDelta, 12);
+    } else {
+      writer.writeBits(0xF, 4);
+      writer.writeBits(deltaOfDelta, 64);
+    }
+  }
+
+  private static long readDeltaOfDelta(BitReader reader) {
+    int bits;
+    if (!reader.readBit()) {
+      return 0;
+    } else if (!reader.readBit()) {
+      bits = 7;
+    } else if (!reader.readBit()) {
+      bits = 9;
+    } else if (!reader.readBit()) {
+      bits = 12;
+    } else {
+      return reader.readBits(64);
+    }
+
+    // sign extend
+    long value = reader.readBits(bits);
+    return (value << (64 - bits)) >> (64 - bits);
+  }
+
+  /**
+   * Decoded metric values held in primitive arrays, ordered by timestamp.
+   */
+  public static class MetricValues {
+    private long[] timestamps;
+    private double[] values;
+    private final int size;
+
+    MetricValues(long[] timestamps, double[] values, int size) {
+      this.timestamps = timestamps;
+      this.values = values;
+      this.size = size;
+    }
+
+    /**
+     * @return the timestamps; only the first {@link #size()} are valid
+     */
+    public long[] getTimestamps() {
+      return timestamps;
+    }
+
+    /**
+     * @return the values; only the first {@link #size()} are valid
+     */
+    public double[] getValues() {
+      return values;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /**
+     * @return the values keyed by timestamp
+     */
+    public TimelineMetricValues toMap() {
+      TimelineMetricValues map = new TimelineMetricValues(size);
+      for (int i = 0; i < size; i++) {
+        map.putValue(timestamps[i], values[i]);
+      }
+      return map;
+    }
+
+    private void sort() {
+      TimelineMetricValues map = toMap();
+      timestamps = new long[map.size()];
+      values = new double[map.size()];
+      for (int i = 0; i < map.size(); i++) {
+        timestamps[i] = map.getTimestamp(i);
+        values[i] = map.getValue(i);
+      }
+    }
+  }
+
+  /**
+   * Appends bits, most significant first, to a growing byte array.
+   */
+  private static class BitWriter {
+    private byte[] buffer;
+    private int bitPosition = 0;
+
+    BitWriter(int initialCapacity) {
+      buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    void writeBit(boolean bit) {
+      ensureCapacity(1);
+      if (bit) {
+        buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+      }
+      bitPosition++;
+    }
+
+    void writeBits(long value, int bits) {
+      ensureCapacity(bits);
+      for (int i = bits - 1; i >= 0; i--) {
+        if (((value >>> i) & 1L) != 0) {
+          buffer[bitPosition >>> 3] |= (byte) (0x80 >>> (bitPosition & 7));
+        }
+        bitPosition++;
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, (bitPosition + 7) >>> 3);
+    }
+
+    private void ensureCapacity(int bits) {
+      int requiredBytes = (bitPosition + bits + 7) >>> 3;
+      if (requiredBytes > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(requiredBytes,
+          buffer.length * 2));
+      }
+    }
+  }
+
+  /**
+   * Reads bits, most significant first, from a byte array.
+   */
+  private static class BitReader {
+    private final byte[] buffer;
+    private int bitPosition = 0;
+
+    BitReader(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    boolean readBit() {
+      boolean bit = (buffer[bitPosition >>> 3] & (0x80 >>> (bitPosition & 7))) != 0;
+      bitPosition++;
+      return bit;
+    }
+
+    long readBits(int bits) {
+      long value = 0;
+      for (int i = 0; i < bits; i++) {
+        value = (value << 1) | (readBit() ? 1L : 0L);
+      }
+      return value;
+    }
+  }
+}
@@ -23,11 +23,10 @@ import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.util.RetryCounter;
 import org.apache.hadoop.hbase.util.RetryCounterFactory;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetricValues;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
 import org.apache.phoenix.exception.SQLExceptionCode;
-import org.codehaus.jackson.map.ObjectMapper;
-import org.codehaus.jackson.type.TypeReference;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -39,7 +38,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.PhoenixTransactSQL.ALTER_SQL;
@@ -70,6 +68,8 @@ import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.ti
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HBASE_ENCODING_SCHEME;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_HOUR_TABLE_TTL;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.HOST_MINUTE_TABLE_TTL;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.INSERT_COMMIT_SIZE;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.METRIC_VALUES_BINARY_ENCODING_ENABLED;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.PRECISION_TABLE_TTL;
 
 /**
@@ -82,6 +82,8 @@ public class PhoenixHBaseAccessor {
   private final Configuration hbaseConf;
   private final Configuration metricsConf;
   private final RetryCounterFactory retryCounterFactory;
+  private final boolean binaryEncodingEnabled;
+  private final int insertCommitSize;
 
   static final int PHOENIX_MAX_MUTATION_STATE_SIZE = 50000;
   /**
@@ -90,10 +92,6 @@ public class PhoenixHBaseAccessor {
   private static final int METRICS_PER_MINUTE = 4;
   public static int RESULTSET_LIMIT = (int)TimeUnit.DAYS.toMinutes(1) *
     METRICS_PER_MINUTE;
-  private static ObjectMapper mapper = new ObjectMapper();
-
-  private static TypeReference<Map<Long, Double>> metricValuesTypeRef =
-    new TypeReference<Map<Long, Double>>() {};
   private final ConnectionProvider dataSource;
 
   public PhoenixHBaseAccessor(Configuration hbaseConf,
@@ -117,6 +115,11 @@ public class PhoenixHBaseAccessor {
     this.retryCounterFactory = new RetryCounterFactory(
       metricsConf.getInt(GLOBAL_MAX_RETRIES, 10),
       (int) SECONDS.toMillis(metricsConf.getInt(GLOBAL_RETRY_INTERVAL, 5)));
+    this.binaryEncodingEnabled =
+      metricsConf.getBoolean(METRIC_VALUES_BINARY_ENCODING_ENABLED, false);
+    this.insertCommitSize = Math.max(1, Math.min(
+      metricsConf.getInt(INSERT_COMMIT_SIZE, 1000),
+      PHOENIX_MAX_MUTATION_STATE_SIZE - 1));
   }
 
 
@@ -193,26 +196,31 @@ public class PhoenixHBaseAccessor {
 
     metric.setMetricName(rs.getString("METRIC_NAME") + f.getSuffix());
 
-    Map<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(rs.getLong("SERVER_TIME"), value);
+    TimelineMetricValues valueMap = new TimelineMetricValues(1);
+    valueMap.putValue(rs.getLong("SERVER_TIME"), value);
     metric.setMetricValues(valueMap);
     return metric;
   }
 
   private static Map<Long, Double> readLastMetricValueFromJSON(String json)
     throws IOException {
-    Map<Long, Double> values = readMetricFromJSON(json);
-    Long lastTimeStamp = Collections.max(values.keySet());
+    MetricValuesCodec.MetricValues values = readMetricValues(json);
 
     HashMap<Long, Double> valueMap = new HashMap<Long, Double>(1);
-    valueMap.put(lastTimeStamp, values.get(lastTimeStamp));
+    int last = values.size() - 1;
+    if (last >= 0) {
+      valueMap.put(values.getTimestamps()[last], values.getValues()[last]);
+    }
     return valueMap;
   }
 
-  @SuppressWarnings("unchecked")
-  public static Map<Long, Double>  readMetricFromJSON(String json)
+  /**
+   * Reads the METRICS column, whether it was written in the binary encoding
+   * or as JSON.
+   */
+  public static MetricValuesCodec.MetricValues readMetricValues(String metrics)
     throws IOException {
-    return (Map<Long, Double>) mapper.readValue(json, metricValuesTypeRef);
+    return MetricValuesCodec.decode(metrics);
   }
 
   static TimelineMetric getTimelineMetricKeyFromResultSet(ResultSet rs)
@@ -331,8 +339,18 @@ public class PhoenixHBaseAccessor {
 
   public void insertMetricRecords(TimelineMetrics metrics)
     throws SQLException, IOException {
+    insertMetricRecords(metrics.getMetrics());
+  }
+
+  /**
+   * Upserts the metric records, committing every
+   * {@link TimelineMetricConfiguration#INSERT_COMMIT_SIZE} records so that
+   * Phoenix sends the buffered mutations to HBase in batches. Records which
+   * cannot be bound are skipped; a failed commit is thrown to the caller.
+   */
+  public void insertMetricRecords(List<TimelineMetric> timelineMetrics)
+    throws SQLException, IOException {
 
-    List<TimelineMetric> timelineMetrics = metrics.getMetrics();
     if (timelineMetrics == null || timelineMetrics.isEmpty()) {
       LOG.debug("Empty metrics insert request.");
       return;
@@ -341,6 +359,8 @@ public class PhoenixHBaseAccessor {
     Connection conn = getConnection();
     PreparedStatement metricRecordStmt = null;
     long currentTime = System.currentTimeMillis();
+    int rowCount = 0;
+    int failedCount = 0;
 
     try {
       metricRecordStmt = conn.prepareStatement(String.format(
@@ -368,14 +388,23 @@ public class PhoenixHBaseAccessor {
         metricRecordStmt.setDouble(9, aggregates[1]);
         metricRecordStmt.setDouble(10, aggregates[2]);
         metricRecordStmt.setLong(11, (long)aggregates[3]);
-        String json =
-          TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
-        metricRecordStmt.setString(12, json);
+        String metricValues = binaryEncodingEnabled
+          ? MetricValuesCodec.encode(metric.getMetricValues())
+          : TimelineUtils.dumpTimelineRecordtoJSON(metric.getMetricValues());
+        metricRecordStmt.setString(12, metricValues);
 
         try {
           metricRecordStmt.executeUpdate();
+          rowCount++;
         } catch (SQLException sql) {
-          LOG.error(sql);
+          failedCount++;
+          LOG.error("Unable to upsert metric " + metric.getMetricName() +
+            " of host " + metric.getHostName(), sql);
+        }
+
+        if (rowCount >= insertCommitSize) {
+          conn.commit();
+          rowCount = 0;
         }
       }
 
@@ -397,6 +426,11 @@ public class PhoenixHBaseAccessor {
         }
       }
     }
+
+    if (failedCount > 0) {
+      LOG.warn("Skipped " + failedCount + " of " + timelineMetrics.size() +
+        " metric records which could not be upserted.");
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -488,15 +522,27 @@ public class PhoenixHBaseAccessor {
     SplitByMetricNamesCondition splitCondition =
       new SplitByMetricNamesCondition(condition);
 
+    // the latest value of each host is queried separately
+    List<String> hostnames = condition.getHostnames();
+    if (hostnames == null || hostnames.size() < 2) {
+      hostnames = Collections.<String>singletonList(null);
+    }
+
     for (String metricName: splitCondition.getOriginalMetricNames()) {
       splitCondition.setCurrentMetric(metricName);
-      stmt = PhoenixTransactSQL.prepareGetLatestMetricSqlStmt(conn,
-        splitCondition);
+      for (String hostname : hostnames) {
+        splitCondition.setCurrentHostname(hostname);
+        if (stmt != null) {
+          stmt.close();
+        }
+        stmt = PhoenixTransactSQL.prepareGetLatestMetricSqlStmt(conn,
+          splitCondition);
 
-      ResultSet rs = stmt.executeQuery();
-      while (rs.next()) {
-        TimelineMetric metric = getLastTimelineMetricFromResultSet(rs);
-        metrics.getMetrics().add(metric);
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) {
+          TimelineMetric metric = getLastTimelineMetricFromResultSet(rs);
+          metrics.getMetrics().add(metric);
+        }
       }
     }
 
@@ -642,8 +688,8 @@ public class PhoenixHBaseAccessor {
 
     metric.setMetricName(rs.getString("METRIC_NAME") + f.getSuffix());
 
-    Map<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(rs.getLong("SERVER_TIME"), value);
+    TimelineMetricValues valueMap = new TimelineMetricValues(1);
+    valueMap.putValue(rs.getLong("SERVER_TIME"), value);
     metric.setMetricValues(valueMap);
 
     return metric;
@@ -678,8 +724,8 @@ public class PhoenixHBaseAccessor {
 
     metric.setMetricName(rs.getString("METRIC_NAME") + f.getSuffix());
 
-    Map<Long, Double> valueMap = new TreeMap<Long, Double>();
-    valueMap.put(rs.getLong("SERVER_TIME"), value);
+    TimelineMetricValues valueMap = new TimelineMetricValues(1);
+    valueMap.putValue(rs.getLong("SERVER_TIME"), value);
     metric.setMetricValues(valueMap);
 
     return metric;
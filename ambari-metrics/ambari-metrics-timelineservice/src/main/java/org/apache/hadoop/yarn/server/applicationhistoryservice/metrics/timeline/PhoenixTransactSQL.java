@@ -22,6 +22,7 @@ import org.apache.commons.logging.LogFactory;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -287,7 +288,7 @@ public class PhoenixTransactSQL {
 
     if (orderByClause != null) {
       sb.append(orderByClause);
-    } else {
+    } else if (condition.isOrdered()) {
       sb.append(" ORDER BY METRIC_NAME, SERVER_TIME ");
     }
     if (condition.getLimit() != null) {
@@ -307,11 +308,25 @@ public class PhoenixTransactSQL {
         stmt.setString(pos, condition.getMetricNames().get(pos - 1));
       }
     }
-    if (condition.getHostname() != null) {
+    if (condition.getMetricNameFrom() != null) {
       if (LOG.isDebugEnabled()) {
-        LOG.debug("Setting pos: " + pos + ", value: " + condition.getHostname());
+        LOG.debug("Setting pos: " + pos + ", value: " + condition.getMetricNameFrom());
+      }
+      stmt.setString(pos++, condition.getMetricNameFrom());
+    }
+    if (condition.getMetricNameTo() != null) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Setting pos: " + pos + ", value: " + condition.getMetricNameTo());
+      }
+      stmt.setString(pos++, condition.getMetricNameTo());
+    }
+    if (condition.getHostnames() != null) {
+      for (String hostname : condition.getHostnames()) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Setting pos: " + pos + ", value: " + hostname);
+        }
+        stmt.setString(pos++, hostname);
       }
-      stmt.setString(pos++, condition.getHostname());
     }
     if (condition.getAppId() != null) {
       if (LOG.isDebugEnabled()) {
@@ -405,7 +420,9 @@ public class PhoenixTransactSQL {
       sb.append(" ORDER BY SERVER_TIME DESC, METRIC_NAME  ");
     }
 
-    sb.append(" LIMIT ").append(condition.getMetricNames().size());
+    int hostCount = condition.getHostnames() == null ? 1 :
+      condition.getHostnames().size();
+    sb.append(" LIMIT ").append(condition.getMetricNames().size() * hostCount);
 
     if (LOG.isDebugEnabled()) {
       LOG.debug("SQL: " + sb.toString() + ", condition: " + condition);
@@ -421,11 +438,13 @@ public class PhoenixTransactSQL {
         stmt.setString(pos, condition.getMetricNames().get(pos - 1));
       }
     }
-    if (condition.getHostname() != null) {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug("Setting pos: " + pos + ", value: " + condition.getHostname());
+    if (condition.getHostnames() != null) {
+      for (String hostname : condition.getHostnames()) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Setting pos: " + pos + ", value: " + hostname);
+        }
+        stmt.setString(pos++, hostname);
       }
-      stmt.setString(pos++, condition.getHostname());
     }
     if (condition.getAppId() != null) {
       if (LOG.isDebugEnabled()) {
@@ -575,7 +594,7 @@ public class PhoenixTransactSQL {
     boolean isPointInTime();
     boolean isGrouped();
     void setStatement(String statement);
-    String getHostname();
+    List<String> getHostnames();
     Precision getPrecision();
     void setPrecision(Precision precision);
     String getAppId();
@@ -590,11 +609,16 @@ public class PhoenixTransactSQL {
     void setFetchSize(Integer fetchSize);
     void addOrderByColumn(String column);
     void setNoLimit();
+    boolean isOrdered();
+    void setNoOrder();
+    String getMetricNameFrom();
+    String getMetricNameTo();
+    void setMetricNameRange(String from, String to);
   }
 
   static class DefaultCondition implements Condition {
     List<String> metricNames;
-    String hostname;
+    List<String> hostnames;
     String appId;
     String instanceId;
     Long startTime;
@@ -603,6 +627,9 @@ public class PhoenixTransactSQL {
     Integer limit;
     boolean grouped;
     boolean noLimit = false;
+    boolean noOrder = false;
+    String metricNameFrom;
+    String metricNameTo;
     Integer fetchSize;
     String statement;
     Set<String> orderByColumns = new LinkedHashSet<String>();
@@ -611,7 +638,8 @@ public class PhoenixTransactSQL {
               String instanceId, Long startTime, Long endTime, Precision precision,
               Integer limit, boolean grouped) {
       this.metricNames = metricNames;
-      this.hostname = hostname;
+      this.hostnames = hostname == null ? null :
+        Collections.singletonList(hostname);
       this.appId = appId;
       this.instanceId = instanceId;
       this.startTime = startTime;
@@ -676,7 +704,9 @@ public class PhoenixTransactSQL {
         }
       }
 
-      appendConjunction = append(sb, appendConjunction, getHostname(), " HOSTNAME = ?");
+      appendConjunction = append(sb, appendConjunction, getMetricNameFrom(), " METRIC_NAME >= ?");
+      appendConjunction = append(sb, appendConjunction, getMetricNameTo(), " METRIC_NAME < ?");
+      appendConjunction = appendHostnames(sb, appendConjunction, getHostnames());
       appendConjunction = append(sb, appendConjunction, getAppId(), " APP_ID = ?");
       appendConjunction = append(sb, appendConjunction, getInstanceId(), " INSTANCE_ID = ?");
       appendConjunction = append(sb, appendConjunction, getStartTime(), " SERVER_TIME >= ?");
@@ -685,6 +715,27 @@ public class PhoenixTransactSQL {
       return sb;
     }
 
+    /**
+     * Appends a condition matching any of the hostnames.
+     */
+    protected static boolean appendHostnames(StringBuilder sb,
+                                             boolean appendConjunction,
+                                             List<String> hostnames) {
+      if (hostnames == null) {
+        return appendConjunction;
+      }
+      if (hostnames.size() == 1) {
+        return append(sb, appendConjunction, hostnames.get(0), " HOSTNAME = ?");
+      }
+
+      StringBuilder hostnamesIn = new StringBuilder(" HOSTNAME IN (");
+      for (int i = 0; i < hostnames.size(); i++) {
+        hostnamesIn.append(i == 0 ? "?" : ", ?");
+      }
+      hostnamesIn.append(")");
+      return append(sb, appendConjunction, hostnames, hostnamesIn.toString());
+    }
+
     protected static boolean append(StringBuilder sb,
                                      boolean appendConjunction,
                              Object value, String str) {
@@ -699,8 +750,24 @@ public class PhoenixTransactSQL {
       return appendConjunction;
     }
 
-    public String getHostname() {
-      return hostname == null || hostname.isEmpty() ? null : hostname;
+    /**
+     * Matches records of any of the hostnames instead of a single host.
+     */
+    public void setHostnames(List<String> hostnames) {
+      this.hostnames = hostnames;
+    }
+
+    public List<String> getHostnames() {
+      if (hostnames == null) {
+        return null;
+      }
+      List<String> result = new ArrayList<String>(hostnames.size());
+      for (String hostname : hostnames) {
+        if (hostname != null && !hostname.trim().isEmpty()) {
+          result.add(hostname.trim());
+        }
+      }
+      return result.isEmpty() ? null : result;
     }
 
     public Precision getPrecision() {
@@ -758,7 +825,13 @@ public class PhoenixTransactSQL {
       if (noLimit) {
         return null;
       }
-      return limit == null ? PhoenixHBaseAccessor.RESULTSET_LIMIT : limit;
+      if (limit != null) {
+        return limit;
+      }
+      // the default limit applies to each of the hosts queried
+      List<String> hostnames = getHostnames();
+      return PhoenixHBaseAccessor.RESULTSET_LIMIT *
+        (hostnames == null ? 1 : hostnames.size());
     }
 
     public boolean isGrouped() {
@@ -771,7 +844,7 @@ public class PhoenixTransactSQL {
 
     public boolean isEmpty() {
       return (metricNames == null || metricNames.isEmpty())
-        && (hostname == null || hostname.isEmpty())
+        && getHostnames() == null
         && (appId == null || appId.isEmpty())
         && (instanceId == null || instanceId.isEmpty())
         && startTime == null
@@ -790,6 +863,39 @@ public class PhoenixTransactSQL {
       orderByColumns.add(column);
     }
 
+    public boolean isOrdered() {
+      return !noOrder;
+    }
+
+    /**
+     * Leave the rows in storage order rather than sorting them by metric
+     * name and time, for readers which don't depend on the order.
+     */
+    public void setNoOrder() {
+      this.noOrder = true;
+    }
+
+    public String getMetricNameFrom() {
+      return metricNameFrom;
+    }
+
+    public String getMetricNameTo() {
+      return metricNameTo;
+    }
+
+    /**
+     * Restricts the condition to the metric names in a range, which is a
+     * range scan as the metric name leads the primary key of every table.
+     * Only applied by {@link #prepareGetMetricsSqlStmt}.
+     *
+     * @param from the first metric name, inclusive; null if unbounded
+     * @param to the last metric name, exclusive; null if unbounded
+     */
+    public void setMetricNameRange(String from, String to) {
+      this.metricNameFrom = from;
+      this.metricNameTo = to;
+    }
+
     public String getOrderByClause() {
       String orderByStr = " ORDER BY ";
       if (!orderByColumns.isEmpty()) {
@@ -810,7 +916,7 @@ public class PhoenixTransactSQL {
     public String toString() {
       return "Condition{" +
         "metricNames=" + metricNames +
-        ", hostname='" + hostname + '\'' +
+        ", hostnames=" + hostnames +
         ", appId='" + appId + '\'' +
         ", instanceId='" + instanceId + '\'' +
         ", startTime=" + startTime +
@@ -819,6 +925,9 @@ public class PhoenixTransactSQL {
         ", grouped=" + grouped +
         ", orderBy=" + orderByColumns +
         ", noLimit=" + noLimit +
+        ", noOrder=" + noOrder +
+        ", metricNameFrom='" + metricNameFrom + '\'' +
+        ", metricNameTo='" + metricNameTo + '\'' +
         '}';
     }
   }
@@ -826,6 +935,7 @@ public class PhoenixTransactSQL {
   static class SplitByMetricNamesCondition implements Condition {
     private final Condition adaptee;
     private String currentMetric;
+    private String currentHostname;
 
     SplitByMetricNamesCondition(Condition condition){
       this.adaptee = condition;
@@ -857,8 +967,11 @@ public class PhoenixTransactSQL {
     }
 
     @Override
-    public String getHostname() {
-      return adaptee.getHostname();
+    public List<String> getHostnames() {
+      if (currentHostname != null) {
+        return Collections.singletonList(currentHostname);
+      }
+      return adaptee.getHostnames();
     }
 
     @Override
@@ -897,8 +1010,8 @@ public class PhoenixTransactSQL {
         appendConjunction = true;
       }
 
-      appendConjunction = DefaultCondition.append(sb, appendConjunction,
-        getHostname(), " HOSTNAME = ?");
+      appendConjunction = DefaultCondition.appendHostnames(sb,
+        appendConjunction, getHostnames());
       appendConjunction = DefaultCondition.append(sb, appendConjunction,
         getAppId(), " APP_ID = ?");
       appendConjunction = DefaultCondition.append(sb, appendConjunction,
@@ -956,10 +1069,45 @@ public class PhoenixTransactSQL {
       adaptee.setNoLimit();
     }
 
+    @Override
+    public boolean isOrdered() {
+      return adaptee.isOrdered();
+    }
+
+    @Override
+    public void setNoOrder() {
+      adaptee.setNoOrder();
+    }
+
+    // the current metric name is the narrower condition
+
+    @Override
+    public String getMetricNameFrom() {
+      return null;
+    }
+
+    @Override
+    public String getMetricNameTo() {
+      return null;
+    }
+
+    @Override
+    public void setMetricNameRange(String from, String to) {
+      adaptee.setMetricNameRange(from, to);
+    }
+
     public List<String> getOriginalMetricNames() {
       return adaptee.getMetricNames();
     }
 
+    /**
+     * Restricts the condition to a single one of the hostnames, or to all of
+     * them if {@code null}.
+     */
+    public void setCurrentHostname(String currentHostname) {
+      this.currentHostname = currentHostname;
+    }
+
     public void setCurrentMetric(String currentMetric) {
       this.currentMetric = currentMetric;
     }
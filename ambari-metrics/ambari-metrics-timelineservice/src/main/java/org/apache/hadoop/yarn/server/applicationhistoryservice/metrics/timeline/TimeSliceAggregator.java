@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregates host metric records across the cluster into fixed time slices
+ * in a single pass, in whatever order the records arrive.
+ * <p/>
+ * Each cluster metric (name, app and instance) is given an id when first
+ * seen; the sum, min, max and host count of every slice are accumulated in
+ * primitive arrays indexed by id and slice.  The slice of a data point is
+ * computed from its timestamp, rather than looked up.
+ */
+class TimeSliceAggregator {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final long startTime;
+  private final long sliceIntervalMillis;
+  private final int sliceCount;
+
+  // ids by cluster metric, the metrics having a zero timestamp
+  private final Map<TimelineClusterMetric, Integer> metricIds =
+    new HashMap<TimelineClusterMetric, Integer>();
+  private final List<TimelineClusterMetric> metrics =
+    new ArrayList<TimelineClusterMetric>();
+
+  // indexed by id * sliceCount + slice
+  private double[] sums;
+  private double[] maxs;
+  private double[] mins;
+  private int[] hostCounts;
+
+  // the averages of the record being added, by slice
+  private final double[] recordValues;
+  private final boolean[] recordHasValue;
+  private final int[] recordSlices;
+
+  /**
+   * @param startTime            the start of the first slice, inclusive
+   * @param endTime              the time by which the last slice starts,
+   *                             exclusive
+   * @param sliceIntervalMillis  the length of a slice
+   */
+  TimeSliceAggregator(long startTime, long endTime, long sliceIntervalMillis) {
+    this.startTime = startTime;
+    this.sliceIntervalMillis = sliceIntervalMillis;
+    this.sliceCount = endTime <= startTime ? 0 :
+      (int) ((endTime - startTime + sliceIntervalMillis - 1) / sliceIntervalMillis);
+
+    int capacity = INITIAL_CAPACITY * sliceCount;
+    sums = new double[capacity];
+    maxs = new double[capacity];
+    mins = new double[capacity];
+    hostCounts = new int[capacity];
+
+    recordValues = new double[sliceCount];
+    recordHasValue = new boolean[sliceCount];
+    recordSlices = new int[sliceCount];
+  }
+
+  /**
+   * Add the values a host recorded for a metric.  Values falling into the
+   * same slice are averaged first, so each record counts as one host in a
+   * slice.
+   *
+   * @param metric  the metric, without values
+   * @param values  the values of the record, ordered by timestamp
+   */
+  void add(TimelineMetric metric, MetricValuesCodec.MetricValues values) {
+    long[] timestamps = values.getTimestamps();
+    double[] metricValues = values.getValues();
+
+    int slices = 0;
+    for (int i = 0; i < values.size(); i++) {
+      int slice = getSlice(timestamps[i]);
+      if (slice == -1) {
+        continue;
+      }
+      if (recordHasValue[slice]) {
+        recordValues[slice] = (recordValues[slice] + metricValues[i]) / 2;
+      } else {
+        recordHasValue[slice] = true;
+        recordValues[slice] = metricValues[i];
+        recordSlices[slices++] = slice;
+      }
+    }
+    if (slices == 0) {
+      return;
+    }
+
+    int offset = getMetricId(metric) * sliceCount;
+    for (int i = 0; i < slices; i++) {
+      int slice = recordSlices[i];
+      double value = recordValues[slice];
+      recordHasValue[slice] = false;
+
+      int index = offset + slice;
+      if (hostCounts[index] == 0) {
+        sums[index] = value;
+        maxs[index] = value;
+        mins[index] = value;
+      } else {
+        sums[index] += value;
+        maxs[index] = Math.max(maxs[index], value);
+        mins[index] = Math.min(mins[index], value);
+      }
+      hostCounts[index]++;
+    }
+  }
+
+  /**
+   * @return the aggregates, keyed by the cluster metric at the start of
+   *         each slice
+   */
+  Map<TimelineClusterMetric, MetricClusterAggregate> getAggregates() {
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregates =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+
+    for (int id = 0; id < metrics.size(); id++) {
+      TimelineClusterMetric metric = metrics.get(id);
+      for (int slice = 0; slice < sliceCount; slice++) {
+        int index = id * sliceCount + slice;
+        if (hostCounts[index] == 0) {
+          continue;
+        }
+        TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
+          metric.getMetricName(), metric.getAppId(), metric.getInstanceId(),
+          startTime + slice * sliceIntervalMillis, metric.getType());
+        aggregates.put(clusterMetric, new MetricClusterAggregate(
+          sums[index], hostCounts[index], null, maxs[index], mins[index]));
+      }
+    }
+    return aggregates;
+  }
+
+  /**
+   * @return the number of distinct cluster metrics added
+   */
+  int getMetricCount() {
+    return metrics.size();
+  }
+
+  // the slice the timestamp falls into, or -1 if out of range
+  private int getSlice(long timestamp) {
+    if (timestamp < startTime) {
+      return -1;
+    }
+    long slice = (timestamp - startTime) / sliceIntervalMillis;
+    return slice < sliceCount ? (int) slice : -1;
+  }
+
+  private int getMetricId(TimelineMetric metric) {
+    TimelineClusterMetric key = new TimelineClusterMetric(
+      metric.getMetricName(), metric.getAppId(), metric.getInstanceId(),
+      0, metric.getType());
+    Integer id = metricIds.get(key);
+    if (id != null) {
+      return id;
+    }
+
+    id = metrics.size();
+    metricIds.put(key, id);
+    metrics.add(key);
+
+    int required = (id + 1) * sliceCount;
+    if (required > sums.length) {
+      int capacity = Math.max(required, sums.length * 2);
+      sums = Arrays.copyOf(sums, capacity);
+      maxs = Arrays.copyOf(maxs, capacity);
+      mins = Arrays.copyOf(mins, capacity);
+      hostCounts = Arrays.copyOf(hostCounts, capacity);
+    }
+    return id;
+  }
+}
@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.apache.hadoop.metrics2.lib.Interns.info;
+
+/**
+ * Reports the progress of the aggregators, e.g. to alert on an aggregator
+ * falling behind. Registered with the metrics system, which publishes it
+ * over JMX.
+ */
+public class TimelineMetricAggregatorSource implements MetricsSource {
+  static final String NAME = "TimelineMetricAggregators";
+  static final String DESCRIPTION = "Timeline metrics aggregator progress";
+
+  private final Map<String, AbstractTimelineAggregator> aggregators =
+    new LinkedHashMap<String, AbstractTimelineAggregator>();
+
+  /**
+   * @param name       the prefix of the metrics of the aggregator
+   * @param aggregator the aggregator
+   */
+  public synchronized void addAggregator(String name,
+                                         AbstractTimelineAggregator aggregator) {
+    aggregators.put(name, aggregator);
+  }
+
+  @Override
+  public synchronized void getMetrics(MetricsCollector collector, boolean all) {
+    MetricsRecordBuilder builder = collector.addRecord(NAME)
+      .setContext("timeline");
+    for (Map.Entry<String, AbstractTimelineAggregator> entry :
+        aggregators.entrySet()) {
+      String name = entry.getKey();
+      AbstractTimelineAggregator aggregator = entry.getValue();
+
+      builder.addGauge(info(name + "CheckpointLagMillis",
+          "Time since the checkpoint of the partition furthest behind"),
+          aggregator.getCheckpointLagMillis())
+        .addGauge(info(name + "LastExecutionTimeMillis",
+          "Duration of the last aggregation"),
+          aggregator.getLastExecutionTimeMillis())
+        .addGauge(info(name + "Partitions",
+          "Number of partitions aggregated separately"),
+          aggregator.getPartitionCount())
+        .addCounter(info(name + "FailedPartitionRuns",
+          "Number of failed aggregations of a partition"),
+          aggregator.getFailedPartitionRuns());
+    }
+  }
+}
@@ -128,6 +128,24 @@ public class TimelineMetricConfiguration {
   public static final String TIMELINE_SERVICE_RPC_ADDRESS =
     "timeline.metrics.service.rpc.address";
 
+  public static final String METRIC_VALUES_BINARY_ENCODING_ENABLED =
+    "timeline.metrics.service.binary.encoding.enabled";
+
+  public static final String WRITER_THREADS =
+    "timeline.metrics.service.writer.threads";
+
+  public static final String WRITER_QUEUE_SIZE =
+    "timeline.metrics.service.writer.queue.size";
+
+  public static final String INSERT_COMMIT_SIZE =
+    "timeline.metrics.service.insert.commit.size";
+
+  public static final String AGGREGATOR_THREADS =
+    "timeline.metrics.service.aggregator.threads";
+
+  public static final String AGGREGATOR_PARTITION_BOUNDARIES =
+    "timeline.metrics.service.aggregator.partition.boundaries";
+
   private Configuration hbaseConf;
   private Configuration metricsConf;
   private volatile boolean isInitialized = false;
@@ -24,7 +24,6 @@ import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Map;
-import java.util.TreeMap;
 
 public class TimelineMetricReader {
 
@@ -39,12 +38,21 @@ public class TimelineMetricReader {
   public TimelineMetric getTimelineMetricFromResultSet(ResultSet rs)
     throws SQLException, IOException {
     TimelineMetric metric = getTimelineMetricCommonsFromResultSet(rs);
-    Map<Long, Double> sortedByTimeMetrics = new TreeMap<Long, Double>(
-        PhoenixHBaseAccessor.readMetricFromJSON(rs.getString("METRICS")));
+    Map<Long, Double> sortedByTimeMetrics =
+      getMetricValuesFromResultSet(rs).toMap();
     metric.setMetricValues(sortedByTimeMetrics);
     return metric;
   }
 
+  /**
+   * Returns the values of the record, ordered by timestamp, without boxing
+   * them into a map.
+   */
+  public MetricValuesCodec.MetricValues getMetricValuesFromResultSet(
+      ResultSet rs) throws SQLException, IOException {
+    return PhoenixHBaseAccessor.readMetricValues(rs.getString("METRICS"));
+  }
+
   /**
    * Returns common part of timeline metrics record without the values.
    */
@@ -29,7 +29,8 @@ public interface TimelineMetricStore {
    * This method retrieves metrics stored byu the Timeline store.
    *
    * @param metricNames Names of the metric, e.g.: cpu_user
-   * @param hostname Name of the host where the metric originated from
+   * @param hostnames Names of the hosts where the metrics originated from,
+   *                  or null for metrics aggregated across hosts
    * @param applicationId Id of the application to which this metric belongs
    * @param instanceId Application instance id.
    * @param startTime Start timestamp
@@ -42,7 +43,7 @@ public interface TimelineMetricStore {
    * @return {@link TimelineMetric}
    * @throws java.sql.SQLException
    */
-  TimelineMetrics getTimelineMetrics(List<String> metricNames, String hostname,
+  TimelineMetrics getTimelineMetrics(List<String> metricNames, List<String> hostnames,
       String applicationId, String instanceId, Long startTime,
       Long endTime, Precision precision, Integer limit, boolean groupedByHosts)
     throws SQLException, IOException;
@@ -65,6 +66,8 @@ public interface TimelineMetricStore {
    * @param metrics An {@link TimelineMetrics}.
    * @return An {@link org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse}.
    * @throws SQLException, IOException
+   * @throws MetricsOverloadedException if the metrics cannot be accepted
+   * right now and should be posted again later
    */
   TimelinePutResponse putMetrics(TimelineMetrics metrics)
     throws SQLException, IOException;
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffers posted metrics in a bounded queue which is drained by a pool of
+ * writer threads, each upserting the metrics in large batches. This takes the
+ * writes to HBase off the web request threads and lets several batches be
+ * written in parallel.
+ * <p/>
+ * When the queue is full, {@link #putMetrics(TimelineMetrics)} rejects the
+ * whole request with a {@link MetricsOverloadedException} instead of blocking
+ * the request thread.
+ */
+public class TimelineMetricWriterPool {
+  private static final Log LOG = LogFactory.getLog(TimelineMetricWriterPool.class);
+
+  private final PhoenixHBaseAccessor hBaseAccessor;
+  private final BlockingQueue<TimelineMetric> queue =
+    new LinkedBlockingQueue<TimelineMetric>();
+  private final Thread[] writers;
+  private final int capacity;
+  private final int batchSize;
+  private final AtomicInteger pending = new AtomicInteger();
+  private volatile boolean stopped = false;
+
+  private final AtomicLong acceptedMetrics = new AtomicLong();
+  private final AtomicLong rejectedMetrics = new AtomicLong();
+  private final AtomicLong writtenMetrics = new AtomicLong();
+  private final AtomicLong writtenPoints = new AtomicLong();
+  private final AtomicLong failedMetrics = new AtomicLong();
+
+  /**
+   * @param hBaseAccessor the accessor used to write the metrics
+   * @param threadCount the number of writer threads
+   * @param capacity the maximum number of metrics waiting to be written
+   * @param batchSize the maximum number of metrics written at once
+   */
+  public TimelineMetricWriterPool(PhoenixHBaseAccessor hBaseAccessor,
+                                  int threadCount, int capacity,
+                                  int batchSize) {
+    if (threadCount < 1 || capacity < 1 || batchSize < 1) {
+      throw new IllegalArgumentException("Writer threads, queue size and " +
+        "batch size must be positive.");
+    }
+    this.hBaseAccessor = hBaseAccessor;
+    this.capacity = capacity;
+    this.batchSize = batchSize;
+    this.writers = new Thread[threadCount];
+    for (int i = 0; i < threadCount; i++) {
+      writers[i] = new Thread(new Writer(), "timeline-metrics-writer-" + i);
+      writers[i].setDaemon(true);
+    }
+  }
+
+  public void start() {
+    for (Thread writer : writers) {
+      writer.start();
+    }
+  }
+
+  /**
+   * Queues the metrics to be written.
+   *
+   * @throws MetricsOverloadedException if the queue has no room for all of
+   * the metrics; none of them are queued
+   */
+  public void putMetrics(TimelineMetrics metrics)
+    throws MetricsOverloadedException {
+    List<TimelineMetric> timelineMetrics = metrics.getMetrics();
+    if (timelineMetrics == null || timelineMetrics.isEmpty()) {
+      return;
+    }
+    if (stopped) {
+      throw new MetricsOverloadedException("Metrics writer is stopped.");
+    }
+
+    int size = timelineMetrics.size();
+    while (true) {
+      int current = pending.get();
+      // a single request larger than the queue is accepted when it is empty
+      if (current > 0 && current + size > capacity) {
+        rejectedMetrics.addAndGet(size);
+        throw new MetricsOverloadedException("Metrics write queue is full: " +
+          current + " metrics pending.");
+      }
+      if (pending.compareAndSet(current, current + size)) {
+        break;
+      }
+    }
+
+    queue.addAll(timelineMetrics);
+    acceptedMetrics.addAndGet(size);
+  }
+
+  /**
+   * Stops accepting metrics and waits for the writers to write the metrics
+   * which are already queued.
+   */
+  public void stop(long timeoutMillis) throws InterruptedException {
+    stopped = true;
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    for (Thread writer : writers) {
+      writer.join(Math.max(1, deadline - System.currentTimeMillis()));
+    }
+    if (pending.get() > 0) {
+      LOG.warn("Stopped metrics writers with " + pending.get() +
+        " metrics not written.");
+    }
+    for (Thread writer : writers) {
+      writer.interrupt();
+    }
+  }
+
+  public int getPendingMetrics() {
+    return pending.get();
+  }
+
+  public long getAcceptedMetrics() {
+    return acceptedMetrics.get();
+  }
+
+  public long getRejectedMetrics() {
+    return rejectedMetrics.get();
+  }
+
+  public long getWrittenMetrics() {
+    return writtenMetrics.get();
+  }
+
+  public long getWrittenPoints() {
+    return writtenPoints.get();
+  }
+
+  public long getFailedMetrics() {
+    return failedMetrics.get();
+  }
+
+  private void write(List<TimelineMetric> batch) {
+    try {
+      hBaseAccessor.insertMetricRecords(batch);
+      writtenMetrics.addAndGet(batch.size());
+      long points = 0;
+      for (TimelineMetric metric : batch) {
+        if (metric.getMetricValues() != null) {
+          points += metric.getMetricValues().size();
+        }
+      }
+      writtenPoints.addAndGet(points);
+    } catch (Exception e) {
+      failedMetrics.addAndGet(batch.size());
+      LOG.error("Unable to write " + batch.size() + " metrics.", e);
+    } finally {
+      pending.addAndGet(-batch.size());
+    }
+  }
+
+  private class Writer implements Runnable {
+    @Override
+    public void run() {
+      List<TimelineMetric> batch = new ArrayList<TimelineMetric>(batchSize);
+      while (!stopped || !queue.isEmpty()) {
+        try {
+          TimelineMetric metric = queue.poll(1, TimeUnit.SECONDS);
+          if (metric == null) {
+            continue;
+          }
+          batch.add(metric);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+
+        queue.drainTo(batch, batchSize - 1);
+        write(batch);
+        batch.clear();
+      }
+    }
+  }
+}
@@ -43,6 +43,8 @@ public class AHSWebApp extends WebApp implements YarnWebParams {
 
   @Override
   public void setup() {
+    // runs ahead of the web services, which are served through a filter too
+    filter("/ws/*").through(GzipRequestFilter.class);
     bind(YarnJacksonJaxbJsonProvider.class);
     bind(AHSWebServices.class);
     bind(TimelineWebServices.class);
@@ -31,6 +31,7 @@ import org.apache.hadoop.yarn.api.records.timeline.TimelineEvents;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
 import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
 import org.apache.hadoop.yarn.api.records.timeline.TimelinePutResponse;
+import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricsOverloadedException;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.Precision;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricStore;
 import org.apache.hadoop.yarn.server.applicationhistoryservice.timeline.EntityIdentifier;
@@ -79,6 +80,11 @@ public class TimelineWebServices {
 
   private static final Log LOG = LogFactory.getLog(TimelineWebServices.class);
 
+  /**
+   * Seconds a sink is asked to wait before posting rejected metrics again.
+   */
+  private static final String RETRY_AFTER_SECONDS = "10";
+
   private TimelineStore store;
   private TimelineMetricStore timelineMetricStore;
 
@@ -275,6 +281,12 @@ public class TimelineWebServices {
 
       return timelineMetricStore.putMetrics(metrics);
 
+    } catch (MetricsOverloadedException e) {
+      LOG.warn("Rejecting metrics: " + e.getMessage());
+      throw new WebApplicationException(
+        Response.status(Response.Status.SERVICE_UNAVAILABLE)
+          .header("Retry-After", RETRY_AFTER_SECONDS)
+          .entity(e.getMessage()).build());
     } catch (Exception e) {
       LOG.error("Error saving metrics.", e);
       throw new WebApplicationException(e, Response.Status.INTERNAL_SERVER_ERROR);
@@ -337,7 +349,7 @@ public class TimelineWebServices {
    * @param metricNames Comma separated list of metrics to retrieve.
    * @param appId Application Id for the requested metrics.
    * @param instanceId Application instance id.
-   * @param hostname Hostname where the metrics originated.
+   * @param hostname Comma separated hostnames where the metrics originated.
    * @param startTime Start time for the metric records retrieved.
    * @param precision Precision [ seconds, minutes, hours ]
    * @param limit limit on total number of {@link TimelineMetric} records
@@ -371,7 +383,8 @@ public class TimelineWebServices {
       }
 
       return timelineMetricStore.getTimelineMetrics(
-        parseListStr(metricNames, ","), hostname, appId, instanceId,
+        parseListStr(metricNames, ","), parseListStr(hostname, ","), appId,
+        instanceId,
         parseLongStr(startTime), parseLongStr(endTime),
         Precision.getPrecision(precision), parseIntStr(limit),
         parseBoolean(grouped));
@@ -17,20 +17,32 @@
  */
 package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.yarn.util.Clock;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import java.io.File;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 import static junit.framework.Assert.assertEquals;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_CHECKPOINT_DELAY;
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.AGGREGATOR_PARTITION_BOUNDARIES;
 import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.TimelineMetricConfiguration.RESULTSET_FETCH_SIZE;
 
 public class AbstractTimelineAggregatorTest {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private AbstractTimelineAggregator agg;
   TestClock clock = new TestClock();
 
@@ -258,6 +270,148 @@ public class AbstractTimelineAggregatorTest {
 
   }
 
+  @Test
+  public void testPartitionsKeepOwnCheckpoints() throws Exception {
+    final File checkpointFile = new File(folder.getRoot(), "checkpoint");
+    final List<String> runs = new ArrayList<String>();
+    final boolean[] failUpperPartition = { false };
+
+    AbstractTimelineAggregator partitioned = createPartitionedAggregator("m",
+      checkpointFile, runs, failUpperPartition);
+    assertEquals(2, partitioned.getPartitionCount());
+
+    // first run saves the checkpoints
+    clock.setTime(0);
+    partitioned.runOnce(sleepIntervalMillis);
+    assertEquals(0, runs.size());
+
+    // the upper partition fails
+    failUpperPartition[0] = true;
+    clock.setTime(sleepIntervalMillis);
+    partitioned.runOnce(sleepIntervalMillis);
+    assertEquals(1, partitioned.getFailedPartitionRuns());
+    assertEquals(sleepIntervalMillis, partitioned.getCheckpointLagMillis());
+    assertEquals(String.valueOf(0), readFile(checkpointFile));
+
+    // only the failed partition aggregates the interval again
+    failUpperPartition[0] = false;
+    runs.clear();
+    clock.setTime(2 * sleepIntervalMillis);
+    partitioned.runOnce(sleepIntervalMillis);
+    assertEquals(Arrays.asList(
+        "[, m) " + sleepIntervalMillis + "-" + 2 * sleepIntervalMillis,
+        "[m, ) 0-" + sleepIntervalMillis),
+      runs);
+    assertEquals(String.valueOf(sleepIntervalMillis), readFile(checkpointFile));
+
+    File[] lowerCheckpoints = folder.getRoot().listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith("checkpoint-0-of-2-");
+      }
+    });
+    assertEquals(1, lowerCheckpoints.length);
+    assertEquals(String.valueOf(2 * sleepIntervalMillis),
+      readFile(lowerCheckpoints[0]));
+  }
+
+  @Test
+  public void testRepartitionWithSameCount() throws Exception {
+    // keep the checkpoints of the last partitioning from getting too old
+    checkpointCutOffMultiplier = 10;
+
+    final File checkpointFile = new File(folder.getRoot(), "checkpoint");
+    final List<String> runs = new ArrayList<String>();
+    final boolean[] failUpperPartition = { false };
+
+    AbstractTimelineAggregator partitioned = createPartitionedAggregator("m",
+      checkpointFile, runs, failUpperPartition);
+
+    // the lower partition gets ahead of the upper one
+    clock.setTime(0);
+    partitioned.runOnce(sleepIntervalMillis);
+    failUpperPartition[0] = true;
+    clock.setTime(sleepIntervalMillis);
+    partitioned.runOnce(sleepIntervalMillis);
+    assertEquals(String.valueOf(0), readFile(checkpointFile));
+
+    // [m, t) was not aggregated, so the new lower partition must not resume
+    // from the checkpoint of the old one
+    AbstractTimelineAggregator repartitioned = createPartitionedAggregator("t",
+      checkpointFile, runs, new boolean[] { false });
+    assertEquals(2, repartitioned.getPartitionCount());
+
+    runs.clear();
+    clock.setTime(2 * sleepIntervalMillis);
+    repartitioned.runOnce(sleepIntervalMillis);
+    assertEquals(Arrays.asList(
+        "[, t) 0-" + sleepIntervalMillis,
+        "[t, ) 0-" + sleepIntervalMillis),
+      runs);
+
+    // a partition with the same bounds keeps its own checkpoint
+    runs.clear();
+    clock.setTime(3 * sleepIntervalMillis);
+    createPartitionedAggregator("m", checkpointFile, runs,
+      new boolean[] { false }).runOnce(sleepIntervalMillis);
+    assertEquals(Arrays.asList(
+        "[, m) " + sleepIntervalMillis + "-" + 2 * sleepIntervalMillis,
+        "[m, ) 0-" + sleepIntervalMillis),
+      runs);
+  }
+
+  private AbstractTimelineAggregator createPartitionedAggregator(
+      String boundaries, final File checkpointFile, final List<String> runs,
+      final boolean[] failUpperPartition) {
+    Configuration metricsConf = new Configuration();
+    metricsConf.setInt(AGGREGATOR_CHECKPOINT_DELAY, 0);
+    metricsConf.set(AGGREGATOR_PARTITION_BOUNDARIES, boundaries);
+
+    return new AbstractTimelineAggregator(null, metricsConf, clock) {
+      @Override
+      protected boolean doWork(Partition partition, long startTime,
+                               long endTime) {
+        runs.add(partition + " " + startTime + "-" + endTime);
+        return !(failUpperPartition[0] && partition.getTo() == null);
+      }
+
+      @Override
+      protected PhoenixTransactSQL.Condition
+      prepareMetricQueryCondition(long startTime, long endTime) {
+        return null;
+      }
+
+      @Override
+      protected void aggregate(ResultSet rs, long startTime,
+                               long endTime) throws IOException, SQLException {
+      }
+
+      @Override
+      protected Long getSleepIntervalMillis() {
+        return sleepIntervalMillis;
+      }
+
+      @Override
+      protected Integer getCheckpointCutOffMultiplier() {
+        return checkpointCutOffMultiplier;
+      }
+
+      @Override
+      protected boolean isDisabled() {
+        return false;
+      }
+
+      @Override
+      protected String getCheckpointLocation() {
+        return checkpointFile.getPath();
+      }
+    };
+  }
+
+  private static String readFile(File file) throws IOException {
+    return FileUtils.readFileToString(file);
+  }
+
   private static class TestClock implements Clock {
 
     private long time;
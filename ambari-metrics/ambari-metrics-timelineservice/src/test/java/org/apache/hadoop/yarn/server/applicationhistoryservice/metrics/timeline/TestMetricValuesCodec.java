@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.yarn.util.timeline.TimelineUtils;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMetricValuesCodec {
+
+  @Test
+  public void testRoundTripRegularSamples() throws Exception {
+    // given
+    TreeMap<Long, Double> values = new TreeMap<Long, Double>();
+    long timestamp = 1407949812000L;
+    for (int i = 0; i < 60; i++) {
+      values.put(timestamp + i * 10000L, i % 5 == 0 ? 42.0 : 42.0 + i / 7);
+    }
+
+    // when
+    String encoded = MetricValuesCodec.encode(values);
+    String json = TimelineUtils.dumpTimelineRecordtoJSON(values);
+
+    // then
+    assertThat(encoded).startsWith(MetricValuesCodec.ENCODING_PREFIX);
+    assertThat(encoded.length()).isLessThan(json.length() / 4);
+    assertThat(MetricValuesCodec.decode(encoded).toMap()).isEqualTo(values);
+  }
+
+  @Test
+  public void testRoundTripIrregularSamples() throws Exception {
+    // given
+    Map<Long, Double> values = new HashMap<Long, Double>();
+    values.put(1000L, -1.5);
+    values.put(1003L, Double.NaN);
+    values.put(90000L, Double.MAX_VALUE);
+    values.put(90001L, Double.MIN_VALUE);
+    values.put(5000000000L, 0.0);
+    values.put(5000000100L, -0.0);
+    values.put(5000000200L, 123456.789);
+    values.put(5000000250L, null);
+
+    // when
+    MetricValuesCodec.MetricValues decoded =
+      MetricValuesCodec.decode(MetricValuesCodec.encode(values));
+
+    // then
+    values.remove(5000000250L);
+    assertThat(decoded.size()).isEqualTo(7);
+    assertThat(decoded.getTimestamps()[0]).isEqualTo(1000L);
+    assertThat(decoded.getTimestamps()[6]).isEqualTo(5000000200L);
+    for (int i = 0; i < decoded.size(); i++) {
+      long timestamp = decoded.getTimestamps()[i];
+      assertThat(Double.doubleToRawLongBits(decoded.getValues()[i]))
+        .isEqualTo(Double.doubleToRawLongBits(values.get(timestamp)));
+    }
+  }
+
+  @Test
+  public void testEmptyValues() throws Exception {
+    assertThat(MetricValuesCodec.decode(
+      MetricValuesCodec.encode(new HashMap<Long, Double>())).size())
+      .isEqualTo(0);
+    assertThat(MetricValuesCodec.decode(null).size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testReadJSON() throws Exception {
+    // given
+    String json = "{\"1407949812\":1.0,\"1407949800\":2.5," +
+      "\"1407949830\":null,\"1407949824\":-3.0}";
+
+    // when
+    MetricValuesCodec.MetricValues decoded = MetricValuesCodec.decode(json);
+
+    // then
+    assertThat(decoded.size()).isEqualTo(3);
+    assertThat(decoded.getTimestamps()[0]).isEqualTo(1407949800L);
+    assertThat(decoded.getValues()[0]).isEqualTo(2.5);
+    assertThat(decoded.getTimestamps()[2]).isEqualTo(1407949824L);
+    assertThat(decoded.getValues()[2]).isEqualTo(-3.0);
+  }
+}
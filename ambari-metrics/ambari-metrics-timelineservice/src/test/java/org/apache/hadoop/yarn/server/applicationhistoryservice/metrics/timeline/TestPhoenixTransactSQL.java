@@ -53,6 +53,31 @@ public class TestPhoenixTransactSQL {
     Assert.assertEquals(expectedClause, preparedClause);
   }
 
+  @Test
+  public void testMultipleHostsConditionClause() throws Exception {
+    DefaultCondition condition = new DefaultCondition(
+      Arrays.asList("cpu_user", "mem_free"), null, "a1", null,
+        1407959718L, 1407959918L, null, null, false);
+    condition.setHostnames(Arrays.asList("h1", " h2", ""));
+
+    String preparedClause = condition.getConditionClause().toString();
+    String expectedClause = "(METRIC_NAME IN (?, ?)) AND HOSTNAME IN (?, ?) " +
+      "AND APP_ID = ? AND SERVER_TIME >= ? AND SERVER_TIME < ?";
+
+    Assert.assertEquals(expectedClause, preparedClause);
+    Assert.assertEquals(Arrays.asList("h1", "h2"), condition.getHostnames());
+
+    SplitByMetricNamesCondition splitCondition =
+      new SplitByMetricNamesCondition(condition);
+    splitCondition.setCurrentMetric("cpu_user");
+    splitCondition.setCurrentHostname("h2");
+
+    expectedClause = "METRIC_NAME = ? AND HOSTNAME = ? AND " +
+      "APP_ID = ? AND SERVER_TIME >= ? AND SERVER_TIME < ?";
+    Assert.assertEquals(expectedClause,
+      splitCondition.getConditionClause().toString());
+  }
+
   @Test
   public void testSplitByMetricNamesCondition() throws Exception {
     Condition c = new DefaultCondition(
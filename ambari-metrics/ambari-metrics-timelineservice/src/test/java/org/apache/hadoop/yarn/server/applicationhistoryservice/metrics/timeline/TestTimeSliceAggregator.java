@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestTimeSliceAggregator {
+
+  private static final long START_TIME = 1407949800000L;
+  private static final long SLICE = 15000L;
+
+  @Test
+  public void testAggregateAcrossHostsInAnyOrder() throws Exception {
+    // given
+    TimeSliceAggregator aggregator =
+      new TimeSliceAggregator(START_TIME, START_TIME + 2 * SLICE, SLICE);
+
+    // when
+    aggregator.add(metric("disk_free", "h2"),
+      values(START_TIME + SLICE + 1000, 4.0));
+    aggregator.add(metric("mem_free", "h1"),
+      values(START_TIME, 7.0));
+    aggregator.add(metric("disk_free", "h1"),
+      values(START_TIME + 1000, 1.0, START_TIME + 2000, 3.0,
+        START_TIME + SLICE, 2.0));
+
+    // then
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregates =
+      aggregator.getAggregates();
+    assertThat(aggregator.getMetricCount()).isEqualTo(2);
+    assertThat(aggregates).hasSize(3);
+
+    MetricClusterAggregate first = aggregates.get(clusterMetric("disk_free", START_TIME));
+    assertThat(first.getSum()).isEqualTo(2.0);
+    assertThat(first.getNumberOfHosts()).isEqualTo(1);
+
+    MetricClusterAggregate second =
+      aggregates.get(clusterMetric("disk_free", START_TIME + SLICE));
+    assertThat(second.getSum()).isEqualTo(6.0);
+    assertThat(second.getNumberOfHosts()).isEqualTo(2);
+    assertThat(second.getMax()).isEqualTo(4.0);
+    assertThat(second.getMin()).isEqualTo(2.0);
+
+    assertThat(aggregates.get(clusterMetric("mem_free", START_TIME)).getSum())
+      .isEqualTo(7.0);
+  }
+
+  @Test
+  public void testIgnoreValuesOutOfRange() throws Exception {
+    // given
+    TimeSliceAggregator aggregator =
+      new TimeSliceAggregator(START_TIME, START_TIME + 2 * SLICE, SLICE);
+
+    // when
+    aggregator.add(metric("disk_free", "h1"),
+      values(START_TIME - 1, 1.0, START_TIME + 2 * SLICE, 2.0));
+
+    // then
+    assertThat(aggregator.getMetricCount()).isEqualTo(0);
+    assertThat(aggregator.getAggregates()).isEmpty();
+  }
+
+  private static TimelineMetric metric(String metricName, String hostname) {
+    TimelineMetric metric = new TimelineMetric();
+    metric.setMetricName(metricName);
+    metric.setAppId("HOST");
+    metric.setHostName(hostname);
+    metric.setType("Number");
+    return metric;
+  }
+
+  private static TimelineClusterMetric clusterMetric(String metricName,
+                                                     long timestamp) {
+    return new TimelineClusterMetric(metricName, "HOST", null, timestamp,
+      "Number");
+  }
+
+  // timestamp and value pairs
+  private static MetricValuesCodec.MetricValues values(double... points) {
+    long[] timestamps = new long[points.length / 2];
+    double[] values = new double[points.length / 2];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = (long) points[2 * i];
+      values[i] = points[2 * i + 1];
+    }
+    return new MetricValuesCodec.MetricValues(timestamps, values,
+      timestamps.length);
+  }
+}
@@ -29,7 +29,7 @@ import java.util.List;
 public class TestTimelineMetricStore implements TimelineMetricStore {
   @Override
   public TimelineMetrics getTimelineMetrics(List<String> metricNames,
-      String hostname, String applicationId, String instanceId, Long startTime,
+      List<String> hostnames, String applicationId, String instanceId, Long startTime,
       Long endTime, Precision precision, Integer limit, boolean groupedByHost) throws SQLException,
     IOException {
     TimelineMetrics timelineMetrics = new TimelineMetrics();
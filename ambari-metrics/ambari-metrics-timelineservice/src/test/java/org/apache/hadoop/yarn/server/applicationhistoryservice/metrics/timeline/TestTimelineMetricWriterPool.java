@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetrics;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.hadoop.yarn.server.applicationhistoryservice.metrics.timeline.MetricTestHelper.prepareSingleTimelineMetric;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class TestTimelineMetricWriterPool {
+
+  @Test
+  public void testRejectsWhenQueueIsFull() throws Exception {
+    // given
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final List<Integer> batchSizes = new ArrayList<Integer>();
+    PhoenixHBaseAccessor accessor = mock(PhoenixHBaseAccessor.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        writing.countDown();
+        release.await(10, TimeUnit.SECONDS);
+        batchSizes.add(((List<?>) invocation.getArguments()[0]).size());
+        return null;
+      }
+    }).when(accessor).insertMetricRecords(anyListOf(TimelineMetric.class));
+
+    TimelineMetricWriterPool pool =
+      new TimelineMetricWriterPool(accessor, 1, 3, 10);
+    pool.start();
+
+    // when
+    pool.putMetrics(prepareSingleTimelineMetric(1L, "h1", "m1", 1.0));
+    assertThat(writing.await(10, TimeUnit.SECONDS)).isTrue();
+    pool.putMetrics(prepareMetrics(2));
+
+    try {
+      pool.putMetrics(prepareMetrics(2));
+      fail("Expected the queue to be full");
+    } catch (MetricsOverloadedException e) {
+      // expected
+    }
+
+    release.countDown();
+    pool.stop(10000);
+
+    // then
+    assertThat(pool.getAcceptedMetrics()).isEqualTo(3);
+    assertThat(pool.getRejectedMetrics()).isEqualTo(2);
+    assertThat(pool.getWrittenMetrics()).isEqualTo(3);
+    assertThat(pool.getWrittenPoints()).isEqualTo(12);
+    assertThat(pool.getPendingMetrics()).isEqualTo(0);
+    // the metrics queued while the writer was busy are written together
+    assertThat(batchSizes).containsExactly(1, 2);
+  }
+
+  private TimelineMetrics prepareMetrics(int count) {
+    List<TimelineMetric> metrics = new ArrayList<TimelineMetric>();
+    for (int i = 0; i < count; i++) {
+      metrics.addAll(prepareSingleTimelineMetric(1L, "h" + i, "m1", 1.0)
+        .getMetrics());
+    }
+    TimelineMetrics timelineMetrics = new TimelineMetrics();
+    timelineMetrics.setMetrics(metrics);
+    return timelineMetrics;
+  }
+}
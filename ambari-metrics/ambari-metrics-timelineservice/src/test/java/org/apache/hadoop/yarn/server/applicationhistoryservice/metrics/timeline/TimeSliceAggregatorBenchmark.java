@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.yarn.server.applicationhistoryservice.metrics
+  .timeline;
+
+import org.apache.hadoop.metrics2.sink.timeline.TimelineMetric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregates one 2 minute window of the cluster aggregator, 5k hosts sending
+ * 500 metrics every 10 seconds, with {@link TimeSliceAggregator} and with
+ * the map per record and slice list scan it replaced.
+ * <p/>
+ * The records are decoded up front, so only the aggregation is measured;
+ * the hosts share the record metadata, which the aggregation doesn't key by.
+ * Not run as part of the unit tests; run {@link #main} from the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TimeSliceAggregatorBenchmark {
+
+  private static final long START_TIME = 1407949800000L;
+  private static final long WINDOW = 120000L;
+  private static final long SLICE = 15000L;
+  private static final long INTERVAL = 10000L;
+
+  // distinct value series, shared by the hosts
+  private static final int SERIES = 16;
+
+  @Param({"5000"})
+  private int hosts;
+
+  @Param({"500"})
+  private int metrics;
+
+  private TimelineMetric[] records;
+  private MetricValuesCodec.MetricValues[] series;
+
+  @Setup
+  public void setUp() {
+    series = new MetricValuesCodec.MetricValues[SERIES];
+    int points = (int) (WINDOW / INTERVAL);
+    for (int s = 0; s < SERIES; s++) {
+      long[] timestamps = new long[points];
+      double[] values = new double[points];
+      for (int i = 0; i < points; i++) {
+        // the hosts don't sample in step
+        timestamps[i] = START_TIME + i * INTERVAL + s * 500;
+        values[i] = s * 100 + i;
+      }
+      series[s] = new MetricValuesCodec.MetricValues(timestamps, values, points);
+    }
+
+    records = new TimelineMetric[metrics];
+    for (int m = 0; m < metrics; m++) {
+      TimelineMetric metric = new TimelineMetric();
+      metric.setMetricName("metric_" + m);
+      metric.setAppId("HOST");
+      metric.setType("Number");
+      records[m] = metric;
+    }
+  }
+
+  @Benchmark
+  public Map<TimelineClusterMetric, MetricClusterAggregate> timeSliceAggregator() {
+    TimeSliceAggregator aggregator =
+      new TimeSliceAggregator(START_TIME, START_TIME + WINDOW, SLICE);
+    // interleaved by host, as the unordered scan returns them
+    for (int h = 0; h < hosts; h++) {
+      for (int m = 0; m < metrics; m++) {
+        aggregator.add(records[m], series[(h + m) % SERIES]);
+      }
+    }
+    return aggregator.getAggregates();
+  }
+
+  @Benchmark
+  public Map<TimelineClusterMetric, MetricClusterAggregate> mapPerRecord() {
+    List<Long[]> timeSlices = new ArrayList<Long[]>();
+    for (long sliceStart = START_TIME; sliceStart < START_TIME + WINDOW;
+         sliceStart += SLICE) {
+      timeSlices.add(new Long[] { sliceStart, sliceStart + SLICE });
+    }
+
+    Map<TimelineClusterMetric, MetricClusterAggregate> aggregates =
+      new HashMap<TimelineClusterMetric, MetricClusterAggregate>();
+    for (int h = 0; h < hosts; h++) {
+      for (int m = 0; m < metrics; m++) {
+        Map<TimelineClusterMetric, Double> slices =
+          slice(records[m], series[(h + m) % SERIES], timeSlices);
+        for (Map.Entry<TimelineClusterMetric, Double> entry : slices.entrySet()) {
+          MetricClusterAggregate aggregate = aggregates.get(entry.getKey());
+          Double value = entry.getValue();
+          if (aggregate == null) {
+            aggregates.put(entry.getKey(),
+              new MetricClusterAggregate(value, 1, null, value, value));
+          } else {
+            aggregate.updateSum(value);
+            aggregate.updateNumberOfHosts(1);
+            aggregate.updateMax(value);
+            aggregate.updateMin(value);
+          }
+        }
+      }
+    }
+    return aggregates;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+      .include(TimeSliceAggregatorBenchmark.class.getSimpleName())
+      .addProfiler(GCProfiler.class)
+      .build();
+    new Runner(options).run();
+  }
+
+  private static Map<TimelineClusterMetric, Double> slice(
+      TimelineMetric metric, MetricValuesCodec.MetricValues values,
+      List<Long[]> timeSlices) {
+    Map<TimelineClusterMetric, Double> slices =
+      new HashMap<TimelineClusterMetric, Double>();
+    for (int i = 0; i < values.size(); i++) {
+      long timestamp = -1;
+      for (Long[] timeSlice : timeSlices) {
+        if (values.getTimestamps()[i] >= timeSlice[0]
+          && values.getTimestamps()[i] < timeSlice[1]) {
+          timestamp = timeSlice[0];
+          break;
+        }
+      }
+      if (timestamp != -1) {
+        TimelineClusterMetric clusterMetric = new TimelineClusterMetric(
+          metric.getMetricName(), metric.getAppId(), metric.getInstanceId(),
+          timestamp, metric.getType());
+        Double oldValue = slices.get(clusterMetric);
+        slices.put(clusterMetric, oldValue == null ? values.getValues()[i]
+          : (oldValue + values.getValues()[i]) / 2);
+      }
+    }
+    return slices;
+  }
+}
@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.hadoop.yarn.server.applicationhistoryservice.webapp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+public class TestGzipRequestFilter {
+
+  private static final String BODY = "{\"metrics\":[]}";
+
+  @Test
+  public void testGzippedRequest() throws Exception {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    GZIPOutputStream gzipOut = new GZIPOutputStream(compressed);
+    gzipOut.write(BODY.getBytes("UTF-8"));
+    gzipOut.close();
+
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getHeader("Content-Encoding")).thenReturn("gzip");
+    when(request.getContentLength()).thenReturn(compressed.size());
+    when(request.getInputStream()).thenReturn(
+      new TestInputStream(compressed.toByteArray()));
+
+    HttpServletRequest filtered = filter(request);
+
+    assertEquals(BODY, IOUtils.toString(filtered.getInputStream(), "UTF-8"));
+    assertNull(filtered.getHeader("Content-Encoding"));
+    assertEquals(-1, filtered.getContentLength());
+  }
+
+  @Test
+  public void testPlainRequest() throws Exception {
+    HttpServletRequest request = mock(HttpServletRequest.class);
+    when(request.getContentLength()).thenReturn(BODY.length());
+    when(request.getInputStream()).thenReturn(
+      new TestInputStream(BODY.getBytes("UTF-8")));
+
+    HttpServletRequest filtered = filter(request);
+
+    assertSame(request, filtered);
+    assertEquals(BODY, IOUtils.toString(filtered.getInputStream(), "UTF-8"));
+  }
+
+  private static HttpServletRequest filter(HttpServletRequest request)
+      throws Exception {
+    final ServletRequest[] chained = new ServletRequest[1];
+    FilterChain chain = mock(FilterChain.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        chained[0] = (ServletRequest) invocation.getArguments()[0];
+        return null;
+      }
+    }).when(chain).doFilter(any(ServletRequest.class),
+      any(ServletResponse.class));
+
+    new GzipRequestFilter().doFilter(request, mock(ServletResponse.class),
+      chain);
+    return (HttpServletRequest) chained[0];
+  }
+
+  private static class TestInputStream extends ServletInputStream {
+    private final ByteArrayInputStream in;
+
+    TestInputStream(byte[] bytes) {
+      in = new ByteArrayInputStream(bytes);
+    }
+
+    @Override
+    public int read() throws IOException {
+      return in.read();
+    }
+  }
+}
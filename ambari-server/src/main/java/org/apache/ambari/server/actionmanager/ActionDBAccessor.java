@@ -60,15 +60,24 @@ public interface ActionDBAccessor {
    * Returns all the pending stages, including queued and not-queued. A stage is
    * considered in progress if it is in progress for any host.
    * <p/>
-   * The results will be sorted by request ID and then stage ID making this call
-   * expensive in some scenarios. Use {@link #getCommandsInProgressCount()} in
-   * order to determine if there are stages that are in progress before getting
-   * the stages from this method.
+   * The results will be sorted by request ID and then stage ID. The stages are
+   * read from the database once and then kept in memory, updated as requests
+   * are persisted and as the states of their commands change through this
+   * accessor. Use {@link #invalidateStagesInProgress()} to read them from the
+   * database again.
    *
    * @see HostRoleStatus#IN_PROGRESS_STATUSES
    */
   public List<Stage> getStagesInProgress();
 
+  /**
+   * Discards the stages in progress which are kept in memory so that the next
+   * call to {@link #getStagesInProgress()} reads them from the database. This
+   * must be called after the states of commands are changed without using this
+   * accessor.
+   */
+  public void invalidateStagesInProgress();
+
   /**
    * Gets the number of commands in progress.
    *
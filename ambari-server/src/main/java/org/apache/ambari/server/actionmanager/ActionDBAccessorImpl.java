@@ -27,6 +27,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.AmbariException;
@@ -106,6 +107,22 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
   private Cache<Long, HostRoleCommand> hostRoleCommandCache;
   private long cacheLimit; //may be exceeded to store tasks from one request
 
+  /**
+   * The stages which have commands in progress, keyed by request ID and then by
+   * stage ID so that they are in the same order as when they are read from the
+   * database. This is {@code null} until the stages are read from the database
+   * and after it has been invalidated. Access to it, and to
+   * {@link #commandsInProgress}, must synchronize on this map's lock object.
+   */
+  private TreeMap<Long, TreeMap<Long, Stage>> stagesInProgress = null;
+
+  /**
+   * The commands of the stages in {@link #stagesInProgress}, keyed by task ID.
+   */
+  private final Map<Long, HostRoleCommand> commandsInProgress = new HashMap<Long, HostRoleCommand>();
+
+  private final Object stagesInProgressLock = new Object();
+
   @Inject
   public ActionDBAccessorImpl(@Named("executionCommandCacheSize") long cacheLimit) {
 
@@ -179,6 +196,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
 
     hostRoleCommandDAO.mergeAll(commands);
+    updateCommandsInProgress(commands);
   }
 
   /* (non-Javadoc)
@@ -195,6 +213,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       command.setEndTime(now);
     }
     hostRoleCommandDAO.mergeAll(commands);
+    updateCommandsInProgress(commands);
     endRequestIfCompleted(requestId);
   }
 
@@ -203,15 +222,126 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
    */
   @Override
   public List<Stage> getStagesInProgress() {
-    List<Stage> stages = new ArrayList<Stage>();
+    synchronized (stagesInProgressLock) {
+      if (null == stagesInProgress) {
+        loadStagesInProgress();
+      }
 
-    List<StageEntity> stageEntities = stageDAO.findByCommandStatuses(HostRoleStatus.IN_PROGRESS_STATUSES);
+      List<Stage> stages = new ArrayList<Stage>();
+      for (Map<Long, Stage> requestStages : stagesInProgress.values()) {
+        stages.addAll(requestStages.values());
+      }
+
+      return stages;
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void invalidateStagesInProgress() {
+    synchronized (stagesInProgressLock) {
+      stagesInProgress = null;
+      commandsInProgress.clear();
+    }
+  }
 
+  /**
+   * Reads the stages in progress from the database. The caller must hold
+   * {@link #stagesInProgressLock}.
+   */
+  private void loadStagesInProgress() {
+    stagesInProgress = new TreeMap<Long, TreeMap<Long, Stage>>();
+    commandsInProgress.clear();
+
+    // !!! getting the stages in progress could be a very expensive call due
+    // to the join being used; there's no need to make it if there are
+    // no commands in progress
+    if (getCommandsInProgressCount() == 0) {
+      return;
+    }
+
+    List<StageEntity> stageEntities = stageDAO.findByCommandStatuses(HostRoleStatus.IN_PROGRESS_STATUSES);
     for (StageEntity stageEntity : stageEntities) {
-      stages.add(stageFactory.createExisting(stageEntity));
+      addStageInProgress(stageFactory.createExisting(stageEntity));
     }
+  }
 
-    return stages;
+  /**
+   * Adds the specified stage to the stages in progress. The caller must hold
+   * {@link #stagesInProgressLock}.
+   */
+  private void addStageInProgress(Stage stage) {
+    TreeMap<Long, Stage> requestStages = stagesInProgress.get(stage.getRequestId());
+    if (null == requestStages) {
+      requestStages = new TreeMap<Long, Stage>();
+      stagesInProgress.put(stage.getRequestId(), requestStages);
+    }
+
+    requestStages.put(stage.getStageId(), stage);
+    for (HostRoleCommand command : stage.getOrderedHostRoleCommands()) {
+      commandsInProgress.put(command.getTaskId(), command);
+    }
+  }
+
+  /**
+   * Copies the states of the specified commands to the stages in progress,
+   * removing any stage which no longer has commands in progress.
+   *
+   * @param commandEntities
+   *          the commands which were just merged.
+   */
+  private void updateCommandsInProgress(Collection<HostRoleCommandEntity> commandEntities) {
+    synchronized (stagesInProgressLock) {
+      if (null == stagesInProgress) {
+        return;
+      }
+
+      Set<Stage> updatedStages = new HashSet<Stage>();
+      for (HostRoleCommandEntity commandEntity : commandEntities) {
+        HostRoleCommand command = commandsInProgress.get(commandEntity.getTaskId());
+        if (null == command) {
+          continue;
+        }
+
+        command.setStatus(commandEntity.getStatus());
+        if (null != commandEntity.getEndTime()) {
+          command.setEndTime(commandEntity.getEndTime());
+        }
+        if (null != commandEntity.getExitcode()) {
+          command.setExitCode(commandEntity.getExitcode());
+        }
+
+        Map<Long, Stage> requestStages = stagesInProgress.get(commandEntity.getRequestId());
+        if (null != requestStages && requestStages.containsKey(commandEntity.getStageId())) {
+          updatedStages.add(requestStages.get(commandEntity.getStageId()));
+        }
+      }
+
+      for (Stage stage : updatedStages) {
+        List<HostRoleCommand> commands = stage.getOrderedHostRoleCommands();
+        boolean inProgress = false;
+        for (HostRoleCommand command : commands) {
+          if (command.getStatus().isInProgress()) {
+            inProgress = true;
+            break;
+          }
+        }
+
+        if (!inProgress) {
+          for (HostRoleCommand command : commands) {
+            commandsInProgress.remove(command.getTaskId());
+          }
+
+          Map<Long, Stage> requestStages = stagesInProgress.get(stage.getRequestId());
+          requestStages.remove(stage.getStageId());
+          if (requestStages.isEmpty()) {
+            stagesInProgress.remove(stage.getRequestId());
+          }
+        }
+      }
+    }
   }
 
   /**
@@ -245,6 +375,11 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     //TODO wire request to cluster
     List<StageEntity> stageEntities = new ArrayList<StageEntity>(request.getStages().size());
 
+    // resolve every host referenced by the request with a single query
+    // instead of one lookup per command
+    Map<String, HostEntity> hostEntities = findHostEntities(request);
+    Map<String, String> hostLogPrefixes = new HashMap<String, String>(hostEntities.size());
+
     for (Stage stage : request.getStages()) {
       StageEntity stageEntity = stage.constructNewPersistenceEntity();
       stageEntities.add(stageEntity);
@@ -259,7 +394,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         HostRoleCommandEntity hostRoleCommandEntity = hostRoleCommand.constructNewPersistenceEntity();
         hostRoleCommandEntity.setStage(stageEntity);
 
-        HostEntity hostEntity = hostDAO.findByName(hostRoleCommandEntity.getHostName());
+        HostEntity hostEntity = hostEntities.get(hostRoleCommandEntity.getHostName());
         if (hostEntity == null) {
           String msg = String.format("Host %s doesn't exist in database", hostRoleCommandEntity.getHostName());
           LOG.error(msg);
@@ -271,21 +406,13 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         assert hostRoleCommandEntity.getTaskId() != null;
         hostRoleCommand.setTaskId(hostRoleCommandEntity.getTaskId());
 
-        try {
-          // Get the in-memory host object and its prefix to construct the output and error log paths.
-          Host hostObject = clusters.getHost(hostRoleCommandEntity.getHostName());
-          String prefix = hostObject.getPrefix();
-          if (null != prefix && !prefix.isEmpty()) {
-            if (!prefix.endsWith("/")) {
-              prefix = prefix + "/";
-            }
-            hostRoleCommand.setOutputLog(prefix + "output-" + hostRoleCommandEntity.getTaskId() + ".txt");
-            hostRoleCommand.setErrorLog(prefix + "errors-" + hostRoleCommandEntity.getTaskId() + ".txt");
-            hostRoleCommandEntity.setOutputLog(hostRoleCommand.getOutputLog());
-            hostRoleCommandEntity.setErrorLog(hostRoleCommand.getErrorLog());
-          }
-        } catch (AmbariException e) {
-          LOG.warn("Exception in getting prefix for host and setting output and error log files.");
+        // Get the in-memory host object and its prefix to construct the output and error log paths.
+        String prefix = getHostLogPrefix(hostRoleCommandEntity.getHostName(), hostLogPrefixes);
+        if (null != prefix) {
+          hostRoleCommand.setOutputLog(prefix + "output-" + hostRoleCommandEntity.getTaskId() + ".txt");
+          hostRoleCommand.setErrorLog(prefix + "errors-" + hostRoleCommandEntity.getTaskId() + ".txt");
+          hostRoleCommandEntity.setOutputLog(hostRoleCommand.getOutputLog());
+          hostRoleCommandEntity.setErrorLog(hostRoleCommand.getErrorLog());
         }
 
         ExecutionCommandEntity executionCommandEntity = hostRoleCommand.constructExecutionCommandEntity();
@@ -294,9 +421,9 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
         executionCommandEntity.setTaskId(hostRoleCommandEntity.getTaskId());
         hostRoleCommandEntity.setExecutionCommand(executionCommandEntity);
 
+        // the command entity is already managed, so there is no need to merge
+        // it (or its host) again; the inserts are batched on commit
         executionCommandDAO.create(hostRoleCommandEntity.getExecutionCommand());
-        hostRoleCommandDAO.merge(hostRoleCommandEntity);
-        hostDAO.merge(hostEntity);
       }
 
       for (RoleSuccessCriteriaEntity roleSuccessCriteriaEntity : stageEntity.getRoleSuccessCriterias()) {
@@ -307,6 +434,72 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
     requestEntity.setStages(stageEntities);
     requestDAO.merge(requestEntity);
+
+    synchronized (stagesInProgressLock) {
+      if (null != stagesInProgress) {
+        for (Stage stage : request.getStages()) {
+          addStageInProgress(stage);
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the host entities for all of the commands in the specified request.
+   *
+   * @param request
+   *          the request being persisted.
+   * @return the host entities keyed by host name.
+   */
+  private Map<String, HostEntity> findHostEntities(Request request) {
+    Set<String> hostNames = new HashSet<String>();
+    for (Stage stage : request.getStages()) {
+      for (HostRoleCommand hostRoleCommand : stage.getOrderedHostRoleCommands()) {
+        hostNames.add(hostRoleCommand.getHostName());
+      }
+    }
+
+    Map<String, HostEntity> hostEntities = new HashMap<String, HostEntity>(hostNames.size());
+    for (HostEntity hostEntity : hostDAO.findByNames(hostNames)) {
+      hostEntities.put(hostEntity.getHostName(), hostEntity);
+    }
+
+    return hostEntities;
+  }
+
+  /**
+   * Gets the log file prefix for the specified host, ending with a
+   * {@code /}, caching the result so that each host is only looked up once
+   * per request.
+   *
+   * @param hostName
+   *          the host name.
+   * @param hostLogPrefixes
+   *          the prefixes already resolved for this request.
+   * @return the prefix, or {@code null} if the host has none.
+   */
+  private String getHostLogPrefix(String hostName, Map<String, String> hostLogPrefixes) {
+    if (hostLogPrefixes.containsKey(hostName)) {
+      return hostLogPrefixes.get(hostName);
+    }
+
+    String prefix = null;
+    try {
+      Host hostObject = clusters.getHost(hostName);
+      prefix = hostObject.getPrefix();
+      if (null != prefix && !prefix.isEmpty()) {
+        if (!prefix.endsWith("/")) {
+          prefix = prefix + "/";
+        }
+      } else {
+        prefix = null;
+      }
+    } catch (AmbariException e) {
+      LOG.warn("Exception in getting prefix for host and setting output and error log files.");
+    }
+
+    hostLogPrefixes.put(hostName, prefix);
+    return prefix;
   }
 
   @Override
@@ -407,6 +600,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
     }
 
     hostRoleCommandDAO.mergeAll(commandEntities);
+    updateCommandsInProgress(commandEntities);
     // Invalidate cache because of updates to ABORTED commands
     hostRoleCommandCache.invalidateAll(abortedCommandUpdates);
 
@@ -447,6 +641,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       command.setExitcode(report.getExitCode());
     }
     hostRoleCommandDAO.mergeAll(commands);
+    updateCommandsInProgress(commands);
 
     if (checkRequest) {
       endRequestIfCompleted(requestId);
@@ -503,6 +698,7 @@ public class ActionDBAccessorImpl implements ActionDBAccessor {
       entity.setStatus(hostRoleCommand.getStatus());
       entity.setAttemptCount(hostRoleCommand.getAttemptCount());
       hostRoleCommandDAO.merge(entity);
+      updateCommandsInProgress(Collections.singletonList(entity));
     } else {
       throw new RuntimeException("HostRoleCommand is not persisted, cannot update:\n" + hostRoleCommand);
     }
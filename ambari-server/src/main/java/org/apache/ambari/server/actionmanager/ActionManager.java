@@ -94,6 +94,7 @@ public class ActionManager {
       }
     }
     db.persistActions(request);
+    scheduler.addActiveRequest(request);
     scheduler.awake();
   }
 
@@ -160,6 +161,15 @@ public class ActionManager {
     }
 
     db.updateHostRoleStates(reportsToProcess);
+
+    // a finished command may complete its stage; wake the scheduler so that
+    // the next stage starts right away instead of on the next poll
+    for (CommandReport report : reportsToProcess) {
+      if (HostRoleStatus.valueOf(report.getStatus()).isCompletedState()) {
+        scheduler.awake();
+        break;
+      }
+    }
   }
 
   /**
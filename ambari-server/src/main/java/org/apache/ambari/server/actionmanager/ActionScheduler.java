@@ -98,6 +98,31 @@ class ActionScheduler implements Runnable {
 
   private final Set<Long> requestsInProgress = new HashSet<Long>();
 
+  /**
+   * The amount of time that the scheduler will go without reading the stages
+   * in progress from the database when there are no known active requests.
+   * This guards against requests which were not registered via
+   * {@link #addActiveRequest(Request)}, such as those left in progress by a
+   * previous server instance.
+   */
+  private static final long RECOVERY_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+  /**
+   * An index of the requests which have stages in progress and whether each
+   * is exclusive. It is populated as requests are persisted and when in
+   * progress stages are recovered from the database, and it is pruned as
+   * requests finish. This prevents looking up the same request from the
+   * database for every stage on every wakeup. Only the exclusive flag is kept
+   * so that the stages and commands of long running requests are not held.
+   */
+  private final Map<Long, Boolean> activeRequests = new ConcurrentHashMap<Long, Boolean>();
+
+  /**
+   * The last time that in progress stages were read from the database. The
+   * stages are otherwise kept in memory by the {@link ActionDBAccessor}.
+   */
+  private volatile long lastDatabaseScanTime = 0L;
+
   /**
    * Contains request ids that have been scheduled to be cancelled,
    * but are not cancelled yet
@@ -181,30 +206,82 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Registers a request which has just been persisted so that it can be
+   * scheduled without being looked up from the database. The scheduler should
+   * be woken up afterward via {@link #awake()}.
+   *
+   * @param request
+   *          the persisted request.
+   */
+  public void addActiveRequest(Request request) {
+    activeRequests.put(request.getRequestId(), request.isExclusive());
+  }
+
   @Override
   public void run() {
     while (shouldRun) {
       try {
+        boolean awakened;
         synchronized (wakeupSyncObject) {
           if (!activeAwakeRequest) {
               wakeupSyncObject.wait(sleepTime);
           }
+          awakened = activeAwakeRequest;
           activeAwakeRequest = false;
         }
+
+        if (!isWorkNeeded(awakened)) {
+          continue;
+        }
+
         doWork();
       } catch (InterruptedException ex) {
         LOG.warn("Scheduler thread is interrupted going to stop", ex);
         shouldRun = false;
       } catch (Exception ex) {
         LOG.warn("Exception received", ex);
-        requestsInProgress.clear();
+        resetActiveRequests();
       } catch (Throwable t) {
         LOG.warn("ERROR", t);
-        requestsInProgress.clear();
+        resetActiveRequests();
       }
     }
   }
 
+  /**
+   * Gets whether a wakeup of the scheduler needs to do any work. Periodic
+   * wakeups exist to detect timed out commands; when nothing is known to be
+   * running, they only recover stages from the database every
+   * {@link #RECOVERY_INTERVAL}.
+   *
+   * @param awakened
+   *          {@code true} if the scheduler was woken up via {@link #awake()}.
+   * @return {@code true} if {@link #doWork()} should run.
+   */
+  boolean isWorkNeeded(boolean awakened) {
+    return awakened || !activeRequests.isEmpty() || isRecoveryNeeded();
+  }
+
+  /**
+   * Gets whether the stages in progress should be read from the database
+   * again instead of being taken from memory.
+   */
+  private boolean isRecoveryNeeded() {
+    return activeRequests.isEmpty()
+        && System.currentTimeMillis() - lastDatabaseScanTime >= RECOVERY_INTERVAL;
+  }
+
+  /**
+   * Forgets the active requests after a failed run so that the next run
+   * recovers the stages in progress from the database.
+   */
+  void resetActiveRequests() {
+    requestsInProgress.clear();
+    activeRequests.clear();
+    lastDatabaseScanTime = 0L;
+  }
+
   public void doWork() throws AmbariException {
     try {
       unitOfWork.begin();
@@ -212,16 +289,15 @@ class ActionScheduler implements Runnable {
       // The first thing to do is to abort requests that are cancelled
       processCancelledRequestsList();
 
-      // !!! getting the stages in progress could be a very expensive call due
-      // to the join being used; there's no need to make it if there are
-      // no commands in progress
-      if (db.getCommandsInProgressCount() == 0) {
-        // Nothing to do
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("There are no stages currently in progress.");
-        }
+      // requests registered after this point may not be among the stages
+      // below, so only these are candidates for removal from the index
+      Set<Long> knownRequestIds = new HashSet<Long>(activeRequests.keySet());
 
-        return;
+      // the stages in progress are kept in memory and updated as commands
+      // change; only read them from the database again when recovering
+      if (isRecoveryNeeded()) {
+        lastDatabaseScanTime = System.currentTimeMillis();
+        db.invalidateStagesInProgress();
       }
 
       Set<Long> runningRequestIds = new HashSet<Long>();
@@ -231,6 +307,12 @@ class ActionScheduler implements Runnable {
         LOG.debug("Processing {} in progress stages ", stages.size());
       }
 
+      // prune the requests which no longer have any stages in progress
+      for (Stage stage : stages) {
+        knownRequestIds.remove(stage.getRequestId());
+      }
+      activeRequests.keySet().removeAll(knownRequestIds);
+
       if (stages.isEmpty()) {
         // Nothing to do
         if (LOG.isDebugEnabled()) {
@@ -252,9 +334,7 @@ class ActionScheduler implements Runnable {
         i_stage ++;
         long requestId = stage.getRequestId();
         LOG.debug("==> STAGE_i = " + i_stage + "(requestId=" + requestId + ",StageId=" + stage.getStageId() + ")");
-        Request request = db.getRequest(requestId);
-
-        if (request.isExclusive()) {
+        if (isExclusiveRequest(requestId)) {
           if (runningRequestIds.size() > 0 ) {
             // As a result, we will wait until any previous stages are finished
             LOG.debug("Stage requires exclusive execution, but other requests are already executing. Stopping for now");
@@ -317,7 +397,11 @@ class ActionScheduler implements Runnable {
           // Hack - Remove passwords from configs
           if (cmd.getRole().equals(Role.HIVE_CLIENT.toString()) &&
                   cmd.getConfigurations().containsKey(Configuration.HIVE_CONFIG_TAG)) {
-            cmd.getConfigurations().get(Configuration.HIVE_CONFIG_TAG).remove(Configuration.HIVE_METASTORE_PASSWORD_PROPERTY);
+            // the configs may be shared with other commands, so remove from a copy
+            Map<String, String> hiveConfig = new HashMap<String, String>(
+                cmd.getConfigurations().get(Configuration.HIVE_CONFIG_TAG));
+            hiveConfig.remove(Configuration.HIVE_METASTORE_PASSWORD_PROPERTY);
+            cmd.getConfigurations().put(Configuration.HIVE_CONFIG_TAG, hiveConfig);
           }
           processHostRole(stage, cmd, commandsToStart, commandsToUpdate);
         }
@@ -398,6 +482,30 @@ class ActionScheduler implements Runnable {
     }
   }
 
+  /**
+   * Gets whether the specified request is exclusive from the index of active
+   * requests, reading the request from the database only if this scheduler
+   * has not seen it before.
+   *
+   * @param requestId
+   *          the ID of a request with stages in progress.
+   * @return {@code true} if the request is exclusive.
+   */
+  private boolean isExclusiveRequest(long requestId) {
+    Boolean exclusive = activeRequests.get(requestId);
+    if (null == exclusive) {
+      Request request = db.getRequest(requestId);
+      if (null == request) {
+        return false;
+      }
+
+      exclusive = request.isExclusive();
+      activeRequests.put(requestId, exclusive);
+    }
+
+    return exclusive;
+  }
+
   /**
    * Returns filtered list of stages following the rule:
    * 1) remove stages that has the same host. Leave only first stage, the rest that have same host of any operation will be filtered
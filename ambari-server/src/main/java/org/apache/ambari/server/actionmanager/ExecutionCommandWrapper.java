@@ -24,15 +24,12 @@ import org.apache.ambari.server.agent.ExecutionCommand;
 import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
-import org.apache.ambari.server.state.Config;
 import org.apache.ambari.server.state.ConfigHelper;
 import org.apache.ambari.server.utils.StageUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
 
 public class ExecutionCommandWrapper {
   @Inject
@@ -66,21 +63,18 @@ public class ExecutionCommandWrapper {
         // global:version1:{a1:A1,b1:B1,d1:D1} + global:{a1:A2,c1:C1,DELETED_d1:x} ==>
         // global:{a1:A2,b1:B1,c1:C1}
         Clusters clusters = injector.getInstance(Clusters.class);
-        HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
-        Long clusterId = hostRoleCommandDAO.findByPK(
-            executionCommand.getTaskId()).getStage().getClusterId();
 
         try {
-          Cluster cluster = clusters.getClusterById(clusterId);
+          Cluster cluster = getCluster(clusters);
           ConfigHelper configHelper = injector.getInstance(ConfigHelper.class);
 
-          Map<String, Map<String, String>> configProperties = configHelper
-            .getEffectiveConfigProperties(cluster,
-              executionCommand.getConfigurationTags());
+          // commands with the same tags share the same effective configs
+          ConfigHelper.EffectiveConfigs effectiveConfigs = configHelper.getEffectiveConfigs(
+              cluster, executionCommand.getConfigurationTags());
 
           // Apply the configurations saved with the Execution Cmd on top of
           // derived configs - This will take care of all the hacks
-          for (Map.Entry<String, Map<String, String>> entry : configProperties.entrySet()) {
+          for (Map.Entry<String, Map<String, String>> entry : effectiveConfigs.getProperties().entrySet()) {
             String type = entry.getKey();
             Map<String, String> allLevelMergedConfig = entry.getValue();
 
@@ -92,13 +86,12 @@ public class ExecutionCommandWrapper {
               executionCommand.getConfigurations().get(type).putAll(mergedConfig);
 
             } else {
-              executionCommand.getConfigurations().put(type, new HashMap<String, String>());
-              executionCommand.getConfigurations().get(type).putAll(allLevelMergedConfig);
+              // nothing to apply; share the unmodifiable effective config
+              executionCommand.getConfigurations().put(type, allLevelMergedConfig);
             }
           }
 
-          Map<String, Map<String, Map<String, String>>> configAttributes = configHelper.getEffectiveConfigAttributes(cluster,
-              executionCommand.getConfigurationTags());
+          Map<String, Map<String, Map<String, String>>> configAttributes = effectiveConfigs.getAttributes();
 
           for (Map.Entry<String, Map<String, Map<String, String>>> attributesOccurance : configAttributes.entrySet()) {
             String type = attributesOccurance.getKey();
@@ -106,9 +99,10 @@ public class ExecutionCommandWrapper {
 
             if (executionCommand.getConfigurationAttributes() != null) {
               if (!executionCommand.getConfigurationAttributes().containsKey(type)) {
-                executionCommand.getConfigurationAttributes().put(type, new TreeMap<String, Map<String, String>>());
+                executionCommand.getConfigurationAttributes().put(type, attributes);
+              } else {
+                configHelper.cloneAttributesMap(attributes, executionCommand.getConfigurationAttributes().get(type));
               }
-              configHelper.cloneAttributesMap(attributes, executionCommand.getConfigurationAttributes().get(type));
             }
           }
 
@@ -125,6 +119,27 @@ public class ExecutionCommandWrapper {
     }
   }
 
+  /**
+   * Get the cluster of the command, by name if the command carries one and
+   * through its task otherwise.
+   *
+   * @param clusters  the clusters
+   *
+   * @return the cluster
+   *
+   * @throws AmbariException if the cluster can't be found
+   */
+  private Cluster getCluster(Clusters clusters) throws AmbariException {
+    String clusterName = executionCommand.getClusterName();
+    if (clusterName != null && !clusterName.isEmpty()) {
+      return clusters.getCluster(clusterName);
+    }
+    HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
+    Long clusterId = hostRoleCommandDAO.findByPK(
+        executionCommand.getTaskId()).getStage().getClusterId();
+    return clusters.getClusterById(clusterId);
+  }
+
   public String getJson() {
     if (jsonExecutionCommand != null) {
       return jsonExecutionCommand;
@@ -19,12 +19,17 @@ package org.apache.ambari.server.agent;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.ambari.server.agent.AgentCommand.AgentCommandType;
 import org.slf4j.Logger;
@@ -37,27 +42,22 @@ public class ActionQueue {
 
   private static Logger LOG = LoggerFactory.getLogger(ActionQueue.class);
 
-  final ConcurrentMap<String, Queue<AgentCommand>> hostQueues;
+  final ConcurrentMap<String, HostQueue> hostQueues;
 
   public ActionQueue() {
-    hostQueues = new ConcurrentHashMap<String, Queue<AgentCommand>>();
+    hostQueues = new ConcurrentHashMap<String, HostQueue>();
   }
 
-  private Queue<AgentCommand> getQueue(String hostname) {
+  private HostQueue getQueue(String hostname) {
     return hostQueues.get(hostname);
   }
 
-  /**
-   * Adds command to queue for given hostname
-   * @param hostname - hostname of node
-   * @param cmd - command to add to queue
-   */
-  public void enqueue(String hostname, AgentCommand cmd) {
-    Queue<AgentCommand> q = getQueue(hostname);
+  private HostQueue getOrCreateQueue(String hostname) {
+    HostQueue q = getQueue(hostname);
 
     if (q == null) {
       //try to add new queue to map if not found
-      q = hostQueues.putIfAbsent(hostname, new ConcurrentLinkedQueue<AgentCommand>());
+      q = hostQueues.putIfAbsent(hostname, new HostQueue());
       if (q == null) {
         //null means that new queue was added to map, get it
         q = getQueue(hostname);
@@ -65,7 +65,17 @@ public class ActionQueue {
       //otherwise we got existing queue (and put nothing!)
     }
 
-    q.add(cmd);
+    return q;
+  }
+
+  /**
+   * Adds command to queue for given hostname. Any heartbeat waiting for
+   * commands for the host is woken up.
+   * @param hostname - hostname of node
+   * @param cmd - command to add to queue
+   */
+  public void enqueue(String hostname, AgentCommand cmd) {
+    getOrCreateQueue(hostname).add(cmd);
   }
 
   /**
@@ -74,7 +84,7 @@ public class ActionQueue {
    * @return
    */
   public AgentCommand dequeue(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostQueue q = getQueue(hostname);
     if (q == null) {
       return null;
     }
@@ -98,24 +108,12 @@ public class ActionQueue {
       return Collections.emptyList();
     }
 
-    Queue<AgentCommand> queue = getQueue(hostname);
+    HostQueue queue = getQueue(hostname);
     if (null == queue) {
       return null;
     }
 
-    List<AgentCommand> removedCommands = new ArrayList<AgentCommand>(
-        queue.size());
-
-    Iterator<AgentCommand> iterator = queue.iterator();
-    while (iterator.hasNext()) {
-      AgentCommand command = iterator.next();
-      if (command.getCommandType() == commandType) {
-        removedCommands.add(command);
-        iterator.remove();
-      }
-    }
-
-    return removedCommands;
+    return queue.removeByType(commandType);
   }
 
   /**
@@ -126,29 +124,16 @@ public class ActionQueue {
    * @return
    */
   public AgentCommand dequeue(String hostname, String commandId) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostQueue q = getQueue(hostname);
     if (q == null) {
       return null;
     }
-    if (q.isEmpty()) {
-      return null;
-    } else {
-      AgentCommand c = null;
-      for (Iterator<AgentCommand> it = q.iterator(); it.hasNext();) {
-        AgentCommand ac = it.next();
-        if (ac instanceof ExecutionCommand && ((ExecutionCommand) ac)
-          .getCommandId().equals(commandId)) {
-          c = ac;
-          it.remove();
-          break;
-        }
-      }
-      return c;
-    }
+
+    return q.removeById(commandId);
   }
 
   public int size(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostQueue q = getQueue(hostname);
     if (q == null) {
       return 0;
     }
@@ -156,22 +141,185 @@ public class ActionQueue {
   }
 
   public List<AgentCommand> dequeueAll(String hostname) {
-    Queue<AgentCommand> q = getQueue(hostname);
+    HostQueue q = getQueue(hostname);
     if (q == null) {
       return null;
     }
 
-    List<AgentCommand> l = new ArrayList<AgentCommand>();
+    return q.drain();
+  }
+
+  /**
+   * Blocks until there is at least one command queued for the given host or
+   * until the timeout elapses.
+   *
+   * @param hostname
+   *          the host to wait for commands for (not {@code null}).
+   * @param timeout
+   *          the maximum time to wait, in milliseconds.
+   * @return {@code true} if there are commands queued for the host.
+   * @throws InterruptedException
+   *           if the waiting thread is interrupted.
+   */
+  public boolean awaitCommands(String hostname, long timeout)
+      throws InterruptedException {
+    return getOrCreateQueue(hostname).await(timeout);
+  }
+
+  /**
+   * The commands for a single host in the order they were enqueued. Execution
+   * commands are indexed by command id and all commands are indexed by type so
+   * that targeted removals don't scan the whole queue. All access is
+   * synchronized on the queue, which is also used to signal threads waiting
+   * for commands.
+   */
+  static final class HostQueue {
+
+    /**
+     * The queued commands keyed by their enqueue sequence number.
+     */
+    private final Map<Long, QueuedCommand> commands = new LinkedHashMap<Long, QueuedCommand>();
+
+    /**
+     * Execution command ids to the sequence numbers of the commands with that
+     * id. The same command may be queued more than once if it is rescheduled.
+     */
+    private final Map<String, Set<Long>> commandsById = new HashMap<String, Set<Long>>();
+
+    /**
+     * Command types to the sequence numbers of the commands of that type.
+     */
+    private final Map<AgentCommandType, Set<Long>> commandsByType =
+        new EnumMap<AgentCommandType, Set<Long>>(AgentCommandType.class);
+
+    private long nextSequence = 0;
 
-    AgentCommand command;
-    do {
-      //get commands from queue until empty
-      command = q.poll();
-      if (command != null) {
-        l.add(command);
+    synchronized void add(AgentCommand command) {
+      QueuedCommand queued = new QueuedCommand(nextSequence++, command);
+      commands.put(queued.sequence, queued);
+      index(commandsById, queued.commandId, queued.sequence);
+      index(commandsByType, queued.commandType, queued.sequence);
+
+      notifyAll();
+    }
+
+    synchronized AgentCommand poll() {
+      Iterator<QueuedCommand> iterator = commands.values().iterator();
+      if (!iterator.hasNext()) {
+        return null;
       }
-    } while (command != null);
 
-    return l;
+      QueuedCommand queued = iterator.next();
+      iterator.remove();
+      unindex(queued);
+      return queued.command;
+    }
+
+    synchronized AgentCommand removeById(String commandId) {
+      Set<Long> sequences = commandsById.get(commandId);
+      if (null == sequences) {
+        return null;
+      }
+
+      // the oldest command with the id is removed first
+      QueuedCommand queued = commands.remove(sequences.iterator().next());
+      unindex(queued);
+      return queued.command;
+    }
+
+    synchronized List<AgentCommand> removeByType(AgentCommandType commandType) {
+      Set<Long> sequences = commandsByType.get(commandType);
+      if (null == sequences) {
+        return new ArrayList<AgentCommand>(0);
+      }
+
+      List<AgentCommand> removedCommands = new ArrayList<AgentCommand>(sequences.size());
+      for (Long sequence : new ArrayList<Long>(sequences)) {
+        QueuedCommand queued = commands.remove(sequence);
+        unindex(queued);
+        removedCommands.add(queued.command);
+      }
+
+      return removedCommands;
+    }
+
+    synchronized List<AgentCommand> drain() {
+      List<AgentCommand> drained = new ArrayList<AgentCommand>(commands.size());
+      for (QueuedCommand queued : commands.values()) {
+        drained.add(queued.command);
+      }
+
+      commands.clear();
+      commandsById.clear();
+      commandsByType.clear();
+      return drained;
+    }
+
+    synchronized int size() {
+      return commands.size();
+    }
+
+    synchronized boolean await(long timeout) throws InterruptedException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      long remaining = timeout;
+      while (commands.isEmpty() && remaining > 0) {
+        wait(remaining);
+        remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      }
+
+      return !commands.isEmpty();
+    }
+
+    private void unindex(QueuedCommand queued) {
+      unindex(commandsById, queued.commandId, queued.sequence);
+      unindex(commandsByType, queued.commandType, queued.sequence);
+    }
+
+    private static <K> void index(Map<K, Set<Long>> index, K key, long sequence) {
+      if (null == key) {
+        return;
+      }
+
+      Set<Long> sequences = index.get(key);
+      if (null == sequences) {
+        sequences = new LinkedHashSet<Long>();
+        index.put(key, sequences);
+      }
+
+      sequences.add(sequence);
+    }
+
+    private static <K> void unindex(Map<K, Set<Long>> index, K key, long sequence) {
+      if (null == key) {
+        return;
+      }
+
+      Set<Long> sequences = index.get(key);
+      if (null != sequences) {
+        sequences.remove(sequence);
+        if (sequences.isEmpty()) {
+          index.remove(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * A queued command along with the keys it was indexed under when it was
+   * enqueued.
+   */
+  private static final class QueuedCommand {
+    private final long sequence;
+    private final AgentCommand command;
+    private final String commandId;
+    private final AgentCommandType commandType;
+
+    private QueuedCommand(long sequence, AgentCommand command) {
+      this.sequence = sequence;
+      this.command = command;
+      commandType = command.getCommandType();
+      commandId = command instanceof ExecutionCommand
+          ? ((ExecutionCommand) command).getCommandId() : null;
+    }
   }
 }
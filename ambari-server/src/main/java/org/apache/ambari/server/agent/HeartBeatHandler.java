@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.regex.Pattern;
 
 import com.google.common.reflect.TypeToken;
@@ -45,8 +46,8 @@ import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
+import org.apache.ambari.server.events.AlertBatchReceivedEvent;
 import org.apache.ambari.server.events.AlertEvent;
-import org.apache.ambari.server.events.AlertReceivedEvent;
 import org.apache.ambari.server.events.HostComponentVersionEvent;
 import org.apache.ambari.server.events.publishers.AlertEventPublisher;
 import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
@@ -80,6 +81,7 @@ import org.apache.ambari.server.state.alert.AlertDefinitionHash;
 import org.apache.ambari.server.state.fsm.InvalidStateTransitionException;
 import org.apache.ambari.server.state.host.HostHealthyHeartbeatEvent;
 import org.apache.ambari.server.state.host.HostRegistrationRequestEvent;
+import org.apache.ambari.server.state.host.HostStateWriteBehindBuffer;
 import org.apache.ambari.server.state.host.HostStatusUpdatesReceivedEvent;
 import org.apache.ambari.server.state.host.HostUnhealthyHeartbeatEvent;
 import org.apache.ambari.server.state.scheduler.RequestExecution;
@@ -158,10 +160,22 @@ public class HeartBeatHandler {
   @Inject
   private KerberosPrincipalHostDAO kerberosPrincipalHostDAO;
 
+  /**
+   * Buffers host status changes so they are persisted in batches.
+   */
+  @Inject
+  private HostStateWriteBehindBuffer hostStateWriteBehindBuffer;
+
   private Map<String, Long> hostResponseIds = new ConcurrentHashMap<String, Long>();
 
   private Map<String, HeartBeatResponse> hostResponses = new ConcurrentHashMap<String, HeartBeatResponse>();
 
+  /**
+   * Limits the number of heartbeats which may be held waiting for commands,
+   * since each one occupies an agent connector thread. Created on first use.
+   */
+  private volatile Semaphore longPollPermits;
+
   @Inject
   public HeartBeatHandler(Clusters fsm, ActionQueue aq, ActionManager am,
                           Injector injector) {
@@ -182,6 +196,26 @@ public class HeartBeatHandler {
 
   public HeartBeatResponse handleHeartBeat(HeartBeat heartbeat)
       throws AmbariException {
+    return handleHeartBeat(heartbeat, 0L);
+  }
+
+  /**
+   * Handles a heartbeat from an agent. If the host has no queued commands, the
+   * response may be held for up to {@code commandWait} milliseconds so that
+   * commands enqueued in the meantime are delivered immediately instead of on
+   * the next heartbeat.
+   *
+   * @param heartbeat
+   *          the heartbeat to process.
+   * @param commandWait
+   *          the longest time, in milliseconds, that the agent is willing to
+   *          wait for commands; it is capped by
+   *          {@link Configuration#getAgentCommandsLongPollMaxWait()}.
+   * @return the heartbeat response.
+   * @throws AmbariException
+   */
+  public HeartBeatResponse handleHeartBeat(HeartBeat heartbeat, long commandWait)
+      throws AmbariException {
     long now = System.currentTimeMillis();
     if(heartbeat.getAgentEnv() != null && heartbeat.getAgentEnv().getHostHealth() != null) {
       heartbeat.getAgentEnv().getHostHealth().setServerTimeStampAtReporting(now);
@@ -264,6 +298,7 @@ public class HeartBeatHandler {
 
     // Send commands if node is active
     if (hostObject.getState().equals(HostState.HEALTHY)) {
+      awaitCommands(hostname, commandWait);
       sendCommands(hostname, response);
       annotateResponse(hostname, response);
     }
@@ -272,9 +307,57 @@ public class HeartBeatHandler {
   }
 
   /**
-   * Extracts all of the {@link Alert}s from the heartbeat and fires
-   * {@link AlertEvent}s for each one. If there is a problem looking up the
-   * cluster, then alerts will not be processed.
+   * Blocks until commands are queued for the host or the wait elapses. The
+   * wait is skipped if commands are already queued, if long polling is
+   * disabled, or if too many heartbeats are already waiting.
+   *
+   * @param hostname
+   *          the host to wait for commands for.
+   * @param commandWait
+   *          the time, in milliseconds, requested by the agent.
+   */
+  private void awaitCommands(String hostname, long commandWait) {
+    if (commandWait <= 0 || actionQueue.size(hostname) > 0) {
+      return;
+    }
+
+    long wait = Math.min(commandWait, config.getAgentCommandsLongPollMaxWait());
+    if (wait <= 0) {
+      return;
+    }
+
+    Semaphore permits = longPollPermits;
+    if (null == permits) {
+      synchronized (this) {
+        if (null == longPollPermits) {
+          longPollPermits = new Semaphore(
+              Math.max(0, config.getAgentCommandsLongPollMaxWaiters()));
+        }
+
+        permits = longPollPermits;
+      }
+    }
+
+    if (!permits.tryAcquire()) {
+      LOG.debug("Too many heartbeats are waiting for commands, responding to {} immediately",
+          hostname);
+      return;
+    }
+
+    try {
+      actionQueue.awaitCommands(hostname, wait);
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Extracts all of the {@link Alert}s from the heartbeat and fires an
+   * {@link AlertBatchReceivedEvent} for each cluster that they belong to. If
+   * there is a problem looking up a cluster, then its alerts will not be
+   * processed.
    *
    * @param heartbeat
    *          the heartbeat to process.
@@ -288,20 +371,31 @@ public class HeartBeatHandler {
     }
 
     if (null != heartbeat.getAlerts()) {
+      Map<String, List<Alert>> alertsByCluster = new HashMap<String, List<Alert>>();
       for (Alert alert : heartbeat.getAlerts()) {
         if (null == alert.getHost()) {
           alert.setHost(hostname);
         }
 
+        List<Alert> alerts = alertsByCluster.get(alert.getCluster());
+        if (null == alerts) {
+          alerts = new ArrayList<Alert>();
+          alertsByCluster.put(alert.getCluster(), alerts);
+        }
+
+        alerts.add(alert);
+      }
+
+      for (Map.Entry<String, List<Alert>> entry : alertsByCluster.entrySet()) {
         try {
-          Cluster cluster = clusterFsm.getCluster(alert.getCluster());
-          AlertEvent event = new AlertReceivedEvent(cluster.getClusterId(),
-              alert);
+          Cluster cluster = clusterFsm.getCluster(entry.getKey());
+          AlertEvent event = new AlertBatchReceivedEvent(
+              cluster.getClusterId(), entry.getValue());
           alertEventPublisher.publish(event);
         } catch (AmbariException ambariException) {
           LOG.warn(
               "Unable to process alerts because the cluster {} does not exist",
-              alert.getCluster());
+              entry.getKey());
         }
       }
     }
@@ -394,14 +488,14 @@ public class HeartBeatHandler {
         }
 
         host.setStatus(healthStatus.name());
-        host.persist();
+        hostStateWriteBehindBuffer.markDirty(host);
       }
 
       //If host doesn't belong to any cluster
       if ((clusterFsm.getClustersForHost(host.getHostName())).size() == 0) {
         healthStatus = HealthStatus.HEALTHY;
         host.setStatus(healthStatus.name());
-        host.persist();
+        hostStateWriteBehindBuffer.markDirty(host);
       }
     }
   }
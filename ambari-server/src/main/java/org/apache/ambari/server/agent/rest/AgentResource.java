@@ -20,11 +20,13 @@ package org.apache.ambari.server.agent.rest;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
@@ -107,20 +109,23 @@ public class AgentResource {
    * @response.representation.406.doc Error in heartbeat message format
    * @response.representation.408.doc Request Timed out
    * @param message Heartbeat message
+   * @param commandWait the number of milliseconds the agent is willing to wait
+   *  for commands when none are queued for it; 0 responds immediately
    * @throws Exception
    */
   @Path("heartbeat/{hostName}")
   @POST
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces({MediaType.APPLICATION_JSON})
-  public HeartBeatResponse heartbeat(HeartBeat message)
+  public HeartBeatResponse heartbeat(HeartBeat message,
+      @QueryParam("wait") @DefaultValue("0") long commandWait)
       throws WebApplicationException {
     if (LOG.isDebugEnabled()) {
       LOG.debug("Received Heartbeat message " + message);
     }
     HeartBeatResponse heartBeatResponse;
     try {
-      heartBeatResponse = hh.handleHeartBeat(message);
+      heartBeatResponse = hh.handleHeartBeat(message, commandWait);
       if (LOG.isDebugEnabled()) {
         LOG.debug("Sending heartbeat response with response id " + heartBeatResponse.getResponseId());
         LOG.debug("Response details " + heartBeatResponse);
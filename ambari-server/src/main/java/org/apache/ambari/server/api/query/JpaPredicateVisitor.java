@@ -91,6 +91,26 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
     m_root = m_query.from(entityClass);
   }
 
+  /**
+   * Constructor for a visitor which builds its predicate against a new root of
+   * the given query rather than of an entity query, for example to count the
+   * matching entities.
+   *
+   * @param entityManager
+   *          the EM used to get a {@link CriteriaBuilder}.
+   * @param entityClass
+   *          the entity class being queried from.
+   * @param query
+   *          the query to add the entity root to (not {@code null}).
+   */
+  public JpaPredicateVisitor(EntityManager entityManager, Class<T> entityClass,
+      CriteriaQuery<?> query) {
+    m_entityManager = entityManager;
+    m_builder = m_entityManager.getCriteriaBuilder();
+    m_query = null;
+    m_root = query.from(entityClass);
+  }
+
   /**
    * Gets the entity class that is the root type in the JPA {@code from} clause.
    *
@@ -123,12 +143,22 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
   /**
    * Gets the query to use along with {@link #getJpaPredicate()}.
    *
-   * @return the query (not {@code null}).
+   * @return the query, or {@code null} if the visitor was created for another
+   *         query.
    */
   public CriteriaQuery<T> getCriteriaQuery() {
     return m_query;
   }
 
+  /**
+   * Gets the root that the predicate and any sort orders are built against.
+   *
+   * @return the root (not {@code null}).
+   */
+  public Root<T> getRoot() {
+    return m_root;
+  }
+
   /**
    * Gets the criteria builder used to construct the query and predicates.
    *
@@ -169,7 +199,6 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
       return;
     }
 
-    String operator = predicate.getOperator();
     Comparable<?> value = predicate.getValue();
 
     // convert string to enum for proper JPA comparisons
@@ -179,23 +208,55 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
       value = Enum.valueOf(enumClass, value.toString());
     }
 
-    javax.persistence.criteria.Predicate jpaPredicate = null;
+    javax.persistence.criteria.Predicate jpaPredicate = compare(path,
+        predicate.getOperator(), value);
+
+    if (null == jpaPredicate) {
+      return;
+    }
+
+    addPredicate(jpaPredicate);
+  }
+
+  /**
+   * Builds a JPA {@link javax.persistence.criteria.Predicate} comparing the
+   * specified path to a value.
+   *
+   * @param path
+   *          the path to compare (not {@code null}).
+   * @param operator
+   *          the Ambari comparison operator, such as {@code <=}.
+   * @param value
+   *          the value to compare to.
+   * @return the predicate, or {@code null} if the operator is not supported.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  protected javax.persistence.criteria.Predicate compare(Path<Comparable> path,
+      String operator, Comparable value) {
     if ("=".equals(operator)) {
-      jpaPredicate = m_builder.equal(path, value);
+      return m_builder.equal(path, value);
     } else if ("<".equals(operator)) {
-      jpaPredicate = m_builder.lessThan(path, value);
+      return m_builder.lessThan(path, value);
     } else if ("<=".equals(operator)) {
-      jpaPredicate = m_builder.lessThanOrEqualTo(path, value);
+      return m_builder.lessThanOrEqualTo(path, value);
     } else if (">".equals(operator)) {
-      jpaPredicate = m_builder.greaterThan(path, value);
+      return m_builder.greaterThan(path, value);
     } else if (">=".equals(operator)) {
-      jpaPredicate = m_builder.greaterThanOrEqualTo(path, value);
+      return m_builder.greaterThanOrEqualTo(path, value);
     }
 
-    if (null == jpaPredicate) {
-      return;
-    }
+    return null;
+  }
 
+  /**
+   * Adds a JPA {@link javax.persistence.criteria.Predicate} to the logical
+   * statement currently being built, or makes it the final predicate if there
+   * is none.
+   *
+   * @param jpaPredicate
+   *          the predicate to add (not {@code null}).
+   */
+  protected void addPredicate(javax.persistence.criteria.Predicate jpaPredicate) {
     if (null == m_queue.peekLast()) {
       m_lastPredicate = jpaPredicate;
     } else {
@@ -237,11 +298,7 @@ public abstract class JpaPredicateVisitor<T> implements PredicateVisitor {
       jpaPredicate = m_builder.or(array);
     }
 
-    if (null == m_queue.peekLast()) {
-      m_lastPredicate = jpaPredicate;
-    } else {
-      m_queue.peekLast().add(jpaPredicate);
-    }
+    addPredicate(jpaPredicate);
   }
 
   /**
@@ -18,6 +18,7 @@
 
 package org.apache.ambari.server.api.services;
 
+import org.apache.ambari.server.api.predicate.QueryLexer;
 import org.apache.ambari.server.api.resources.ResourceInstance;
 import org.apache.ambari.server.api.resources.ResourceInstanceFactory;
 import org.apache.ambari.server.api.resources.ResourceInstanceFactoryImpl;
@@ -31,6 +32,7 @@ import org.eclipse.jetty.util.ajax.JSON;
 
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.util.Iterator;
@@ -52,6 +54,11 @@ public abstract class BaseService {
    */
   private ResultSerializer m_serializer = new JsonSerializer();
 
+  /**
+   * Result serializer used when 'pretty=true' is specified in the query string.
+   */
+  private ResultSerializer m_prettySerializer = new JsonSerializer(true);
+
 
   /**
    * Requests are funneled through this method so that common logic can be executed.
@@ -106,7 +113,7 @@ public abstract class BaseService {
       result =  new ResultImpl(new ResultStatus(ResultStatus.STATUS.BAD_REQUEST, e.getMessage()));
     }
 
-    ResultSerializer serializer = mediaType == null ? getResultSerializer() : getResultSerializer(mediaType);
+    ResultSerializer serializer = mediaType == null ? getResultSerializer(uriInfo) : getResultSerializer(mediaType);
 
     Response.ResponseBuilder builder = Response.status(result.getStatus().getStatusCode()).entity(
         serializer.serialize(result));
@@ -178,6 +185,22 @@ public abstract class BaseService {
     throw new IllegalArgumentException("The media type " + mediaType + " is not supported.");
   }
 
+  /**
+   * Get the serializer for the given request.  JSON is only indented if
+   * 'pretty=true' is specified in the query string.
+   *
+   * @param uriInfo  uri information
+   *
+   * @return the result serializer
+   */
+  protected ResultSerializer getResultSerializer(UriInfo uriInfo) {
+    MultivaluedMap<String, String> queryParameters =
+        uriInfo == null ? null : uriInfo.getQueryParameters();
+    String pretty = queryParameters == null ? null : queryParameters.getFirst(QueryLexer.QUERY_PRETTY);
+
+    return pretty != null && pretty.equalsIgnoreCase("true") ? m_prettySerializer : getResultSerializer();
+  }
+
   /**
    * Get the default serializer.
    *
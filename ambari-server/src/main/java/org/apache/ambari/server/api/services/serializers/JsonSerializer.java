@@ -23,19 +23,26 @@ import org.apache.ambari.server.api.services.Result;
 import org.apache.ambari.server.api.util.TreeNodeImpl;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.api.util.TreeNode;
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
 import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.SerializationConfig;
 import org.codehaus.jackson.util.DefaultPrettyPrinter;
 
+import javax.ws.rs.core.StreamingOutput;
 import java.io.*;
-import java.nio.charset.Charset;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * JSON serializer.
  * Responsible for representing a result as JSON.
+ * <p/>
+ * Results are not rendered up front.  {@link #serialize(Result)} returns a
+ * {@link StreamingOutput} which writes the result tree straight to the response
+ * stream when the entity is written; its {@code toString()} renders the same
+ * JSON as a string.
  */
 public class JsonSerializer implements ResultSerializer {
 
@@ -47,41 +54,49 @@ public class JsonSerializer implements ResultSerializer {
   ObjectMapper m_mapper = new ObjectMapper(m_factory);
 
   /**
-   * Generator which writes JSON.
+   * Whether the generated JSON is indented.
    */
-  JsonGenerator m_generator;
+  private final boolean m_prettyPrint;
 
 
-  @Override
-  public Object serialize(Result result) {
-    try {
-      ByteArrayOutputStream bytesOut = init();
-
-      if (result.getStatus().isErrorState()) {
-        return serializeError(result.getStatus());
-      }
+  /**
+   * Create a serializer which writes compact JSON.
+   */
+  public JsonSerializer() {
+    this(false);
+  }
 
-      TreeNode<Resource> treeNode = result.getResultTree();
-      processNode(treeNode);
+  /**
+   * Create a serializer.
+   *
+   * @param prettyPrint  whether the generated JSON should be indented
+   */
+  public JsonSerializer(boolean prettyPrint) {
+    m_prettyPrint = prettyPrint;
+    // the response stream is owned by the container
+    m_factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // don't flush the response stream after every property value
+    m_mapper.configure(SerializationConfig.Feature.FLUSH_AFTER_WRITE_VALUE, false);
+  }
 
-      m_generator.close();
-      return bytesOut.toString("UTF-8");
-    } catch (IOException e) {
-      //todo: exception handling.  Create ResultStatus 500 and call serializeError
-      throw new RuntimeException("Unable to serialize to json: " + e, e);
+  @Override
+  public Object serialize(Result result) {
+    if (result.getStatus().isErrorState()) {
+      return serializeError(result.getStatus());
     }
+    return new JsonStreamingOutput(result.getResultTree());
   }
 
   @Override
   public Object serializeError(ResultStatus error) {
     try {
-      ByteArrayOutputStream bytesOut = init();
-      //m_mapper.writeValue(m_generator, error);
-      m_generator.writeStartObject();
-      m_generator.writeNumberField("status", error.getStatus().getStatus());
-      m_generator.writeStringField("message", error.getMessage());
-      m_generator.writeEndObject();
-      m_generator.close();
+      ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+      JsonGenerator generator = createJsonGenerator(bytesOut);
+      generator.writeStartObject();
+      generator.writeNumberField("status", error.getStatus().getStatus());
+      generator.writeStringField("message", error.getMessage());
+      generator.writeEndObject();
+      generator.close();
       return bytesOut.toString("UTF-8");
 
     } catch (IOException e) {
@@ -90,47 +105,50 @@ public class JsonSerializer implements ResultSerializer {
     }
   }
 
-  private ByteArrayOutputStream init() throws IOException {
-    ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
-    m_generator = createJsonGenerator(bytesOut);
-
-    DefaultPrettyPrinter p = new DefaultPrettyPrinter();
-    p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
-    m_generator.setPrettyPrinter(p);
-
-    return bytesOut;
+  /**
+   * Write the given result tree as JSON to the given stream.
+   *
+   * @param treeNode  the result tree
+   * @param out       the stream to write to
+   *
+   * @throws IOException if unable to write to the stream
+   */
+  void write(TreeNode<Resource> treeNode, OutputStream out) throws IOException {
+    JsonGenerator generator = createJsonGenerator(out);
+    processNode(generator, treeNode);
+    generator.close();
   }
 
-  private void processNode(TreeNode<Resource> node) throws IOException {
+  private void processNode(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     if (isObject(node)) {
-      m_generator.writeStartObject();
+      generator.writeStartObject();
 
-      writeHref(node);
-      writeItemCount(node);
+      writeHref(generator, node);
+      writeItemCount(generator, node);
 
       Resource r = node.getObject();
       if (r != null) {
-        handleResourceProperties(getTreeProperties(r.getPropertiesMap()));
+        handleResourceProperties(generator, getTreeProperties(r.getPropertiesMap()));
       }
     }
 
     if (isArray(node)) {
       if (node.getName() != null)
-        m_generator.writeArrayFieldStart(node.getName());
+        generator.writeArrayFieldStart(node.getName());
       else
-        m_generator.writeStartArray();
+        generator.writeStartArray();
     }
 
     for (TreeNode<Resource> child : node.getChildren()) {
-      processNode(child);
+      processNode(generator, child);
     }
 
     if (isArray(node)) {
-      m_generator.writeEndArray();
+      generator.writeEndArray();
     }
 
     if (isObject(node)) {
-      m_generator.writeEndObject();
+      generator.writeEndObject();
     }
   }
 
@@ -180,52 +198,79 @@ public class JsonSerializer implements ResultSerializer {
     return treeProperties;
   }
 
-  private void handleResourceProperties(TreeNode<Map<String, Object>> node) throws IOException {
+  private void handleResourceProperties(JsonGenerator generator,
+                                        TreeNode<Map<String, Object>> node) throws IOException {
     String category = node.getName();
 
     if (category != null) {
-      m_generator.writeFieldName(category);
-      m_generator.writeStartObject();
+      generator.writeFieldName(category);
+      generator.writeStartObject();
     }
 
     for (Map.Entry<String, Object> entry : node.getObject().entrySet()) {
-      m_generator.writeFieldName(entry.getKey());
-      m_mapper.writeValue(m_generator, entry.getValue());
+      generator.writeFieldName(entry.getKey());
+      m_mapper.writeValue(generator, entry.getValue());
     }
 
     for (TreeNode<Map<String, Object>> n : node.getChildren()) {
-      handleResourceProperties(n);
+      handleResourceProperties(generator, n);
     }
 
     if (category != null) {
-      m_generator.writeEndObject();
+      generator.writeEndObject();
     }
   }
 
-  private JsonGenerator createJsonGenerator(ByteArrayOutputStream baos) throws IOException {
-    JsonGenerator generator = m_factory.createJsonGenerator(new OutputStreamWriter(baos,
-        Charset.forName("UTF-8").newEncoder()));
+  private JsonGenerator createJsonGenerator(OutputStream out) throws IOException {
+    JsonGenerator generator = m_factory.createJsonGenerator(out, JsonEncoding.UTF8);
 
-    DefaultPrettyPrinter p = new DefaultPrettyPrinter();
-    p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
-    generator.setPrettyPrinter(p);
+    if (m_prettyPrint) {
+      DefaultPrettyPrinter p = new DefaultPrettyPrinter();
+      p.indentArraysWith(new DefaultPrettyPrinter.Lf2SpacesIndenter());
+      generator.setPrettyPrinter(p);
+    }
 
     return generator;
   }
 
-  private void writeHref(TreeNode<Resource> node) throws IOException {
+  private void writeHref(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     String hrefProp = node.getProperty("href");
     if (hrefProp != null) {
-      m_generator.writeStringField("href", hrefProp);
+      generator.writeStringField("href", hrefProp);
     }
   }
 
-  private void writeItemCount(TreeNode<Resource> node) throws IOException {
+  private void writeItemCount(JsonGenerator generator, TreeNode<Resource> node) throws IOException {
     String countProp = node.getProperty("count");
     if (countProp != null) {
-      m_generator.writeStringField("itemTotal", countProp);
-      // Write once
-      node.setProperty("count", null);
+      generator.writeStringField("itemTotal", countProp);
+    }
+  }
+
+  /**
+   * Response entity which streams a result tree as JSON.
+   */
+  private class JsonStreamingOutput implements StreamingOutput {
+    private final TreeNode<Resource> m_treeNode;
+
+    private JsonStreamingOutput(TreeNode<Resource> treeNode) {
+      m_treeNode = treeNode;
+    }
+
+    @Override
+    public void write(OutputStream out) throws IOException {
+      JsonSerializer.this.write(m_treeNode, out);
+    }
+
+    @Override
+    public String toString() {
+      try {
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        write(bytesOut);
+        return bytesOut.toString("UTF-8");
+      } catch (IOException e) {
+        throw new RuntimeException("Unable to serialize to json: " + e, e);
+      }
     }
   }
 }
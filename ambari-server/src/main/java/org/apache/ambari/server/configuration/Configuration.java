@@ -157,6 +157,7 @@ public class Configuration {
   public static final String SERVER_JDBC_CONNECTION_POOL_MAX_IDLE_TIME = "server.jdbc.connection-pool.max-idle-time";
   public static final String SERVER_JDBC_CONNECTION_POOL_MAX_IDLE_TIME_EXCESS = "server.jdbc.connection-pool.max-idle-time-excess";
   public static final String SERVER_JDBC_CONNECTION_POOL_IDLE_TEST_INTERVAL = "server.jdbc.connection-pool.idle-test-interval";
+  public static final String SERVER_JDBC_BATCH_WRITING_SIZE = "server.jdbc.batch-writing.size";
 
   public static final String SERVER_JDBC_RCA_USER_NAME_KEY = "server.jdbc.rca.user.name";
   public static final String SERVER_JDBC_RCA_USER_PASSWD_KEY = "server.jdbc.rca.user.passwd";
@@ -324,12 +325,66 @@ public class Configuration {
   private static final String DEFAULT_JDBC_POOL_EXCESS_MAX_IDLE_TIME_SECONDS = "0";
   private static final String DEFAULT_JDBC_POOL_MAX_AGE_SECONDS = "0";
   private static final String DEFAULT_JDBC_POOL_IDLE_TEST_INTERVAL = "7200";
+  private static final String DEFAULT_JDBC_BATCH_WRITING_SIZE = "100";
 
   /**
    * The full path to the XML file that describes the different alert templates.
    */
   private static final String ALERT_TEMPLATE_FILE = "alerts.template.file";
 
+  /**
+   * Write-behind buffering of host state changes received via heartbeats.
+   */
+  public static final String HOST_STATE_WRITE_BEHIND_ENABLED_KEY = "server.hosts.state.write_behind.enabled";
+  public static final String HOST_STATE_WRITE_BEHIND_MAX_STALENESS_KEY = "server.hosts.state.write_behind.max_staleness.ms";
+  public static final String HOST_STATE_WRITE_BEHIND_BATCH_SIZE_KEY = "server.hosts.state.write_behind.batch_size";
+  private static final String HOST_STATE_WRITE_BEHIND_ENABLED_DEFAULT = "true";
+  private static final String HOST_STATE_WRITE_BEHIND_MAX_STALENESS_DEFAULT = "10000";
+  private static final String HOST_STATE_WRITE_BEHIND_BATCH_SIZE_DEFAULT = "500";
+
+  public static final String AGENT_COMMANDS_LONG_POLL_MAX_WAIT_KEY = "agent.commands.long_poll.max_wait.ms";
+  public static final String AGENT_COMMANDS_LONG_POLL_MAX_WAITERS_KEY = "agent.commands.long_poll.max_waiters";
+  private static final String AGENT_COMMANDS_LONG_POLL_MAX_WAIT_DEFAULT = "5000";
+
+  public static final String ALERTS_CURRENT_CACHE_ENABLED_KEY = "alerts.cache.enabled";
+  public static final String ALERTS_CURRENT_CACHE_FLUSH_INTERVAL_KEY = "alerts.cache.flush.interval.ms";
+  public static final String ALERTS_CURRENT_CACHE_FLUSH_BATCH_SIZE_KEY = "alerts.cache.flush.batch_size";
+  private static final String ALERTS_CURRENT_CACHE_ENABLED_DEFAULT = "false";
+  private static final String ALERTS_CURRENT_CACHE_FLUSH_INTERVAL_DEFAULT = "10000";
+  private static final String ALERTS_CURRENT_CACHE_FLUSH_BATCH_SIZE_DEFAULT = "500";
+
+  public static final String AMBARI_EVENTS_PARTITIONS_KEY = "server.events.partitions";
+  public static final String AMBARI_EVENTS_QUEUE_SIZE_KEY = "server.events.queue_size";
+  private static final String AMBARI_EVENTS_PARTITIONS_DEFAULT = "0";
+  private static final String AMBARI_EVENTS_QUEUE_SIZE_DEFAULT = "1000";
+
+  public static final String API_QUERY_CACHE_ENABLED_KEY = "api.query.cache.enabled";
+  public static final String API_QUERY_CACHE_TTL_KEY = "api.query.cache.ttl.ms";
+  public static final String API_QUERY_CACHE_SIZE_KEY = "api.query.cache.size";
+  public static final String API_QUERY_CACHE_RESOURCE_TYPES_KEY = "api.query.cache.resource_types";
+  private static final String API_QUERY_CACHE_ENABLED_DEFAULT = "false";
+  private static final String API_QUERY_CACHE_TTL_DEFAULT = "5000";
+  private static final String API_QUERY_CACHE_SIZE_DEFAULT = "1000";
+  private static final String API_QUERY_CACHE_RESOURCE_TYPES_DEFAULT =
+      "Cluster,Service,Component,Host,HostComponent,Alert";
+
+  public static final String METRICS_REQUEST_THREADPOOL_CORE_SIZE_KEY = "server.metrics.request.threadpool.core.size";
+  public static final String METRICS_REQUEST_THREADPOOL_MAX_SIZE_KEY = "server.metrics.request.threadpool.max.size";
+  public static final String METRICS_REQUEST_QUEUE_SIZE_KEY = "server.metrics.request.queue_size";
+  public static final String METRICS_REQUEST_HOST_CONCURRENCY_KEY = "server.metrics.request.host.concurrency";
+  public static final String METRICS_REQUEST_CIRCUIT_BREAKER_FAILURES_KEY = "server.metrics.request.circuit_breaker.failures";
+  public static final String METRICS_REQUEST_CIRCUIT_BREAKER_RESET_KEY = "server.metrics.request.circuit_breaker.reset.ms";
+  private static final String METRICS_REQUEST_THREADPOOL_CORE_SIZE_DEFAULT = "20";
+  private static final String METRICS_REQUEST_THREADPOOL_MAX_SIZE_DEFAULT = "100";
+  private static final String METRICS_REQUEST_QUEUE_SIZE_DEFAULT = "2000";
+  private static final String METRICS_REQUEST_HOST_CONCURRENCY_DEFAULT = "10";
+  private static final String METRICS_REQUEST_CIRCUIT_BREAKER_FAILURES_DEFAULT = "5";
+  private static final String METRICS_REQUEST_CIRCUIT_BREAKER_RESET_DEFAULT = "30000";
+  public static final String JMX_SNAPSHOT_CACHE_TTL_KEY = "server.jmx.snapshot.cache.ttl.ms";
+  public static final String JMX_BEAN_QUERY_ENABLED_KEY = "server.jmx.bean_query.enabled";
+  private static final String JMX_SNAPSHOT_CACHE_TTL_DEFAULT = "5000";
+  private static final String JMX_BEAN_QUERY_ENABLED_DEFAULT = "false";
+
   private static final Logger LOG = LoggerFactory.getLogger(
       Configuration.class);
 
@@ -1445,4 +1500,266 @@ public class Configuration {
         DEFAULT_JDBC_POOL_IDLE_TEST_INTERVAL));
   }
 
+  /**
+   * Gets the maximum number of INSERT or UPDATE statements that EclipseLink
+   * will group into a single JDBC batch. A value of {@code 1} or less disables
+   * batch writing.
+   *
+   * @return default of {@value #DEFAULT_JDBC_BATCH_WRITING_SIZE}
+   */
+  public int getJdbcBatchWritingSize() {
+    return Integer.parseInt(properties.getProperty(
+        SERVER_JDBC_BATCH_WRITING_SIZE, DEFAULT_JDBC_BATCH_WRITING_SIZE));
+  }
+
+  /**
+   * Gets whether host state changes reported by heartbeats are buffered and
+   * flushed to the database in periodic batches.
+   *
+   * @return default of {@value #HOST_STATE_WRITE_BEHIND_ENABLED_DEFAULT}
+   */
+  public boolean isHostStateWriteBehindEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        HOST_STATE_WRITE_BEHIND_ENABLED_KEY,
+        HOST_STATE_WRITE_BEHIND_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum amount of time, in milliseconds, that a buffered host
+   * state change may remain unpersisted.
+   *
+   * @return default of {@value #HOST_STATE_WRITE_BEHIND_MAX_STALENESS_DEFAULT}
+   */
+  public long getHostStateWriteBehindMaxStaleness() {
+    return Long.parseLong(properties.getProperty(
+        HOST_STATE_WRITE_BEHIND_MAX_STALENESS_KEY,
+        HOST_STATE_WRITE_BEHIND_MAX_STALENESS_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of hosts persisted in a single write-behind
+   * transaction.
+   *
+   * @return default of {@value #HOST_STATE_WRITE_BEHIND_BATCH_SIZE_DEFAULT}
+   */
+  public int getHostStateWriteBehindBatchSize() {
+    return Integer.parseInt(properties.getProperty(
+        HOST_STATE_WRITE_BEHIND_BATCH_SIZE_KEY,
+        HOST_STATE_WRITE_BEHIND_BATCH_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets the longest time, in milliseconds, that a heartbeat which asks to
+   * wait for commands may be held by the server. A value of {@code 0}
+   * disables long polling.
+   *
+   * @return default of {@value #AGENT_COMMANDS_LONG_POLL_MAX_WAIT_DEFAULT}
+   */
+  public long getAgentCommandsLongPollMaxWait() {
+    return Long.parseLong(properties.getProperty(
+        AGENT_COMMANDS_LONG_POLL_MAX_WAIT_KEY,
+        AGENT_COMMANDS_LONG_POLL_MAX_WAIT_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of heartbeats which may be held waiting for
+   * commands at the same time. Each waiting heartbeat occupies an agent
+   * connector thread, so this defaults to half of
+   * {@link #getAgentThreadPoolSize()}.
+   *
+   * @return the maximum number of waiting heartbeats.
+   */
+  public int getAgentCommandsLongPollMaxWaiters() {
+    return Integer.parseInt(properties.getProperty(
+        AGENT_COMMANDS_LONG_POLL_MAX_WAITERS_KEY,
+        String.valueOf(getAgentThreadPoolSize() / 2)));
+  }
+
+  /**
+   * Gets whether the state of current alerts is cached in memory so that
+   * unchanged alerts received from agents don't query the database and their
+   * timestamps are persisted periodically.
+   *
+   * @return default of {@value #ALERTS_CURRENT_CACHE_ENABLED_DEFAULT}
+   */
+  public boolean isAlertCacheEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        ALERTS_CURRENT_CACHE_ENABLED_KEY, ALERTS_CURRENT_CACHE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets the interval, in milliseconds, between writes of the cached current
+   * alert timestamps.
+   *
+   * @return default of {@value #ALERTS_CURRENT_CACHE_FLUSH_INTERVAL_DEFAULT}
+   */
+  public long getAlertCacheFlushInterval() {
+    return Long.parseLong(properties.getProperty(
+        ALERTS_CURRENT_CACHE_FLUSH_INTERVAL_KEY,
+        ALERTS_CURRENT_CACHE_FLUSH_INTERVAL_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of cached current alert timestamps written in a
+   * single transaction.
+   *
+   * @return default of {@value #ALERTS_CURRENT_CACHE_FLUSH_BATCH_SIZE_DEFAULT}
+   */
+  public int getAlertCacheFlushBatchSize() {
+    return Integer.parseInt(properties.getProperty(
+        ALERTS_CURRENT_CACHE_FLUSH_BATCH_SIZE_KEY,
+        ALERTS_CURRENT_CACHE_FLUSH_BATCH_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets the number of threads which deliver Ambari events asynchronously,
+   * partitioned by cluster or host. A value of {@code 0} delivers events
+   * synchronously on the publishing thread.
+   *
+   * @return default of {@value #AMBARI_EVENTS_PARTITIONS_DEFAULT}
+   */
+  public int getAmbariEventPartitions() {
+    return Integer.parseInt(properties.getProperty(
+        AMBARI_EVENTS_PARTITIONS_KEY, AMBARI_EVENTS_PARTITIONS_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of Ambari events waiting to be delivered in each
+   * partition before publishers are blocked.
+   *
+   * @return default of {@value #AMBARI_EVENTS_QUEUE_SIZE_DEFAULT}
+   */
+  public int getAmbariEventQueueSize() {
+    return Integer.parseInt(properties.getProperty(
+        AMBARI_EVENTS_QUEUE_SIZE_KEY, AMBARI_EVENTS_QUEUE_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets whether the resources returned for read-only API queries are cached
+   * and shared between requests with the same authorization.
+   *
+   * @return default of {@value #API_QUERY_CACHE_ENABLED_DEFAULT}
+   */
+  public boolean isApiQueryCacheEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        API_QUERY_CACHE_ENABLED_KEY, API_QUERY_CACHE_ENABLED_DEFAULT));
+  }
+
+  /**
+   * Gets the time, in milliseconds, that a cached API query result is used
+   * for before it is computed again, even if no event invalidated it.
+   *
+   * @return default of {@value #API_QUERY_CACHE_TTL_DEFAULT}
+   */
+  public long getApiQueryCacheTTL() {
+    return Long.parseLong(properties.getProperty(
+        API_QUERY_CACHE_TTL_KEY, API_QUERY_CACHE_TTL_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of cached API query results.
+   *
+   * @return default of {@value #API_QUERY_CACHE_SIZE_DEFAULT}
+   */
+  public int getApiQueryCacheSize() {
+    return Integer.parseInt(properties.getProperty(
+        API_QUERY_CACHE_SIZE_KEY, API_QUERY_CACHE_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets the comma separated resource types whose query results are cached.
+   *
+   * @return default of {@value #API_QUERY_CACHE_RESOURCE_TYPES_DEFAULT}
+   */
+  public String getApiQueryCacheResourceTypes() {
+    return properties.getProperty(API_QUERY_CACHE_RESOURCE_TYPES_KEY,
+        API_QUERY_CACHE_RESOURCE_TYPES_DEFAULT);
+  }
+
+  /**
+   * Gets the number of core threads of each of the thread pools which request
+   * JMX and REST metrics from the cluster hosts.
+   *
+   * @return default of {@value #METRICS_REQUEST_THREADPOOL_CORE_SIZE_DEFAULT}
+   */
+  public int getMetricsRequestThreadPoolCoreSize() {
+    return Integer.parseInt(properties.getProperty(
+        METRICS_REQUEST_THREADPOOL_CORE_SIZE_KEY, METRICS_REQUEST_THREADPOOL_CORE_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of threads of each of the thread pools which
+   * request JMX and REST metrics from the cluster hosts.
+   *
+   * @return default of {@value #METRICS_REQUEST_THREADPOOL_MAX_SIZE_DEFAULT}
+   */
+  public int getMetricsRequestThreadPoolMaxSize() {
+    return Integer.parseInt(properties.getProperty(
+        METRICS_REQUEST_THREADPOOL_MAX_SIZE_KEY, METRICS_REQUEST_THREADPOOL_MAX_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of metrics requests waiting for a thread in each
+   * of the thread pools before further requests are rejected.
+   *
+   * @return default of {@value #METRICS_REQUEST_QUEUE_SIZE_DEFAULT}
+   */
+  public int getMetricsRequestQueueSize() {
+    return Integer.parseInt(properties.getProperty(
+        METRICS_REQUEST_QUEUE_SIZE_KEY, METRICS_REQUEST_QUEUE_SIZE_DEFAULT));
+  }
+
+  /**
+   * Gets the maximum number of concurrent metrics requests to a single host.
+   *
+   * @return default of {@value #METRICS_REQUEST_HOST_CONCURRENCY_DEFAULT}
+   */
+  public int getMetricsRequestHostConcurrency() {
+    return Integer.parseInt(properties.getProperty(
+        METRICS_REQUEST_HOST_CONCURRENCY_KEY, METRICS_REQUEST_HOST_CONCURRENCY_DEFAULT));
+  }
+
+  /**
+   * Gets the number of consecutive failed metrics requests to a host after
+   * which no more requests are sent to it for a while.
+   *
+   * @return default of {@value #METRICS_REQUEST_CIRCUIT_BREAKER_FAILURES_DEFAULT}
+   */
+  public int getMetricsRequestCircuitBreakerFailures() {
+    return Integer.parseInt(properties.getProperty(
+        METRICS_REQUEST_CIRCUIT_BREAKER_FAILURES_KEY, METRICS_REQUEST_CIRCUIT_BREAKER_FAILURES_DEFAULT));
+  }
+
+  /**
+   * Gets the time, in milliseconds, that no metrics requests are sent to a
+   * failing host before a single request is let through to probe it.
+   *
+   * @return default of {@value #METRICS_REQUEST_CIRCUIT_BREAKER_RESET_DEFAULT}
+   */
+  public long getMetricsRequestCircuitBreakerReset() {
+    return Long.parseLong(properties.getProperty(
+        METRICS_REQUEST_CIRCUIT_BREAKER_RESET_KEY, METRICS_REQUEST_CIRCUIT_BREAKER_RESET_DEFAULT));
+  }
+
+  /**
+   * Gets the time, in milliseconds, that the beans read from a JMX endpoint
+   * are shared by metrics requests.  A value of 0 disables the cache.
+   *
+   * @return default of {@value #JMX_SNAPSHOT_CACHE_TTL_DEFAULT}
+   */
+  public long getJMXSnapshotCacheTTL() {
+    return Long.parseLong(properties.getProperty(
+        JMX_SNAPSHOT_CACHE_TTL_KEY, JMX_SNAPSHOT_CACHE_TTL_DEFAULT));
+  }
+
+  /**
+   * Gets whether JMX endpoints are asked only for the beans of the requested
+   * metrics, through the {@code qry} parameter, instead of for all beans.
+   *
+   * @return default of {@value #JMX_BEAN_QUERY_ENABLED_DEFAULT}
+   */
+  public boolean isJMXBeanQueryEnabled() {
+    return Boolean.parseBoolean(properties.getProperty(
+        JMX_BEAN_QUERY_ENABLED_KEY, JMX_BEAN_QUERY_ENABLED_DEFAULT));
+  }
 }
@@ -936,14 +936,7 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
     Set<ServiceComponentHostResponse> response =
         new HashSet<ServiceComponentHostResponse>();
 
-    boolean checkDesiredState = false;
     State desiredStateToCheck = null;
-    boolean filterBasedConfigStaleness = false;
-    boolean staleConfig = true;
-    if (request.getStaleConfig() != null) {
-      filterBasedConfigStaleness = true;
-      staleConfig = "true".equals(request.getStaleConfig().toLowerCase());
-    }
     if (request.getDesiredState() != null
         && !request.getDesiredState().isEmpty()) {
       desiredStateToCheck = State.valueOf(request.getDesiredState());
@@ -951,11 +944,35 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
         throw new IllegalArgumentException("Invalid arguments, invalid desired"
             + " state, desiredState=" + desiredStateToCheck);
       }
-      checkDesiredState = true;
+    }
+    State stateToCheck = null;
+    if (request.getState() != null && !request.getState().isEmpty()) {
+      stateToCheck = State.valueOf(request.getState());
     }
 
     Map<String, Host> hosts = clusters.getHostsForCluster(cluster.getClusterName());
 
+    if (request.getHostname() == null) {
+      // make sure that the requested component exists
+      if (request.getComponentName() != null) {
+        for (Service s : services) {
+          s.getServiceComponent(request.getComponentName());
+        }
+      }
+
+      // the cluster's secondary indexes only return the host components
+      // matching the most selective of the filters, so the cost of the
+      // lookup doesn't depend on the size of the cluster
+      String serviceName = request.getServiceName() == null || request.getServiceName().isEmpty() ?
+          null : request.getServiceName();
+
+      for (ServiceComponentHost sch : cluster.getServiceComponentHosts(serviceName,
+          request.getComponentName(), null, stateToCheck, desiredStateToCheck)) {
+        addHostComponentResponse(response, sch, request, cluster, hosts);
+      }
+      return response;
+    }
+
     for (Service s : services) {
       // filter on component name if provided
       Set<ServiceComponent> components = new HashSet<ServiceComponent>();
@@ -971,87 +988,42 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
           }
         }
 
-        // filter on hostname if provided
+        // filter on hostname
         // filter on desired state if provided
 
         Map<String, ServiceComponentHost> serviceComponentHostMap =
           sc.getServiceComponentHosts();
 
-        if (request.getHostname() != null) {
-          try {
-            if (serviceComponentHostMap == null
-                || !serviceComponentHostMap.containsKey(request.getHostname())) {
-              throw new ServiceComponentHostNotFoundException(cluster.getClusterName(),
-                s.getName(), sc.getName(), request.getHostname());
-            }
-
-            ServiceComponentHost sch = serviceComponentHostMap.get(request.getHostname());
-
-            if (checkDesiredState && (desiredStateToCheck != sch.getDesiredState())) {
-              continue;
-            }
-            if (request.getAdminState() != null) {
-              String stringToMatch =
-                  sch.getComponentAdminState() == null ? "" : sch.getComponentAdminState().name();
-              if (!request.getAdminState().equals(stringToMatch)) {
-                continue;
-              }
-            }
-
-            ServiceComponentHostResponse r = sch.convertToResponse();
-            if (filterBasedConfigStaleness && r.isStaleConfig() != staleConfig) {
-              continue;
-            }
-
-            Host host = hosts.get(sch.getHostName());
-            if (host == null) {
-              throw new HostNotFoundException(cluster.getClusterName(), sch.getHostName());
-            }
-
-            r.setMaintenanceState(maintenanceStateHelper.getEffectiveState(sch, host).name());
-            response.add(r);
-          } catch (ServiceComponentHostNotFoundException e) {
-            if (request.getServiceName() == null || request.getComponentName() == null) {
-              // Ignore the exception if either the service name or component name are not specified.
-              // This is an artifact of how we get host_components and can happen in the case where
-              // we get all host_components for a host, for example.
-              LOG.debug("Ignoring not specified host_component ", e);
-
-            } else {
-              // Otherwise rethrow the exception and let the caller decide if it's an error condition.
-              // Logging the exception as debug since this does not necessarily indicate an error
-              // condition.
-              LOG.debug("ServiceComponentHost not found ", e);
-              throw new ServiceComponentHostNotFoundException(cluster.getClusterName(),
-                  request.getServiceName(), request.getComponentName(), request.getHostname());
-            }
+        try {
+          if (serviceComponentHostMap == null
+              || !serviceComponentHostMap.containsKey(request.getHostname())) {
+            throw new ServiceComponentHostNotFoundException(cluster.getClusterName(),
+              s.getName(), sc.getName(), request.getHostname());
           }
-        } else {
-          for (ServiceComponentHost sch : serviceComponentHostMap.values()) {
-            if (checkDesiredState && (desiredStateToCheck != sch.getDesiredState())) {
-              continue;
-            }
 
-            if (request.getAdminState() != null) {
-              String stringToMatch =
-                  sch.getComponentAdminState() == null ? "" : sch.getComponentAdminState().name();
-              if (!request.getAdminState().equals(stringToMatch)) {
-                continue;
-              }
-            }
+          ServiceComponentHost sch = serviceComponentHostMap.get(request.getHostname());
 
-            ServiceComponentHostResponse r = sch.convertToResponse();
-            if (filterBasedConfigStaleness && r.isStaleConfig() != staleConfig) {
-              continue;
-            }
-
-            Host host = hosts.get(sch.getHostName());
-            if (host == null) {
-              throw new HostNotFoundException(cluster.getClusterName(), sch.getHostName());
-            }
+          if (desiredStateToCheck != null && (desiredStateToCheck != sch.getDesiredState())) {
+            continue;
+          }
+          if (stateToCheck != null && (stateToCheck != sch.getState())) {
+            continue;
+          }
+          addHostComponentResponse(response, sch, request, cluster, hosts);
+        } catch (ServiceComponentHostNotFoundException e) {
+          if (request.getServiceName() == null || request.getComponentName() == null) {
+            // Ignore the exception if either the service name or component name are not specified.
+            // This is an artifact of how we get host_components and can happen in the case where
+            // we get all host_components for a host, for example.
+            LOG.debug("Ignoring not specified host_component ", e);
 
-            r.setMaintenanceState(maintenanceStateHelper.getEffectiveState(sch, host).name());
-            response.add(r);
+          } else {
+            // Otherwise rethrow the exception and let the caller decide if it's an error condition.
+            // Logging the exception as debug since this does not necessarily indicate an error
+            // condition.
+            LOG.debug("ServiceComponentHost not found ", e);
+            throw new ServiceComponentHostNotFoundException(cluster.getClusterName(),
+                request.getServiceName(), request.getComponentName(), request.getHostname());
           }
         }
       }
@@ -1059,6 +1031,42 @@ public class AmbariManagementControllerImpl implements AmbariManagementControlle
     return response;
   }
 
+  /**
+   * Add the response for the given host component if it passes the admin
+   * state and config staleness filters of the request.  The staleness is
+   * checked before the response is built, since building the response is
+   * comparatively expensive.
+   */
+  private void addHostComponentResponse(Set<ServiceComponentHostResponse> response,
+      ServiceComponentHost sch, ServiceComponentHostRequest request, Cluster cluster,
+      Map<String, Host> hosts) throws AmbariException {
+
+    if (request.getAdminState() != null) {
+      String stringToMatch =
+          sch.getComponentAdminState() == null ? "" : sch.getComponentAdminState().name();
+      if (!request.getAdminState().equals(stringToMatch)) {
+        return;
+      }
+    }
+
+    if (request.getStaleConfig() != null) {
+      boolean staleConfig = "true".equals(request.getStaleConfig().toLowerCase());
+      if (configHelper.isStaleConfigs(sch) != staleConfig) {
+        return;
+      }
+    }
+
+    ServiceComponentHostResponse r = sch.convertToResponse();
+
+    Host host = hosts.get(sch.getHostName());
+    if (host == null) {
+      throw new HostNotFoundException(cluster.getClusterName(), sch.getHostName());
+    }
+
+    r.setMaintenanceState(maintenanceStateHelper.getEffectiveState(sch, host).name());
+    response.add(r);
+  }
+
   @Override
   public MaintenanceState getEffectiveMaintenanceState(ServiceComponentHost sch)
       throws AmbariException {
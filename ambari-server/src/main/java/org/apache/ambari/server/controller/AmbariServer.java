@@ -24,11 +24,13 @@ import java.net.Authenticator;
 import java.net.BindException;
 import java.net.PasswordAuthentication;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import javax.crypto.BadPaddingException;
 
 import org.apache.ambari.eventdb.webservice.WorkflowJsonService;
 import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.AmbariService;
 import org.apache.ambari.server.StaticallyInject;
 import org.apache.ambari.server.actionmanager.ActionManager;
 import org.apache.ambari.server.agent.HeartBeatHandler;
@@ -57,6 +59,7 @@ import org.apache.ambari.server.controller.internal.StackDefinedPropertyProvider
 import org.apache.ambari.server.controller.internal.StackDependencyResourceProvider;
 import org.apache.ambari.server.controller.internal.UserPrivilegeResourceProvider;
 import org.apache.ambari.server.controller.internal.ViewPermissionResourceProvider;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
 import org.apache.ambari.server.orm.PersistenceType;
 import org.apache.ambari.server.orm.dao.BlueprintDAO;
@@ -488,6 +491,15 @@ public class AmbariServer {
       serviceManager.startAsync();
       LOG.info("********* Started Services **********");
 
+      // give services such as the host state write-behind buffer a chance to
+      // flush when the JVM is terminated
+      Runtime.getRuntime().addShutdownHook(new Thread("ambari-services-shutdown") {
+        @Override
+        public void run() {
+          stopServices();
+        }
+      });
+
       server.join();
       LOG.info("Joined the Server");
     } catch (BadPaddingException bpe){
@@ -599,6 +611,28 @@ public class AmbariServer {
     } catch (Exception e) {
       LOG.error("Error stopping the server", e);
     }
+
+    stopServices();
+
+    if (null != injector) {
+      injector.getInstance(AmbariEventPublisher.class).shutdown();
+    }
+  }
+
+  /**
+   * Stops all registered {@link AmbariService}s, waiting a bounded amount of
+   * time for them to shut down.
+   */
+  private void stopServices() {
+    if (null == serviceManager) {
+      return;
+    }
+
+    try {
+      serviceManager.stopAsync().awaitStopped(30, TimeUnit.SECONDS);
+    } catch (Exception e) {
+      LOG.error("Error stopping services", e);
+    }
   }
 
   /**
@@ -18,6 +18,8 @@
 
 package org.apache.ambari.server.controller;
 
+import static org.eclipse.persistence.config.PersistenceUnitProperties.BATCH_WRITING;
+import static org.eclipse.persistence.config.PersistenceUnitProperties.BATCH_WRITING_SIZE;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.CREATE_JDBC_DDL_FILE;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.CREATE_ONLY;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.CREATE_OR_EXTEND;
@@ -107,6 +109,7 @@ import org.eclipse.jetty.server.SessionIdManager;
 import org.eclipse.jetty.server.SessionManager;
 import org.eclipse.jetty.server.session.HashSessionIdManager;
 import org.eclipse.jetty.server.session.HashSessionManager;
+import org.eclipse.persistence.config.BatchWriting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.config.BeanDefinition;
@@ -197,6 +200,14 @@ public class ControllerModule extends AbstractModule {
         break;
     }
 
+    // group INSERT and UPDATE statements into JDBC batches, such as when
+    // persisting the commands of a large request
+    int batchWritingSize = configuration.getJdbcBatchWritingSize();
+    if (batchWritingSize > 1) {
+      properties.setProperty(BATCH_WRITING, BatchWriting.JDBC);
+      properties.setProperty(BATCH_WRITING_SIZE, String.valueOf(batchWritingSize));
+    }
+
     // determine the type of pool to use
     boolean isConnectionPoolingExternal = false;
     ConnectionPoolType connectionPoolType = configuration.getConnectionPoolType();
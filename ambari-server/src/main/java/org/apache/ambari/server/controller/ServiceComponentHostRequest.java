@@ -30,6 +30,7 @@ public class ServiceComponentHostRequest {
   private String desiredStackId; // UPDATE
   private String staleConfig; // GET - predicate
   private String adminState; // GET - predicate
+  private String state; // GET - predicate
   private String maintenanceState; // UPDATE
   
   public ServiceComponentHostRequest(String clusterName,
@@ -157,6 +158,20 @@ public class ServiceComponentHostRequest {
     return this.adminState;
   }
 
+  /**
+   * @param state the current state to use as predicate
+   */
+  public void setState(String state) {
+    this.state = state;
+  }
+
+  /**
+   * @return the current state of the component
+   */
+  public String getState() {
+    return this.state;
+  }
+
   public String toString() {
     StringBuilder sb = new StringBuilder();
     sb.append("{" + " clusterName=").append(clusterName)
@@ -166,7 +181,8 @@ public class ServiceComponentHostRequest {
       .append(", desiredState=").append(desiredState)
       .append(", desiredStackId=").append(desiredStackId)
       .append(", staleConfig=").append(staleConfig)
-      .append(", adminState=").append(adminState).append("}");
+      .append(", adminState=").append(adminState)
+      .append(", state=").append(state).append("}");
     return sb.toString();
   }
 
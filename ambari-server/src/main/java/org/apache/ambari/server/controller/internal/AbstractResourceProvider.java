@@ -253,6 +253,45 @@ public abstract class AbstractResourceProvider extends BaseProvider implements R
     return result;
   }
 
+  /**
+   * Get the requested page of the given sorted items, using the same offset
+   * semantics as the cluster controller does for an in-memory page.
+   *
+   * @param items        the sorted items
+   * @param pageRequest  the page request; its starting point must be one of
+   *                     the offset based starting points
+   * @param <T>          the item type
+   *
+   * @return the items on the requested page
+   */
+  protected static <T> List<T> getPage(List<T> items, PageRequest pageRequest) {
+    int size     = items.size();
+    int pageSize = pageRequest.getPageSize();
+    int from;
+
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+        from = 0;
+        break;
+      case OffsetStart:
+        from = pageRequest.getOffset();
+        break;
+      case End:
+        from = size - pageSize;
+        break;
+      case OffsetEnd:
+        from = Math.min(pageRequest.getOffset(), size - 1) - pageSize + 1;
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported starting point " + pageRequest.getStartingPoint());
+    }
+
+    int to = Math.min(size, Math.max(0, from + pageSize));
+    from   = Math.min(size, Math.max(0, from));
+
+    return items.subList(from, to);
+  }
+
   /**
    * Invoke a command against the Ambari backend to create resources and map
    * any {@link AmbariException} to the types appropriate for the
@@ -30,17 +30,22 @@ import org.apache.ambari.server.controller.AlertHistoryRequest;
 import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryCapabilities;
 import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceAlreadyExistsException;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.orm.dao.AlertsDAO;
 import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity_;
 import org.apache.ambari.server.orm.entities.ClusterEntity;
 
 import com.google.inject.Inject;
@@ -49,7 +54,8 @@ import com.google.inject.Inject;
  * ResourceProvider for Alert History
  */
 @StaticallyInject
-public class AlertHistoryResourceProvider extends AbstractResourceProvider implements ExtendedResourceProvider{
+public class AlertHistoryResourceProvider extends AbstractResourceProvider implements
+    ExtendedResourceProvider, QueryCapabilities {
 
   public static final String ALERT_HISTORY_DEFINITION_ID = "AlertHistory/definition_id";
   public static final String ALERT_HISTORY_DEFINITION_NAME = "AlertHistory/definition_name";
@@ -180,11 +186,55 @@ public class AlertHistoryResourceProvider extends AbstractResourceProvider imple
       throws SystemException, UnsupportedPropertyException,
       NoSuchResourceException, NoSuchParentResourceException {
 
+    Set<Resource> results = getResources(request, predicate);
+    boolean paged = request.getPageRequest() != null;
+
     return new QueryResponseImpl(
-        getResources(request, predicate),
-        request.getSortRequest() != null,
-        request.getPageRequest() != null,
-        s_dao.getCount(predicate));
+        results,
+        request.getSortRequest() != null || paged,
+        paged,
+        paged ? s_dao.getCount(predicate) : results.size());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isPredicateSupported(Predicate predicate) {
+    return SupportedPredicateVisitor.isSupported(predicate,
+        AlertHistoryEntity_.getPredicateMapping().keySet(),
+        SupportedPredicateVisitor.COMPARISON_OPERATORS);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean isSortSupported(SortRequest sortRequest) {
+    Set<String> propertyIds = AlertHistoryEntity_.getPredicateMapping().keySet();
+    for (SortRequestProperty property : sortRequest.getProperties()) {
+      if (!propertyIds.contains(property.getPropertyId())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * The query is paged with an offset and a maximum number of results, so
+   * only pages counted from the beginning are supported.
+   */
+  @Override
+  public boolean isPageSupported(PageRequest pageRequest) {
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+      case OffsetStart:
+        return true;
+      default:
+        return false;
+    }
   }
 
   /**
@@ -40,6 +40,7 @@ import org.apache.ambari.server.controller.spi.PageResponse;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.PropertyProvider;
 import org.apache.ambari.server.controller.spi.ProviderModule;
+import org.apache.ambari.server.controller.spi.QueryCapabilities;
 import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
@@ -52,6 +53,7 @@ import org.apache.ambari.server.controller.spi.Schema;
 import org.apache.ambari.server.controller.spi.SortRequest;
 import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.spi.SystemException;
+import org.apache.ambari.server.controller.spi.TemporalInfo;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
 import org.apache.ambari.server.controller.utilities.PredicateHelper;
@@ -94,6 +96,12 @@ public class ClusterControllerImpl implements ClusterController {
    */
   private final ResourceComparator comparator = new ResourceComparator();
 
+  /**
+   * Cache of resource provider query results and of the resources populated
+   * by the property providers; may be null.
+   */
+  private final QueryResultCache queryResultCache;
+
   /**
    * Predicate evaluator
    */
@@ -104,7 +112,13 @@ public class ClusterControllerImpl implements ClusterController {
   // ----- Constructors ------------------------------------------------------
 
   public ClusterControllerImpl(ProviderModule providerModule) {
-    this.providerModule = providerModule;
+    this(providerModule, null);
+  }
+
+  public ClusterControllerImpl(ProviderModule providerModule, QueryResultCache queryResultCache) {
+    this.providerModule   = providerModule;
+    this.queryResultCache =
+        queryResultCache != null && queryResultCache.isEnabled() ? queryResultCache : null;
   }
 
 
@@ -129,7 +143,18 @@ public class ClusterControllerImpl implements ClusterController {
       checkProperties(type, request, predicate);
 
       // get the resources
-      queryResponse = provider.queryForResources(request, predicate);
+      if (queryResultCache != null && queryResultCache.isCacheable(type, request)) {
+        queryResponse = queryResultCache.get(type, request, predicate);
+        if (queryResponse == null) {
+          long generation = queryResultCache.getGeneration(type);
+          queryResponse = provider.queryForResources(request, predicate);
+          if (queryResponse != null) {
+            queryResultCache.put(type, request, predicate, queryResponse, generation);
+          }
+        }
+      } else {
+        queryResponse = provider.queryForResources(request, predicate);
+      }
     }
     return queryResponse == null ? new QueryResponseImpl(Collections.<Resource>emptySet()) : queryResponse;
   }
@@ -139,12 +164,19 @@ public class ClusterControllerImpl implements ClusterController {
                                          Set<Resource> resources,
                                          Request request,
                                          Predicate predicate) throws SystemException {
-    Set<Resource> keepers = resources;
     List<PropertyProvider> propertyProviders = ensurePropertyProviders(type);
-    for (PropertyProvider propertyProvider : propertyProviders) {
-      if (providesRequestProperties(propertyProvider, request, predicate)) {
-        keepers = propertyProvider.populateResources(keepers, request, predicate);
-      }
+
+    if (queryResultCache == null || propertyProviders.isEmpty()
+        || !queryResultCache.isCacheable(type, request)) {
+      return populateResources(propertyProviders, resources, request, predicate);
+    }
+
+    Set<Resource> keepers = queryResultCache.populate(type, resources, request, predicate);
+    if (keepers == null) {
+      long generation = queryResultCache.getGeneration(type);
+      Map<Resource, Resource> unpopulated = queryResultCache.copyUnpopulated(resources);
+      keepers = populateResources(propertyProviders, resources, request, predicate);
+      queryResultCache.putPopulated(type, unpopulated, keepers, request, predicate, generation);
     }
     return keepers;
   }
@@ -231,6 +263,31 @@ public class ClusterControllerImpl implements ClusterController {
         provider), 0, null, null, totalCount);
   }
 
+  /**
+   * Populate the given resources with the given property providers.
+   *
+   * @param propertyProviders  the property providers
+   * @param resources          the resources to populate
+   * @param request            the request
+   * @param predicate          the predicate
+   *
+   * @return the resources kept by the property providers
+   *
+   * @throws SystemException if unable to populate the resources
+   */
+  private Set<Resource> populateResources(List<PropertyProvider> propertyProviders,
+                                          Set<Resource> resources,
+                                          Request request,
+                                          Predicate predicate) throws SystemException {
+    Set<Resource> keepers = resources;
+    for (PropertyProvider propertyProvider : propertyProviders) {
+      if (providesRequestProperties(propertyProvider, request, predicate)) {
+        keepers = propertyProvider.populateResources(keepers, request, predicate);
+      }
+    }
+    return keepers;
+  }
+
   /**
    * Check whether properties specified with a @SortRequest are supported by
    * the @ResourceProvider.
@@ -286,7 +343,11 @@ public class ClusterControllerImpl implements ClusterController {
 
       checkProperties(type, request, null);
 
-      return provider.createResources(request);
+      try {
+        return provider.createResources(request);
+      } finally {
+        invalidateQueryResults();
+      }
     }
     return null;
   }
@@ -307,7 +368,11 @@ public class ClusterControllerImpl implements ClusterController {
           return null;
         }
       }
-      return provider.updateResources(request, predicate);
+      try {
+        return provider.updateResources(request, predicate);
+      } finally {
+        invalidateQueryResults();
+      }
     }
     return null;
   }
@@ -327,7 +392,11 @@ public class ClusterControllerImpl implements ClusterController {
           return null;
         }
       }
+      try {
         return provider.deleteResources(predicate);
+      } finally {
+        invalidateQueryResults();
+      }
     }
     return null;
   }
@@ -361,12 +430,26 @@ public class ClusterControllerImpl implements ClusterController {
   private ExtendedResourceProviderWrapper ensureResourceProviderWrapper(Type type) {
     synchronized (resourceProviders) {
       if (!resourceProviders.containsKey(type)) {
-        resourceProviders.put(type, new ExtendedResourceProviderWrapper(providerModule.getResourceProvider(type)));
+        ResourceProvider resourceProvider = providerModule.getResourceProvider(type);
+        // writes which don't go through the controller still invalidate cached results
+        if (queryResultCache != null && resourceProvider instanceof ObservableResourceProvider) {
+          ((ObservableResourceProvider) resourceProvider).addObserver(queryResultCache);
+        }
+        resourceProviders.put(type, new ExtendedResourceProviderWrapper(resourceProvider));
       }
     }
     return resourceProviders.get(type);
   }
 
+  /**
+   * Invalidate the cached query results after a write.
+   */
+  private void invalidateQueryResults() {
+    if (queryResultCache != null) {
+      queryResultCache.invalidateAll();
+    }
+  }
+
   /**
    * Get an iterable set of resources filtered by the given request and
    * predicate objects.
@@ -918,6 +1001,12 @@ public class ClusterControllerImpl implements ClusterController {
      */
     private final ExtendedResourceProvider extendedResourceProvider;
 
+    /**
+     * The delegate query capabilities.  {@code null} if the given delegate resource provider is not an
+     * instance of {@link QueryCapabilities}
+     */
+    private final QueryCapabilities queryCapabilities;
+
 
     // ----- Constructors ----------------------------------------------------
 
@@ -932,6 +1021,9 @@ public class ClusterControllerImpl implements ClusterController {
       extendedResourceProvider = resourceProvider instanceof ExtendedResourceProvider ?
           (ExtendedResourceProvider) resourceProvider : null;
 
+      queryCapabilities = resourceProvider instanceof QueryCapabilities ?
+          (QueryCapabilities) resourceProvider : null;
+
       evaluator = resourceProvider instanceof ResourcePredicateEvaluator ?
           (ResourcePredicateEvaluator) resourceProvider : DEFAULT_RESOURCE_PREDICATE_EVALUATOR;
     }
@@ -942,9 +1034,52 @@ public class ClusterControllerImpl implements ClusterController {
     @Override
     public QueryResponse queryForResources(Request request, Predicate predicate)
         throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
-      return extendedResourceProvider == null ?
-          new QueryResponseImpl(resourceProvider.getResources(request, predicate)) :
-          extendedResourceProvider.queryForResources(request, predicate);
+      if (extendedResourceProvider == null) {
+        return new QueryResponseImpl(resourceProvider.getResources(request, predicate));
+      }
+      if (queryCapabilities != null) {
+        request = getSupportedRequest(request, predicate);
+      }
+      return extendedResourceProvider.queryForResources(request, predicate);
+    }
+
+
+    /**
+     * Remove the sort and page requests that the delegate can't apply itself so
+     * that it doesn't return a partially ordered or wrongly paged result.  The
+     * controller sorts and pages whatever the delegate didn't.
+     *
+     * @param request    the request
+     * @param predicate  the predicate
+     *
+     * @return the request to pass on to the delegate
+     */
+    private Request getSupportedRequest(Request request, Predicate predicate) {
+      SortRequest sortRequest = request.getSortRequest();
+      PageRequest pageRequest = request.getPageRequest();
+
+      SortRequest supportedSortRequest = sortRequest != null &&
+          queryCapabilities.isSortSupported(sortRequest) ? sortRequest : null;
+
+      // a page can only be taken from the fully filtered and ordered set
+      PageRequest supportedPageRequest = pageRequest != null &&
+          supportedSortRequest == sortRequest &&
+          queryCapabilities.isPredicateSupported(predicate) &&
+          queryCapabilities.isPageSupported(pageRequest) ? pageRequest : null;
+
+      if (supportedSortRequest == sortRequest && supportedPageRequest == pageRequest) {
+        return request;
+      }
+
+      Map<String, TemporalInfo> mapTemporalInfo = new HashMap<String, TemporalInfo>();
+      for (String propertyId : request.getPropertyIds()) {
+        TemporalInfo temporalInfo = request.getTemporalInfo(propertyId);
+        if (temporalInfo != null) {
+          mapTemporalInfo.put(propertyId, temporalInfo);
+        }
+      }
+      return new RequestImpl(request.getPropertyIds(), request.getProperties(),
+          request.getRequestInfoProperties(), mapTemporalInfo, supportedSortRequest, supportedPageRequest);
     }
 
 
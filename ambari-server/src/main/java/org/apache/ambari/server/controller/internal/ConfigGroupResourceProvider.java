@@ -581,6 +581,12 @@ public class ConfigGroupResourceProvider extends
 
       verifyHostList(cluster, hosts, request);
 
+      // the components on both the old and the new hosts may be affected
+      Set<String> affectedHosts = new HashSet<String>(configGroup.getHosts().keySet());
+      affectedHosts.addAll(hosts.keySet());
+      Set<String> affectedTypes = new HashSet<String>(configGroup.getConfigurations().keySet());
+      affectedTypes.addAll(request.getConfigs().keySet());
+
       configGroup.setHosts(hosts);
 
       // Update Configs
@@ -605,9 +611,10 @@ public class ConfigGroupResourceProvider extends
         LOG.warn("Could not determine service name for config group {}, service config version not created",
             configGroup.getId());
       }
-    }
 
-    getManagementController().getConfigHelper().invalidateStaleConfigsCache();
+      getManagementController().getConfigHelper().invalidateStaleConfigsCache(cluster,
+          affectedHosts, affectedTypes);
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -21,10 +21,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,6 +34,8 @@ import java.util.Set;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.ObjectNotFoundException;
+import org.apache.ambari.server.ParentObjectNotFoundException;
 import org.apache.ambari.server.configuration.ComponentSSLConfiguration;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
@@ -42,14 +46,20 @@ import org.apache.ambari.server.controller.predicate.AndPredicate;
 import org.apache.ambari.server.controller.predicate.EqualsPredicate;
 import org.apache.ambari.server.controller.predicate.NotPredicate;
 import org.apache.ambari.server.controller.predicate.OrPredicate;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.PropertyProvider;
+import org.apache.ambari.server.controller.spi.QueryCapabilities;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceAlreadyExistsException;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
@@ -59,6 +69,7 @@ import com.google.inject.assistedinject.AssistedInject;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.Service;
 import org.apache.ambari.server.state.ServiceComponent;
 import org.apache.ambari.server.state.ServiceComponentHost;
 import org.apache.ambari.server.state.ServiceComponentHostEvent;
@@ -71,7 +82,8 @@ import org.apache.commons.lang.StringUtils;
 /**
  * Resource provider for host component resources.
  */
-public class HostComponentResourceProvider extends AbstractControllerResourceProvider {
+public class HostComponentResourceProvider extends AbstractControllerResourceProvider
+    implements ExtendedResourceProvider, QueryCapabilities {
 
   // ----- Property ID constants ---------------------------------------------
 
@@ -116,6 +128,22 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
           HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID,
           HOST_COMPONENT_HOST_NAME_PROPERTY_ID}));
 
+  /**
+   * The properties by which a listing of host components can be sorted
+   * before the host component responses are built.
+   */
+  private static final Set<String> SORTABLE_PROPERTY_IDS =
+      new HashSet<String>(Arrays.asList(HOST_COMPONENT_SERVICE_NAME_PROPERTY_ID,
+          HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID, HOST_COMPONENT_HOST_NAME_PROPERTY_ID));
+
+  /**
+   * Positions of the names in a host component key, in the order in which the
+   * cluster controller compares the key properties.
+   */
+  private static final int SERVICE_KEY_INDEX   = 0;
+  private static final int HOST_KEY_INDEX      = 1;
+  private static final int COMPONENT_KEY_INDEX = 2;
+
   /**
    * maintenance state helper
    */
@@ -183,11 +211,7 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
   public Set<Resource> getResources(Request request, Predicate predicate)
       throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
 
-    final Set<ServiceComponentHostRequest> requests = new HashSet<ServiceComponentHostRequest>();
-
-    for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
-      requests.add(getRequest(propertyMap));
-    }
+    final Set<ServiceComponentHostRequest> requests = getRequests(predicate);
 
     Set<Resource> resources = new HashSet<Resource>();
     Set<String> requestedIds = getRequestPropertyIds(request, predicate);
@@ -202,51 +226,102 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
     });
 
     for (ServiceComponentHostResponse response : responses) {
-      Resource resource = new ResourceImpl(Resource.Type.HostComponent);
-      setResourceProperty(resource, HOST_COMPONENT_CLUSTER_NAME_PROPERTY_ID,
-          response.getClusterName(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_SERVICE_NAME_PROPERTY_ID,
-          response.getServiceName(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID,
-          response.getComponentName(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_HOST_NAME_PROPERTY_ID,
-          response.getHostname(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_STATE_PROPERTY_ID,
-          response.getLiveState(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_DESIRED_STATE_PROPERTY_ID,
-          response.getDesiredState(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_STACK_ID_PROPERTY_ID,
-          response.getStackVersion(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_DESIRED_STACK_ID_PROPERTY_ID,
-          response.getDesiredStackVersion(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_ACTUAL_CONFIGS_PROPERTY_ID,
-          response.getActualConfigs(), requestedIds);
-      setResourceProperty(resource, HOST_COMPONENT_STALE_CONFIGS_PROPERTY_ID,
-          response.isStaleConfig(), requestedIds);
-      
-      if (response.getAdminState() != null) {
-        setResourceProperty(resource, HOST_COMPONENT_DESIRED_ADMIN_STATE_PROPERTY_ID,
-            response.getAdminState(), requestedIds);
-      }
-      
-      if (null != response.getMaintenanceState()) {
-        setResourceProperty(resource, HOST_COMPONENT_MAINTENANCE_STATE_PROPERTY_ID,
-            response.getMaintenanceState(), requestedIds);
+      resources.add(toResource(response, request, predicate, requestedIds));
+    }
+    return resources;
+  }
+
+
+  // ----- ExtendedResourceProvider ------------------------------------------
+
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    PageRequest pageRequest = request.getPageRequest();
+
+    Set<ServiceComponentHostRequest> requests = pageRequest == null || !isPredicateSupported(predicate) ?
+        null : getRequests(predicate);
+
+    // only the host components of a single cluster can be paged by key before
+    // the host component responses are built
+    if (requests == null || requests.size() != 1 || requests.iterator().next().getClusterName() == null) {
+      return new QueryResponseImpl(getResources(request, predicate));
+    }
+
+    final ServiceComponentHostRequest keyRequest = requests.iterator().next();
+
+    List<String[]> keys = getResources(new Command<List<String[]>>() {
+      @Override
+      public List<String[]> invoke() throws AmbariException {
+        return getHostComponentKeys(keyRequest);
       }
+    });
 
-      String componentName = (String) resource.getPropertyValue(HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID);
-      PropertyProvider propertyProvider = HOST_COMPONENT_PROPERTIES_PROVIDER.get(componentName);
-      if (propertyProvider != null) {
-        Set<Resource> resourcesToPopulate = new HashSet<Resource>();
-        resourcesToPopulate.add(resource);
-        propertyProvider.populateResources(resourcesToPopulate, request, predicate);
+    Collections.sort(keys, new HostComponentKeyComparator(request.getSortRequest()));
+
+    final List<String[]> pageKeys = getPage(keys, pageRequest);
+    final String clusterName = keyRequest.getClusterName();
+
+    List<ServiceComponentHostResponse> responses = getResources(new Command<List<ServiceComponentHostResponse>>() {
+      @Override
+      public List<ServiceComponentHostResponse> invoke() throws AmbariException {
+        List<ServiceComponentHostResponse> pageResponses = new ArrayList<ServiceComponentHostResponse>();
+        for (String[] key : pageKeys) {
+          ServiceComponentHostRequest hostComponentRequest = new ServiceComponentHostRequest(clusterName,
+              key[SERVICE_KEY_INDEX], key[COMPONENT_KEY_INDEX], key[HOST_KEY_INDEX], null);
+          try {
+            pageResponses.addAll(getManagementController().getHostComponents(
+                Collections.singleton(hostComponentRequest)));
+          } catch (ObjectNotFoundException e) {
+            // the host component was removed since the keys were read
+          }
+        }
+        return pageResponses;
       }
+    });
+
+    Set<Resource> resources = new LinkedHashSet<Resource>();
+    Set<String> requestedIds = getRequestPropertyIds(request, predicate);
+    // We always need host_name for sch
+    requestedIds.add(HOST_COMPONENT_HOST_NAME_PROPERTY_ID);
 
-      resources.add(resource);
+    for (ServiceComponentHostResponse response : responses) {
+      resources.add(toResource(response, request, predicate, requestedIds));
     }
-    return resources;
+    return new QueryResponseImpl(resources, true, true, keys.size());
+  }
+
+
+  // ----- QueryCapabilities -------------------------------------------------
+
+  @Override
+  public boolean isPredicateSupported(Predicate predicate) {
+    return SupportedPredicateVisitor.isSupported(predicate, pkPropertyIds,
+        SupportedPredicateVisitor.EQUALS_OPERATORS);
   }
 
+  @Override
+  public boolean isSortSupported(SortRequest sortRequest) {
+    List<SortRequestProperty> properties = sortRequest.getProperties();
+    return properties.size() == 1 && SORTABLE_PROPERTY_IDS.contains(properties.get(0).getPropertyId());
+  }
+
+  @Override
+  public boolean isPageSupported(PageRequest pageRequest) {
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+      case OffsetStart:
+      case End:
+      case OffsetEnd:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  // ----- ResourceProvider ------------------------------------------------
+
   @Override
   public RequestStatus updateResources(final Request request, Predicate predicate)
       throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
@@ -561,6 +636,143 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
 
   // ----- utility methods -------------------------------------------------
 
+  /**
+   * Get the host component requests for the given predicate.
+   *
+   * @param predicate  the predicate
+   *
+   * @return the host component requests
+   */
+  private Set<ServiceComponentHostRequest> getRequests(Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    Set<ServiceComponentHostRequest> requests = new HashSet<ServiceComponentHostRequest>();
+
+    for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
+      ServiceComponentHostRequest request = getRequest(propertyMap);
+
+      // a state which can't be desired, e.g. INSTALL_FAILED, can only be
+      // matched against the current state
+      String state = request.getDesiredState();
+      if (state != null && !isValidDesiredState(state)) {
+        request.setDesiredState(null);
+        request.setState(state);
+      }
+      requests.add(request);
+    }
+    return requests;
+  }
+
+  // unknown states are left for the management controller to reject
+  private static boolean isValidDesiredState(String state) {
+    try {
+      return State.valueOf(state).isValidDesiredState();
+    } catch (IllegalArgumentException e) {
+      return true;
+    }
+  }
+
+  /**
+   * Get the service, host and component names of the host components of the
+   * request's cluster which match the request, without building the host
+   * component responses.
+   *
+   * @param request  the request; the cluster name must be set
+   *
+   * @return the host component keys, indexed by {@link #SERVICE_KEY_INDEX},
+   *         {@link #HOST_KEY_INDEX} and {@link #COMPONENT_KEY_INDEX}
+   *
+   * @throws AmbariException if the cluster doesn't exist
+   */
+  private List<String[]> getHostComponentKeys(ServiceComponentHostRequest request) throws AmbariException {
+    Cluster cluster;
+    try {
+      cluster = getManagementController().getClusters().getCluster(request.getClusterName());
+    } catch (ObjectNotFoundException e) {
+      throw new ParentObjectNotFoundException("Parent Cluster resource doesn't exist", e);
+    }
+
+    List<String[]> keys = new ArrayList<String[]>();
+
+    for (Service service : cluster.getServices().values()) {
+      if (request.getServiceName() != null && !request.getServiceName().equals(service.getName())) {
+        continue;
+      }
+      for (ServiceComponent component : service.getServiceComponents().values()) {
+        if (request.getComponentName() != null && !request.getComponentName().equals(component.getName())) {
+          continue;
+        }
+        for (String hostName : component.getServiceComponentHosts().keySet()) {
+          if (request.getHostname() != null && !request.getHostname().equals(hostName)) {
+            continue;
+          }
+          String[] key = new String[3];
+          key[SERVICE_KEY_INDEX]   = service.getName();
+          key[HOST_KEY_INDEX]      = hostName;
+          key[COMPONENT_KEY_INDEX] = component.getName();
+          keys.add(key);
+        }
+      }
+    }
+    return keys;
+  }
+
+  /**
+   * Create a host component resource from the given response.
+   *
+   * @param response      the host component response
+   * @param request       the request
+   * @param predicate     the predicate
+   * @param requestedIds  the requested property ids
+   *
+   * @return the host component resource
+   */
+  private Resource toResource(ServiceComponentHostResponse response, Request request,
+                              Predicate predicate, Set<String> requestedIds)
+      throws SystemException {
+    Resource resource = new ResourceImpl(Resource.Type.HostComponent);
+    setResourceProperty(resource, HOST_COMPONENT_CLUSTER_NAME_PROPERTY_ID,
+        response.getClusterName(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_SERVICE_NAME_PROPERTY_ID,
+        response.getServiceName(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID,
+        response.getComponentName(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_HOST_NAME_PROPERTY_ID,
+        response.getHostname(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_STATE_PROPERTY_ID,
+        response.getLiveState(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_DESIRED_STATE_PROPERTY_ID,
+        response.getDesiredState(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_STACK_ID_PROPERTY_ID,
+        response.getStackVersion(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_DESIRED_STACK_ID_PROPERTY_ID,
+        response.getDesiredStackVersion(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_ACTUAL_CONFIGS_PROPERTY_ID,
+        response.getActualConfigs(), requestedIds);
+    setResourceProperty(resource, HOST_COMPONENT_STALE_CONFIGS_PROPERTY_ID,
+        response.isStaleConfig(), requestedIds);
+    
+    if (response.getAdminState() != null) {
+      setResourceProperty(resource, HOST_COMPONENT_DESIRED_ADMIN_STATE_PROPERTY_ID,
+          response.getAdminState(), requestedIds);
+    }
+    
+    if (null != response.getMaintenanceState()) {
+      setResourceProperty(resource, HOST_COMPONENT_MAINTENANCE_STATE_PROPERTY_ID,
+          response.getMaintenanceState(), requestedIds);
+    }
+
+    String componentName = (String) resource.getPropertyValue(HOST_COMPONENT_COMPONENT_NAME_PROPERTY_ID);
+    PropertyProvider propertyProvider = HOST_COMPONENT_PROPERTIES_PROVIDER.get(componentName);
+    if (propertyProvider != null) {
+      Set<Resource> resourcesToPopulate = new HashSet<Resource>();
+      resourcesToPopulate.add(resource);
+      propertyProvider.populateResources(resourcesToPopulate, request, predicate);
+    }
+
+    return resource;
+  }
+
   /**
    * Get a component request object from a map of property values.
    *
@@ -859,4 +1071,45 @@ public class HostComponentResourceProvider extends AbstractControllerResourcePro
       return isClient;
     }
   }
+
+  /**
+   * Orders host component keys by the requested sort property, followed by
+   * the key properties in the order used by the cluster controller.
+   */
+  private static class HostComponentKeyComparator implements Comparator<String[]> {
+    private final int sortIndex;
+    private final boolean descending;
+
+    private HostComponentKeyComparator(SortRequest sortRequest) {
+      if (sortRequest == null) {
+        sortIndex  = -1;
+        descending = false;
+      } else {
+        SortRequestProperty property = sortRequest.getProperties().get(0);
+        String propertyId = property.getPropertyId();
+
+        sortIndex  = propertyId.equals(HOST_COMPONENT_SERVICE_NAME_PROPERTY_ID) ? SERVICE_KEY_INDEX :
+                     propertyId.equals(HOST_COMPONENT_HOST_NAME_PROPERTY_ID) ? HOST_KEY_INDEX :
+                     COMPONENT_KEY_INDEX;
+        descending = property.getOrder() == SortRequest.Order.DESC;
+      }
+    }
+
+    @Override
+    public int compare(String[] key1, String[] key2) {
+      if (sortIndex != -1) {
+        int compVal = key1[sortIndex].compareTo(key2[sortIndex]);
+        if (compVal != 0) {
+          return descending ? -compVal : compVal;
+        }
+      }
+      for (int i = 0; i < key1.length; i++) {
+        int compVal = key1[i].compareTo(key2[i]);
+        if (compVal != 0) {
+          return compVal;
+        }
+      }
+      return 0;
+    }
+  }
 }
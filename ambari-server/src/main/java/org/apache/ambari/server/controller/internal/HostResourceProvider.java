@@ -20,9 +20,11 @@ package org.apache.ambari.server.controller.internal;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,13 +41,19 @@ import org.apache.ambari.server.controller.HostRequest;
 import org.apache.ambari.server.controller.HostResponse;
 import org.apache.ambari.server.controller.MaintenanceStateHelper;
 import org.apache.ambari.server.controller.RequestStatusResponse;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryCapabilities;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceAlreadyExistsException;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
@@ -70,7 +78,8 @@ import com.google.inject.assistedinject.AssistedInject;
 /**
  * Resource provider for host resources.
  */
-public class HostResourceProvider extends BaseBlueprintProcessor {
+public class HostResourceProvider extends BaseBlueprintProcessor
+    implements ExtendedResourceProvider, QueryCapabilities {
 
   // ----- Property ID constants ---------------------------------------------
 
@@ -128,6 +137,13 @@ public class HostResourceProvider extends BaseBlueprintProcessor {
       new HashSet<String>(Arrays.asList(new String[]{
           HOST_NAME_PROPERTY_ID}));
 
+  /**
+   * The properties by which a listing of hosts can be paged before the host
+   * responses are built.
+   */
+  private static final Set<String> PAGEABLE_PROPERTY_IDS =
+      new HashSet<String>(Arrays.asList(HOST_CLUSTER_NAME_PROPERTY_ID, HOST_NAME_PROPERTY_ID));
+
   @Inject
   private MaintenanceStateHelper maintenanceStateHelper;
 
@@ -178,16 +194,7 @@ public class HostResourceProvider extends BaseBlueprintProcessor {
   public Set<Resource> getResources(Request request, Predicate predicate)
       throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
 
-    final Set<HostRequest> requests = new HashSet<HostRequest>();
-
-    if (predicate == null) {
-      requests.add(getRequest(null));
-    }
-    else {
-      for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
-        requests.add(getRequest(propertyMap));
-      }
-    }
+    final Set<HostRequest> requests = getRequests(predicate);
 
     Set<HostResponse> responses = getResources(new Command<Set<HostResponse>>() {
       @Override
@@ -200,58 +207,109 @@ public class HostResourceProvider extends BaseBlueprintProcessor {
     Set<Resource> resources    = new HashSet<Resource>();
 
     for (HostResponse response : responses) {
-      Resource resource = new ResourceImpl(Resource.Type.Host);
+      resources.add(toResource(response, requestedIds));
+    }
+    return resources;
+  }
+
+
+  // ----- ExtendedResourceProvider ------------------------------------------
+
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    PageRequest pageRequest = request.getPageRequest();
+
+    Set<HostRequest> requests = pageRequest == null || !isPredicateSupported(predicate) ?
+        null : getRequests(predicate);
+
+    // only a listing of all of the hosts, or all of the hosts of a cluster, can
+    // be paged by host name before the host responses are built
+    if (requests == null || requests.size() != 1 || requests.iterator().next().getHostname() != null) {
+      return new QueryResponseImpl(getResources(request, predicate));
+    }
+
+    final String clusterName = requests.iterator().next().getClusterName();
 
-      // TODO : properly handle more than one cluster
-      if (response.getClusterName() != null
-          && !response.getClusterName().isEmpty()) {
-        setResourceProperty(resource, HOST_CLUSTER_NAME_PROPERTY_ID,
-            response.getClusterName(), requestedIds);
+    List<String> hostNames = getResources(new Command<List<String>>() {
+      @Override
+      public List<String> invoke() throws AmbariException {
+        return getHostNames(clusterName);
       }
-      setResourceProperty(resource, HOST_NAME_PROPERTY_ID,
-          response.getHostname(), requestedIds);
-      setResourceProperty(resource, HOST_PUBLIC_NAME_PROPERTY_ID,
-          response.getPublicHostName(), requestedIds);
-      setResourceProperty(resource, HOST_IP_PROPERTY_ID,
-          response.getIpv4(), requestedIds);
-      setResourceProperty(resource, HOST_TOTAL_MEM_PROPERTY_ID,
-          response.getTotalMemBytes(), requestedIds);
-      setResourceProperty(resource, HOST_CPU_COUNT_PROPERTY_ID,
-          (long) response.getCpuCount(), requestedIds);
-      setResourceProperty(resource, HOST_PHYSICAL_CPU_COUNT_PROPERTY_ID,
-          (long) response.getPhCpuCount(), requestedIds);      
-      setResourceProperty(resource, HOST_OS_ARCH_PROPERTY_ID,
-          response.getOsArch(), requestedIds);
-      setResourceProperty(resource, HOST_OS_TYPE_PROPERTY_ID,
-          response.getOsType(), requestedIds);
-      setResourceProperty(resource, HOST_RACK_INFO_PROPERTY_ID,
-          response.getRackInfo(), requestedIds);
-      setResourceProperty(resource, HOST_LAST_HEARTBEAT_TIME_PROPERTY_ID,
-          response.getLastHeartbeatTime(), requestedIds);
-      setResourceProperty(resource, HOST_LAST_AGENT_ENV_PROPERTY_ID,
-          response.getLastAgentEnv(), requestedIds);
-      setResourceProperty(resource, HOST_LAST_REGISTRATION_TIME_PROPERTY_ID,
-          response.getLastRegistrationTime(), requestedIds);
-      setResourceProperty(resource, HOST_HOST_STATUS_PROPERTY_ID,
-          response.getStatus(),requestedIds);
-      setResourceProperty(resource, HOST_HOST_HEALTH_REPORT_PROPERTY_ID,
-          response.getHealthStatus().getHealthReport(), requestedIds);
-      setResourceProperty(resource, HOST_DISK_INFO_PROPERTY_ID,
-          response.getDisksInfo(), requestedIds);
-      setResourceProperty(resource, HOST_STATE_PROPERTY_ID,
-          response.getHostState(), requestedIds);
-      setResourceProperty(resource, HOST_DESIRED_CONFIGS_PROPERTY_ID,
-          response.getDesiredHostConfigs(), requestedIds);
-      
-      // only when a cluster request
-      if (null != response.getMaintenanceState()) {
-        setResourceProperty(resource, HOST_MAINTENANCE_STATE_PROPERTY_ID,
-            response.getMaintenanceState(), requestedIds);
+    });
+
+    Collections.sort(hostNames);
+    SortRequest sortRequest = request.getSortRequest();
+    if (sortRequest != null && sortRequest.getProperties().get(0).getOrder() == SortRequest.Order.DESC) {
+      Collections.reverse(hostNames);
+    }
+
+    List<String> pageHostNames = getPage(hostNames, pageRequest);
+
+    final Set<HostRequest> pageRequests = new HashSet<HostRequest>();
+    for (String hostName : pageHostNames) {
+      pageRequests.add(new HostRequest(hostName, clusterName, null));
+    }
+
+    Set<HostResponse> responses = getResources(new Command<Set<HostResponse>>() {
+      @Override
+      public Set<HostResponse> invoke() throws AmbariException {
+        Set<HostResponse> hostResponses = new HashSet<HostResponse>();
+        for (HostRequest hostRequest : pageRequests) {
+          try {
+            hostResponses.addAll(getHosts(getManagementController(), hostRequest));
+          } catch (HostNotFoundException e) {
+            // the host was removed since the names were read
+          }
+        }
+        return hostResponses;
       }
-      
-      resources.add(resource);
+    });
+
+    Map<String, HostResponse> responseMap = new HashMap<String, HostResponse>();
+    for (HostResponse response : responses) {
+      responseMap.put(response.getHostname(), response);
+    }
+
+    Set<String>   requestedIds = getRequestPropertyIds(request, predicate);
+    Set<Resource> resources    = new LinkedHashSet<Resource>();
+
+    for (String hostName : pageHostNames) {
+      HostResponse response = responseMap.get(hostName);
+      if (response != null) {
+        resources.add(toResource(response, requestedIds));
+      }
+    }
+    return new QueryResponseImpl(resources, true, true, hostNames.size());
+  }
+
+
+  // ----- QueryCapabilities -------------------------------------------------
+
+  @Override
+  public boolean isPredicateSupported(Predicate predicate) {
+    return SupportedPredicateVisitor.isSupported(predicate, PAGEABLE_PROPERTY_IDS,
+        SupportedPredicateVisitor.EQUALS_OPERATORS);
+  }
+
+  @Override
+  public boolean isSortSupported(SortRequest sortRequest) {
+    List<SortRequestProperty> properties = sortRequest.getProperties();
+    return properties.size() == 1 && HOST_NAME_PROPERTY_ID.equals(properties.get(0).getPropertyId());
+  }
+
+  @Override
+  public boolean isPageSupported(PageRequest pageRequest) {
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+      case OffsetStart:
+      case End:
+      case OffsetEnd:
+        return true;
+      default:
+        return false;
     }
-    return resources;
   }
 
   @Override
@@ -339,6 +397,119 @@ public class HostResourceProvider extends BaseBlueprintProcessor {
     return isHostGroupRequest;
   }
 
+  /**
+   * Get the host requests for the given predicate.
+   *
+   * @param predicate  the predicate; may be null
+   *
+   * @return the host requests
+   */
+  private Set<HostRequest> getRequests(Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    Set<HostRequest> requests = new HashSet<HostRequest>();
+
+    if (predicate == null) {
+      requests.add(getRequest(null));
+    }
+    else {
+      for (Map<String, Object> propertyMap : getPropertyMaps(predicate)) {
+        requests.add(getRequest(propertyMap));
+      }
+    }
+    return requests;
+  }
+
+  /**
+   * Get the names of the hosts of the given cluster without building the
+   * host responses.
+   *
+   * @param clusterName  the cluster name; null for all hosts
+   *
+   * @return the host names
+   *
+   * @throws AmbariException if the cluster doesn't exist
+   */
+  private List<String> getHostNames(String clusterName) throws AmbariException {
+    Clusters clusters = getManagementController().getClusters();
+
+    if (clusterName == null) {
+      List<String> hostNames = new ArrayList<String>();
+      for (Host host : clusters.getHosts()) {
+        hostNames.add(host.getHostName());
+      }
+      return hostNames;
+    }
+
+    try {
+      clusters.getCluster(clusterName);
+    } catch (ObjectNotFoundException e) {
+      throw new ParentObjectNotFoundException("Parent Cluster resource doesn't exist", e);
+    }
+    return new ArrayList<String>(clusters.getHostsForCluster(clusterName).keySet());
+  }
+
+  /**
+   * Create a host resource from the given response.
+   *
+   * @param response      the host response
+   * @param requestedIds  the requested property ids
+   *
+   * @return the host resource
+   */
+  private Resource toResource(HostResponse response, Set<String> requestedIds) {
+    Resource resource = new ResourceImpl(Resource.Type.Host);
+
+    // TODO : properly handle more than one cluster
+    if (response.getClusterName() != null
+        && !response.getClusterName().isEmpty()) {
+      setResourceProperty(resource, HOST_CLUSTER_NAME_PROPERTY_ID,
+          response.getClusterName(), requestedIds);
+    }
+    setResourceProperty(resource, HOST_NAME_PROPERTY_ID,
+        response.getHostname(), requestedIds);
+    setResourceProperty(resource, HOST_PUBLIC_NAME_PROPERTY_ID,
+        response.getPublicHostName(), requestedIds);
+    setResourceProperty(resource, HOST_IP_PROPERTY_ID,
+        response.getIpv4(), requestedIds);
+    setResourceProperty(resource, HOST_TOTAL_MEM_PROPERTY_ID,
+        response.getTotalMemBytes(), requestedIds);
+    setResourceProperty(resource, HOST_CPU_COUNT_PROPERTY_ID,
+        (long) response.getCpuCount(), requestedIds);
+    setResourceProperty(resource, HOST_PHYSICAL_CPU_COUNT_PROPERTY_ID,
+        (long) response.getPhCpuCount(), requestedIds);      
+    setResourceProperty(resource, HOST_OS_ARCH_PROPERTY_ID,
+        response.getOsArch(), requestedIds);
+    setResourceProperty(resource, HOST_OS_TYPE_PROPERTY_ID,
+        response.getOsType(), requestedIds);
+    setResourceProperty(resource, HOST_RACK_INFO_PROPERTY_ID,
+        response.getRackInfo(), requestedIds);
+    setResourceProperty(resource, HOST_LAST_HEARTBEAT_TIME_PROPERTY_ID,
+        response.getLastHeartbeatTime(), requestedIds);
+    setResourceProperty(resource, HOST_LAST_AGENT_ENV_PROPERTY_ID,
+        response.getLastAgentEnv(), requestedIds);
+    setResourceProperty(resource, HOST_LAST_REGISTRATION_TIME_PROPERTY_ID,
+        response.getLastRegistrationTime(), requestedIds);
+    setResourceProperty(resource, HOST_HOST_STATUS_PROPERTY_ID,
+        response.getStatus(),requestedIds);
+    setResourceProperty(resource, HOST_HOST_HEALTH_REPORT_PROPERTY_ID,
+        response.getHealthStatus().getHealthReport(), requestedIds);
+    setResourceProperty(resource, HOST_DISK_INFO_PROPERTY_ID,
+        response.getDisksInfo(), requestedIds);
+    setResourceProperty(resource, HOST_STATE_PROPERTY_ID,
+        response.getHostState(), requestedIds);
+    setResourceProperty(resource, HOST_DESIRED_CONFIGS_PROPERTY_ID,
+        response.getDesiredHostConfigs(), requestedIds);
+    
+    // only when a cluster request
+    if (null != response.getMaintenanceState()) {
+      setResourceProperty(resource, HOST_MAINTENANCE_STATE_PROPERTY_ID,
+          response.getMaintenanceState(), requestedIds);
+    }
+    
+    return resource;
+  }
+
   /**
    * Get a host request object from a map of property values.
    *
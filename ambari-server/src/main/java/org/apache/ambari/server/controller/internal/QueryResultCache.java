@@ -0,0 +1,673 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.TemporalInfo;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.events.AlertStateChangeEvent;
+import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.events.publishers.AlertEventPublisher;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
+import org.apache.ambari.server.security.SecurityHelper;
+import org.apache.ambari.server.security.SecurityHelperImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * The {@link QueryResultCache} holds the resources returned by resource
+ * providers for read-only queries so that the same query, polled by many
+ * browser tabs, is only computed once per time to live.
+ * <p/>
+ * Results are keyed on the resource type, predicate, requested properties and
+ * the authorization scope of the current user. They are invalidated by writes
+ * through the resource providers, by any {@link AmbariEvent} and, for alert
+ * resources, by {@link AlertStateChangeEvent}s. Since other state, such as
+ * host component state reported by heartbeats, changes without an event, the
+ * time to live bounds how stale a result can be.
+ * <p/>
+ * The properties that property providers, such as the metrics providers, add
+ * to the resources are cached separately, keyed on the query and the resources
+ * before they were populated, since the query layer populates the resources
+ * returned by a provider in a later step.
+ * <p/>
+ * Cached resources are copied on the way in and out since the query layer
+ * populates the resources it is handed.
+ */
+@Singleton
+public class QueryResultCache implements ResourceProviderObserver, QueryResultCacheMBean {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(QueryResultCache.class);
+
+  /**
+   * The name the statistics are registered under with the platform MBean server.
+   */
+  static final String MBEAN_NAME = "org.apache.ambari.server:type=QueryResultCache";
+
+  /**
+   * The resource types invalidated by alert state changes.
+   */
+  private static final Set<Resource.Type> ALERT_TYPES = new HashSet<Resource.Type>();
+
+  /**
+   * The resource types whose providers return different results per user
+   * rather than per granted authority.
+   */
+  private static final Set<Resource.Type> USER_SCOPED_TYPES = new HashSet<Resource.Type>();
+
+  static {
+    ALERT_TYPES.add(Resource.Type.Alert);
+    ALERT_TYPES.add(Resource.Type.AlertHistory);
+    ALERT_TYPES.add(Resource.Type.AlertNotice);
+
+    USER_SCOPED_TYPES.add(Resource.Type.User);
+    USER_SCOPED_TYPES.add(Resource.Type.UserPrivilege);
+    USER_SCOPED_TYPES.add(Resource.Type.ViewInstance);
+  }
+
+  /**
+   * The resource types whose query results are cached; empty if disabled.
+   */
+  private final Set<Resource.Type> m_types;
+
+  /**
+   * The cached query results.
+   */
+  private final Cache<Key, CachedResponse> m_cache;
+
+  /**
+   * The cached properties of populated resources.
+   */
+  private final Cache<PopulatedKey, Map<Resource, Resource>> m_populatedCache;
+
+  /**
+   * Invalidation counters per resource type; a result is only cached if no
+   * invalidation of its type happened while it was computed.
+   */
+  private final ConcurrentMap<Resource.Type, AtomicLong> m_generations =
+      new ConcurrentHashMap<Resource.Type, AtomicLong>();
+
+  /**
+   * Used to determine the authorization scope of the current user.
+   */
+  private final SecurityHelper m_securityHelper;
+
+  private final AtomicLong m_hits = new AtomicLong();
+  private final AtomicLong m_misses = new AtomicLong();
+  private final AtomicLong m_invalidations = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param configuration         the server configuration
+   * @param ambariEventPublisher  the publisher of Ambari events
+   * @param alertEventPublisher   the publisher of alert events
+   */
+  @Inject
+  public QueryResultCache(Configuration configuration,
+      AmbariEventPublisher ambariEventPublisher,
+      AlertEventPublisher alertEventPublisher) {
+
+    this(configuration.isApiQueryCacheEnabled()
+        ? parseTypes(configuration.getApiQueryCacheResourceTypes())
+        : Collections.<Resource.Type>emptySet(),
+        configuration.getApiQueryCacheTTL(),
+        configuration.getApiQueryCacheSize(),
+        SecurityHelperImpl.getInstance());
+
+    if (isEnabled()) {
+      ambariEventPublisher.register(this);
+      alertEventPublisher.register(this);
+      registerMBean();
+
+      LOG.info("Caching API query results of {} for {}ms", m_types,
+          configuration.getApiQueryCacheTTL());
+    }
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param types           the resource types to cache query results of
+   * @param ttl             the time to live of a result, in milliseconds
+   * @param maxSize         the maximum number of cached results
+   * @param securityHelper  used to determine the authorization scope
+   */
+  QueryResultCache(Set<Resource.Type> types, long ttl, int maxSize,
+      SecurityHelper securityHelper) {
+    m_types = types;
+    m_securityHelper = securityHelper;
+    m_cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(
+        ttl, TimeUnit.MILLISECONDS).build();
+    m_populatedCache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(
+        ttl, TimeUnit.MILLISECONDS).build();
+  }
+
+  /**
+   * Gets whether any query results are cached.
+   *
+   * @return {@code true} if caching is enabled
+   */
+  public boolean isEnabled() {
+    return !m_types.isEmpty();
+  }
+
+  /**
+   * Gets whether the result of the given query may be cached. Only reads of
+   * configured resource types which aren't paged or sorted by the provider are
+   * cached.
+   *
+   * @param type     the resource type
+   * @param request  the request
+   *
+   * @return {@code true} if the query result may be cached
+   */
+  public boolean isCacheable(Resource.Type type, Request request) {
+    return m_types.contains(type) && request != null
+        && request.getPageRequest() == null && request.getSortRequest() == null
+        && (request.getProperties() == null || request.getProperties().isEmpty());
+  }
+
+  /**
+   * Gets the invalidation generation of the given type. Pass it to
+   * {@link #put} so that results computed across an invalidation are dropped.
+   *
+   * @param type  the resource type
+   *
+   * @return the current generation
+   */
+  public long getGeneration(Resource.Type type) {
+    return getGenerationCounter(type).get();
+  }
+
+  /**
+   * Gets a copy of the cached response for the given query.
+   *
+   * @param type       the resource type
+   * @param request    the request
+   * @param predicate  the predicate
+   *
+   * @return the cached response or {@code null} if there is none
+   */
+  public QueryResponse get(Resource.Type type, Request request, Predicate predicate) {
+    CachedResponse cached = m_cache.getIfPresent(createKey(type, request, predicate));
+    if (cached == null) {
+      m_misses.incrementAndGet();
+      return null;
+    }
+    m_hits.incrementAndGet();
+    return cached.toQueryResponse();
+  }
+
+  /**
+   * Caches a copy of the given response.
+   *
+   * @param type        the resource type
+   * @param request     the request
+   * @param predicate   the predicate
+   * @param response    the response of the resource provider
+   * @param generation  the generation of the type before the query was executed
+   */
+  public void put(Resource.Type type, Request request, Predicate predicate,
+      QueryResponse response, long generation) {
+    Key key = createKey(type, request, predicate);
+    m_cache.put(key, new CachedResponse(response));
+
+    // drop the result if it was invalidated while being computed
+    if (getGeneration(type) != generation) {
+      m_cache.invalidate(key);
+    }
+  }
+
+  /**
+   * Populates the given resources from the cache with the properties that
+   * property providers added to equal resources for the same query.
+   *
+   * @param type       the resource type
+   * @param resources  the resources to populate
+   * @param request    the request
+   * @param predicate  the predicate
+   *
+   * @return the resources kept by the property providers, or {@code null} if
+   *         there was no cached result and the resources were not changed
+   */
+  public Set<Resource> populate(Resource.Type type, Set<Resource> resources,
+      Request request, Predicate predicate) {
+    Map<Resource, Resource> populated = m_populatedCache.getIfPresent(
+        new PopulatedKey(createKey(type, request, predicate), resources));
+    if (populated == null) {
+      m_misses.incrementAndGet();
+      return null;
+    }
+    m_hits.incrementAndGet();
+
+    Set<Resource> keepers = new LinkedHashSet<Resource>();
+    for (Resource resource : resources) {
+      Resource populatedResource = populated.get(resource);
+      if (populatedResource != null) {
+        copyProperties(populatedResource, resource);
+        keepers.add(resource);
+      }
+    }
+    return keepers;
+  }
+
+  /**
+   * Copies the given resources before they are populated, so that the
+   * populated properties can be cached by {@link #putPopulated}.
+   *
+   * @param resources  the resources to be populated
+   *
+   * @return copies of the resources keyed by the resource instances
+   */
+  public Map<Resource, Resource> copyUnpopulated(Set<Resource> resources) {
+    Map<Resource, Resource> unpopulated = new IdentityHashMap<Resource, Resource>();
+    for (Resource resource : resources) {
+      unpopulated.put(resource, new ResourceImpl(resource));
+    }
+    return unpopulated;
+  }
+
+  /**
+   * Caches copies of populated resources.
+   *
+   * @param type         the resource type
+   * @param unpopulated  the copies returned by {@link #copyUnpopulated}
+   * @param keepers      the populated resources kept by the property providers
+   * @param request      the request
+   * @param predicate    the predicate
+   * @param generation   the generation of the type before the resources were
+   *                     populated
+   */
+  public void putPopulated(Resource.Type type, Map<Resource, Resource> unpopulated,
+      Set<Resource> keepers, Request request, Predicate predicate, long generation) {
+    Map<Resource, Resource> populated = new HashMap<Resource, Resource>();
+    for (Resource keeper : keepers) {
+      Resource unpopulatedResource = unpopulated.get(keeper);
+      if (unpopulatedResource == null) {
+        // a property provider replaced the resource; there is nothing to key it on
+        return;
+      }
+      populated.put(unpopulatedResource, new ResourceImpl(keeper));
+    }
+
+    PopulatedKey key = new PopulatedKey(createKey(type, request, predicate),
+        unpopulated.values());
+    m_populatedCache.put(key, populated);
+
+    // drop the result if it was invalidated while being computed
+    if (getGeneration(type) != generation) {
+      m_populatedCache.invalidate(key);
+    }
+  }
+
+  /**
+   * Invalidates the cached results of the given resource types.
+   *
+   * @param types  the resource types
+   */
+  public void invalidate(Collection<Resource.Type> types) {
+    for (Resource.Type type : types) {
+      getGenerationCounter(type).incrementAndGet();
+    }
+
+    Iterator<Key> iterator = m_cache.asMap().keySet().iterator();
+    while (iterator.hasNext()) {
+      if (types.contains(iterator.next().m_type)) {
+        iterator.remove();
+      }
+    }
+    Iterator<PopulatedKey> populatedIterator = m_populatedCache.asMap().keySet().iterator();
+    while (populatedIterator.hasNext()) {
+      if (types.contains(populatedIterator.next().m_query.m_type)) {
+        populatedIterator.remove();
+      }
+    }
+    m_invalidations.incrementAndGet();
+  }
+
+  /**
+   * Invalidates all cached results.
+   */
+  public void invalidateAll() {
+    invalidate(m_types);
+  }
+
+  /**
+   * Invalidates all cached results on any Ambari event, such as a service
+   * being installed or a host being added.
+   *
+   * @param event  the event
+   */
+  @Subscribe
+  @AllowConcurrentEvents
+  public void onAmbariEvent(AmbariEvent event) {
+    invalidateAll();
+  }
+
+  /**
+   * Invalidates the cached alert results when an alert changes state.
+   *
+   * @param event  the event
+   */
+  @Subscribe
+  @AllowConcurrentEvents
+  public void onAlertEvent(AlertStateChangeEvent event) {
+    invalidate(ALERT_TYPES);
+  }
+
+
+  // ----- ResourceProviderObserver ------------------------------------------
+
+  @Override
+  public void update(ResourceProviderEvent event) {
+    // a write to one resource type can change the properties of others,
+    // e.g. host component state changes affect their host and service
+    invalidateAll();
+  }
+
+
+  // ----- QueryResultCacheMBean ---------------------------------------------
+
+  @Override
+  public long getHitCount() {
+    return m_hits.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return m_misses.get();
+  }
+
+  @Override
+  public double getHitRate() {
+    long hits = m_hits.get();
+    long total = hits + m_misses.get();
+    return total == 0 ? 1.0 : (double) hits / total;
+  }
+
+  @Override
+  public long getInvalidationCount() {
+    return m_invalidations.get();
+  }
+
+  @Override
+  public long getSize() {
+    return m_cache.size() + m_populatedCache.size();
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  /**
+   * Sets all properties of the source resource on the target resource.
+   */
+  private static void copyProperties(Resource source, Resource target) {
+    for (Map.Entry<String, Map<String, Object>> categoryEntry :
+        source.getPropertiesMap().entrySet()) {
+      Map<String, Object> propertyMap = categoryEntry.getValue();
+      if (propertyMap != null) {
+        for (Map.Entry<String, Object> propertyEntry : propertyMap.entrySet()) {
+          target.setProperty(PropertyHelper.getPropertyId(categoryEntry.getKey(),
+              propertyEntry.getKey()), propertyEntry.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Parses a comma separated list of resource type names, ignoring unknown
+   * types.
+   */
+  static Set<Resource.Type> parseTypes(String typeNames) {
+    Set<Resource.Type> types = new HashSet<Resource.Type>();
+    if (typeNames == null) {
+      return types;
+    }
+    for (String typeName : typeNames.split(",")) {
+      typeName = typeName.trim();
+      if (typeName.isEmpty()) {
+        continue;
+      }
+      try {
+        types.add(Resource.Type.valueOf(typeName));
+      } catch (IllegalArgumentException e) {
+        LOG.warn("Ignoring unknown resource type {} for the API query cache", typeName);
+      }
+    }
+    return types;
+  }
+
+  private AtomicLong getGenerationCounter(Resource.Type type) {
+    AtomicLong counter = m_generations.get(type);
+    if (counter == null) {
+      AtomicLong newCounter = new AtomicLong();
+      counter = m_generations.putIfAbsent(type, newCounter);
+      if (counter == null) {
+        counter = newCounter;
+      }
+    }
+    return counter;
+  }
+
+  private Key createKey(Resource.Type type, Request request, Predicate predicate) {
+    Map<String, TemporalInfo> temporalInfo = new HashMap<String, TemporalInfo>();
+    for (String propertyId : request.getPropertyIds()) {
+      TemporalInfo info = request.getTemporalInfo(propertyId);
+      if (info != null) {
+        temporalInfo.put(propertyId, info);
+      }
+    }
+
+    Map<String, String> requestInfo = request.getRequestInfoProperties();
+
+    return new Key(type,
+        predicate == null ? null : predicate.toString(),
+        new HashSet<String>(request.getPropertyIds()),
+        temporalInfo,
+        requestInfo == null ? Collections.<String, String>emptyMap() : new HashMap<String, String>(requestInfo),
+        getAuthorizationScope(type));
+  }
+
+  /**
+   * Gets the authorization scope of the current user; the granted authorities
+   * which name both the permission and the resource it applies to.
+   */
+  private String getAuthorizationScope(Resource.Type type) {
+    if (USER_SCOPED_TYPES.contains(type)) {
+      return m_securityHelper.getCurrentUserName();
+    }
+
+    Collection<? extends GrantedAuthority> authorities = m_securityHelper.getCurrentAuthorities();
+    if (authorities == null) {
+      return "";
+    }
+    Set<String> scope = new TreeSet<String>();
+    for (GrantedAuthority authority : authorities) {
+      scope.add(authority.getAuthority());
+    }
+    return scope.toString();
+  }
+
+  private void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(this, name);
+      }
+    } catch (Exception e) {
+      LOG.warn("Unable to register the API query cache statistics with JMX", e);
+    }
+  }
+
+  /**
+   * The key of a cached query result.
+   */
+  private static final class Key {
+    private final Resource.Type m_type;
+    private final String m_predicate;
+    private final Set<String> m_propertyIds;
+    private final Map<String, TemporalInfo> m_temporalInfo;
+    private final Map<String, String> m_requestInfo;
+    private final String m_scope;
+    private final int m_hashCode;
+
+    private Key(Resource.Type type, String predicate, Set<String> propertyIds,
+        Map<String, TemporalInfo> temporalInfo, Map<String, String> requestInfo,
+        String scope) {
+      m_type = type;
+      m_predicate = predicate;
+      m_propertyIds = propertyIds;
+      m_temporalInfo = temporalInfo;
+      m_requestInfo = requestInfo;
+      m_scope = scope;
+
+      int result = type.hashCode();
+      result = 31 * result + (predicate == null ? 0 : predicate.hashCode());
+      result = 31 * result + propertyIds.hashCode();
+      result = 31 * result + temporalInfo.hashCode();
+      result = 31 * result + requestInfo.hashCode();
+      result = 31 * result + (scope == null ? 0 : scope.hashCode());
+      m_hashCode = result;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      Key that = (Key) o;
+
+      return m_hashCode == that.m_hashCode
+          && m_type.equals(that.m_type)
+          && (m_predicate == null ? that.m_predicate == null : m_predicate.equals(that.m_predicate))
+          && m_propertyIds.equals(that.m_propertyIds)
+          && m_temporalInfo.equals(that.m_temporalInfo)
+          && m_requestInfo.equals(that.m_requestInfo)
+          && (m_scope == null ? that.m_scope == null : m_scope.equals(that.m_scope));
+    }
+
+    @Override
+    public int hashCode() {
+      return m_hashCode;
+    }
+  }
+
+  /**
+   * The key of cached populated resources; the query and the resources before
+   * they were populated.
+   */
+  private static final class PopulatedKey {
+    private final Key m_query;
+    private final Set<Resource> m_resources;
+
+    private PopulatedKey(Key query, Collection<Resource> resources) {
+      m_query = query;
+      // rehash, the resources may have changed since they were added to their set
+      m_resources = new HashSet<Resource>(resources);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+
+      PopulatedKey that = (PopulatedKey) o;
+
+      return m_query.equals(that.m_query) && m_resources.equals(that.m_resources);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * m_query.hashCode() + m_resources.hashCode();
+    }
+  }
+
+  /**
+   * A copy of a query response.
+   */
+  private static final class CachedResponse {
+    private final Set<Resource> m_resources;
+    private final boolean m_sorted;
+    private final boolean m_paged;
+    private final int m_totalResourceCount;
+
+    private CachedResponse(QueryResponse response) {
+      m_resources = copy(response.getResources());
+      m_sorted = response.isSortedResponse();
+      m_paged = response.isPagedResponse();
+      m_totalResourceCount = response.getTotalResourceCount();
+    }
+
+    private QueryResponse toQueryResponse() {
+      return new QueryResponseImpl(copy(m_resources), m_sorted, m_paged,
+          m_totalResourceCount);
+    }
+
+    private static Set<Resource> copy(Set<Resource> resources) {
+      Set<Resource> copy = new LinkedHashSet<Resource>();
+      for (Resource resource : resources) {
+        copy.add(new ResourceImpl(resource));
+      }
+      return copy;
+    }
+  }
+}
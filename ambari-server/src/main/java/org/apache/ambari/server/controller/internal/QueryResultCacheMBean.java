@@ -0,0 +1,49 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+/**
+ * JMX view of the {@link QueryResultCache} statistics.
+ */
+public interface QueryResultCacheMBean {
+
+  /**
+   * @return the number of queries answered from the cache
+   */
+  public long getHitCount();
+
+  /**
+   * @return the number of cacheable queries which had to be executed
+   */
+  public long getMissCount();
+
+  /**
+   * @return the ratio of hits to cacheable queries, {@code 1.0} if there were none
+   */
+  public double getHitRate();
+
+  /**
+   * @return the number of times cached results were invalidated
+   */
+  public long getInvalidationCount();
+
+  /**
+   * @return the approximate number of cached query results
+   */
+  public long getSize();
+}
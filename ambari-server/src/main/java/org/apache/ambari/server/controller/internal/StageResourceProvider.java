@@ -18,6 +18,7 @@
 package org.apache.ambari.server.controller.internal;
 
 import org.apache.ambari.server.StaticallyInject;
+import org.apache.ambari.server.actionmanager.ActionDBAccessor;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
@@ -70,6 +71,12 @@ public class StageResourceProvider extends AbstractControllerResourceProvider im
   @Inject
   private static HostRoleCommandDAO hostRoleCommandDAO = null;
 
+  /**
+   * Used to refresh the stages in progress after their tasks are updated.
+   */
+  @Inject
+  private static ActionDBAccessor actionDBAccessor = null;
+
   /**
    * Used to get cluster information.
    */
@@ -290,6 +297,7 @@ public class StageResourceProvider extends AbstractControllerResourceProvider im
           hostRoleCommandDAO.merge(hostRoleCommand);
         }
       }
+      actionDBAccessor.invalidateStagesInProgress();
     }
   }
 
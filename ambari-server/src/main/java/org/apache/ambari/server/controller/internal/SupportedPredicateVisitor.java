@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.ambari.server.controller.predicate.AlwaysPredicate;
+import org.apache.ambari.server.controller.predicate.ArrayPredicate;
+import org.apache.ambari.server.controller.predicate.CategoryPredicate;
+import org.apache.ambari.server.controller.predicate.ComparisonPredicate;
+import org.apache.ambari.server.controller.predicate.PredicateVisitor;
+import org.apache.ambari.server.controller.predicate.PredicateVisitorAcceptor;
+import org.apache.ambari.server.controller.predicate.UnaryPredicate;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.utilities.PredicateHelper;
+
+/**
+ * Predicate visitor which determines whether a predicate graph is made up only
+ * of AND / OR combinations of comparisons on a given set of properties, i.e.
+ * whether a resource provider can apply it without the help of the cluster
+ * controller.
+ */
+public class SupportedPredicateVisitor implements PredicateVisitor {
+
+  /**
+   * Only equality comparisons.
+   */
+  public static final Set<String> EQUALS_OPERATORS = Collections.singleton("=");
+
+  /**
+   * The comparisons which can be translated into a JPA predicate.
+   */
+  public static final Set<String> COMPARISON_OPERATORS = Collections.unmodifiableSet(
+      new HashSet<String>(Arrays.asList("=", "<", "<=", ">", ">=")));
+
+  private final Set<String> propertyIds;
+  private final Set<String> operators;
+  private boolean supported = true;
+
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Constructor.
+   *
+   * @param propertyIds  the property ids which may be compared
+   * @param operators    the comparison operators which may be used
+   */
+  public SupportedPredicateVisitor(Set<String> propertyIds, Set<String> operators) {
+    this.propertyIds = propertyIds;
+    this.operators   = operators;
+  }
+
+
+  // ----- PredicateVisitor --------------------------------------------------
+
+  @Override
+  public void acceptComparisonPredicate(ComparisonPredicate predicate) {
+    if (!propertyIds.contains(predicate.getPropertyId()) ||
+        !operators.contains(predicate.getOperator()) ||
+        predicate.getValue() == null) {
+      supported = false;
+    }
+  }
+
+  @Override
+  public void acceptArrayPredicate(ArrayPredicate predicate) {
+    for (Predicate child : predicate.getPredicates()) {
+      if (!supported) {
+        return;
+      }
+      visit(child);
+    }
+  }
+
+  @Override
+  public void acceptUnaryPredicate(UnaryPredicate predicate) {
+    supported = false;
+  }
+
+  @Override
+  public void acceptAlwaysPredicate(AlwaysPredicate predicate) {
+    // matches everything
+  }
+
+  @Override
+  public void acceptCategoryPredicate(CategoryPredicate predicate) {
+    supported = false;
+  }
+
+
+  // ----- accessors ---------------------------------------------------------
+
+  /**
+   * Determine whether or not all of the visited predicates are supported.
+   *
+   * @return true if the visited predicate graph is supported
+   */
+  public boolean isSupported() {
+    return supported;
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  /**
+   * Determine whether the given predicate is made up only of comparisons on the
+   * given properties using the given operators.
+   *
+   * @param predicate    the predicate; may be null
+   * @param propertyIds  the property ids which may be compared
+   * @param operators    the comparison operators which may be used
+   *
+   * @return true if the predicate is supported
+   */
+  public static boolean isSupported(Predicate predicate, Set<String> propertyIds,
+                                    Set<String> operators) {
+    if (predicate == null) {
+      return true;
+    }
+    SupportedPredicateVisitor visitor = new SupportedPredicateVisitor(propertyIds, operators);
+    visitor.visit(predicate);
+    return visitor.isSupported();
+  }
+
+  // predicates which can't be visited can't be checked either
+  private void visit(Predicate predicate) {
+    if (predicate instanceof PredicateVisitorAcceptor) {
+      PredicateHelper.visit(predicate, this);
+    } else {
+      supported = false;
+    }
+  }
+}
@@ -20,51 +20,67 @@ package org.apache.ambari.server.controller.internal;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.StaticallyInject;
+import org.apache.ambari.server.actionmanager.HostRoleCommandFactory;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.TaskStatusRequest;
 import org.apache.ambari.server.controller.TaskStatusResponse;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryCapabilities;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.spi.SystemException;
 import org.apache.ambari.server.controller.spi.UnsupportedPropertyException;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity_;
 import org.codehaus.jackson.map.ObjectMapper;
 
+import com.google.inject.Inject;
+
 /**
  * Resource provider for task resources.
  */
-class TaskResourceProvider extends AbstractControllerResourceProvider {
+@StaticallyInject
+public class TaskResourceProvider extends AbstractControllerResourceProvider implements
+    ExtendedResourceProvider, QueryCapabilities {
 
   // ----- Property ID constants ---------------------------------------------
 
   // Tasks
-  protected static final String TASK_CLUSTER_NAME_PROPERTY_ID = PropertyHelper.getPropertyId("Tasks", "cluster_name");
-  protected static final String TASK_REQUEST_ID_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "request_id");
-  protected static final String TASK_ID_PROPERTY_ID           = PropertyHelper.getPropertyId("Tasks", "id");
-  protected static final String TASK_STAGE_ID_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "stage_id");
-  protected static final String TASK_HOST_NAME_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "host_name");
-  protected static final String TASK_ROLE_PROPERTY_ID         = PropertyHelper.getPropertyId("Tasks", "role");
-  protected static final String TASK_COMMAND_PROPERTY_ID      = PropertyHelper.getPropertyId("Tasks", "command");
-  protected static final String TASK_STATUS_PROPERTY_ID       = PropertyHelper.getPropertyId("Tasks", "status");
-  protected static final String TASK_EXIT_CODE_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "exit_code");
-  protected static final String TASK_STDERR_PROPERTY_ID       = PropertyHelper.getPropertyId("Tasks", "stderr");
-  protected static final String TASK_STOUT_PROPERTY_ID        = PropertyHelper.getPropertyId("Tasks", "stdout");
-  protected static final String TASK_OUTPUTLOG_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "output_log");
-  protected static final String TASK_ERRORLOG_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "error_log");
-  protected static final String TASK_STRUCT_OUT_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "structured_out");
-  protected static final String TASK_START_TIME_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "start_time");
-  protected static final String TASK_END_TIME_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "end_time");
-  protected static final String TASK_ATTEMPT_CNT_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "attempt_cnt");
-  protected static final String TASK_COMMAND_DET_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "command_detail");
-  protected static final String TASK_CUST_CMD_NAME_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "custom_command_name");
+  public static final String TASK_CLUSTER_NAME_PROPERTY_ID = PropertyHelper.getPropertyId("Tasks", "cluster_name");
+  public static final String TASK_REQUEST_ID_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "request_id");
+  public static final String TASK_ID_PROPERTY_ID           = PropertyHelper.getPropertyId("Tasks", "id");
+  public static final String TASK_STAGE_ID_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "stage_id");
+  public static final String TASK_HOST_NAME_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "host_name");
+  public static final String TASK_ROLE_PROPERTY_ID         = PropertyHelper.getPropertyId("Tasks", "role");
+  public static final String TASK_COMMAND_PROPERTY_ID      = PropertyHelper.getPropertyId("Tasks", "command");
+  public static final String TASK_STATUS_PROPERTY_ID       = PropertyHelper.getPropertyId("Tasks", "status");
+  public static final String TASK_EXIT_CODE_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "exit_code");
+  public static final String TASK_STDERR_PROPERTY_ID       = PropertyHelper.getPropertyId("Tasks", "stderr");
+  public static final String TASK_STOUT_PROPERTY_ID        = PropertyHelper.getPropertyId("Tasks", "stdout");
+  public static final String TASK_OUTPUTLOG_PROPERTY_ID    = PropertyHelper.getPropertyId("Tasks", "output_log");
+  public static final String TASK_ERRORLOG_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "error_log");
+  public static final String TASK_STRUCT_OUT_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "structured_out");
+  public static final String TASK_START_TIME_PROPERTY_ID   = PropertyHelper.getPropertyId("Tasks", "start_time");
+  public static final String TASK_END_TIME_PROPERTY_ID     = PropertyHelper.getPropertyId("Tasks", "end_time");
+  public static final String TASK_ATTEMPT_CNT_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "attempt_cnt");
+  public static final String TASK_COMMAND_DET_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "command_detail");
+  public static final String TASK_CUST_CMD_NAME_PROPERTY_ID  = PropertyHelper.getPropertyId("Tasks", "custom_command_name");
 
   private static Set<String> pkPropertyIds =
       new HashSet<String>(Arrays.asList(new String[]{
@@ -75,6 +91,18 @@ class TaskResourceProvider extends AbstractControllerResourceProvider {
    */
   private static final ObjectMapper mapper = new ObjectMapper();
 
+  /**
+   * Used to query for a page of tasks.
+   */
+  @Inject
+  private static HostRoleCommandDAO s_dao;
+
+  /**
+   * Used to create the commands which the task responses are built from.
+   */
+  @Inject
+  private static HostRoleCommandFactory s_hostRoleCommandFactory;
+
   // ----- Constructors ----------------------------------------------------
 
   /**
@@ -139,44 +167,121 @@ class TaskResourceProvider extends AbstractControllerResourceProvider {
 
       resources = new HashSet<Resource>();
       for (TaskStatusResponse response : responses) {
-        Resource resource = new ResourceImpl(Resource.Type.Task);
-
-        // !!! shocked this isn't broken.  the key can be null for non-cluster tasks
-        if (null != entry.getKey())
-          setResourceProperty(resource, TASK_CLUSTER_NAME_PROPERTY_ID, entry.getKey(), requestedIds);  
-        
-        setResourceProperty(resource, TASK_REQUEST_ID_PROPERTY_ID, response.getRequestId(), requestedIds);
-        setResourceProperty(resource, TASK_ID_PROPERTY_ID, response.getTaskId(), requestedIds);
-        setResourceProperty(resource, TASK_STAGE_ID_PROPERTY_ID, response.getStageId(), requestedIds);
-        setResourceProperty(resource, TASK_HOST_NAME_PROPERTY_ID, response.getHostName(), requestedIds);
-        setResourceProperty(resource, TASK_ROLE_PROPERTY_ID, response.getRole(), requestedIds);
-        setResourceProperty(resource, TASK_COMMAND_PROPERTY_ID, response.getCommand(), requestedIds);
-        setResourceProperty(resource, TASK_STATUS_PROPERTY_ID, response.getStatus(), requestedIds);
-        setResourceProperty(resource, TASK_EXIT_CODE_PROPERTY_ID, response.getExitCode(), requestedIds);
-        setResourceProperty(resource, TASK_STDERR_PROPERTY_ID, response.getStderr(), requestedIds);
-        setResourceProperty(resource, TASK_STOUT_PROPERTY_ID, response.getStdout(), requestedIds);
-        setResourceProperty(resource, TASK_OUTPUTLOG_PROPERTY_ID, response.getOutputLog(), requestedIds);
-        setResourceProperty(resource, TASK_ERRORLOG_PROPERTY_ID, response.getErrorLog(), requestedIds);
-        setResourceProperty(resource, TASK_STRUCT_OUT_PROPERTY_ID, parseStructuredOutput(response.getStructuredOut()), requestedIds);
-        setResourceProperty(resource, TASK_START_TIME_PROPERTY_ID, response.getStartTime(), requestedIds);
-        setResourceProperty(resource, TASK_END_TIME_PROPERTY_ID, response.getEndTime(), requestedIds);
-        setResourceProperty(resource, TASK_ATTEMPT_CNT_PROPERTY_ID, response.getAttemptCount(), requestedIds);
-
-        if (response.getCustomCommandName() != null) {
-          setResourceProperty(resource, TASK_CUST_CMD_NAME_PROPERTY_ID, response.getCustomCommandName(), requestedIds);
-        }
+        resources.add(toResource(entry.getKey(), response, requestedIds));
+      }
+    }
+    return resources;
+  }
 
-        if (response.getCommandDetail() == null) {
-          setResourceProperty(resource, TASK_COMMAND_DET_PROPERTY_ID,
-              String.format("%s %s", response.getRole(), response.getCommand()), requestedIds);
-        } else {
-          setResourceProperty(resource, TASK_COMMAND_DET_PROPERTY_ID, response.getCommandDetail(), requestedIds);
-        }
+  // ----- ExtendedResourceProvider ----------------------------------------
+
+  @Override
+  public QueryResponse queryForResources(Request request, Predicate predicate)
+      throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+
+    // the cluster controller only passes on the sort and page that the
+    // database can apply, so only the tasks which are returned are loaded
+    if ((request.getSortRequest() == null && request.getPageRequest() == null) ||
+        !isPredicateSupported(predicate)) {
+      return new QueryResponseImpl(getResources(request, predicate));
+    }
+
+    Set<String>   requestedIds = getRequestPropertyIds(request, predicate);
+    String        clusterName  = (String) getQueryParameterValue(TASK_CLUSTER_NAME_PROPERTY_ID, predicate);
+    Set<Resource> resources    = new LinkedHashSet<Resource>();
+
+    for (HostRoleCommandEntity entity : s_dao.findAll(request, predicate)) {
+      TaskStatusResponse response = new TaskStatusResponse(s_hostRoleCommandFactory.createExisting(entity));
+      resources.add(toResource(clusterName, response, requestedIds));
+    }
+
+    boolean paged = request.getPageRequest() != null;
+
+    return new QueryResponseImpl(resources, true, paged,
+        paged ? s_dao.getCount(predicate) : resources.size());
+  }
+
+
+  // ----- QueryCapabilities -----------------------------------------------
+
+  @Override
+  public boolean isPredicateSupported(Predicate predicate) {
+    // the DAO compares the cluster name against the cluster of each stage
+    Set<String> propertyIds = new HashSet<String>(HostRoleCommandEntity_.getPredicateMapping().keySet());
+    propertyIds.add(TASK_CLUSTER_NAME_PROPERTY_ID);
+
+    return SupportedPredicateVisitor.isSupported(predicate, propertyIds,
+        SupportedPredicateVisitor.COMPARISON_OPERATORS);
+  }
 
-        resources.add(resource);
+  @Override
+  public boolean isSortSupported(SortRequest sortRequest) {
+    Set<String> propertyIds = HostRoleCommandEntity_.getPredicateMapping().keySet();
+    for (SortRequestProperty property : sortRequest.getProperties()) {
+      if (!propertyIds.contains(property.getPropertyId())) {
+        return false;
       }
     }
-    return resources;
+    return true;
+  }
+
+  @Override
+  public boolean isPageSupported(PageRequest pageRequest) {
+    // the query is paged by offset and maximum number of results
+    switch (pageRequest.getStartingPoint()) {
+      case Beginning:
+      case OffsetStart:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Create a task resource from the given response.
+   *
+   * @param clusterName   the cluster name; may be null for tasks not associated with a cluster
+   * @param response      the task response
+   * @param requestedIds  the requested property ids
+   *
+   * @return the task resource
+   */
+  private Resource toResource(String clusterName, TaskStatusResponse response, Set<String> requestedIds) {
+    Resource resource = new ResourceImpl(Resource.Type.Task);
+
+    // !!! shocked this isn't broken.  the key can be null for non-cluster tasks
+    if (null != clusterName)
+      setResourceProperty(resource, TASK_CLUSTER_NAME_PROPERTY_ID, clusterName, requestedIds);
+
+    setResourceProperty(resource, TASK_REQUEST_ID_PROPERTY_ID, response.getRequestId(), requestedIds);
+    setResourceProperty(resource, TASK_ID_PROPERTY_ID, response.getTaskId(), requestedIds);
+    setResourceProperty(resource, TASK_STAGE_ID_PROPERTY_ID, response.getStageId(), requestedIds);
+    setResourceProperty(resource, TASK_HOST_NAME_PROPERTY_ID, response.getHostName(), requestedIds);
+    setResourceProperty(resource, TASK_ROLE_PROPERTY_ID, response.getRole(), requestedIds);
+    setResourceProperty(resource, TASK_COMMAND_PROPERTY_ID, response.getCommand(), requestedIds);
+    setResourceProperty(resource, TASK_STATUS_PROPERTY_ID, response.getStatus(), requestedIds);
+    setResourceProperty(resource, TASK_EXIT_CODE_PROPERTY_ID, response.getExitCode(), requestedIds);
+    setResourceProperty(resource, TASK_STDERR_PROPERTY_ID, response.getStderr(), requestedIds);
+    setResourceProperty(resource, TASK_STOUT_PROPERTY_ID, response.getStdout(), requestedIds);
+    setResourceProperty(resource, TASK_OUTPUTLOG_PROPERTY_ID, response.getOutputLog(), requestedIds);
+    setResourceProperty(resource, TASK_ERRORLOG_PROPERTY_ID, response.getErrorLog(), requestedIds);
+    setResourceProperty(resource, TASK_STRUCT_OUT_PROPERTY_ID, parseStructuredOutput(response.getStructuredOut()), requestedIds);
+    setResourceProperty(resource, TASK_START_TIME_PROPERTY_ID, response.getStartTime(), requestedIds);
+    setResourceProperty(resource, TASK_END_TIME_PROPERTY_ID, response.getEndTime(), requestedIds);
+    setResourceProperty(resource, TASK_ATTEMPT_CNT_PROPERTY_ID, response.getAttemptCount(), requestedIds);
+
+    if (response.getCustomCommandName() != null) {
+      setResourceProperty(resource, TASK_CUST_CMD_NAME_PROPERTY_ID, response.getCustomCommandName(), requestedIds);
+    }
+
+    if (response.getCommandDetail() == null) {
+      setResourceProperty(resource, TASK_COMMAND_DET_PROPERTY_ID,
+          String.format("%s %s", response.getRole(), response.getCommand()), requestedIds);
+    } else {
+      setResourceProperty(resource, TASK_COMMAND_DET_PROPERTY_ID, response.getCommandDetail(), requestedIds);
+    }
+
+    return resource;
   }
 
   /**
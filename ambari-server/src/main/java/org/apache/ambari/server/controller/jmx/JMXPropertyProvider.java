@@ -18,6 +18,8 @@
 
 package org.apache.ambari.server.controller.jmx;
 
+import org.apache.ambari.server.StaticallyInject;
+import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.internal.PropertyInfo;
 import org.apache.ambari.server.controller.metrics.MetricHostProvider;
 import org.apache.ambari.server.controller.metrics.ThreadPoolEnabledPropertyProvider;
@@ -32,27 +34,52 @@ import org.codehaus.jackson.map.ObjectReader;
 import org.codehaus.jackson.type.TypeReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URLEncoder;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Property provider implementation for JMX sources.
  */
+@StaticallyInject
 public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
 
   private static final String NAME_KEY = "name";
   private static final String PORT_KEY = "tag.port";
   private static final String DOT_REPLACEMENT_CHAR = "#";
 
+  /**
+   * The name of the executor shared by the JMX providers.
+   */
+  public static final String EXECUTOR_NAME = "JMX";
+
+  /**
+   * The maximum number of bean queries sent to an endpoint for a request;
+   * requests for beans of more categories read all beans instead.
+   */
+  private static final int MAX_BEAN_QUERIES = 4;
+
+  /**
+   * The configuration; the defaults are used if it wasn't injected.
+   */
+  @Inject
+  private static Configuration configuration;
+
   private final static ObjectReader jmxObjectReader;
   private final static ObjectReader stormObjectReader;
 
@@ -100,6 +127,13 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
 
   private final String statePropertyId;
 
+  private final JMXSnapshotCache snapshotCache;
+
+  /**
+   * Whether endpoints are asked only for the beans of the requested metrics.
+   */
+  private boolean beanQueryEnabled;
+
   // ----- Constructors ------------------------------------------------------
 
   /**
@@ -123,7 +157,7 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
                              String componentNamePropertyId,
                              String statePropertyId) {
 
-    super(componentMetrics, hostNamePropertyId, metricHostProvider);
+    super(componentMetrics, hostNamePropertyId, metricHostProvider, EXECUTOR_NAME);
 
     this.streamProvider           = streamProvider;
     this.jmxHostProvider          = jmxHostProvider;
@@ -131,6 +165,8 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     this.hostNamePropertyId       = hostNamePropertyId;
     this.componentNamePropertyId  = componentNamePropertyId;
     this.statePropertyId          = statePropertyId;
+    this.snapshotCache            = JMXSnapshotCache.getInstance(streamProvider);
+    this.beanQueryEnabled         = configuration != null && configuration.isJMXBeanQueryEnabled();
   }
 
   // ----- helper methods ----------------------------------------------------
@@ -203,51 +239,139 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
       return resource;
     }
 
-    InputStream in = null;
+    List<String> beanQueries = beanQueryEnabled ? getBeanQueries(componentName, ids) : null;
 
-    try {
+    for (String hostName : hostNames) {
       try {
-        for (String hostName : hostNames) {
-          try {
-            in = streamProvider.readFrom(getSpec(protocol, hostName, port, "/jmx"));
-            // if the ticket becomes invalid (timeout) then bail out
-            if (!ticket.isValid()) {
-              return resource;
-            }
+        Map<String, Map<String, Object>> categories =
+            getCategories(protocol, hostName, port, beanQueries);
 
-            getHadoopMetricValue(in, ids, resource, request, ticket);
-
-          } catch (IOException e) {
-            logException(e);
-          }
+        // if the ticket becomes invalid (timeout) then bail out
+        if (!ticket.isValid()) {
+          return resource;
         }
-      } finally {
-        if (in != null) {
-          in.close();
+        if (categories != null) {
+          getHadoopMetricValue(categories, ids, resource, request, ticket);
         }
+      } catch (IOException e) {
+        logException(e);
       }
-    } catch (IOException e) {
-      logException(e);
     }
     return resource;
   }
 
   /**
-   * Hadoop-specific metrics fetching
+   * Get the beans of an endpoint keyed by category, reading them through the
+   * snapshot cache.
+   *
+   * @param protocol     the protocol
+   * @param hostName     the host name
+   * @param port         the port
+   * @param beanQueries  the bean queries to read; null to read all beans
+   *
+   * @return the beans keyed by category; null if the endpoint was skipped
+   *
+   * @throws IOException if the beans couldn't be read
+   */
+  private Map<String, Map<String, Object>> getCategories(String protocol, String hostName,
+                                                         String port, List<String> beanQueries)
+      throws IOException {
+
+    if (beanQueries == null) {
+      String spec = getSpec(protocol, hostName, port, "/jmx");
+      return snapshotCache.getSnapshot(spec, new SnapshotLoader(spec, hostName, port));
+    }
+
+    Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
+    for (String beanQuery : beanQueries) {
+      String spec = getSpec(protocol, hostName, port, "/jmx?qry=" + URLEncoder.encode(beanQuery, "UTF-8"));
+      Map<String, Map<String, Object>> snapshot =
+          snapshotCache.getSnapshot(spec, new SnapshotLoader(spec, hostName, port));
+      if (snapshot == null) {
+        return null;
+      }
+      categories.putAll(snapshot);
+    }
+    return categories;
+  }
+
+  /**
+   * Get the bean queries which cover the categories of the requested
+   * properties.  Each category is matched with a trailing wildcard so that
+   * the beans named for a port are found as well.
+   *
+   * @param componentName  the component name
+   * @param ids            the requested property ids
+   *
+   * @return the bean queries; null if all beans should be read
+   */
+  private List<String> getBeanQueries(String componentName, Set<String> ids) {
+    Set<String> categories = new LinkedHashSet<String>();
+
+    for (String id : ids) {
+      for (Map.Entry<String, PropertyInfo> entry : getPropertyInfoMap(componentName, id).entrySet()) {
+        PropertyInfo propertyInfo = entry.getValue();
+        if (!propertyInfo.isPointInTime()) {
+          continue;
+        }
+        // categories matched by a regex can't be queried
+        if (containsArguments(entry.getKey())) {
+          return null;
+        }
+        String property = propertyInfo.getPropertyId();
+        int dotIndex = property.indexOf('.', property.indexOf('='));
+        if (dotIndex == -1) {
+          return null;
+        }
+        String category = property.substring(0, dotIndex);
+        if (category.indexOf('*') != -1 || category.indexOf('?') != -1) {
+          return null;
+        }
+        categories.add(category);
+        if (categories.size() > MAX_BEAN_QUERIES) {
+          return null;
+        }
+      }
+    }
+
+    List<String> beanQueries = new ArrayList<String>(categories.size());
+    for (String category : categories) {
+      beanQueries.add(category + "*");
+    }
+    return beanQueries.isEmpty() ? null : beanQueries;
+  }
+
+  /**
+   * Read the beans of an endpoint keyed by category.
+   *
+   * @param in  the stream of the endpoint
+   *
+   * @return the beans keyed by category
+   *
+   * @throws IOException if the beans couldn't be read
    */
-  private void getHadoopMetricValue(InputStream in, Set<String> ids,
-                       Resource resource, Request request, Ticket ticket) throws IOException {
+  private Map<String, Map<String, Object>> readCategories(InputStream in) throws IOException {
     JMXMetricHolder metricHolder = jmxObjectReader.readValue(in);
 
     Map<String, Map<String, Object>> categories = new HashMap<String, Map<String, Object>>();
-    String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
 
-    for (Map<String, Object> bean : metricHolder.getBeans()) {
-      String category = getCategory(bean);
-      if (category != null) {
-        categories.put(category, bean);
+    if (metricHolder.getBeans() != null) {
+      for (Map<String, Object> bean : metricHolder.getBeans()) {
+        String category = getCategory(bean);
+        if (category != null) {
+          categories.put(category, bean);
+        }
       }
     }
+    return categories;
+  }
+
+  /**
+   * Hadoop-specific metrics fetching
+   */
+  private void getHadoopMetricValue(Map<String, Map<String, Object>> categories, Set<String> ids,
+                       Resource resource, Request request, Ticket ticket) {
+    String componentName = (String) resource.getPropertyValue(componentNamePropertyId);
 
     for (String propertyId : ids) {
       Map<String, PropertyInfo> propertyInfoMap = getPropertyInfoMap(componentName, propertyId);
@@ -347,6 +471,16 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     }
   }
 
+  /**
+   * Set whether endpoints are asked only for the beans of the requested
+   * metrics.
+   *
+   * @param beanQueryEnabled  true to query the requested beans
+   */
+  public void setBeanQueryEnabled(boolean beanQueryEnabled) {
+    this.beanQueryEnabled = beanQueryEnabled;
+  }
+
   private String getPort(String clusterName, String componentName, boolean httpsEnabled) throws SystemException {
     String port = jmxHostProvider.getPort(clusterName, componentName, httpsEnabled);
     return port == null ? DEFAULT_JMX_PORTS.get(componentName) : port;
@@ -374,4 +508,45 @@ public class JMXPropertyProvider extends ThreadPoolEnabledPropertyProvider {
     }
     return null;
   }
+
+
+  // ----- inner class : SnapshotLoader ----------------------------------------
+
+  /**
+   * Reads the beans of an endpoint for the snapshot cache, holding a permit
+   * of the endpoint's host while doing so.
+   */
+  private class SnapshotLoader implements Callable<Map<String, Map<String, Object>>> {
+    private final String spec;
+    private final String hostName;
+    private final String port;
+
+    private SnapshotLoader(String spec, String hostName, String port) {
+      this.spec     = spec;
+      this.hostName = hostName;
+      this.port     = port;
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> call() throws IOException {
+      // skip hosts which are failing or too busy with metrics requests
+      if (!getExecutor().tryAcquire(hostName, port)) {
+        return null;
+      }
+      boolean failed = true;
+      long start = System.currentTimeMillis();
+      InputStream in = null;
+      try {
+        in = streamProvider.readFrom(spec);
+        Map<String, Map<String, Object>> categories = readCategories(in);
+        failed = false;
+        return categories;
+      } finally {
+        getExecutor().release(hostName, port, failed, System.currentTimeMillis() - start);
+        if (in != null) {
+          in.close();
+        }
+      }
+    }
+  }
 }
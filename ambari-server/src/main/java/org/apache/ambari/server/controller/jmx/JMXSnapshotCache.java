@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.jmx;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ambari.server.StaticallyInject;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.controller.utilities.StreamProvider;
+
+import com.google.inject.Inject;
+
+/**
+ * Short lived cache of the beans read from JMX endpoints, keyed by the spec
+ * (protocol, host, port and bean query) they were read from.
+ * <p/>
+ * Concurrent callers asking for the same spec share a single in-flight read;
+ * only the first caller runs the loader and the others wait for its result.
+ * A snapshot expires a fixed time after its read completed.  Failed reads
+ * aren't cached, so the next caller tries again.
+ * <p/>
+ * A cache is kept for each stream provider, so the snapshots read through one
+ * stream provider are never handed out for another.
+ */
+@StaticallyInject
+public class JMXSnapshotCache {
+
+  /**
+   * The configuration; the defaults are used if it wasn't injected.
+   */
+  @Inject
+  private static Configuration configuration;
+
+  /**
+   * The cache of each stream provider.
+   */
+  private static final Map<StreamProvider, JMXSnapshotCache> CACHES =
+      new WeakHashMap<StreamProvider, JMXSnapshotCache>();
+
+  /**
+   * The time a snapshot is kept for; 0 disables the cache.
+   */
+  private final long ttlMillis;
+
+  /**
+   * The snapshots keyed by spec.
+   */
+  private final ConcurrentMap<String, Snapshot> snapshots =
+      new ConcurrentHashMap<String, Snapshot>();
+
+  /**
+   * The time of the next sweep of expired snapshots.
+   */
+  private final AtomicLong nextSweep = new AtomicLong();
+
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Constructor.
+   *
+   * @param ttlMillis  the time a snapshot is kept for; 0 disables the cache
+   */
+  JMXSnapshotCache(long ttlMillis) {
+    this.ttlMillis = ttlMillis;
+  }
+
+
+  // ----- JMXSnapshotCache --------------------------------------------------
+
+  /**
+   * Get the cache of the given stream provider, creating it from the
+   * configuration if necessary.
+   *
+   * @param streamProvider  the stream provider
+   *
+   * @return the cache
+   */
+  public static JMXSnapshotCache getInstance(StreamProvider streamProvider) {
+    synchronized (CACHES) {
+      JMXSnapshotCache cache = CACHES.get(streamProvider);
+      if (cache == null) {
+        Configuration config = configuration == null ?
+            new Configuration(new Properties()) : configuration;
+
+        cache = new JMXSnapshotCache(config.getJMXSnapshotCacheTTL());
+        CACHES.put(streamProvider, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * Get the snapshot of the given spec.  The loader is only called if there
+   * is no live or in-flight snapshot of the spec.
+   *
+   * @param spec    the spec
+   * @param loader  reads the beans of the spec keyed by category; may return
+   *                null if the endpoint was skipped
+   *
+   * @return the beans keyed by category; null if the endpoint was skipped
+   *
+   * @throws IOException if the beans couldn't be read
+   */
+  public Map<String, Map<String, Object>> getSnapshot(
+      String spec, Callable<Map<String, Map<String, Object>>> loader) throws IOException {
+
+    if (ttlMillis <= 0) {
+      Snapshot snapshot = new Snapshot(loader);
+      snapshot.task.run();
+      return snapshot.get();
+    }
+
+    while (true) {
+      long now = System.currentTimeMillis();
+
+      Snapshot snapshot = snapshots.get(spec);
+      if (snapshot != null && !snapshot.isExpired(now)) {
+        return snapshot.get();
+      }
+
+      Snapshot newSnapshot = new Snapshot(loader);
+      boolean leader = snapshot == null ?
+          snapshots.putIfAbsent(spec, newSnapshot) == null :
+          snapshots.replace(spec, snapshot, newSnapshot);
+
+      if (leader) {
+        sweep(now);
+        newSnapshot.load(spec);
+        return newSnapshot.get();
+      }
+      // another caller started a read of the spec first; use that one
+    }
+  }
+
+  /**
+   * Get the number of cached or in-flight snapshots.
+   *
+   * @return the number of snapshots
+   */
+  int size() {
+    return snapshots.size();
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  // drop the expired snapshots of endpoints which aren't asked for anymore
+  private void sweep(long now) {
+    long next = nextSweep.get();
+    if (now >= next && nextSweep.compareAndSet(next, now + ttlMillis)) {
+      for (Iterator<Snapshot> iterator = snapshots.values().iterator(); iterator.hasNext(); ) {
+        if (iterator.next().isExpired(now)) {
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * A cached or in-flight read of a spec.
+   */
+  private class Snapshot {
+    private final FutureTask<Map<String, Map<String, Object>>> task;
+
+    /**
+     * The expiry time; an in-flight read never expires.
+     */
+    private volatile long expiry = Long.MAX_VALUE;
+
+    private Snapshot(Callable<Map<String, Map<String, Object>>> loader) {
+      task = new FutureTask<Map<String, Map<String, Object>>>(loader);
+    }
+
+    // run the read and keep the result only if it succeeded
+    private void load(String spec) {
+      task.run();
+
+      boolean succeeded = false;
+      try {
+        succeeded = task.get() != null;
+      } catch (ExecutionException e) {
+        // not cached
+      } catch (InterruptedException e) {
+        // can't happen; the task has completed
+        Thread.currentThread().interrupt();
+      }
+
+      if (succeeded) {
+        expiry = System.currentTimeMillis() + ttlMillis;
+      } else {
+        snapshots.remove(spec, this);
+      }
+    }
+
+    private boolean isExpired(long now) {
+      return now >= expiry;
+    }
+
+    private Map<String, Map<String, Object>> get() throws IOException {
+      try {
+        return task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a JMX read");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        throw new IOException(cause);
+      }
+    }
+  }
+}
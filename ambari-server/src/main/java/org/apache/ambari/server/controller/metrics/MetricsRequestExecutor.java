@@ -0,0 +1,396 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.server.StaticallyInject;
+import org.apache.ambari.server.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+
+/**
+ * A bulkhead for the requests a type of metrics provider makes to the cluster
+ * hosts.  Each type of provider gets its own bounded thread pool so that slow
+ * endpoints of one type can't starve the others, and the pool sheds load
+ * rather than queueing without limit.
+ * <p/>
+ * Concurrent requests to a single host are further limited by a number of
+ * permits, and each endpoint (host and port) has a circuit breaker.  An
+ * endpoint whose requests keep failing, e.g. timing out, is skipped until its
+ * circuit breaker lets a single probing request through.
+ */
+@StaticallyInject
+public class MetricsRequestExecutor implements MetricsRequestExecutorMBean {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(MetricsRequestExecutor.class);
+
+  /**
+   * The prefix of the names the statistics are registered under with the
+   * platform MBean server.
+   */
+  static final String MBEAN_NAME_PREFIX = "org.apache.ambari.server:type=MetricsRequestExecutor,name=";
+
+  private static final long THREAD_POOL_TIMEOUT_MILLIS = 30000L;
+
+  /**
+   * The configuration; the defaults are used if it wasn't injected.
+   */
+  @Inject
+  private static Configuration configuration;
+
+  /**
+   * The executors by provider type.
+   */
+  private static final ConcurrentMap<String, MetricsRequestExecutor> EXECUTORS =
+      new ConcurrentHashMap<String, MetricsRequestExecutor>();
+
+  private final String name;
+  private final ThreadPoolExecutor threadPoolExecutor;
+  private final int hostConcurrency;
+  private final int failureThreshold;
+  private final long resetMillis;
+
+  /**
+   * The permits of each host.
+   */
+  private final ConcurrentMap<String, Semaphore> hostPermits =
+      new ConcurrentHashMap<String, Semaphore>();
+
+  /**
+   * The circuit breaker of each endpoint.
+   */
+  private final ConcurrentMap<String, CircuitBreaker> circuitBreakers =
+      new ConcurrentHashMap<String, CircuitBreaker>();
+
+  private final AtomicLong rejectedCount = new AtomicLong();
+  private final AtomicLong hostLimitedCount = new AtomicLong();
+  private final AtomicLong circuitBreakerRejectedCount = new AtomicLong();
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong failureCount = new AtomicLong();
+  private final AtomicLong totalLatency = new AtomicLong();
+  private final AtomicLong maxLatency = new AtomicLong();
+
+
+  // ----- Constructors ------------------------------------------------------
+
+  /**
+   * Constructor.
+   *
+   * @param name              the provider type
+   * @param coreSize          the number of core threads
+   * @param maxSize           the maximum number of threads
+   * @param queueSize         the maximum number of waiting requests
+   * @param hostConcurrency   the maximum number of concurrent requests to a host
+   * @param failureThreshold  the number of consecutive failures which open an endpoint's circuit
+   * @param resetMillis       the time an endpoint's circuit stays open
+   */
+  MetricsRequestExecutor(final String name, int coreSize, int maxSize, int queueSize,
+                         int hostConcurrency, int failureThreshold, long resetMillis) {
+    this.name             = name;
+    this.hostConcurrency  = hostConcurrency;
+    this.failureThreshold = failureThreshold;
+    this.resetMillis      = resetMillis;
+
+    final AtomicInteger threadCount = new AtomicInteger();
+
+    // the pool only grows beyond the core size once the bounded queue is full
+    threadPoolExecutor = new ThreadPoolExecutor(coreSize, maxSize,
+        THREAD_POOL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(queueSize),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + " Metrics Request Thread-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        },
+        new RejectedExecutionHandler() {
+          @Override
+          public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            rejectedCount.incrementAndGet();
+            throw new RejectedExecutionException("The " + name + " metrics request queue is full");
+          }
+        });
+
+    threadPoolExecutor.allowCoreThreadTimeOut(true);
+  }
+
+
+  // ----- MetricsRequestExecutor --------------------------------------------
+
+  /**
+   * Get the executor of the given provider type, creating it from the
+   * configuration if necessary.
+   *
+   * @param name  the provider type
+   *
+   * @return the executor
+   */
+  public static MetricsRequestExecutor getInstance(String name) {
+    MetricsRequestExecutor executor = EXECUTORS.get(name);
+    if (executor == null) {
+      synchronized (EXECUTORS) {
+        executor = EXECUTORS.get(name);
+        if (executor == null) {
+          Configuration config = configuration == null ?
+              new Configuration(new Properties()) : configuration;
+
+          executor = new MetricsRequestExecutor(name,
+              config.getMetricsRequestThreadPoolCoreSize(),
+              config.getMetricsRequestThreadPoolMaxSize(),
+              config.getMetricsRequestQueueSize(),
+              config.getMetricsRequestHostConcurrency(),
+              config.getMetricsRequestCircuitBreakerFailures(),
+              config.getMetricsRequestCircuitBreakerReset());
+
+          executor.registerMBean();
+          EXECUTORS.put(name, executor);
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * Get the executor service which runs the requests of this provider type.
+   * Submitting to a full executor throws a {@link RejectedExecutionException}.
+   *
+   * @return the executor service
+   */
+  public ExecutorService getExecutorService() {
+    return threadPoolExecutor;
+  }
+
+  /**
+   * Try to start a request to the given endpoint.  This never waits for one
+   * of the host's permits: a pool thread waiting on a slow host would be
+   * taken from the requests to the other hosts.  The request should be
+   * skipped if this returns {@code false}.  Every successful call must be
+   * followed by a call to {@link #release}.
+   *
+   * @param hostName  the host name
+   * @param port      the port
+   *
+   * @return true if the request may be sent
+   */
+  public boolean tryAcquire(String hostName, String port) {
+    if (!getCircuitBreaker(hostName, port).allowRequest(resetMillis)) {
+      circuitBreakerRejectedCount.incrementAndGet();
+      return false;
+    }
+    if (!getPermits(hostName).tryAcquire()) {
+      hostLimitedCount.incrementAndGet();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Finish a request to the given endpoint started by {@link #tryAcquire}.
+   *
+   * @param hostName       the host name
+   * @param port           the port
+   * @param failed         true if the request failed or timed out
+   * @param latencyMillis  the duration of the request
+   */
+  public void release(String hostName, String port, boolean failed, long latencyMillis) {
+    getPermits(hostName).release();
+
+    requestCount.incrementAndGet();
+    totalLatency.addAndGet(latencyMillis);
+    long max = maxLatency.get();
+    while (latencyMillis > max && !maxLatency.compareAndSet(max, latencyMillis)) {
+      max = maxLatency.get();
+    }
+
+    CircuitBreaker circuitBreaker = getCircuitBreaker(hostName, port);
+    if (failed) {
+      failureCount.incrementAndGet();
+      if (circuitBreaker.failures.incrementAndGet() >= failureThreshold) {
+        if (circuitBreaker.openUntil.getAndSet(System.currentTimeMillis() + resetMillis) == 0L) {
+          LOG.warn("Skipping {} metrics requests to {}:{} for {} ms after {} consecutive failures",
+              name, hostName, port, resetMillis, circuitBreaker.failures.get());
+        }
+      }
+    } else {
+      circuitBreaker.failures.set(0);
+      circuitBreaker.openUntil.set(0L);
+    }
+  }
+
+
+  // ----- MetricsRequestExecutorMBean ---------------------------------------
+
+  @Override
+  public int getQueueDepth() {
+    return threadPoolExecutor.getQueue().size();
+  }
+
+  @Override
+  public int getActiveCount() {
+    return threadPoolExecutor.getActiveCount();
+  }
+
+  @Override
+  public int getPoolSize() {
+    return threadPoolExecutor.getPoolSize();
+  }
+
+  @Override
+  public long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  @Override
+  public long getHostLimitedCount() {
+    return hostLimitedCount.get();
+  }
+
+  @Override
+  public long getCircuitBreakerRejectedCount() {
+    return circuitBreakerRejectedCount.get();
+  }
+
+  @Override
+  public int getOpenCircuitCount() {
+    long now = System.currentTimeMillis();
+    int count = 0;
+    for (CircuitBreaker circuitBreaker : circuitBreakers.values()) {
+      if (circuitBreaker.openUntil.get() > now) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public long getRequestCount() {
+    return requestCount.get();
+  }
+
+  @Override
+  public long getFailureCount() {
+    return failureCount.get();
+  }
+
+  @Override
+  public double getAverageLatency() {
+    long requests = requestCount.get();
+    return requests == 0 ? 0.0 : (double) totalLatency.get() / requests;
+  }
+
+  @Override
+  public long getMaxLatency() {
+    return maxLatency.get();
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  private Semaphore getPermits(String hostName) {
+    Semaphore permits = hostPermits.get(hostName);
+    if (permits == null) {
+      permits = new Semaphore(hostConcurrency);
+      Semaphore existing = hostPermits.putIfAbsent(hostName, permits);
+      if (existing != null) {
+        permits = existing;
+      }
+    }
+    return permits;
+  }
+
+  private CircuitBreaker getCircuitBreaker(String hostName, String port) {
+    String endpoint = hostName + ":" + port;
+    CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+    if (circuitBreaker == null) {
+      circuitBreaker = new CircuitBreaker();
+      CircuitBreaker existing = circuitBreakers.putIfAbsent(endpoint, circuitBreaker);
+      if (existing != null) {
+        circuitBreaker = existing;
+      }
+    }
+    return circuitBreaker;
+  }
+
+  private void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(MBEAN_NAME_PREFIX + name);
+      if (!server.isRegistered(objectName)) {
+        server.registerMBean(this, objectName);
+      }
+    } catch (Exception e) {
+      LOG.warn("Unable to register the " + name + " metrics request statistics with JMX", e);
+    }
+  }
+
+
+  // ----- inner class : CircuitBreaker --------------------------------------
+
+  /**
+   * The circuit breaker of an endpoint.
+   */
+  private static class CircuitBreaker {
+    /**
+     * The number of consecutive failed requests.
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * The time until which the circuit is open; {@code 0} if it is closed.
+     */
+    private final AtomicLong openUntil = new AtomicLong();
+
+    /**
+     * Determine whether a request may be sent.  Once an open circuit's time is
+     * up a single request is let through, and the circuit is kept open for
+     * the others until that request has succeeded.
+     */
+    private boolean allowRequest(long resetMillis) {
+      long until = openUntil.get();
+      if (until == 0L) {
+        return true;
+      }
+      long now = System.currentTimeMillis();
+      return now >= until && openUntil.compareAndSet(until, now + resetMillis);
+    }
+  }
+}
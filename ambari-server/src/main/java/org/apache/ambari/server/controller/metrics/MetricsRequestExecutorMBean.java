@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics;
+
+/**
+ * JMX view of the {@link MetricsRequestExecutor} statistics.
+ */
+public interface MetricsRequestExecutorMBean {
+
+  /**
+   * @return the number of metrics requests waiting for a thread
+   */
+  public int getQueueDepth();
+
+  /**
+   * @return the number of threads which are executing metrics requests
+   */
+  public int getActiveCount();
+
+  /**
+   * @return the current number of threads in the pool
+   */
+  public int getPoolSize();
+
+  /**
+   * @return the number of metrics requests rejected because the queue was full
+   */
+  public long getRejectedCount();
+
+  /**
+   * @return the number of host requests skipped because too many requests to
+   *         the same host were in progress
+   */
+  public long getHostLimitedCount();
+
+  /**
+   * @return the number of host requests skipped because the endpoint's
+   *         circuit breaker was open
+   */
+  public long getCircuitBreakerRejectedCount();
+
+  /**
+   * @return the number of endpoints whose circuit breaker is currently open
+   */
+  public int getOpenCircuitCount();
+
+  /**
+   * @return the number of completed host requests
+   */
+  public long getRequestCount();
+
+  /**
+   * @return the number of failed host requests
+   */
+  public long getFailureCount();
+
+  /**
+   * @return the average latency of the host requests in milliseconds
+   */
+  public double getAverageLatency();
+
+  /**
+   * @return the maximum latency of the host requests in milliseconds
+   */
+  public long getMaxLatency();
+}
@@ -91,6 +91,11 @@ public class RestMetricsPropertyProvider extends ThreadPoolEnabledPropertyProvid
   private static final String HTTPS_PROTOCOL = "https";
   private static final String DEFAULT_PROTOCOL = HTTP_PROTOCOL;
 
+  /**
+   * The name of the executor shared by the REST metrics providers.
+   */
+  public static final String EXECUTOR_NAME = "REST";
+
 
   /**
    * String that separates JSON URL from path inside JSON in metrics path
@@ -127,7 +132,7 @@ public class RestMetricsPropertyProvider extends ThreadPoolEnabledPropertyProvid
     String statePropertyId,
     String componentName){
 
-    super(componentMetrics, hostNamePropertyId, metricHostProvider);
+    super(componentMetrics, hostNamePropertyId, metricHostProvider, EXECUTOR_NAME);
     this.metricsProperties = metricsProperties;
     this.streamProvider = streamProvider;
     this.clusterNamePropertyId = clusterNamePropertyId;
@@ -222,6 +227,12 @@ public class RestMetricsPropertyProvider extends ThreadPoolEnabledPropertyProvid
     HashMap<String, Set<String>> urls = extractPropertyURLs(resultIds, propertyInfos);
 
     for (String url : urls.keySet()) {
+      // skip hosts which are failing or too busy with metrics requests
+      if (!getExecutor().tryAcquire(hostname, port)) {
+        break;
+      }
+      boolean failed = false;
+      long start = System.currentTimeMillis();
       try {
         InputStream in = streamProvider.readFrom(getSpec(protocol, hostname, port, url));
         if (!ticket.isValid()) {
@@ -233,7 +244,10 @@ public class RestMetricsPropertyProvider extends ThreadPoolEnabledPropertyProvid
           in.close();
         }
       } catch (IOException e) {
+        failed = true;
         logException(e);
+      } finally {
+        getExecutor().release(hostname, port, failed, System.currentTimeMillis() - start);
       }
     }
     return resource;
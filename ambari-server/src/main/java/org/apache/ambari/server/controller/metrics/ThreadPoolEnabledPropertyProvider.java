@@ -33,15 +33,14 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Unites common functionality for multithreaded metrics providers
- * (JMX and REST as of now). Shares the same pool of executor threads.
+ * (JMX and REST as of now). The providers of each type share a
+ * {@link MetricsRequestExecutor}.
  */
 public abstract class ThreadPoolEnabledPropertyProvider extends AbstractPropertyProvider {
 
@@ -53,12 +52,9 @@ public abstract class ThreadPoolEnabledPropertyProvider extends AbstractProperty
   private final MetricHostProvider metricHostProvider;
 
   /**
-   * Executor service is shared between all childs of current class
+   * The executor shared by the providers of the same type.
    */
-  private static final ExecutorService EXECUTOR_SERVICE = initExecutorService();
-  private static final int THREAD_POOL_CORE_SIZE = 20;
-  private static final int THREAD_POOL_MAX_SIZE = 100;
-  private static final long THREAD_POOL_TIMEOUT_MILLIS = 30000L;
+  private final MetricsRequestExecutor executor;
 
   private static final long DEFAULT_POPULATE_TIMEOUT_MILLIS = 10000L;
   /**
@@ -75,40 +71,29 @@ public abstract class ThreadPoolEnabledPropertyProvider extends AbstractProperty
    * Construct a provider.
    *
    * @param componentMetrics map of metrics for this provider
+   * @param executorName     the provider type, which selects the shared executor
    */
   public ThreadPoolEnabledPropertyProvider(Map<String, Map<String, PropertyInfo>> componentMetrics,
                                            String hostNamePropertyId,
-                                           MetricHostProvider metricHostProvider) {
+                                           MetricHostProvider metricHostProvider,
+                                           String executorName) {
     super(componentMetrics);
     this.hostNamePropertyId = hostNamePropertyId;
     this.metricHostProvider = metricHostProvider;
+    this.executor = MetricsRequestExecutor.getInstance(executorName);
   }
 
   // ----- Thread pool -------------------------------------------------------
 
   /**
-   * Generates thread pool with default parameters
+   * Get the executor shared by the providers of this type.  Requests to a
+   * host should be wrapped in {@link MetricsRequestExecutor#tryAcquire} and
+   * {@link MetricsRequestExecutor#release}.
+   *
+   * @return the executor
    */
-
-
-  private static ExecutorService initExecutorService() {
-    LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<Runnable>(); // unlimited Queue
-
-    ThreadPoolExecutor threadPoolExecutor =
-        new ThreadPoolExecutor(
-            THREAD_POOL_CORE_SIZE,
-            THREAD_POOL_MAX_SIZE,
-            THREAD_POOL_TIMEOUT_MILLIS,
-            TimeUnit.MILLISECONDS,
-            queue);
-
-    threadPoolExecutor.allowCoreThreadTimeOut(true);
-
-    return threadPoolExecutor;
-  }
-
-  public static ExecutorService getExecutorService() {
-    return EXECUTOR_SERVICE;
+  protected MetricsRequestExecutor getExecutor() {
+    return executor;
   }
 
   // ----- Common PropertyProvider implementation details --------------------
@@ -121,17 +106,33 @@ public abstract class ThreadPoolEnabledPropertyProvider extends AbstractProperty
     Ticket ticket = new Ticket();
 
     CompletionService<Resource> completionService =
-        new ExecutorCompletionService<Resource>(EXECUTOR_SERVICE);
+        new ExecutorCompletionService<Resource>(executor.getExecutorService());
+
+    Set<Resource> keepers = new HashSet<Resource>();
 
     // In a large cluster we could have thousands of resources to populate here.
     // Distribute the work across multiple threads.
+    int submitted = 0;
+    boolean rejected = false;
     for (Resource resource : resources) {
-      completionService.submit(getPopulateResourceCallable(resource, request, predicate, ticket));
+      if (!rejected) {
+        try {
+          completionService.submit(getPopulateResourceCallable(resource, request, predicate, ticket));
+          ++submitted;
+          continue;
+        } catch (RejectedExecutionException e) {
+          LOG.warn("Unable to populate " + (resources.size() - submitted) +
+              " resources with metrics : " + e.getMessage());
+          rejected = true;
+        }
+      }
+      // the executor is saturated; shed the remaining resources, which are
+      // returned without metrics
+      keepers.add(resource);
     }
 
-    Set<Resource> keepers = new HashSet<Resource>();
     try {
-      for (int i = 0; i < resources.size(); ++ i) {
+      for (int i = 0; i < submitted; ++ i) {
         Future<Resource> resourceFuture =
             completionService.poll(populateTimeout, TimeUnit.MILLISECONDS);
 
@@ -39,6 +39,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -62,6 +63,11 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
   private final static ObjectReader timelineObjectReader;
   private static final String METRIC_REGEXP_PATTERN = "\\([^)]*\\)";
   private static final int COLLECTOR_DEFAULT_PORT = 6188;
+  /**
+   * Upper bound on the hosts fetched by a single call to the collector,
+   * keeps the request URI within the collector's header buffer.
+   */
+  static final int MAX_HOSTS_PER_REQUEST = 100;
 
   static {
     TIMELINE_APPID_MAP.put(HBASE_MASTER.name(), "HBASE");
@@ -149,79 +155,148 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
         return Collections.emptySet();
       }
 
+      // Group the resources by the appId they are queried with, then by host,
+      // so that all the hosts of an appId can be fetched together
+      Map<String, Map<String, Set<Resource>>> resourcesByAppId =
+        new HashMap<String, Map<String, Set<Resource>>>();
+      Set<String> liveClusters = new HashSet<String>();
+
       for (Map.Entry<String, Set<Resource>> resourceEntry : resources.entrySet()) {
         String hostname = resourceEntry.getKey();
-        Set<Resource> resourceSet = resourceEntry.getValue();
 
-        for (Resource resource : resourceSet) {
+        for (Resource resource : resourceEntry.getValue()) {
           String clusterName = (String) resource.getPropertyValue(clusterNamePropertyId);
 
-          // Check liveliness of host
-          if (!hostProvider.isCollectorHostLive(clusterName, TIMELINE_METRICS)) {
-            LOG.info("METRICS_COLLECTOR host is not live. Skip populating " +
-              "resources with metrics.");
-            return Collections.emptySet();
+          if (!liveClusters.contains(clusterName)) {
+            // Check liveliness of host
+            if (!hostProvider.isCollectorHostLive(clusterName, TIMELINE_METRICS)) {
+              LOG.info("METRICS_COLLECTOR host is not live. Skip populating " +
+                "resources with metrics.");
+              return Collections.emptySet();
+            }
+
+            // Check liveliness of Collector
+            if (!hostProvider.isCollectorComponentLive(clusterName, TIMELINE_METRICS)) {
+              LOG.info("METRICS_COLLECTOR is not live. Skip populating resources" +
+                " with metrics.");
+              return Collections.emptySet();
+            }
+            liveClusters.add(clusterName);
           }
 
-          // Check liveliness of Collector
-          if (!hostProvider.isCollectorComponentLive(clusterName, TIMELINE_METRICS)) {
-            LOG.info("METRICS_COLLECTOR is not live. Skip populating resources" +
-              " with metrics.");
-            return Collections.emptySet();
+          String appId = getAppId(resource);
+          Map<String, Set<Resource>> hostResources = resourcesByAppId.get(appId);
+          if (hostResources == null) {
+            hostResources = new HashMap<String, Set<Resource>>();
+            resourcesByAppId.put(appId, hostResources);
+          }
+          Set<Resource> resourceSet = hostResources.get(hostname);
+          if (resourceSet == null) {
+            resourceSet = new HashSet<Resource>();
+            hostResources.put(hostname, resourceSet);
           }
+          resourceSet.add(resource);
+        }
+      }
 
-          String spec = getSpec(hostname, resource);
+      List<Pattern> patterns = createPatterns(metrics.keySet());
+      // Compiled lazily, at most once per request
+      Map<String, Pattern> metricPatterns = new HashMap<String, Pattern>();
 
-          BufferedReader reader = null;
-          try {
-            LOG.debug("Metrics request url =" + spec);
-            reader = new BufferedReader(new InputStreamReader(streamProvider.readFrom(spec)));
+      for (Map.Entry<String, Map<String, Set<Resource>>> appEntry : resourcesByAppId.entrySet()) {
+        String appId = appEntry.getKey();
+        Map<String, Set<Resource>> hostResources = appEntry.getValue();
 
-            TimelineMetrics timelineMetrics = timelineObjectReader.readValue(reader);
-            LOG.debug("Timeline metrics response => " + timelineMetrics);
+        List<String> hostnames = new ArrayList<String>(hostResources.keySet());
+        // Resources without a host are queried without the hostname parameter
+        if (hostnames.remove(dummyHostName)) {
+          populateResources(Collections.singletonList(dummyHostName), appId,
+            hostResources, patterns, metricPatterns);
+        }
 
-            Set<String> patterns = createPatterns(metrics.keySet());
+        for (int i = 0; i < hostnames.size(); i += MAX_HOSTS_PER_REQUEST) {
+          List<String> batch = hostnames.subList(i,
+            Math.min(i + MAX_HOSTS_PER_REQUEST, hostnames.size()));
+          populateResources(batch, appId, hostResources, patterns, metricPatterns);
+        }
+      }
 
-            for (TimelineMetric metric : timelineMetrics.getMetrics()) {
-              if (metric.getMetricName() != null
-                && metric.getMetricValues() != null
-                && checkMetricName(patterns, metric.getMetricName())) {
-                populateResource(resource, metric);
-              }
-            }
+      return Collections.emptySet();
+    }
 
-          } catch (IOException io) {
-            String errorMsg = "Error getting timeline metrics.";
-            if (LOG.isDebugEnabled()) {
-              LOG.error(errorMsg, io);
-            } else {
-              if (io instanceof SocketTimeoutException) {
-                errorMsg += " Can not connect to collector, socket error.";
+    /**
+     * Make a single call to the Metrics service for the given hosts of an
+     * appId and populate each host's resources with the returned metrics.
+     */
+    private void populateResources(List<String> hostnames, String appId,
+                                   Map<String, Set<Resource>> hostResources,
+                                   List<Pattern> patterns,
+                                   Map<String, Pattern> metricPatterns) {
+
+      String spec = getSpec(hostnames, appId);
+
+      BufferedReader reader = null;
+      try {
+        LOG.debug("Metrics request url =" + spec);
+        reader = new BufferedReader(new InputStreamReader(streamProvider.readFrom(spec)));
+
+        TimelineMetrics timelineMetrics = timelineObjectReader.readValue(reader);
+        LOG.debug("Timeline metrics response => " + timelineMetrics);
+
+        for (TimelineMetric metric : timelineMetrics.getMetrics()) {
+          if (metric.getMetricName() != null
+            && metric.getMetricValues() != null
+            && checkMetricName(patterns, metric.getMetricName())) {
+
+            // A single host call needs no demultiplexing
+            Set<Resource> resourceSet = hostnames.size() == 1 ?
+              hostResources.get(hostnames.get(0)) :
+              hostResources.get(metric.getHostName());
+
+            if (resourceSet != null) {
+              for (Resource resource : resourceSet) {
+                populateResource(resource, metric, metricPatterns);
               }
-              LOG.error(errorMsg);
             }
-          } finally {
-            if (reader != null) {
-              try {
-                reader.close();
-              } catch (IOException e) {
-                if (LOG.isWarnEnabled()) {
-                  if (LOG.isDebugEnabled()) {
-                    LOG.warn("Unable to close http input stream : spec=" + spec, e);
-                  } else {
-                    LOG.warn("Unable to close http input stream : spec=" + spec);
-                  }
-                }
+          }
+        }
+
+      } catch (IOException io) {
+        String errorMsg = "Error getting timeline metrics.";
+        if (LOG.isDebugEnabled()) {
+          LOG.error(errorMsg, io);
+        } else {
+          if (io instanceof SocketTimeoutException) {
+            errorMsg += " Can not connect to collector, socket error.";
+          }
+          LOG.error(errorMsg);
+        }
+      } finally {
+        if (reader != null) {
+          try {
+            reader.close();
+          } catch (IOException e) {
+            if (LOG.isWarnEnabled()) {
+              if (LOG.isDebugEnabled()) {
+                LOG.warn("Unable to close http input stream : spec=" + spec, e);
+              } else {
+                LOG.warn("Unable to close http input stream : spec=" + spec);
               }
             }
           }
         }
       }
+    }
 
-      return Collections.emptySet();
+    private String getAppId(Resource resource) {
+      String componentName = getComponentName(resource);
+      if (componentName != null && TIMELINE_APPID_MAP.containsKey(componentName)) {
+        componentName = TIMELINE_APPID_MAP.get(componentName);
+      }
+      return componentName;
     }
 
-    private String getSpec(String hostname, Resource resource) {
+    private String getSpec(List<String> hostnames, String appId) {
       String metricsParam = getSetString(processRegexps(metrics.keySet()), -1);
       // Reuse uriBuilder
       uriBuilder.removeQuery();
@@ -230,16 +305,21 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
         uriBuilder.setParameter("metricNames", metricsParam);
       }
 
-      if (hostname != null && !hostname.isEmpty() && !hostname.equals(dummyHostName)) {
-        uriBuilder.setParameter("hostname", hostname);
+      StringBuilder hostnameParam = new StringBuilder();
+      for (String hostname : hostnames) {
+        if (hostname != null && !hostname.isEmpty() && !hostname.equals(dummyHostName)) {
+          if (hostnameParam.length() > 0) {
+            hostnameParam.append(",");
+          }
+          hostnameParam.append(hostname);
+        }
+      }
+      if (hostnameParam.length() > 0) {
+        uriBuilder.setParameter("hostname", hostnameParam.toString());
       }
 
-      String componentName = getComponentName(resource);
-      if (componentName != null && !componentName.isEmpty()) {
-        if (TIMELINE_APPID_MAP.containsKey(componentName)) {
-          componentName = TIMELINE_APPID_MAP.get(componentName);
-        }
-        uriBuilder.setParameter("appId", componentName);
+      if (appId != null && !appId.isEmpty()) {
+        uriBuilder.setParameter("appId", appId);
       }
 
       if (temporalInfo != null) {
@@ -257,9 +337,9 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
       return uriBuilder.toString();
     }
 
-    private Set<String> createPatterns(Set<String> rawNames) {
+    private List<Pattern> createPatterns(Set<String> rawNames) {
       Pattern pattern = Pattern.compile(METRIC_REGEXP_PATTERN);
-      Set<String> result = new HashSet<String>();
+      List<Pattern> result = new ArrayList<Pattern>();
       for (String rawName : rawNames) {
         Matcher matcher = pattern.matcher(rawName);
         StringBuilder sb = new StringBuilder();
@@ -270,14 +350,14 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
           lastPos = matcher.end();
         }
         sb.append(Pattern.quote(rawName.substring(lastPos)));
-        result.add(sb.toString());
+        result.add(Pattern.compile(sb.toString()));
       }
       return result;
     }
 
-    private boolean checkMetricName(Set<String> patterns, String name) {
-      for (String pattern : patterns) {
-        if (Pattern.matches(pattern, name)) {
+    private boolean checkMetricName(List<Pattern> patterns, String name) {
+      for (Pattern pattern : patterns) {
+        if (pattern.matcher(name).matches()) {
           return true;
         }
       }
@@ -292,7 +372,8 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
       return result;
     }
 
-    private void populateResource(Resource resource, TimelineMetric metric) {
+    private void populateResource(Resource resource, TimelineMetric metric,
+                                  Map<String, Pattern> metricPatterns) {
       String metric_name = metric.getMetricName();
       Set<String> propertyIdSet = metrics.get(metric_name);
       List<String> parameterList  = new LinkedList<String>();
@@ -300,7 +381,11 @@ public abstract class AMSPropertyProvider extends MetricsPropertyProvider {
       if (propertyIdSet == null) {
         for (Map.Entry<String, Set<String>> entry : metrics.entrySet()) {
           String key = entry.getKey();
-          Pattern pattern = Pattern.compile(key);
+          Pattern pattern = metricPatterns.get(key);
+          if (pattern == null) {
+            pattern = Pattern.compile(key);
+            metricPatterns.put(key, pattern);
+          }
           Matcher matcher = pattern.matcher(metric_name);
 
           if (matcher.matches()) {
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.spi;
+
+/**
+ * Optional interface for an {@link ExtendedResourceProvider} which declares
+ * what part of a query it can apply natively, for example in the database or
+ * against an in-memory index, before any resources are built.
+ *
+ * The cluster controller only passes the sort and page requests of a query on
+ * to the provider when they are supported; otherwise they are removed from the
+ * request and the controller sorts and pages the returned resources itself.
+ * A page is only passed on if the provider also supports the whole predicate
+ * and sort, since a page taken from a partially filtered or differently
+ * ordered set would be wrong.
+ */
+public interface QueryCapabilities {
+  /**
+   * Determine whether the provider can filter its resources by the whole of
+   * the given predicate.
+   *
+   * @param predicate  the predicate; may be null
+   *
+   * @return true if the provider applies the predicate natively
+   */
+  public boolean isPredicateSupported(Predicate predicate);
+
+  /**
+   * Determine whether the provider can order its resources by all of the
+   * properties of the given sort request.
+   *
+   * @param sortRequest  the sort request
+   *
+   * @return true if the provider applies the sort natively
+   */
+  public boolean isSortSupported(SortRequest sortRequest);
+
+  /**
+   * Determine whether the provider can return just the requested page of
+   * resources.
+   *
+   * @param pageRequest  the page request
+   *
+   * @return true if the provider applies the page natively
+   */
+  public boolean isPageSupported(PageRequest pageRequest);
+}
@@ -18,16 +18,28 @@
 
 package org.apache.ambari.server.controller.utilities;
 
+import org.apache.ambari.server.StaticallyInject;
 import org.apache.ambari.server.controller.spi.ProviderModule;
 import org.apache.ambari.server.controller.internal.ClusterControllerImpl;
+import org.apache.ambari.server.controller.internal.QueryResultCache;
 import org.apache.ambari.server.controller.spi.ClusterController;
 import org.apache.ambari.server.view.ViewProviderModule;
 
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+
 /**
  * Temporary class to bootstrap a cluster controller.  TODO : Replace this global state with injection.
  */
+@StaticallyInject
 public class ClusterControllerHelper {
 
+  /**
+   * Provides the query result cache; not injected in unit tests.
+   */
+  @Inject
+  private static Provider<QueryResultCache> queryResultCacheProvider;
+
   private static String PROVIDER_MODULE_CLASS = System.getProperty("provider.module.class",
       "org.apache.ambari.server.controller.internal.DefaultProviderModule");
 
@@ -38,7 +50,9 @@ public class ClusterControllerHelper {
       try {
         Class<?> implClass = Class.forName(PROVIDER_MODULE_CLASS);
         ProviderModule providerModule = ViewProviderModule.getViewProviderModule((ProviderModule) implClass.newInstance());
-        controller = new ClusterControllerImpl(providerModule);
+        QueryResultCache queryResultCache =
+            queryResultCacheProvider == null ? null : queryResultCacheProvider.get();
+        controller = new ClusterControllerImpl(providerModule, queryResultCache);
 
       } catch (Exception e) {
         throw new IllegalStateException("Can't create provider module " + PROVIDER_MODULE_CLASS, e);
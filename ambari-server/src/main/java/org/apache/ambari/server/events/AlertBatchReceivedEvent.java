@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events;
+
+import java.util.List;
+
+import org.apache.ambari.server.state.Alert;
+
+/**
+ * The {@link AlertBatchReceivedEvent} is fired when a heartbeat carries
+ * {@link Alert}s for a cluster. All of the alerts from one heartbeat are
+ * delivered together so that they can be processed in a single transaction.
+ */
+public final class AlertBatchReceivedEvent extends AlertEvent {
+
+  /**
+   * The alerts received.
+   */
+  private final List<Alert> m_alerts;
+
+  /**
+   * Constructor.
+   *
+   * @param clusterId
+   * @param alerts
+   *          the alerts received (not {@code null}).
+   */
+  public AlertBatchReceivedEvent(long clusterId, List<Alert> alerts) {
+    super(clusterId);
+    m_alerts = alerts;
+  }
+
+  /**
+   * Gets the alerts that this event is created for.
+   *
+   * @return the alerts (never {@code null}).
+   */
+  public List<Alert> getAlerts() {
+    return m_alerts;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuilder buffer = new StringBuilder("AlertBatchReceivedEvent{ ");
+    buffer.append("clusterId=").append(m_clusterId);
+    buffer.append(", alerts=").append(m_alerts);
+
+    buffer.append("}");
+    return buffer.toString();
+  }
+}
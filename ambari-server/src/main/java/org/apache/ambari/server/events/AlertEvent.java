@@ -38,6 +38,15 @@ public abstract class AlertEvent {
     m_alert = alert;
   }
 
+  /**
+   * Constructor for events which are not about a single alert.
+   *
+   * @param clusterId
+   */
+  protected AlertEvent(long clusterId) {
+    this(clusterId, null);
+  }
+
   /**
    * Gets the cluster ID that the alert belongs to.
    *
@@ -50,7 +59,8 @@ public abstract class AlertEvent {
   /**
    * Gets the alert that this event is created for.
    *
-   * @return the alert (never {@code null}).
+   * @return the alert, or {@code null} if this event carries more than one
+   *         alert.
    */
   public Alert getAlert(){
     return m_alert;
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events;
+
+/**
+ * The {@link StaleConfigsChangedEvent} class is fired when the stale
+ * configuration state of a host component changes, i.e. when a configuration
+ * change makes a component require a restart or when the component picks up
+ * its desired configurations.
+ */
+public class StaleConfigsChangedEvent extends ClusterEvent {
+  private final String m_serviceName;
+  private final String m_componentName;
+  private final String m_hostName;
+  private final boolean m_stale;
+
+  /**
+   * Constructor.
+   *
+   * @param clusterId
+   * @param serviceName
+   * @param componentName
+   * @param hostName
+   * @param stale
+   *          {@code true} if the component's configurations are now stale.
+   */
+  public StaleConfigsChangedEvent(long clusterId, String serviceName,
+      String componentName, String hostName, boolean stale) {
+    super(AmbariEventType.STALE_CONFIGS_CHANGED, clusterId);
+
+    m_serviceName = serviceName;
+    m_componentName = componentName;
+    m_hostName = hostName;
+    m_stale = stale;
+  }
+
+  public String getServiceName() {
+    return m_serviceName;
+  }
+
+  public String getComponentName() {
+    return m_componentName;
+  }
+
+  public String getHostName() {
+    return m_hostName;
+  }
+
+  public boolean isStale() {
+    return m_stale;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public String toString() {
+    StringBuilder buffer = new StringBuilder("StaleConfigsChangedEvent{ ");
+    buffer.append("clusterId=").append(m_clusterId);
+    buffer.append(", serviceName=").append(m_serviceName);
+    buffer.append(", componentName=").append(m_componentName);
+    buffer.append(", hostName=").append(m_hostName);
+    buffer.append(", stale=").append(m_stale);
+    buffer.append("}");
+    return buffer.toString();
+  }
+}
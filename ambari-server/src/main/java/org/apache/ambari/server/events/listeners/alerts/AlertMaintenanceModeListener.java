@@ -36,6 +36,7 @@ import org.apache.ambari.server.state.Clusters;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.Service;
 import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.alert.AlertCurrentCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -63,6 +64,12 @@ public class AlertMaintenanceModeListener {
   @Inject
   private AlertsDAO m_alertsDao = null;
 
+  /**
+   * Kept up-to-date with the MM of current alerts.
+   */
+  @Inject
+  private AlertCurrentCache m_alertCache;
+
   /**
    * Used to assist in determining implied maintenance state.
    */
@@ -127,7 +134,7 @@ public class AlertMaintenanceModeListener {
           }
 
           currentAlert.setMaintenanceState(maintenanceState);
-          m_alertsDao.merge(currentAlert);
+          merge(currentAlert);
           continue;
         }
 
@@ -151,7 +158,7 @@ public class AlertMaintenanceModeListener {
           MaintenanceState serviceState = service.getMaintenanceState();
           if (currentState != serviceState) {
             currentAlert.setMaintenanceState(serviceState);
-            m_alertsDao.merge(currentAlert);
+            merge(currentAlert);
           }
         }
         // the presence of a component name means that it's a component alert
@@ -195,7 +202,7 @@ public class AlertMaintenanceModeListener {
             case OFF:
               if (currentState != MaintenanceState.OFF) {
                 currentAlert.setMaintenanceState(MaintenanceState.OFF);
-                m_alertsDao.merge(currentAlert);
+                merge(currentAlert);
               }
 
               break;
@@ -205,7 +212,7 @@ public class AlertMaintenanceModeListener {
             case IMPLIED_FROM_SERVICE_AND_HOST:
               if (currentState == MaintenanceState.OFF) {
                 currentAlert.setMaintenanceState(MaintenanceState.ON);
-                m_alertsDao.merge(currentAlert);
+                merge(currentAlert);
               }
 
               break;
@@ -219,4 +226,15 @@ public class AlertMaintenanceModeListener {
       }
     }
   }
+
+  /**
+   * Merges the MM of a current alert and caches it once it has been
+   * committed.
+   *
+   * @param currentAlert
+   *          the current alert to merge.
+   */
+  private void merge(AlertCurrentEntity currentAlert) {
+    m_alertCache.put(m_alertsDao.merge(currentAlert));
+  }
 }
@@ -17,12 +17,21 @@
  */
 package org.apache.ambari.server.events.listeners.alerts;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.ambari.server.AmbariException;
 import org.apache.ambari.server.EagerSingleton;
 import org.apache.ambari.server.controller.RootServiceResponseFactory.Services;
+import org.apache.ambari.server.events.AlertBatchReceivedEvent;
 import org.apache.ambari.server.events.AlertEvent;
 import org.apache.ambari.server.events.AlertReceivedEvent;
 import org.apache.ambari.server.events.AlertStateChangeEvent;
@@ -40,6 +49,9 @@ import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.Service;
 import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.alert.AlertCurrentCache;
+import org.apache.ambari.server.state.alert.AlertCurrentCache.CachedAlert;
+import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,8 +63,9 @@ import com.google.inject.Singleton;
 
 /**
  * The {@link AlertReceivedListener} class handles {@link AlertReceivedEvent}
- * and updates the appropriate DAOs. It may also fire new
- * {@link AlertStateChangeEvent} when an {@link AlertState} change is detected.
+ * and {@link AlertBatchReceivedEvent} and updates the appropriate DAOs. It may
+ * also fire new {@link AlertStateChangeEvent} when an {@link AlertState}
+ * change is detected.
  */
 @Singleton
 @EagerSingleton
@@ -68,6 +81,13 @@ public class AlertReceivedListener {
   @Inject
   private AlertDefinitionDAO m_definitionDao;
 
+  /**
+   * Used to recognize alerts whose state and text have not changed without
+   * querying the database.
+   */
+  @Inject
+  private AlertCurrentCache m_alertCache;
+
   /**
    * Used for looking up whether an alert has a valid service/component/host
    */
@@ -103,86 +123,199 @@ public class AlertReceivedListener {
       LOG.debug(event.toString());
     }
 
-    Alert alert = event.getAlert();
-    long clusterId = event.getClusterId();
+    processAlerts(event.getClusterId(),
+        Collections.singletonList(event.getAlert()));
+  }
 
-    AlertDefinitionEntity definition = m_definitionDao.findByName(clusterId,
-        alert.getName());
+  /**
+   * Adds all of the alerts received in a single heartbeat. The definitions and
+   * current alerts are looked up with one query each, and the current alerts
+   * are written in a single transaction.
+   *
+   * @param event
+   *          the event to handle.
+   */
+  @Subscribe
+  @AllowConcurrentEvents
+  public void onAlertEvent(AlertBatchReceivedEvent event) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(event.toString());
+    }
 
-    if (null == definition) {
-      LOG.warn(
-          "Received an alert for {} which is a definition that does not exist anymore",
-          alert.getName());
+    processAlerts(event.getClusterId(), event.getAlerts());
+  }
 
+  /**
+   * Creates or updates the current alert for each of the specified alerts,
+   * creating a new history record and firing an {@link AlertStateChangeEvent}
+   * for every alert whose state changed. Alerts whose state and text are
+   * unchanged are never merged. If the {@link AlertCurrentCache} is active,
+   * they are recognized from memory and only their timestamp is recorded, to
+   * be persisted later; otherwise only their latest timestamps are written, in
+   * a single update separate from the other alerts.
+   *
+   * @param clusterId
+   *          the ID of the cluster that the alerts belong to.
+   * @param alerts
+   *          the received alerts.
+   */
+  private void processAlerts(long clusterId, List<Alert> alerts) {
+    if (alerts.isEmpty()) {
       return;
     }
 
-    // it's possible that a definition which is disabled will still have a
-    // running alert returned; this will ensure we don't record it
-    if (!definition.getEnabled()) {
-      LOG.debug(
-          "Received an alert for {} which is disabled. No more alerts should be received for this definition.",
-          alert.getName());
+    Set<String> definitionNames = new HashSet<String>();
+    for (Alert alert : alerts) {
+      definitionNames.add(alert.getName());
+    }
 
-      return;
+    Map<String, AlertDefinitionEntity> definitions = new HashMap<String, AlertDefinitionEntity>();
+    for (AlertDefinitionEntity definition : m_definitionDao.findByNames(
+        clusterId, definitionNames)) {
+      definitions.put(definition.getDefinitionName(), definition);
     }
 
-    // jobs that were running when a service/component/host was changed
-    // which invalidate the alert should not be reported
-    if (!isValid(alert)) {
-      return;
+    // if an alert is reported more than once, only the last one matters
+    Map<String, Alert> validAlerts = new LinkedHashMap<String, Alert>();
+    for (Alert alert : alerts) {
+      AlertDefinitionEntity definition = definitions.get(alert.getName());
+
+      if (null == definition) {
+        LOG.warn(
+            "Received an alert for {} which is a definition that does not exist anymore",
+            alert.getName());
+
+        continue;
+      }
+
+      // it's possible that a definition which is disabled will still have a
+      // running alert returned; this will ensure we don't record it
+      if (!definition.getEnabled()) {
+        LOG.debug(
+            "Received an alert for {} which is disabled. No more alerts should be received for this definition.",
+            alert.getName());
+
+        continue;
+      }
+
+      // jobs that were running when a service/component/host was changed
+      // which invalidate the alert should not be reported
+      if (!isValid(alert)) {
+        continue;
+      }
+
+      validAlerts.put(getCurrentKey(alert.getName(),
+          getCurrentHostName(alert, definition)), alert);
     }
 
-    AlertCurrentEntity current = null;
+    if (m_alertCache.isActive()) {
+      Iterator<Alert> iterator = validAlerts.values().iterator();
+      while (iterator.hasNext()) {
+        Alert alert = iterator.next();
+        CachedAlert cached = m_alertCache.get(clusterId, alert.getName(),
+            getCurrentHostName(alert, definitions.get(alert.getName())));
+
+        if (null != cached && alert.getState() == cached.getAlertState()
+            && StringUtils.equals(alert.getText(), cached.getLatestText())) {
+          m_alertCache.touch(cached, alert.getTimestamp());
+          iterator.remove();
+        }
+      }
+    }
 
-    if (null == alert.getHost() || definition.isHostIgnored()) {
-      current = m_alertsDao.findCurrentByNameNoHost(clusterId, alert.getName());
-    } else {
-      current = m_alertsDao.findCurrentByHostAndName(clusterId, alert.getHost(),
-          alert.getName());
+    if (validAlerts.isEmpty()) {
+      return;
     }
 
-    if (null == current) {
-      AlertHistoryEntity history = createHistory(clusterId, definition, alert);
+    Map<String, AlertCurrentEntity> currentAlerts = findCurrentAlerts(
+        clusterId, validAlerts.values(), definitions);
+
+    List<AlertCurrentEntity> newAlerts = new ArrayList<AlertCurrentEntity>();
+    List<AlertCurrentEntity> changedAlerts = new ArrayList<AlertCurrentEntity>();
+    List<AlertCurrentEntity> unchangedAlerts = new ArrayList<AlertCurrentEntity>();
+    Map<Long, Long> latestTimestamps = new HashMap<Long, Long>();
+    Map<Integer, Alert> stateChangedAlerts = new LinkedHashMap<Integer, Alert>();
+    Map<Integer, AlertState> oldStates = new HashMap<Integer, AlertState>();
+
+    for (Map.Entry<String, Alert> entry : validAlerts.entrySet()) {
+      Alert alert = entry.getValue();
+      AlertDefinitionEntity definition = definitions.get(alert.getName());
+      AlertCurrentEntity current = currentAlerts.get(entry.getKey());
+
+      if (null == current) {
+        AlertHistoryEntity history = createHistory(clusterId, definition, alert);
+
+        current = new AlertCurrentEntity();
+        current.setMaintenanceState(MaintenanceState.OFF);
+        current.setAlertHistory(history);
+        current.setLatestTimestamp(alert.getTimestamp());
+        current.setOriginalTimestamp(Long.valueOf(alert.getTimestamp()));
+
+        newAlerts.add(current);
+
+      } else if (alert.getState() == current.getAlertHistory().getAlertState()
+          && StringUtils.equals(alert.getText(), current.getLatestText())) {
+        // the cache didn't record the timestamp, so only that is written
+        unchangedAlerts.add(current);
+        latestTimestamps.put(current.getAlertId(), alert.getTimestamp());
+      } else if (alert.getState() == current.getAlertHistory().getAlertState()) {
+        current.setLatestTimestamp(alert.getTimestamp());
+        current.setLatestText(alert.getText());
+        changedAlerts.add(current);
+      } else {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug(
+              "Alert State Changed: CurrentId {}, CurrentTimestamp {}, HistoryId {}, HistoryState {}",
+              current.getAlertId(), current.getLatestTimestamp(),
+              current.getAlertHistory().getAlertId(),
+              current.getAlertHistory().getAlertState());
+        }
 
-      current = new AlertCurrentEntity();
-      current.setMaintenanceState(MaintenanceState.OFF);
-      current.setAlertHistory(history);
-      current.setLatestTimestamp(alert.getTimestamp());
-      current.setOriginalTimestamp(Long.valueOf(alert.getTimestamp()));
+        AlertHistoryEntity oldHistory = current.getAlertHistory();
 
-      m_alertsDao.create(current);
+        // the new history is created along with the merge of the current alert
+        AlertHistoryEntity history = createHistory(clusterId,
+            oldHistory.getAlertDefinition(), alert);
 
-    } else if (alert.getState() == current.getAlertHistory().getAlertState()) {
-      current.setLatestTimestamp(alert.getTimestamp());
-      current.setLatestText(alert.getText());
-      current = m_alertsDao.merge(current);
-    } else {
-      if (LOG.isDebugEnabled()) {
-        LOG.debug(
-            "Alert State Changed: CurrentId {}, CurrentTimestamp {}, HistoryId {}, HistoryState {}",
-            current.getAlertId(), current.getLatestTimestamp(),
-            current.getAlertHistory().getAlertId(),
-            current.getAlertHistory().getAlertState());
+        current.setAlertHistory(history);
+        current.setLatestTimestamp(Long.valueOf(alert.getTimestamp()));
+        current.setOriginalTimestamp(Long.valueOf(alert.getTimestamp()));
+        current.setLatestText(alert.getText());
+
+        stateChangedAlerts.put(changedAlerts.size(), alert);
+        oldStates.put(changedAlerts.size(), oldHistory.getAlertState());
+        changedAlerts.add(current);
+      }
+    }
+
+    if (!latestTimestamps.isEmpty()) {
+      m_alertsDao.updateLatestTimestamps(latestTimestamps);
+
+      for (AlertCurrentEntity current : unchangedAlerts) {
+        m_alertCache.put(current);
       }
+    }
 
-      AlertHistoryEntity oldHistory = current.getAlertHistory();
-      AlertState oldState = oldHistory.getAlertState();
+    if (newAlerts.isEmpty() && changedAlerts.isEmpty()) {
+      return;
+    }
 
-      // insert history, update current
-      AlertHistoryEntity history = createHistory(clusterId,
-          oldHistory.getAlertDefinition(), alert);
+    List<AlertCurrentEntity> mergedAlerts = m_alertsDao.createOrUpdate(
+        newAlerts, changedAlerts);
 
-      // manually create the new history entity since we are merging into
-      // an existing current entity
-      m_alertsDao.create(history);
+    // only cache the alerts now that they have been committed
+    for (AlertCurrentEntity current : newAlerts) {
+      m_alertCache.put(current);
+    }
 
-      current.setAlertHistory(history);
-      current.setLatestTimestamp(Long.valueOf(alert.getTimestamp()));
-      current.setOriginalTimestamp(Long.valueOf(alert.getTimestamp()));
-      current.setLatestText(alert.getText());
+    for (AlertCurrentEntity current : mergedAlerts) {
+      m_alertCache.put(current);
+    }
 
-      current = m_alertsDao.merge(current);
+    // broadcast the alert changed events for other subscribers once the
+    // changes have been committed
+    for (Map.Entry<Integer, Alert> entry : stateChangedAlerts.entrySet()) {
+      AlertCurrentEntity current = mergedAlerts.get(entry.getKey());
 
       if (LOG.isDebugEnabled()) {
         LOG.debug(
@@ -192,15 +325,102 @@ public class AlertReceivedListener {
             current.getAlertHistory().getAlertState());
       }
 
-      // broadcast the alert changed event for other subscribers
       AlertStateChangeEvent alertChangedEvent = new AlertStateChangeEvent(
-          event.getClusterId(), event.getAlert(), current,
-          oldState);
+          clusterId, entry.getValue(), current, oldStates.get(entry.getKey()));
 
       m_alertEventPublisher.publish(alertChangedEvent);
     }
   }
 
+  /**
+   * Finds the current alerts for the specified alerts using a single query per
+   * host, plus one for alerts which are not bound to a host.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @param alerts
+   *          the alerts to find current alerts for.
+   * @param definitions
+   *          the definitions of the alerts, keyed by name.
+   * @return the current alerts keyed by {@link #getCurrentKey(String, String)}.
+   */
+  private Map<String, AlertCurrentEntity> findCurrentAlerts(long clusterId,
+      Collection<Alert> alerts, Map<String, AlertDefinitionEntity> definitions) {
+    Map<String, Set<String>> namesByHost = new HashMap<String, Set<String>>();
+    Set<String> namesWithoutHost = new HashSet<String>();
+
+    for (Alert alert : alerts) {
+      String hostName = getCurrentHostName(alert,
+          definitions.get(alert.getName()));
+
+      if (null == hostName) {
+        namesWithoutHost.add(alert.getName());
+      } else {
+        Set<String> names = namesByHost.get(hostName);
+        if (null == names) {
+          names = new HashSet<String>();
+          namesByHost.put(hostName, names);
+        }
+
+        names.add(alert.getName());
+      }
+    }
+
+    List<AlertCurrentEntity> currentAlerts = new ArrayList<AlertCurrentEntity>();
+    for (Map.Entry<String, Set<String>> entry : namesByHost.entrySet()) {
+      currentAlerts.addAll(m_alertsDao.findCurrentByHostAndNames(clusterId,
+          entry.getKey(), entry.getValue()));
+    }
+
+    if (!namesWithoutHost.isEmpty()) {
+      currentAlerts.addAll(m_alertsDao.findCurrentByNamesNoHost(clusterId,
+          namesWithoutHost));
+    }
+
+    Map<String, AlertCurrentEntity> currentAlertsByKey = new HashMap<String, AlertCurrentEntity>();
+    for (AlertCurrentEntity current : currentAlerts) {
+      AlertHistoryEntity history = current.getAlertHistory();
+      currentAlertsByKey.put(getCurrentKey(
+          history.getAlertDefinition().getDefinitionName(),
+          history.getHostName()), current);
+    }
+
+    return currentAlertsByKey;
+  }
+
+  /**
+   * Gets the host that the current alert for the specified alert is recorded
+   * against.
+   *
+   * @param alert
+   *          the alert.
+   * @param definition
+   *          the alert's definition.
+   * @return the host name, or {@code null} if the current alert is not bound
+   *         to a host.
+   */
+  private String getCurrentHostName(Alert alert,
+      AlertDefinitionEntity definition) {
+    if (null == alert.getHost() || definition.isHostIgnored()) {
+      return null;
+    }
+
+    return alert.getHost();
+  }
+
+  /**
+   * Gets the key used to match a received alert to its current alert.
+   *
+   * @param definitionName
+   *          the name of the alert definition.
+   * @param hostName
+   *          the host name, or {@code null} if none.
+   * @return the key.
+   */
+  private String getCurrentKey(String definitionName, String hostName) {
+    return null == hostName ? definitionName : definitionName + "/" + hostName;
+  }
+
   /**
    * Gets whether the specified alert is valid for its reported cluster,
    * service, component, and host. This method is necessary for the case where a
@@ -17,16 +17,34 @@
  */
 package org.apache.ambari.server.events.publishers;
 
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.events.ActionFinalReportReceivedEvent;
 import org.apache.ambari.server.events.AmbariEvent;
+import org.apache.ambari.server.events.ClusterEvent;
+import org.apache.ambari.server.events.HostEvent;
+import org.apache.ambari.server.events.MaintenanceModeEvent;
+import org.apache.ambari.server.events.publishers.PartitionedEventDispatcher.ListenerMetrics;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
  * The {@link AmbariEventPublisher} is used to publish instances of
- * {@link AmbariEvent} to any {@link Subscribe} interested. It uses a
- * single-threaded, serial {@link EventBus}.
+ * {@link AmbariEvent} to any {@link Subscribe} interested. By default it uses
+ * a single-threaded, serial {@link EventBus} which delivers events on the
+ * publishing thread.
+ * <p/>
+ * If {@link Configuration#getAmbariEventPartitions()} is positive, events are
+ * instead delivered asynchronously by a {@link PartitionedEventDispatcher}.
+ * Events are partitioned by cluster, or by host for events which are not
+ * bound to a cluster, so that the events of a cluster are still delivered in
+ * the order they were published while different clusters and hosts are
+ * handled in parallel.
  */
 @Singleton
 public class AmbariEventPublisher {
@@ -36,11 +54,38 @@ public class AmbariEventPublisher {
    */
   private final EventBus m_eventBus;
 
+  /**
+   * Delivers events asynchronously, or {@code null} to deliver them on the
+   * publishing thread using {@link #m_eventBus}.
+   */
+  private final PartitionedEventDispatcher m_dispatcher;
+
   /**
    * Constructor.
    */
   public AmbariEventPublisher() {
     m_eventBus = new EventBus("ambari-event-bus");
+    m_dispatcher = null;
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param configuration
+   *          the configuration used to determine whether events are delivered
+   *          asynchronously.
+   */
+  @Inject
+  public AmbariEventPublisher(Configuration configuration) {
+    m_eventBus = new EventBus("ambari-event-bus");
+
+    int partitions = configuration.getAmbariEventPartitions();
+    if (partitions > 0) {
+      m_dispatcher = new PartitionedEventDispatcher("ambari-event-bus",
+          partitions, configuration.getAmbariEventQueueSize());
+    } else {
+      m_dispatcher = null;
+    }
   }
 
   /**
@@ -50,7 +95,11 @@ public class AmbariEventPublisher {
    * @param event
    */
   public void publish(AmbariEvent event) {
-    m_eventBus.post(event);
+    if (null == m_dispatcher) {
+      m_eventBus.post(event);
+    } else {
+      m_dispatcher.dispatch(getPartitionKey(event), event);
+    }
   }
 
   /**
@@ -61,6 +110,96 @@ public class AmbariEventPublisher {
    *          the listener to receive events.
    */
   public void register(Object object) {
-    m_eventBus.register(object);
+    if (null == m_dispatcher) {
+      m_eventBus.register(object);
+    } else {
+      m_dispatcher.register(object);
+    }
+  }
+
+  /**
+   * Stops delivering events asynchronously. Events which have not been
+   * delivered yet are discarded.
+   */
+  public void shutdown() {
+    if (null != m_dispatcher) {
+      m_dispatcher.shutdown();
+    }
+  }
+
+  /**
+   * Gets the delivery statistics of every listener when events are delivered
+   * asynchronously.
+   *
+   * @return the statistics, or an empty list if events are delivered on the
+   *         publishing thread (never {@code null}).
+   */
+  public List<ListenerMetrics> getListenerMetrics() {
+    if (null == m_dispatcher) {
+      return Collections.emptyList();
+    }
+
+    return m_dispatcher.getListenerMetrics();
+  }
+
+  /**
+   * Gets the number of events waiting to be delivered in each partition when
+   * events are delivered asynchronously.
+   *
+   * @return the queue depths, or an empty array if events are delivered on the
+   *         publishing thread (never {@code null}).
+   */
+  public int[] getQueueDepths() {
+    if (null == m_dispatcher) {
+      return new int[0];
+    }
+
+    return m_dispatcher.getQueueDepths();
+  }
+
+  /**
+   * Gets the key which determines the partition that an event is delivered
+   * on. Events about a cluster use the cluster ID; events which are only about
+   * a host use the host name.
+   *
+   * @param event
+   *          the event.
+   * @return the key, or {@code null} if the event is not about a cluster or a
+   *         host.
+   */
+  private Object getPartitionKey(AmbariEvent event) {
+    if (event instanceof ClusterEvent) {
+      return ((ClusterEvent) event).getClusterId();
+    }
+
+    if (event instanceof HostEvent) {
+      return ((HostEvent) event).getHostName();
+    }
+
+    if (event instanceof MaintenanceModeEvent) {
+      MaintenanceModeEvent maintenanceModeEvent = (MaintenanceModeEvent) event;
+      if (null != maintenanceModeEvent.getService()) {
+        return maintenanceModeEvent.getService().getClusterId();
+      }
+
+      if (null != maintenanceModeEvent.getServiceComponentHost()) {
+        return maintenanceModeEvent.getServiceComponentHost().getClusterId();
+      }
+
+      if (null != maintenanceModeEvent.getHost()) {
+        return maintenanceModeEvent.getHost().getHostName();
+      }
+    }
+
+    if (event instanceof ActionFinalReportReceivedEvent) {
+      ActionFinalReportReceivedEvent reportEvent = (ActionFinalReportReceivedEvent) event;
+      if (null != reportEvent.getClusterId()) {
+        return reportEvent.getClusterId();
+      }
+
+      return reportEvent.getHostname();
+    }
+
+    return null;
   }
 }
@@ -0,0 +1,614 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * The {@link PartitionedEventDispatcher} delivers events to listeners on a
+ * fixed number of partition threads. Events with the same partition key are
+ * always delivered by the same thread, in the order they were dispatched,
+ * while events with different keys are delivered in parallel.
+ * <p/>
+ * Listeners are discovered in the same way as with a Guava
+ * {@link com.google.common.eventbus.EventBus}: any public method annotated with
+ * {@link Subscribe} that takes a single argument receives events assignable to
+ * that argument. Since a listener may be invoked from several partitions, a
+ * method which is not also annotated with {@link AllowConcurrentEvents} is
+ * never invoked concurrently with itself.
+ * <p/>
+ * Each partition has a bounded queue. When a partition's queue is full,
+ * {@link #dispatch(Object, Object)} blocks until there is room, which slows
+ * down producers instead of dropping events. Listeners never block, though:
+ * a listener publishing to a full partition could otherwise wait on a
+ * partition which is itself waiting on the listener's partition. Their events
+ * are queued past the queue size instead, up to as many events again, and are
+ * only delivered on the calling thread once that overflow is full as well.
+ * <p/>
+ * Events published by a listener method which is not concurrent are queued
+ * once the method has returned, so that its monitor is never held while
+ * queuing.
+ * <p/>
+ * The queue depths and listener statistics are published with the platform
+ * MBean server under {@link #MBEAN_NAME_PREFIX} and the dispatcher's name
+ * until the dispatcher is shut down.
+ */
+public final class PartitionedEventDispatcher implements PartitionedEventDispatcherMXBean {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(PartitionedEventDispatcher.class);
+
+  /**
+   * The prefix of the names the statistics are registered under with the
+   * platform MBean server.
+   */
+  static final String MBEAN_NAME_PREFIX = "org.apache.ambari.server:type=PartitionedEventDispatcher,name=";
+
+  /**
+   * The events dispatched by the current thread while it invokes a listener
+   * method which is not concurrent, or {@code null} if it isn't invoking one.
+   * Shared by all dispatchers, since a listener may publish to any of them.
+   */
+  private static final ThreadLocal<List<DeferredDispatch>> DEFERRED_DISPATCHES = new ThreadLocal<List<DeferredDispatch>>();
+
+  /**
+   * The partitions; each owns one thread and one queue.
+   */
+  private final Partition[] m_partitions;
+
+  /**
+   * All subscriber methods of all registered listeners, in registration order.
+   */
+  private final List<Subscriber> m_subscribers = new CopyOnWriteArrayList<Subscriber>();
+
+  /**
+   * The subscribers which receive each type of event, built as each type is
+   * first dispatched and cleared when a listener is registered.
+   */
+  private final ConcurrentMap<Class<?>, List<Subscriber>> m_subscribersByType = new ConcurrentHashMap<Class<?>, List<Subscriber>>();
+
+  /**
+   * The name the statistics are registered under, or {@code null} if they
+   * are not registered.
+   */
+  private volatile ObjectName m_objectName;
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          the name used for the partition threads.
+   * @param partitionCount
+   *          the number of partitions (at least 1).
+   * @param queueSize
+   *          the maximum number of events waiting in each partition (at least
+   *          1).
+   */
+  public PartitionedEventDispatcher(String name, int partitionCount,
+      int queueSize) {
+    if (partitionCount < 1 || queueSize < 1) {
+      throw new IllegalArgumentException(
+          "The number of partitions and the queue size must be positive");
+    }
+
+    m_partitions = new Partition[partitionCount];
+    for (int i = 0; i < partitionCount; i++) {
+      m_partitions[i] = new Partition(name + "-" + i, queueSize);
+      m_partitions[i].m_thread.start();
+    }
+
+    m_objectName = registerMBean(name);
+  }
+
+  /**
+   * Registers all of the {@link Subscribe} methods of the listener.
+   *
+   * @param listener
+   *          the listener (not {@code null}).
+   */
+  public void register(Object listener) {
+    for (Method method : listener.getClass().getMethods()) {
+      if (null == method.getAnnotation(Subscribe.class)) {
+        continue;
+      }
+
+      Class<?>[] parameterTypes = method.getParameterTypes();
+      if (parameterTypes.length != 1) {
+        throw new IllegalArgumentException("Method " + method
+            + " has @Subscribe annotation but requires "
+            + parameterTypes.length + " arguments; event handler methods must require a single argument");
+      }
+
+      m_subscribers.add(new Subscriber(listener, method));
+    }
+
+    m_subscribersByType.clear();
+  }
+
+  /**
+   * Queues an event for delivery on the partition of the specified key. This
+   * blocks while the partition's queue is full, unless it is called from a
+   * partition thread of any dispatcher; in that case the event is queued past
+   * the queue size and is only delivered on the calling thread if the
+   * partition's overflow is full too.
+   *
+   * @param key
+   *          the partition key, or {@code null} for the first partition.
+   * @param event
+   *          the event to deliver (not {@code null}).
+   */
+  public void dispatch(Object key, Object event) {
+    List<DeferredDispatch> deferred = DEFERRED_DISPATCHES.get();
+    if (null != deferred) {
+      deferred.add(new DeferredDispatch(this, key, event));
+      return;
+    }
+
+    Partition partition = m_partitions[getPartition(key)];
+
+    if (Thread.currentThread() instanceof PartitionThread) {
+      if (!partition.offer(event)) {
+        LOG.warn("The overflow of {} is full; delivering {} on the calling thread",
+            partition.m_thread.getName(), event);
+
+        deliver(event);
+      }
+
+      return;
+    }
+
+    try {
+      partition.put(event);
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      LOG.warn("Interrupted while queuing {}; delivering it on the calling thread",
+          event);
+
+      deliver(event);
+    }
+  }
+
+  /**
+   * Stops the partition threads. Events which have not been delivered yet are
+   * discarded.
+   */
+  public void shutdown() {
+    for (Partition partition : m_partitions) {
+      partition.m_thread.interrupt();
+    }
+
+    ObjectName objectName = m_objectName;
+    m_objectName = null;
+    if (null != objectName) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (Exception exception) {
+        LOG.warn("Unable to unregister the statistics of " + objectName, exception);
+      }
+    }
+  }
+
+  /**
+   * Gets the number of events waiting in each partition.
+   *
+   * @return the queue depths, indexed by partition.
+   */
+  @Override
+  public int[] getQueueDepths() {
+    int[] depths = new int[m_partitions.length];
+    for (int i = 0; i < m_partitions.length; i++) {
+      depths[i] = m_partitions[i].size();
+    }
+
+    return depths;
+  }
+
+  /**
+   * Gets the delivery statistics of every registered listener method.
+   *
+   * @return the statistics (never {@code null}).
+   */
+  @Override
+  public List<ListenerMetrics> getListenerMetrics() {
+    List<ListenerMetrics> metrics = new ArrayList<ListenerMetrics>(
+        m_subscribers.size());
+
+    for (Subscriber subscriber : m_subscribers) {
+      metrics.add(new ListenerMetrics(subscriber.toString(),
+          subscriber.m_invocations.get(), subscriber.m_failures.get(),
+          TimeUnit.NANOSECONDS.toMillis(subscriber.m_totalNanos.get()),
+          TimeUnit.NANOSECONDS.toMillis(subscriber.m_maxNanos.get())));
+    }
+
+    return metrics;
+  }
+
+  /**
+   * Registers the statistics with the platform MBean server unless another
+   * dispatcher with the same name already did.
+   *
+   * @return the name the statistics were registered under, or {@code null}.
+   */
+  private ObjectName registerMBean(String name) {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(MBEAN_NAME_PREFIX + name);
+      if (!server.isRegistered(objectName)) {
+        server.registerMBean(this, objectName);
+        return objectName;
+      }
+    } catch (Exception exception) {
+      LOG.warn("Unable to register the " + name + " event statistics with JMX",
+          exception);
+    }
+
+    return null;
+  }
+
+  /**
+   * Gets the partition of a key.
+   */
+  private int getPartition(Object key) {
+    if (null == key) {
+      return 0;
+    }
+
+    return (key.hashCode() & Integer.MAX_VALUE) % m_partitions.length;
+  }
+
+  /**
+   * Delivers an event to every subscriber of its type on the calling thread.
+   *
+   * @param event
+   *          the event.
+   */
+  private void deliver(Object event) {
+    for (Subscriber subscriber : getSubscribers(event.getClass())) {
+      subscriber.invoke(event);
+    }
+  }
+
+  /**
+   * Gets the subscribers which receive the specified type of event.
+   */
+  private List<Subscriber> getSubscribers(Class<?> eventType) {
+    List<Subscriber> subscribers = m_subscribersByType.get(eventType);
+    if (null == subscribers) {
+      subscribers = new ArrayList<Subscriber>();
+      for (Subscriber subscriber : m_subscribers) {
+        if (subscriber.m_eventType.isAssignableFrom(eventType)) {
+          subscribers.add(subscriber);
+        }
+      }
+
+      m_subscribersByType.put(eventType, subscribers);
+    }
+
+    return subscribers;
+  }
+
+  /**
+   * A partition thread and the queue of events it delivers. The queue holds
+   * up to twice the queue size: the second half is only used by partition
+   * threads, which must not wait for room.
+   */
+  private final class Partition implements Runnable {
+    private final ArrayDeque<Object> m_queue = new ArrayDeque<Object>();
+    private final ReentrantLock m_lock = new ReentrantLock();
+    private final Condition m_notEmpty = m_lock.newCondition();
+    private final Condition m_notFull = m_lock.newCondition();
+    private final int m_queueSize;
+    private final Thread m_thread;
+
+    private Partition(String threadName, int queueSize) {
+      m_queueSize = queueSize;
+      m_thread = new PartitionThread(this, threadName);
+      m_thread.setDaemon(true);
+    }
+
+    /**
+     * Queues an event, waiting while the queue size is reached.
+     */
+    private void put(Object event) throws InterruptedException {
+      m_lock.lockInterruptibly();
+      try {
+        while (m_queue.size() >= m_queueSize) {
+          m_notFull.await();
+        }
+
+        m_queue.add(event);
+        m_notEmpty.signal();
+      } finally {
+        m_lock.unlock();
+      }
+    }
+
+    /**
+     * Queues an event without waiting, past the queue size if need be.
+     *
+     * @return {@code false} if the overflow is full as well.
+     */
+    private boolean offer(Object event) {
+      m_lock.lock();
+      try {
+        if (m_queue.size() >= 2 * m_queueSize) {
+          return false;
+        }
+
+        m_queue.add(event);
+        m_notEmpty.signal();
+        return true;
+      } finally {
+        m_lock.unlock();
+      }
+    }
+
+    private Object take() throws InterruptedException {
+      m_lock.lockInterruptibly();
+      try {
+        while (m_queue.isEmpty()) {
+          m_notEmpty.await();
+        }
+
+        Object event = m_queue.poll();
+        if (m_queue.size() < m_queueSize) {
+          m_notFull.signal();
+        }
+
+        return event;
+      } finally {
+        m_lock.unlock();
+      }
+    }
+
+    private int size() {
+      m_lock.lock();
+      try {
+        return m_queue.size();
+      } finally {
+        m_lock.unlock();
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+      while (!Thread.currentThread().isInterrupted()) {
+        Object event;
+        try {
+          event = take();
+        } catch (InterruptedException interruptedException) {
+          return;
+        }
+
+        deliver(event);
+      }
+    }
+  }
+
+  /**
+   * The thread of a partition, so that listeners can be told apart from other
+   * publishers.
+   */
+  private static final class PartitionThread extends Thread {
+    private PartitionThread(Runnable partition, String name) {
+      super(partition, name);
+    }
+  }
+
+  /**
+   * An event dispatched by a listener method which is not concurrent, to be
+   * queued once the method returns.
+   */
+  private static final class DeferredDispatch {
+    private final PartitionedEventDispatcher m_dispatcher;
+    private final Object m_key;
+    private final Object m_event;
+
+    private DeferredDispatch(PartitionedEventDispatcher dispatcher, Object key,
+        Object event) {
+      m_dispatcher = dispatcher;
+      m_key = key;
+      m_event = event;
+    }
+  }
+
+  /**
+   * A listener method along with its delivery statistics.
+   */
+  private static final class Subscriber {
+    private final Object m_listener;
+    private final Method m_method;
+    private final Class<?> m_eventType;
+    private final boolean m_concurrent;
+
+    private final AtomicLong m_invocations = new AtomicLong();
+    private final AtomicLong m_failures = new AtomicLong();
+    private final AtomicLong m_totalNanos = new AtomicLong();
+    private final AtomicLong m_maxNanos = new AtomicLong();
+
+    private Subscriber(Object listener, Method method) {
+      m_listener = listener;
+      m_method = method;
+      m_eventType = method.getParameterTypes()[0];
+      m_concurrent = null != method.getAnnotation(AllowConcurrentEvents.class);
+      m_method.setAccessible(true);
+    }
+
+    /**
+     * Invokes the listener method, recording how long it took. Exceptions are
+     * logged so that they do not prevent delivery to other listeners.
+     */
+    private void invoke(Object event) {
+      long start = System.nanoTime();
+      try {
+        if (m_concurrent) {
+          m_method.invoke(m_listener, event);
+        } else {
+          invokeExclusively(event);
+        }
+      } catch (InvocationTargetException invocationTargetException) {
+        m_failures.incrementAndGet();
+        LOG.error("Could not dispatch event " + event + " to " + this,
+            invocationTargetException.getCause());
+      } catch (Exception exception) {
+        m_failures.incrementAndGet();
+        LOG.error("Could not dispatch event " + event + " to " + this,
+            exception);
+      } finally {
+        long elapsed = System.nanoTime() - start;
+        m_invocations.incrementAndGet();
+        m_totalNanos.addAndGet(elapsed);
+
+        long max = m_maxNanos.get();
+        while (elapsed > max && !m_maxNanos.compareAndSet(max, elapsed)) {
+          max = m_maxNanos.get();
+        }
+      }
+    }
+
+    /**
+     * Invokes the listener method while holding its monitor, then dispatches
+     * the events it published.
+     */
+    private void invokeExclusively(Object event) throws IllegalAccessException,
+        InvocationTargetException {
+      List<DeferredDispatch> outer = DEFERRED_DISPATCHES.get();
+      List<DeferredDispatch> deferred = new ArrayList<DeferredDispatch>();
+      DEFERRED_DISPATCHES.set(deferred);
+
+      try {
+        synchronized (this) {
+          m_method.invoke(m_listener, event);
+        }
+      } finally {
+        DEFERRED_DISPATCHES.set(outer);
+
+        for (DeferredDispatch dispatch : deferred) {
+          dispatch.m_dispatcher.dispatch(dispatch.m_key, dispatch.m_event);
+        }
+      }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      return m_listener.getClass().getSimpleName() + "." + m_method.getName()
+          + "(" + m_eventType.getSimpleName() + ")";
+    }
+  }
+
+  /**
+   * The delivery statistics of a single listener method.
+   */
+  public static final class ListenerMetrics {
+    private final String m_name;
+    private final long m_invocations;
+    private final long m_failures;
+    private final long m_totalMillis;
+    private final long m_maxMillis;
+
+    private ListenerMetrics(String name, long invocations, long failures,
+        long totalMillis, long maxMillis) {
+      m_name = name;
+      m_invocations = invocations;
+      m_failures = failures;
+      m_totalMillis = totalMillis;
+      m_maxMillis = maxMillis;
+    }
+
+    /**
+     * @return the listener class, method and event type.
+     */
+    public String getName() {
+      return m_name;
+    }
+
+    /**
+     * @return the number of events delivered to the listener method.
+     */
+    public long getInvocations() {
+      return m_invocations;
+    }
+
+    /**
+     * @return the number of deliveries which threw an exception.
+     */
+    public long getFailures() {
+      return m_failures;
+    }
+
+    /**
+     * @return the total time spent in the listener method, in milliseconds.
+     */
+    public long getTotalMillis() {
+      return m_totalMillis;
+    }
+
+    /**
+     * @return the longest single delivery, in milliseconds.
+     */
+    public long getMaxMillis() {
+      return m_maxMillis;
+    }
+
+    /**
+     * @return the average delivery time, in milliseconds.
+     */
+    public double getAverageMillis() {
+      return 0 == m_invocations ? 0 : (double) m_totalMillis / m_invocations;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+      return m_name + "{invocations=" + m_invocations + ", failures="
+          + m_failures + ", totalMillis=" + m_totalMillis + ", maxMillis="
+          + m_maxMillis + "}";
+    }
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.util.List;
+
+import org.apache.ambari.server.events.publishers.PartitionedEventDispatcher.ListenerMetrics;
+
+/**
+ * JMX view of the {@link PartitionedEventDispatcher} statistics. This is an
+ * MXBean so that the statistics of each listener are published as composite
+ * data.
+ */
+public interface PartitionedEventDispatcherMXBean {
+
+  /**
+   * @return the number of events waiting in each partition
+   */
+  public int[] getQueueDepths();
+
+  /**
+   * @return the delivery statistics of every registered listener method
+   */
+  public List<ListenerMetrics> getListenerMetrics();
+}
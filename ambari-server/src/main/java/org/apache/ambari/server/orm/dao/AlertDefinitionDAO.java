@@ -17,6 +17,7 @@
  */
 package org.apache.ambari.server.orm.dao;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
@@ -130,6 +131,27 @@ public class AlertDefinitionDAO {
     return daoUtils.selectSingle(query);
   }
 
+  /**
+   * Gets the alert definitions with the specified names in a single query.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @param definitionNames
+   *          the names of the definitions (not {@code null} or empty).
+   * @return the alert definitions which exist or an empty list (never
+   *         {@code null}).
+   */
+  public List<AlertDefinitionEntity> findByNames(long clusterId,
+      Collection<String> definitionNames) {
+    TypedQuery<AlertDefinitionEntity> query = entityManagerProvider.get().createNamedQuery(
+        "AlertDefinitionEntity.findByNames", AlertDefinitionEntity.class);
+
+    query.setParameter("clusterId", clusterId);
+    query.setParameter("definitionNames", definitionNames);
+
+    return daoUtils.selectList(query);
+  }
+
   /**
    * Gets all alert definitions stored in the database.
    *
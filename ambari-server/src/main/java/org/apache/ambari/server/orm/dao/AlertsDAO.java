@@ -17,13 +17,17 @@
  */
 package org.apache.ambari.server.orm.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Order;
 import javax.persistence.metamodel.SingularAttribute;
@@ -39,6 +43,7 @@ import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
 import org.apache.ambari.server.orm.entities.AlertHistoryEntity_;
 import org.apache.ambari.server.state.AlertState;
 import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.alert.AlertCurrentCache;
 import org.apache.ambari.server.state.alert.Scope;
 import org.eclipse.persistence.config.HintValues;
 import org.eclipse.persistence.config.QueryHints;
@@ -86,6 +91,15 @@ public class AlertsDAO {
   @Inject
   private DaoUtils daoUtils;
 
+  /**
+   * The in-memory state of the current alerts, kept up-to-date as current
+   * alerts are removed. Alerts which are created or merged are cached by the
+   * callers of this DAO once the transaction writing them has committed, so
+   * that a rollback can't leave state in the cache which was never persisted.
+   */
+  @Inject
+  private AlertCurrentCache m_alertCache;
+
   /**
    * Gets an alert with the specified ID.
    *
@@ -239,6 +253,14 @@ public class AlertsDAO {
     // sorting
     JpaSortBuilder<AlertHistoryEntity> sortBuilder = new JpaSortBuilder<AlertHistoryEntity>();
     List<Order> sortOrders = sortBuilder.buildSortOrders(request.Sort, visitor);
+
+    // pages are only stable if the order is total, so break ties by ID
+    if (null != request.Pagination) {
+      sortOrders = new ArrayList<Order>(sortOrders);
+      sortOrders.add(visitor.getCriteriaBuilder().asc(
+          visitor.getRoot().get(AlertHistoryEntity_.alertId)));
+    }
+
     query.orderBy(sortOrders);
 
     // pagination
@@ -263,7 +285,23 @@ public class AlertsDAO {
    */
   @Transactional
   public int getCount(Predicate predicate) {
-    return 0;
+    EntityManager entityManager = entityManagerProvider.get();
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+
+    // convert the Ambari predicate into a JPA predicate on the count query
+    HistoryPredicateVisitor visitor = new HistoryPredicateVisitor(query);
+    PredicateHelper.visit(predicate, visitor);
+
+    query.select(builder.count(visitor.getRoot()));
+
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+    if (null != jpaPredicate) {
+      query.where(jpaPredicate);
+    }
+
+    Long count = daoUtils.selectSingle(entityManager.createQuery(query));
+    return null == count ? 0 : count.intValue();
   }
 
   /**
@@ -277,7 +315,7 @@ public class AlertsDAO {
     TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.findAll", AlertCurrentEntity.class);
 
-    return daoUtils.selectList(query);
+    return applyPendingTimestamps(daoUtils.selectList(query));
   }
 
   /**
@@ -289,7 +327,8 @@ public class AlertsDAO {
    */
   @RequiresSession
   public AlertCurrentEntity findCurrentById(long alertId) {
-    return entityManagerProvider.get().find(AlertCurrentEntity.class, alertId);
+    return applyPendingTimestamp(entityManagerProvider.get().find(
+        AlertCurrentEntity.class, alertId));
   }
 
   /**
@@ -308,7 +347,7 @@ public class AlertsDAO {
     query.setParameter("definitionId", Long.valueOf(definitionId));
     query = setQueryRefreshHint(query);
 
-    return daoUtils.selectList(query);
+    return applyPendingTimestamps(daoUtils.selectList(query));
   }
 
   /**
@@ -325,12 +364,13 @@ public class AlertsDAO {
     query.setParameter("clusterId", Long.valueOf(clusterId));
     query = setQueryRefreshHint(query);
 
-    return daoUtils.selectList(query);
+    return applyPendingTimestamps(daoUtils.selectList(query));
   }
 
   /**
    * Retrieves the summary information for a particular scope.  The result is a DTO
-   * since the columns are aggregated and don't fit to an entity.
+   * since the columns are aggregated and don't fit to an entity. If the
+   * {@link AlertCurrentCache} is active, the summary is computed from memory.
    *
    * @param clusterId the cluster id
    * @param serviceName the service name. Use {@code null} to not filter on service.
@@ -339,6 +379,10 @@ public class AlertsDAO {
    */
   @RequiresSession
   public AlertSummaryDTO findCurrentCounts(long clusterId, String serviceName, String hostName) {
+    if (m_alertCache.isActive()) {
+      return m_alertCache.getCounts(clusterId, serviceName, hostName);
+    }
+
     String sql = String.format(ALERT_COUNT_SQL_TEMPLATE,
         AlertSummaryDTO.class.getName());
 
@@ -377,7 +421,8 @@ public class AlertsDAO {
    * Retrieve the summary alert information for all hosts. This is different
    * from {@link #findCurrentCounts(long, String, String)} since this will
    * return only alerts related to hosts and those values will be the total
-   * number of hosts affected, not the total number of alerts.
+   * number of hosts affected, not the total number of alerts. If the
+   * {@link AlertCurrentCache} is active, the summary is computed from memory.
    *
    * @param clusterId
    *          the cluster id
@@ -385,6 +430,10 @@ public class AlertsDAO {
    */
   @RequiresSession
   public AlertHostSummaryDTO findCurrentHostCounts(long clusterId) {
+    if (m_alertCache.isActive()) {
+      return m_alertCache.getHostCounts(clusterId);
+    }
+
     // use Number here since some databases like MySQL return Long and some
     // return Integer and we don't want a class cast exception
     TypedQuery<Number> query = entityManagerProvider.get().createQuery(
@@ -448,7 +497,7 @@ public class AlertsDAO {
     query.setParameter("inlist", EnumSet.of(Scope.ANY, Scope.SERVICE));
 
     query = setQueryRefreshHint(query);
-    return daoUtils.selectList(query);
+    return applyPendingTimestamps(daoUtils.selectList(query));
   }
 
   /**
@@ -468,7 +517,7 @@ public class AlertsDAO {
     query.setParameter("inlist", EnumSet.of(Scope.ANY, Scope.HOST));
 
     query = setQueryRefreshHint(query);
-    return daoUtils.selectList(query);
+    return applyPendingTimestamps(daoUtils.selectList(query));
   }
 
   @RequiresSession
@@ -483,7 +532,34 @@ public class AlertsDAO {
     query.setParameter("definitionName", alertName);
 
     query = setQueryRefreshHint(query);
-    return daoUtils.selectOne(query);
+    return applyPendingTimestamp(daoUtils.selectOne(query));
+  }
+
+  /**
+   * Gets the current alerts for a host with any of the specified definition
+   * names in a single query.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @param hostName
+   *          the name of the host (not {@code null}).
+   * @param alertNames
+   *          the definition names (not {@code null} or empty).
+   * @return the current alerts which exist or an empty list (never
+   *         {@code null}).
+   */
+  @RequiresSession
+  public List<AlertCurrentEntity> findCurrentByHostAndNames(long clusterId,
+      String hostName, Collection<String> alertNames) {
+    TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
+        "AlertCurrentEntity.findByHostAndNames", AlertCurrentEntity.class);
+
+    query.setParameter("clusterId", Long.valueOf(clusterId));
+    query.setParameter("hostName", hostName);
+    query.setParameter("definitionNames", alertNames);
+
+    query = setQueryRefreshHint(query);
+    return applyPendingTimestamps(daoUtils.selectList(query));
   }
 
   /**
@@ -510,6 +586,7 @@ public class AlertsDAO {
     historyQuery.executeUpdate();
 
     entityManager.clear();
+    m_alertCache.remove(definitionId, null, null, null, null);
   }
 
   /**
@@ -524,7 +601,10 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByHistoryId", AlertCurrentEntity.class);
 
     query.setParameter("historyId", historyId);
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+
+    m_alertCache.remove(null, historyId, null, null, null);
+    return removed;
   }
 
   /**
@@ -537,7 +617,14 @@ public class AlertsDAO {
     TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
         "AlertCurrentEntity.removeDisabled", AlertCurrentEntity.class);
 
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+
+    // the cache doesn't know which definitions are disabled
+    if (removed > 0 && m_alertCache.isActive()) {
+      loadCurrentCache();
+    }
+
+    return removed;
   }
 
   /**
@@ -556,7 +643,10 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByService", AlertCurrentEntity.class);
 
     query.setParameter("serviceName", serviceName);
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+
+    m_alertCache.remove(null, null, serviceName, null, null);
+    return removed;
   }
 
   /**
@@ -575,7 +665,10 @@ public class AlertsDAO {
         "AlertCurrentEntity.removeByHost", AlertCurrentEntity.class);
 
     query.setParameter("hostName", hostName);
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+
+    m_alertCache.remove(null, null, null, null, hostName);
+    return removed;
   }
 
   /**
@@ -604,7 +697,10 @@ public class AlertsDAO {
     query.setParameter("componentName", componentName);
     query.setParameter("hostName", hostName);
 
-    return query.executeUpdate();
+    int removed = query.executeUpdate();
+
+    m_alertCache.remove(null, null, serviceName, componentName, hostName);
+    return removed;
   }
 
   /**
@@ -656,7 +752,9 @@ public class AlertsDAO {
   }
 
   /**
-   * Persists a new current alert.
+   * Persists a new current alert. The alert is not cached by the
+   * {@link AlertCurrentCache}; callers should cache it once the transaction
+   * has committed.
    *
    * @param alert
    *          the current alert to persist (not {@code null}).
@@ -679,6 +777,8 @@ public class AlertsDAO {
 
   /**
    * Merge the speicified current alert with the existing alert in the database.
+   * The merged alert is not cached by the {@link AlertCurrentCache}; callers
+   * should cache it once the transaction has committed.
    *
    * @param alert
    *          the current alert to merge (not {@code null}).
@@ -698,6 +798,7 @@ public class AlertsDAO {
   @Transactional
   public void remove(AlertCurrentEntity alert) {
     entityManagerProvider.get().remove(merge(alert));
+    m_alertCache.removeById(alert.getAlertId());
   }
 
   /**
@@ -745,7 +846,166 @@ public class AlertsDAO {
     query.setParameter("definitionName", alertName);
 
     query = setQueryRefreshHint(query);
-    return daoUtils.selectOne(query);
+    return applyPendingTimestamp(daoUtils.selectOne(query));
+  }
+
+  /**
+   * Gets the current alerts without a host for any of the specified definition
+   * names in a single query.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @param alertNames
+   *          the definition names (not {@code null} or empty).
+   * @return the current alerts which exist or an empty list (never
+   *         {@code null}).
+   */
+  @RequiresSession
+  public List<AlertCurrentEntity> findCurrentByNamesNoHost(long clusterId,
+      Collection<String> alertNames) {
+    TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
+        "AlertCurrentEntity.findByNamesAndNoHost", AlertCurrentEntity.class);
+
+    query.setParameter("clusterId", Long.valueOf(clusterId));
+    query.setParameter("definitionNames", alertNames);
+
+    query = setQueryRefreshHint(query);
+    return applyPendingTimestamps(daoUtils.selectList(query));
+  }
+
+  /**
+   * Persists new current alerts and merges changed current alerts in a single
+   * transaction. Any {@link AlertHistoryEntity} of a changed current alert
+   * which has not been persisted yet is created first. The alerts are not
+   * cached by the {@link AlertCurrentCache}; callers should cache them once
+   * the transaction has committed.
+   *
+   * @param newAlerts
+   *          the current alerts to create (not {@code null}).
+   * @param changedAlerts
+   *          the current alerts to merge (not {@code null}).
+   * @return the merged current alerts, in the same order as
+   *         {@code changedAlerts} (never {@code null}).
+   */
+  @Transactional
+  public List<AlertCurrentEntity> createOrUpdate(
+      Collection<AlertCurrentEntity> newAlerts,
+      List<AlertCurrentEntity> changedAlerts) {
+    EntityManager entityManager = entityManagerProvider.get();
+
+    for (AlertCurrentEntity alert : newAlerts) {
+      entityManager.persist(alert);
+    }
+
+    List<AlertCurrentEntity> mergedAlerts = new ArrayList<AlertCurrentEntity>(
+        changedAlerts.size());
+
+    for (AlertCurrentEntity alert : changedAlerts) {
+      AlertHistoryEntity history = alert.getAlertHistory();
+      if (null != history && null == history.getAlertId()) {
+        entityManager.persist(history);
+      }
+
+      mergedAlerts.add(entityManager.merge(alert));
+    }
+
+    return mergedAlerts;
+  }
+
+  /**
+   * Rebuilds the {@link AlertCurrentCache} from the current alerts in the
+   * database and activates it. Current alerts written while the database is
+   * being read are not overwritten by the older state that was read, and
+   * timestamps which have not been persisted yet are kept.
+   */
+  @RequiresSession
+  public void loadCurrentCache() {
+    m_alertCache.beginLoad();
+    try {
+      TypedQuery<AlertCurrentEntity> query = entityManagerProvider.get().createNamedQuery(
+          "AlertCurrentEntity.findAll", AlertCurrentEntity.class);
+
+      query = setQueryRefreshHint(query);
+      m_alertCache.load(daoUtils.selectList(query));
+    } catch (RuntimeException exception) {
+      m_alertCache.clear();
+      throw exception;
+    }
+  }
+
+  /**
+   * Persists the latest timestamps of current alerts which were recorded by
+   * the {@link AlertCurrentCache}. Alerts which no longer exist are skipped
+   * and a timestamp is never moved backwards.
+   *
+   * @param timestamps
+   *          the latest timestamps keyed by current alert ID (not
+   *          {@code null}).
+   * @return the number of current alerts updated.
+   */
+  @Transactional
+  public int updateLatestTimestamps(Map<Long, Long> timestamps) {
+    EntityManager entityManager = entityManagerProvider.get();
+
+    int updated = 0;
+    for (Map.Entry<Long, Long> entry : timestamps.entrySet()) {
+      AlertCurrentEntity alert = entityManager.find(AlertCurrentEntity.class,
+          entry.getKey());
+
+      if (null == alert) {
+        continue;
+      }
+
+      Long latestTimestamp = alert.getLatestTimestamp();
+      if (null == latestTimestamp
+          || latestTimestamp.longValue() < entry.getValue().longValue()) {
+        alert.setLatestTimestamp(entry.getValue());
+        updated++;
+      }
+    }
+
+    return updated;
+  }
+
+  /**
+   * Sets the latest timestamp recorded by the {@link AlertCurrentCache} on a
+   * current alert if it hasn't been persisted yet.
+   *
+   * @param alert
+   *          the current alert, or {@code null}.
+   * @return the same current alert.
+   */
+  private AlertCurrentEntity applyPendingTimestamp(AlertCurrentEntity alert) {
+    if (null == alert || !m_alertCache.isActive()) {
+      return alert;
+    }
+
+    Long pending = m_alertCache.getPendingTimestamp(alert.getAlertId());
+    if (null != pending
+        && (null == alert.getLatestTimestamp() || alert.getLatestTimestamp() < pending)) {
+      alert.setLatestTimestamp(pending);
+    }
+
+    return alert;
+  }
+
+  /**
+   * Sets the latest timestamps recorded by the {@link AlertCurrentCache} on
+   * current alerts if they haven't been persisted yet.
+   *
+   * @param alerts
+   *          the current alerts (not {@code null}).
+   * @return the same current alerts.
+   */
+  private List<AlertCurrentEntity> applyPendingTimestamps(
+      List<AlertCurrentEntity> alerts) {
+    if (m_alertCache.isActive() && m_alertCache.getPendingCount() > 0) {
+      for (AlertCurrentEntity alert : alerts) {
+        applyPendingTimestamp(alert);
+      }
+    }
+
+    return alerts;
   }
 
   /**
@@ -782,6 +1042,16 @@ public class AlertsDAO {
       super(entityManagerProvider.get(), AlertHistoryEntity.class);
     }
 
+    /**
+     * Constructor.
+     *
+     * @param query
+     *          the query to build the predicate for, such as a count query.
+     */
+    public HistoryPredicateVisitor(CriteriaQuery<?> query) {
+      super(entityManagerProvider.get(), AlertHistoryEntity.class, query);
+    }
+
     /**
      * {@inheritDoc}
      */
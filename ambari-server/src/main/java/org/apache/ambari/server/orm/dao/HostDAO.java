@@ -18,6 +18,9 @@
 
 package org.apache.ambari.server.orm.dao;
 
+import static org.apache.ambari.server.orm.dao.DaoUtils.ORACLE_LIST_LIMIT;
+
+import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
@@ -29,6 +32,8 @@ import org.apache.ambari.server.orm.entities.StageEntity;
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -43,6 +48,39 @@ public class HostDAO {
     return entityManagerProvider.get().find(HostEntity.class, hostName);
   }
 
+  /**
+   * Gets the hosts with the specified names, querying them in chunks which
+   * stay within the Oracle {@code IN} list limit.
+   *
+   * @param hostNames
+   *          the names of the hosts to retrieve (not {@code null}).
+   * @return the matching hosts, or an empty list if none (never {@code null}).
+   */
+  @RequiresSession
+  public List<HostEntity> findByNames(Collection<String> hostNames) {
+    if (hostNames.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    TypedQuery<HostEntity> query = entityManagerProvider.get().createQuery(
+        "SELECT host FROM HostEntity host WHERE host.hostName IN :hostNames",
+        HostEntity.class);
+
+    List<HostEntity> result = new ArrayList<HostEntity>(hostNames.size());
+    List<List<String>> lists = Lists.partition(new ArrayList<String>(hostNames),
+        ORACLE_LIST_LIMIT);
+    for (List<String> list : lists) {
+      query.setParameter("hostNames", list);
+      try {
+        result.addAll(query.getResultList());
+      } catch (NoResultException e) {
+        // no hosts in this chunk
+      }
+    }
+
+    return result;
+  }
+
   @RequiresSession
   public List<HostEntity> findAll() {
     TypedQuery<HostEntity> query = entityManagerProvider.get().createQuery("SELECT host FROM HostEntity host", HostEntity.class);
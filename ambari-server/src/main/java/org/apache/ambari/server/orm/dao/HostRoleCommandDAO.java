@@ -30,12 +30,32 @@ import java.util.Map;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
+import javax.persistence.criteria.AbstractQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+import javax.persistence.metamodel.SingularAttribute;
 
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.api.query.JpaPredicateVisitor;
+import org.apache.ambari.server.api.query.JpaSortBuilder;
+import org.apache.ambari.server.controller.internal.TaskResourceProvider;
+import org.apache.ambari.server.controller.predicate.ComparisonPredicate;
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.utilities.PredicateHelper;
 import org.apache.ambari.server.orm.RequiresSession;
+import org.apache.ambari.server.orm.entities.ClusterEntity;
+import org.apache.ambari.server.orm.entities.ClusterEntity_;
 import org.apache.ambari.server.orm.entities.HostEntity;
 import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity_;
 import org.apache.ambari.server.orm.entities.StageEntity;
+import org.apache.ambari.server.orm.entities.StageEntity_;
 
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
@@ -258,6 +278,84 @@ public class HostRoleCommandDAO {
     return daoUtils.selectAll(entityManagerProvider.get(), HostRoleCommandEntity.class);
   }
 
+  /**
+   * Finds all {@link HostRoleCommandEntity} that match the provided
+   * {@link Predicate}. This method will make JPA do the heavy lifting of
+   * filtering, sorting and providing a slice of the result set, so only the
+   * tasks on the requested page are loaded.
+   *
+   * @param request
+   *          the request whose sort and page requests to apply
+   * @param predicate
+   *          the predicate to apply, or {@code null} for none.
+   * @return the matching tasks
+   */
+  @RequiresSession
+  public List<HostRoleCommandEntity> findAll(Request request, Predicate predicate) {
+    EntityManager entityManager = entityManagerProvider.get();
+
+    // convert the Ambari predicate into a JPA predicate
+    TaskPredicateVisitor visitor = new TaskPredicateVisitor();
+    PredicateHelper.visit(predicate, visitor);
+
+    CriteriaQuery<HostRoleCommandEntity> query = visitor.getCriteriaQuery();
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+
+    if (jpaPredicate != null) {
+      query.where(jpaPredicate);
+    }
+
+    // sorting
+    JpaSortBuilder<HostRoleCommandEntity> sortBuilder = new JpaSortBuilder<HostRoleCommandEntity>();
+    List<Order> sortOrders = sortBuilder.buildSortOrders(request.getSortRequest(), visitor);
+
+    // pages are only stable if the order is total, so break ties by task ID
+    PageRequest pageRequest = request.getPageRequest();
+    if (pageRequest != null) {
+      sortOrders = new ArrayList<Order>(sortOrders);
+      sortOrders.add(visitor.getCriteriaBuilder().asc(
+          visitor.getRoot().get(HostRoleCommandEntity_.taskId)));
+    }
+
+    query.orderBy(sortOrders);
+
+    TypedQuery<HostRoleCommandEntity> typedQuery = entityManager.createQuery(query);
+    if (pageRequest != null) {
+      typedQuery.setFirstResult(pageRequest.getOffset());
+      typedQuery.setMaxResults(pageRequest.getPageSize());
+    }
+
+    return daoUtils.selectList(typedQuery);
+  }
+
+  /**
+   * Gets the total count of all {@link HostRoleCommandEntity} rows that match
+   * the specified {@link Predicate}.
+   *
+   * @param predicate
+   *          the predicate to apply, or {@code null} for none.
+   * @return the total count of rows that would be returned in a result set.
+   */
+  @RequiresSession
+  public int getCount(Predicate predicate) {
+    EntityManager entityManager = entityManagerProvider.get();
+    CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> query = builder.createQuery(Long.class);
+
+    TaskPredicateVisitor visitor = new TaskPredicateVisitor(query);
+    PredicateHelper.visit(predicate, visitor);
+
+    query.select(builder.count(visitor.getRoot()));
+
+    javax.persistence.criteria.Predicate jpaPredicate = visitor.getJpaPredicate();
+    if (jpaPredicate != null) {
+      query.where(jpaPredicate);
+    }
+
+    Long count = daoUtils.selectSingle(entityManager.createQuery(query));
+    return count == null ? 0 : count.intValue();
+  }
+
   @RequiresSession
   public List<Long> getRequestsByTaskStatus(Collection<HostRoleStatus> statuses,
     boolean match, boolean checkAllTasks, int maxResults, boolean ascOrder) {
@@ -349,4 +447,84 @@ public class HostRoleCommandDAO {
   public void removeByPK(int taskId) {
     remove(findByPK(taskId));
   }
+
+  /**
+   * The {@link TaskPredicateVisitor} is used to convert an Ambari
+   * {@link Predicate} into a JPA {@link javax.persistence.criteria.Predicate}.
+   */
+  private final class TaskPredicateVisitor extends
+      JpaPredicateVisitor<HostRoleCommandEntity> {
+
+    /**
+     * The query that the predicate is built for, used to create subqueries.
+     */
+    private final AbstractQuery<?> query;
+
+    /**
+     * Constructor.
+     */
+    public TaskPredicateVisitor() {
+      super(entityManagerProvider.get(), HostRoleCommandEntity.class);
+      query = getCriteriaQuery();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param query
+     *          the query to build the predicate for, such as a count query.
+     */
+    public TaskPredicateVisitor(CriteriaQuery<?> query) {
+      super(entityManagerProvider.get(), HostRoleCommandEntity.class, query);
+      this.query = query;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class<HostRoleCommandEntity> getEntityClass() {
+      return HostRoleCommandEntity.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<? extends SingularAttribute<?, ?>> getPredicateMapping(
+        String propertyId) {
+      return HostRoleCommandEntity_.getPredicateMapping().get(propertyId);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Tasks only know their cluster by the ID on their stage, so the cluster
+     * name is compared against the clusters in a subquery.
+     */
+    @Override
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void acceptComparisonPredicate(ComparisonPredicate predicate) {
+      if (!TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID.equals(predicate.getPropertyId())) {
+        super.acceptComparisonPredicate(predicate);
+        return;
+      }
+
+      Subquery<Long> clusterIds = query.subquery(Long.class);
+      Root<ClusterEntity> cluster = clusterIds.from(ClusterEntity.class);
+
+      javax.persistence.criteria.Predicate clusterPredicate = compare(
+          (Path) cluster.get(ClusterEntity_.clusterName),
+          predicate.getOperator(), predicate.getValue());
+
+      if (null == clusterPredicate) {
+        return;
+      }
+
+      clusterIds.select(cluster.get(ClusterEntity_.clusterId)).where(clusterPredicate);
+
+      addPredicate(getRoot().get(HostRoleCommandEntity_.stage).get(
+          StageEntity_.clusterId).in(clusterIds));
+    }
+  }
 }
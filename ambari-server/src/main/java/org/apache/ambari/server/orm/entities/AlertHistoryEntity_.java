@@ -95,6 +95,15 @@ public class AlertHistoryEntity_ {
     mapping.put(AlertHistoryResourceProvider.ALERT_HISTORY_DEFINITION_NAME,
         Arrays.asList(alertDefinition, AlertDefinitionEntity_.definitionName));
 
+    // AlertHistory.alertDefinition.definitionId = 1
+    mapping.put(AlertHistoryResourceProvider.ALERT_HISTORY_DEFINITION_ID,
+        Arrays.asList(alertDefinition, AlertDefinitionEntity_.definitionId));
+
+    // AlertHistory.alertDefinition.clusterEntity.clusterName = c1
+    mapping.put(AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME,
+        Arrays.asList(alertDefinition, AlertDefinitionEntity_.clusterEntity,
+            ClusterEntity_.clusterName));
+
     return mapping;
   }
 }
@@ -18,8 +18,15 @@
 
 package org.apache.ambari.server.orm.entities;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import javax.persistence.metamodel.SingularAttribute;
 
+import org.apache.ambari.server.controller.internal.TaskResourceProvider;
+
 
 /**
  * This class exists so that JPQL can use static singular attributes that are strongly typed
@@ -47,5 +54,46 @@ public class HostRoleCommandEntity_ {
   public static volatile SingularAttribute<HostRoleCommandEntity, String> roleCommand;
   public static volatile SingularAttribute<HostRoleCommandEntity, String> commandDetail;
   public static volatile SingularAttribute<HostRoleCommandEntity, String> customCommandName;
+  public static volatile SingularAttribute<HostRoleCommandEntity, StageEntity> stage;
+
+  /**
+   * Gets a mapping of between a resource provider property, like
+   * {@link TaskResourceProvider#TASK_ID_PROPERTY_ID} to a metamodel
+   * {@link SingularAttribute}.
+   * <p/>
+   * This is used when converting an Ambari {@link org.apache.ambari.server.controller.spi.Predicate} into a JPA
+   * {@link javax.persistence.criteria.Predicate} and we need a type-safe
+   * conversion between "category/property" and JPA field names.
+   *
+   * @return a mapping of between a resource provider property
+   */
+  public static Map<String, List<? extends SingularAttribute<HostRoleCommandEntity, ?>>> getPredicateMapping() {
+    Map<String, List<? extends SingularAttribute<HostRoleCommandEntity, ?>>> mapping = new HashMap<String, List<? extends SingularAttribute<HostRoleCommandEntity, ?>>>();
+    mapping.put(TaskResourceProvider.TASK_ID_PROPERTY_ID,
+        Collections.singletonList(taskId));
+    mapping.put(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID,
+        Collections.singletonList(requestId));
+    mapping.put(TaskResourceProvider.TASK_STAGE_ID_PROPERTY_ID,
+        Collections.singletonList(stageId));
+    mapping.put(TaskResourceProvider.TASK_HOST_NAME_PROPERTY_ID,
+        Collections.singletonList(hostName));
+    mapping.put(TaskResourceProvider.TASK_ROLE_PROPERTY_ID,
+        Collections.singletonList(role));
+    mapping.put(TaskResourceProvider.TASK_COMMAND_PROPERTY_ID,
+        Collections.singletonList(roleCommand));
+    mapping.put(TaskResourceProvider.TASK_STATUS_PROPERTY_ID,
+        Collections.singletonList(status));
+    mapping.put(TaskResourceProvider.TASK_EXIT_CODE_PROPERTY_ID,
+        Collections.singletonList(exitcode));
+    mapping.put(TaskResourceProvider.TASK_START_TIME_PROPERTY_ID,
+        Collections.singletonList(startTime));
+    mapping.put(TaskResourceProvider.TASK_END_TIME_PROPERTY_ID,
+        Collections.singletonList(endTime));
+    mapping.put(TaskResourceProvider.TASK_ATTEMPT_CNT_PROPERTY_ID,
+        Collections.singletonList(attemptCount));
+    mapping.put(TaskResourceProvider.TASK_CUST_CMD_NAME_PROPERTY_ID,
+        Collections.singletonList(customCommandName));
+    return mapping;
+  }
 }
 
@@ -41,6 +41,18 @@ class ModuleFileUnmarshaller {
    */
   private static final Map<Class<?>, JAXBContext> jaxbContexts = new HashMap<Class<?>, JAXBContext>();
 
+  /**
+   * Unmarshallers of each JAXB context, created once per thread.  Unmarshallers
+   * aren't thread safe but may be reused by the thread which created them.
+   */
+  private static final ThreadLocal<Map<JAXBContext, Unmarshaller>> unmarshallers =
+      new ThreadLocal<Map<JAXBContext, Unmarshaller>>() {
+        @Override
+        protected Map<JAXBContext, Unmarshaller> initialValue() {
+          return new HashMap<JAXBContext, Unmarshaller>();
+        }
+      };
+
   /**
    * Unmarshal a file to it's corresponding object type.
    *
@@ -51,8 +63,14 @@ class ModuleFileUnmarshaller {
    * @throws JAXBException if unable to unmarshal the file
    */
   public <T> T unmarshal(Class<T> clz, File file) throws JAXBException {
-    Unmarshaller u = jaxbContexts.get(clz).createUnmarshaller();
+    JAXBContext ctx = jaxbContexts.get(clz);
+    Map<JAXBContext, Unmarshaller> threadUnmarshallers = unmarshallers.get();
 
+    Unmarshaller u = threadUnmarshallers.get(ctx);
+    if (u == null) {
+      u = ctx.createUnmarshaller();
+      threadUnmarshallers.put(ctx, u);
+    }
     return clz.cast(u.unmarshal(file));
   }
 
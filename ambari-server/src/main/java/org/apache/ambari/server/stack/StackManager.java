@@ -28,10 +28,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -79,14 +88,47 @@ public class StackManager {
    * @throws AmbariException if an exception occurs while processing the stacks
    */
   public StackManager(File stackRoot, File commonServicesRoot, StackContext stackContext) throws AmbariException {
+    this(stackRoot, commonServicesRoot, stackContext, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor.
+   * Initialize stack manager, parsing the stack definitions on the given number
+   * of threads.
+   *
+   * @param stackRoot           stack root directory
+   * @param commonServicesRoot  common services root directory
+   * @param stackContext        context which provides external functionality
+   * @param parseThreads        number of threads which parse the stack definitions
+   *
+   * @throws AmbariException if an exception occurs while processing the stacks
+   */
+  StackManager(File stackRoot, File commonServicesRoot, StackContext stackContext, int parseThreads)
+      throws AmbariException {
     validateStackDirectory(stackRoot);
     validateCommonServicesDirectory(commonServicesRoot);
 
     this.stackMap = new HashMap<String, StackInfo>();
     this.stackContext = stackContext;
 
-    Map<String, ServiceModule> commonServiceModules = parseCommonServicesDirectory(commonServicesRoot);
-    Map<String, StackModule> stackModules = parseStackDirectory(stackRoot);
+    long start = System.currentTimeMillis();
+
+    // the stack definition files are independent, so they are parsed in parallel;
+    // resolution depends on the order of the stack hierarchy and stays serial
+    ExecutorService executor = createParseExecutor(parseThreads);
+    Map<String, ServiceModule> commonServiceModules;
+    Map<String, StackModule> stackModules;
+    try {
+      commonServiceModules = parseCommonServicesDirectory(commonServicesRoot, executor);
+      stackModules = parseStackDirectory(stackRoot, executor);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    if (LOG.isInfoEnabled()) {
+      LOG.info("Parsed " + stackModules.size() + " stacks and " + commonServiceModules.size() +
+          " common services in " + (System.currentTimeMillis() - start) + " ms");
+    }
 
     fullyResolveCommonServices(stackModules, commonServiceModules);
     fullyResolveStacks(stackModules, commonServiceModules);
@@ -230,68 +272,165 @@ public class StackManager {
    * Parse the specified common services root directory
    *
    * @param commonServicesRoot  the common services root directory to parse
+   * @param executor            executor which parses the service directories
    * @return map of common service id which contains name and version to common service module.
    * @throws AmbariException if unable to parse all common services
    */
-  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot) throws AmbariException {
+  private Map<String, ServiceModule> parseCommonServicesDirectory(File commonServicesRoot,
+                                                                  ExecutorService executor)
+      throws AmbariException {
     Map<String, ServiceModule> commonServiceModules = new HashMap<String, ServiceModule>();
 
     if(commonServicesRoot != null) {
+      List<Callable<Collection<ServiceModule>>> tasks = new ArrayList<Callable<Collection<ServiceModule>>>();
+
       File[] commonServiceFiles = commonServicesRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
       for (File commonService : commonServiceFiles) {
         if (commonService.isFile()) {
           continue;
         }
-        for (File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
-          String serviceName = serviceFolder.getParentFile().getName();
-          String serviceVersion = serviceFolder.getName();
-          ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
-          ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
-          for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
-            ServiceModule serviceModule = new ServiceModule(stackContext, serviceInfo, serviceDirectory, true);
-
-            String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
-            commonServiceModules.put(commonServiceKey, serviceModule);
-          }
+        for (final File serviceFolder : commonService.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+          tasks.add(new Callable<Collection<ServiceModule>>() {
+            @Override
+            public Collection<ServiceModule> call() throws Exception {
+              return parseCommonServiceFolder(serviceFolder);
+            }
+          });
+        }
+      }
+
+      for (Collection<ServiceModule> serviceModules : invokeAll(executor, tasks)) {
+        for (ServiceModule serviceModule : serviceModules) {
+          ServiceInfo serviceInfo = serviceModule.getModuleInfo();
+          String commonServiceKey = serviceInfo.getName() + StackManager.PATH_DELIMITER + serviceInfo.getVersion();
+          commonServiceModules.put(commonServiceKey, serviceModule);
         }
       }
     }
     return commonServiceModules;
   }
 
+  /**
+   * Parse a common service version directory.
+   *
+   * @param serviceFolder  the common service version directory
+   * @return the modules of the services defined in the directory
+   * @throws AmbariException if unable to parse the directory
+   */
+  private Collection<ServiceModule> parseCommonServiceFolder(File serviceFolder) throws AmbariException {
+    Collection<ServiceModule> serviceModules = new ArrayList<ServiceModule>();
+
+    ServiceDirectory serviceDirectory = new CommonServiceDirectory(serviceFolder.getPath());
+    ServiceMetainfoXml metaInfoXml = serviceDirectory.getMetaInfoFile();
+    for (ServiceInfo serviceInfo : metaInfoXml.getServices()) {
+      serviceModules.add(new ServiceModule(stackContext, serviceInfo, serviceDirectory, true));
+    }
+    return serviceModules;
+  }
+
   /**
    * Parse the specified stack root directory
    *
    * @param stackRoot  the stack root directory to parse
+   * @param executor   executor which parses the stack version directories
    * @return map of stack id which contains name and version to stack module.
    * @throws AmbariException if unable to parse all stacks
    */
-  private Map<String, StackModule> parseStackDirectory(File stackRoot) throws AmbariException {
+  private Map<String, StackModule> parseStackDirectory(File stackRoot, ExecutorService executor)
+      throws AmbariException {
     Map<String, StackModule> stackModules = new HashMap<String, StackModule>();
 
+    List<String> stackKeys = new ArrayList<String>();
+    List<Callable<StackModule>> tasks = new ArrayList<Callable<StackModule>>();
+
     File[] stackFiles = stackRoot.listFiles(AmbariMetaInfo.FILENAME_FILTER);
     for (File stack : stackFiles) {
       if (stack.isFile()) {
         continue;
       }
-      for (File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
+      for (final File stackFolder : stack.listFiles(AmbariMetaInfo.FILENAME_FILTER)) {
         if (stackFolder.isFile()) {
           continue;
         }
         String stackName = stackFolder.getParentFile().getName();
         String stackVersion = stackFolder.getName();
 
-        StackModule stackModule = new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
-        String stackKey = stackName + StackManager.PATH_DELIMITER + stackVersion;
-        stackModules.put(stackKey, stackModule);
-        stackMap.put(stackKey, stackModule.getModuleInfo());
+        stackKeys.add(stackName + StackManager.PATH_DELIMITER + stackVersion);
+        tasks.add(new Callable<StackModule>() {
+          @Override
+          public StackModule call() throws Exception {
+            return new StackModule(new StackDirectory(stackFolder.getPath()), stackContext);
+          }
+        });
       }
     }
 
+    List<StackModule> parsedModules = invokeAll(executor, tasks);
+    for (int i = 0; i < parsedModules.size(); ++i) {
+      StackModule stackModule = parsedModules.get(i);
+      String stackKey = stackKeys.get(i);
+      stackModules.put(stackKey, stackModule);
+      stackMap.put(stackKey, stackModule.getModuleInfo());
+    }
+
     if (stackMap.isEmpty()) {
       throw new AmbariException("Unable to find stack definitions under " +
           "stackRoot = " + stackRoot.getAbsolutePath());
     }
     return stackModules;
   }
+
+  /**
+   * Create the executor used to parse the stack definition directories.
+   *
+   * @param threads  the number of threads
+   * @return a new executor with the given number of threads
+   */
+  private ExecutorService createParseExecutor(int threads) {
+    final AtomicInteger threadCount = new AtomicInteger();
+
+    return Executors.newFixedThreadPool(Math.max(threads, 1),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Stack Parser Thread-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+  }
+
+  /**
+   * Run the given parse tasks and wait for all of them to complete.
+   *
+   * @param executor  the executor
+   * @param tasks     the parse tasks
+   * @return the results of the tasks in task order
+   * @throws AmbariException if a task failed or the parse was interrupted
+   */
+  private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks)
+      throws AmbariException {
+    List<T> results = new ArrayList<T>(tasks.size());
+    try {
+      for (Future<T> future : executor.invokeAll(tasks)) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AmbariException("Interrupted while parsing stack definitions", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof AmbariException) {
+        throw (AmbariException) cause;
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new AmbariException("Unable to parse stack definitions", cause);
+    }
+    return results;
+  }
 }
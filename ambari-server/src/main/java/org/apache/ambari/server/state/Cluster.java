@@ -89,6 +89,36 @@ public interface Cluster {
    */
   public Set<String> getHosts(String serviceName, String componentName);
 
+  /**
+   * Get the ServiceComponentHosts matching all of the given criteria.  The
+   * criteria are looked up in secondary indexes, so the cost is proportional
+   * to the number of ServiceComponentHosts matching the most selective one
+   * rather than to the size of the cluster.
+   *
+   * @param serviceName    the service name; null for any service
+   * @param componentName  the component name; null for any component
+   * @param hostname       the host name; null for any host
+   * @param state          the current state; null for any state
+   * @param desiredState   the desired state; null for any desired state
+   *
+   * @return the matching ServiceComponentHosts
+   */
+  public List<ServiceComponentHost> getServiceComponentHosts(String serviceName,
+      String componentName, String hostname, State state, State desiredState);
+
+  /**
+   * Update the secondary indexes for a ServiceComponentHost whose current or
+   * desired state has changed.  Called by the ServiceComponentHost while it
+   * holds its own write lock, so the updates for one ServiceComponentHost
+   * are applied in order.
+   *
+   * @param svcCompHost   the ServiceComponentHost
+   * @param state         the new current state
+   * @param desiredState  the new desired state
+   */
+  public void updateServiceComponentHostIndex(ServiceComponentHost svcCompHost,
+      State state, State desiredState);
+
 
   /**
    * Remove ServiceComponentHost from cluster
@@ -386,10 +416,22 @@ public interface Cluster {
    */
   Service addService(String serviceName) throws AmbariException;
 
+  /**
+   * Gets the lock which guards the services, components and host components
+   * of this cluster. Configurations, config groups and stack versions are
+   * guarded by their own locks.
+   *
+   * @return the service lock
+   */
+  ReadWriteLock getServiceLock();
+
   /**
    * Get lock to control access to cluster structure
    * @return cluster-global lock
+   * @deprecated the cluster state is guarded by per-domain locks; use
+   *             {@link #getServiceLock()}, which this returns
    */
+  @Deprecated
   ReadWriteLock getClusterGlobalLock();
 
   /**
@@ -29,7 +29,15 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.collect.Maps;
 import org.apache.ambari.server.AmbariException;
@@ -37,6 +45,8 @@ import org.apache.ambari.server.api.services.AmbariMetaInfo;
 import org.apache.ambari.server.configuration.Configuration;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.ConfigurationRequest;
+import org.apache.ambari.server.events.StaleConfigsChangedEvent;
+import org.apache.ambari.server.events.publishers.AmbariEventPublisher;
 import org.apache.ambari.server.orm.dao.ClusterDAO;
 import org.apache.ambari.server.orm.entities.ClusterConfigEntity;
 import org.apache.ambari.server.state.PropertyInfo.PropertyType;
@@ -60,11 +70,61 @@ public class ConfigHelper {
   private Clusters clusters = null;
   private AmbariMetaInfo ambariMetaInfo = null;
   private ClusterDAO clusterDAO = null;
+  private AmbariEventPublisher eventPublisher = null;
   private static final String DELETED = "DELETED_";
   public static final String CLUSTER_DEFAULT_TAG = "tag";
   private final boolean STALE_CONFIGS_CACHE_ENABLED;
-  private final int STALE_CONFIGS_CACHE_EXPIRATION_TIME = 300;
-  private final Cache<ServiceComponentHost, Boolean> staleConfigsCache;
+
+  /**
+   * The stale state of each host component.  Entries don't expire; they are
+   * recomputed when the configurations they depend on change.  Weak keys let
+   * deleted host components be collected.
+   */
+  private final Cache<ServiceComponentHost, StaleConfigsState> staleConfigsCache;
+
+  /**
+   * The cached host components by cluster ID and service name, so that an
+   * invalidation only visits the services depending on the changed config
+   * types.  The sets are weak like the cache.
+   */
+  private final ConcurrentMap<Long, ConcurrentMap<String, Set<ServiceComponentHost>>> staleConfigsCacheIndex =
+      new ConcurrentHashMap<Long, ConcurrentMap<String, Set<ServiceComponentHost>>>();
+
+  /**
+   * Host components whose cached stale state is out of date.
+   */
+  private final Set<ServiceComponentHost> staleConfigsPending =
+      Collections.newSetFromMap(new ConcurrentHashMap<ServiceComponentHost, Boolean>());
+
+  /**
+   * Counts the invalidations; a value computed before an invalidation never
+   * replaces one computed after it.
+   */
+  private final AtomicLong staleConfigsInvalidations = new AtomicLong();
+
+  /**
+   * Whether a recompute of the pending host components is scheduled.
+   */
+  private final AtomicBoolean staleConfigsRecomputeScheduled = new AtomicBoolean(false);
+
+  /**
+   * Recomputes the stale state of the pending host components in the background.
+   */
+  private final ExecutorService staleConfigsExecutor;
+
+  /**
+   * The maximum number of cached effective configurations.
+   */
+  private static final int EFFECTIVE_CONFIGS_CACHE_SIZE = 100;
+
+  /**
+   * The effective configurations keyed by cluster and configuration tags.  A
+   * config type and tag always name the same properties, so an entry never
+   * goes stale; entries only expire to bound the cache.
+   */
+  private final Cache<EffectiveConfigsKey, EffectiveConfigs> effectiveConfigsCache =
+      CacheBuilder.newBuilder().maximumSize(EFFECTIVE_CONFIGS_CACHE_SIZE)
+          .expireAfterAccess(10, TimeUnit.MINUTES).build();
 
   private static final Logger LOG =
       LoggerFactory.getLogger(ConfigHelper.class);
@@ -81,13 +141,22 @@ public class ConfigHelper {
   public static final String HTTPS_ONLY = "HTTPS_ONLY";
 
   @Inject
-  public ConfigHelper(Clusters c, AmbariMetaInfo metaInfo, Configuration configuration, ClusterDAO clusterDAO) {
+  public ConfigHelper(Clusters c, AmbariMetaInfo metaInfo, Configuration configuration,
+                      ClusterDAO clusterDAO, AmbariEventPublisher eventPublisher) {
     clusters = c;
     ambariMetaInfo = metaInfo;
     this.clusterDAO = clusterDAO;
+    this.eventPublisher = eventPublisher;
     STALE_CONFIGS_CACHE_ENABLED = configuration.isStaleConfigCacheEnabled();
-    staleConfigsCache = CacheBuilder.newBuilder().
-        expireAfterWrite(STALE_CONFIGS_CACHE_EXPIRATION_TIME, TimeUnit.SECONDS).build();
+    staleConfigsCache = CacheBuilder.newBuilder().weakKeys().build();
+    staleConfigsExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "Stale Configs Recompute Thread");
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
   }
 
   /**
@@ -206,6 +275,56 @@ public class ConfigHelper {
     return properties;
   }
 
+  /**
+   * Get the effective config properties and attributes for a cluster given a
+   * set of configType to versionTags map.  The result is cached and shared by
+   * all callers asking for the same tags, so it can't be modified.
+   *
+   * @param cluster      the cluster
+   * @param desiredTags  the config tags of each config type
+   *
+   * @return the effective config properties and attributes
+   */
+  public EffectiveConfigs getEffectiveConfigs(Cluster cluster,
+                                              Map<String, Map<String, String>> desiredTags) {
+
+    EffectiveConfigsKey key = new EffectiveConfigsKey(cluster.getClusterId(), desiredTags);
+
+    EffectiveConfigs effectiveConfigs = effectiveConfigsCache.getIfPresent(key);
+    if (effectiveConfigs == null) {
+      effectiveConfigs = new EffectiveConfigs(
+          getEffectiveConfigProperties(cluster, desiredTags),
+          getEffectiveConfigAttributes(cluster, desiredTags));
+
+      // a config which doesn't exist yet may still be added under its tag
+      if (allConfigsExist(cluster, desiredTags)) {
+        effectiveConfigsCache.put(key, effectiveConfigs);
+      }
+    }
+    return effectiveConfigs;
+  }
+
+  /**
+   * Determine whether the configs of all of the given tags exist.
+   *
+   * @param cluster      the cluster
+   * @param desiredTags  the config tags of each config type
+   *
+   * @return true if all of the configs exist
+   */
+  private boolean allConfigsExist(Cluster cluster, Map<String, Map<String, String>> desiredTags) {
+    if (desiredTags != null) {
+      for (Entry<String, Map<String, String>> entry : desiredTags.entrySet()) {
+        for (String tag : entry.getValue().values()) {
+          if (cluster.getConfig(entry.getKey(), tag) == null) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
   /**
    * Get all config attributes for a cluster given a set of configType to
    * versionTags map. This helper method merges all the override tags with a
@@ -364,17 +483,18 @@ public class ConfigHelper {
    * @return <code>true</code> if the actual configs are stale
    */
   public boolean isStaleConfigs(ServiceComponentHost sch) throws AmbariException {
-    Boolean stale = null;
-
-    if (STALE_CONFIGS_CACHE_ENABLED) {
-      stale = staleConfigsCache.getIfPresent(sch);
+    if (!STALE_CONFIGS_CACHE_ENABLED) {
+      return calculateIsStaleConfigs(sch);
     }
 
-    if (stale == null) {
-      stale = calculateIsStaleConfigs(sch);
-      staleConfigsCache.put(sch, stale);
+    StaleConfigsState state = staleConfigsCache.getIfPresent(sch);
+
+    // a pending host component is computed right away rather than waiting
+    // for the background recompute, so a read never sees an outdated value
+    if (state == null || staleConfigsPending.contains(sch)) {
+      return recomputeStaleConfigs(sch);
     }
-    return stale;
+    return state.stale;
   }
 
   /**
@@ -385,9 +505,7 @@ public class ConfigHelper {
   public void invalidateStaleConfigsCache(String hostname) {
     try {
       for (Cluster cluster : clusters.getClustersForHost(hostname)) {
-        for (ServiceComponentHost sch : cluster.getServiceComponentHosts(hostname)) {
-          invalidateStaleConfigsCache(sch);
-        }
+        scheduleStaleConfigsRecompute(cluster.getServiceComponentHosts(hostname));
       }
     } catch (AmbariException e) {
       LOG.warn("Unable to find clusters for host " + hostname);
@@ -395,10 +513,12 @@ public class ConfigHelper {
   }
 
   /**
-   * Invalidates isStale cache
+   * Invalidates the cached isStale values of all host components.  Prefer
+   * one of the targeted variants, which only recompute the host components
+   * affected by a change.
    */
   public void invalidateStaleConfigsCache() {
-    staleConfigsCache.invalidateAll();
+    scheduleStaleConfigsRecompute(staleConfigsCache.asMap().keySet());
   }
 
   /**
@@ -407,7 +527,71 @@ public class ConfigHelper {
    * @param sch
    */
   public void invalidateStaleConfigsCache(ServiceComponentHost sch) {
-    staleConfigsCache.invalidate(sch);
+    scheduleStaleConfigsRecompute(Collections.singleton(sch));
+  }
+
+  /**
+   * Invalidates the cached isStale values of the host components which depend
+   * on any of the given config types.
+   *
+   * @param cluster      the cluster
+   * @param configTypes  the changed config types
+   */
+  public void invalidateStaleConfigsCache(Cluster cluster, Collection<String> configTypes) {
+    invalidateStaleConfigsCache(cluster, null, configTypes);
+  }
+
+  /**
+   * Invalidates the cached isStale values of the host components on the hosts
+   * of the given config group which depend on any of its config types.
+   *
+   * @param cluster      the cluster
+   * @param configGroup  the added, changed or deleted config group
+   */
+  public void invalidateStaleConfigsCache(Cluster cluster, ConfigGroup configGroup) {
+    invalidateStaleConfigsCache(cluster, configGroup.getHosts().keySet(),
+        configGroup.getConfigurations().keySet());
+  }
+
+  /**
+   * Invalidates the cached isStale values of the host components on the given
+   * hosts which depend on any of the given config types.  Host components
+   * which aren't cached yet are computed when they are first read.
+   *
+   * @param cluster      the cluster
+   * @param hostNames    the affected hosts; {@code null} for all hosts
+   * @param configTypes  the changed config types; {@code null} for all types
+   */
+  public void invalidateStaleConfigsCache(Cluster cluster, Collection<String> hostNames,
+                                          Collection<String> configTypes) {
+    if (!STALE_CONFIGS_CACHE_ENABLED) {
+      return;
+    }
+
+    Map<String, Set<ServiceComponentHost>> services =
+        staleConfigsCacheIndex.get(cluster.getClusterId());
+    if (services == null) {
+      return;
+    }
+
+    StackId stackId = cluster.getDesiredStackVersion();
+    List<ServiceComponentHost> affected = new ArrayList<ServiceComponentHost>();
+
+    for (Entry<String, Set<ServiceComponentHost>> service : services.entrySet()) {
+      if (!dependsOnConfigTypes(stackId, service.getKey(), configTypes)) {
+        continue;
+      }
+
+      Set<ServiceComponentHost> schs = service.getValue();
+      synchronized (schs) {
+        for (ServiceComponentHost sch : schs) {
+          if (hostNames == null || hostNames.contains(sch.getHostName())) {
+            affected.add(sch);
+          }
+        }
+      }
+    }
+    scheduleStaleConfigsRecompute(affected);
   }
 
   /**
@@ -798,6 +982,149 @@ public class ConfigHelper {
     }
   }
 
+  /**
+   * Determine whether the stale state of the components of the given service
+   * may depend on any of the given config types; see
+   * {@link #calculateIsStaleConfigs}.
+   */
+  private boolean dependsOnConfigTypes(StackId stackId, String serviceName,
+                                       Collection<String> configTypes) {
+    if (configTypes == null || configTypes.contains(Configuration.GLOBAL_CONFIG_TAG)) {
+      return true;
+    }
+
+    try {
+      ServiceInfo serviceInfo = ambariMetaInfo.getService(stackId.getStackName(),
+          stackId.getStackVersion(), serviceName);
+
+      for (String type : configTypes) {
+        if (serviceInfo.hasConfigDependency(type) || hasComponentWithConfigType(serviceInfo, type)) {
+          return true;
+        }
+      }
+    } catch (AmbariException e) {
+      LOG.warn("Unable to determine the config dependencies of service " + serviceName, e);
+      return true;
+    }
+    return false;
+  }
+
+  private static boolean hasComponentWithConfigType(ServiceInfo serviceInfo, String type) {
+    for (ComponentInfo componentInfo : serviceInfo.getComponents()) {
+      if (componentInfo.hasConfigType(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Mark the given host components as pending and make sure that a background
+   * recompute of the pending host components is scheduled.
+   */
+  private void scheduleStaleConfigsRecompute(Collection<ServiceComponentHost> schs) {
+    if (!STALE_CONFIGS_CACHE_ENABLED || schs.isEmpty()) {
+      return;
+    }
+    staleConfigsInvalidations.incrementAndGet();
+    staleConfigsPending.addAll(schs);
+
+    if (staleConfigsRecomputeScheduled.compareAndSet(false, true)) {
+      staleConfigsExecutor.execute(new Runnable() {
+        @Override
+        public void run() {
+          recomputePendingStaleConfigs();
+        }
+      });
+    }
+  }
+
+  private void recomputePendingStaleConfigs() {
+    // cleared first so that host components marked while draining schedule
+    // another run
+    staleConfigsRecomputeScheduled.set(false);
+
+    for (ServiceComponentHost sch : staleConfigsPending) {
+      try {
+        recomputeStaleConfigs(sch);
+      } catch (Exception e) {
+        // e.g. the host component or its cluster was deleted; computed on the next read
+        staleConfigsPending.remove(sch);
+        staleConfigsCache.invalidate(sch);
+        unindexStaleConfigs(sch);
+        LOG.debug("Unable to recompute stale configs for " + sch.getServiceComponentName() +
+            " on " + sch.getHostName(), e);
+      }
+    }
+  }
+
+  /**
+   * Calculate and cache the stale state of the given host component and
+   * publish a {@link StaleConfigsChangedEvent} if it changed.
+   */
+  private boolean recomputeStaleConfigs(ServiceComponentHost sch) throws AmbariException {
+    long version = staleConfigsInvalidations.get();
+    staleConfigsPending.remove(sch);
+
+    StaleConfigsState state = new StaleConfigsState(calculateIsStaleConfigs(sch), version);
+    ConcurrentMap<ServiceComponentHost, StaleConfigsState> states = staleConfigsCache.asMap();
+
+    while (true) {
+      StaleConfigsState previous = states.get(sch);
+      if (previous == null) {
+        if (states.putIfAbsent(sch, state) == null) {
+          indexStaleConfigs(sch);
+          return state.stale;
+        }
+      } else if (previous.version > version) {
+        // calculated after a later invalidation
+        return previous.stale;
+      } else if (states.replace(sch, previous, state)) {
+        if (previous.stale != state.stale) {
+          eventPublisher.publish(new StaleConfigsChangedEvent(sch.getClusterId(),
+              sch.getServiceName(), sch.getServiceComponentName(), sch.getHostName(), state.stale));
+        }
+        return state.stale;
+      }
+    }
+  }
+
+  /**
+   * Add a newly cached host component to {@link #staleConfigsCacheIndex}.
+   */
+  private void indexStaleConfigs(ServiceComponentHost sch) {
+    ConcurrentMap<String, Set<ServiceComponentHost>> services =
+        staleConfigsCacheIndex.get(sch.getClusterId());
+    if (services == null) {
+      services = new ConcurrentHashMap<String, Set<ServiceComponentHost>>();
+      ConcurrentMap<String, Set<ServiceComponentHost>> existing =
+          staleConfigsCacheIndex.putIfAbsent(sch.getClusterId(), services);
+      if (existing != null) {
+        services = existing;
+      }
+    }
+
+    Set<ServiceComponentHost> schs = services.get(sch.getServiceName());
+    if (schs == null) {
+      schs = Collections.synchronizedSet(Collections.newSetFromMap(
+          new WeakHashMap<ServiceComponentHost, Boolean>()));
+      Set<ServiceComponentHost> existing = services.putIfAbsent(sch.getServiceName(), schs);
+      if (existing != null) {
+        schs = existing;
+      }
+    }
+    schs.add(sch);
+  }
+
+  private void unindexStaleConfigs(ServiceComponentHost sch) {
+    Map<String, Set<ServiceComponentHost>> services =
+        staleConfigsCacheIndex.get(sch.getClusterId());
+    Set<ServiceComponentHost> schs = services == null ? null : services.get(sch.getServiceName());
+    if (schs != null) {
+      schs.remove(sch);
+    }
+  }
+
   private boolean calculateIsStaleConfigs(ServiceComponentHost sch) throws AmbariException {
 
     if (sch.isRestartRequired()) {
@@ -1015,5 +1342,99 @@ public class ConfigHelper {
     return filename.substring(0, extIndex);
   }
 
+  /**
+   * The effective config properties and attributes of a set of config tags.
+   * The maps are shared and can't be modified.
+   */
+  public static class EffectiveConfigs {
+    private final Map<String, Map<String, String>> properties;
+    private final Map<String, Map<String, Map<String, String>>> attributes;
+
+    private EffectiveConfigs(Map<String, Map<String, String>> properties,
+                             Map<String, Map<String, Map<String, String>>> attributes) {
+
+      Map<String, Map<String, String>> propertiesCopy = new HashMap<String, Map<String, String>>();
+      for (Entry<String, Map<String, String>> entry : properties.entrySet()) {
+        propertiesCopy.put(entry.getKey(), Collections.unmodifiableMap(entry.getValue()));
+      }
+
+      Map<String, Map<String, Map<String, String>>> attributesCopy =
+          new HashMap<String, Map<String, Map<String, String>>>();
+      for (Entry<String, Map<String, Map<String, String>>> entry : attributes.entrySet()) {
+        Map<String, Map<String, String>> typeAttributes = new TreeMap<String, Map<String, String>>();
+        for (Entry<String, Map<String, String>> attribute : entry.getValue().entrySet()) {
+          typeAttributes.put(attribute.getKey(), Collections.unmodifiableMap(attribute.getValue()));
+        }
+        attributesCopy.put(entry.getKey(), Collections.unmodifiableMap(typeAttributes));
+      }
+
+      this.properties = Collections.unmodifiableMap(propertiesCopy);
+      this.attributes = Collections.unmodifiableMap(attributesCopy);
+    }
+
+    /**
+     * @return {type : {key, value}}
+     */
+    public Map<String, Map<String, String>> getProperties() {
+      return properties;
+    }
+
+    /**
+     * @return {type : {attribute : {property, attributeValue}}
+     */
+    public Map<String, Map<String, Map<String, String>>> getAttributes() {
+      return attributes;
+    }
+  }
 
+  /**
+   * Key of the effective configurations cache; a cluster and a copy of the
+   * config tags of each config type.
+   */
+  private static class EffectiveConfigsKey {
+    private final long clusterId;
+    private final Map<String, Map<String, String>> tags;
+
+    private EffectiveConfigsKey(long clusterId, Map<String, Map<String, String>> tags) {
+      this.clusterId = clusterId;
+      this.tags      = new HashMap<String, Map<String, String>>();
+
+      if (tags != null) {
+        for (Entry<String, Map<String, String>> entry : tags.entrySet()) {
+          this.tags.put(entry.getKey(), new HashMap<String, String>(entry.getValue()));
+        }
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      EffectiveConfigsKey that = (EffectiveConfigsKey) o;
+      return clusterId == that.clusterId && tags.equals(that.tags);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (int) (clusterId ^ (clusterId >>> 32)) + tags.hashCode();
+    }
+  }
+
+  /**
+   * The cached stale state of a host component and the invalidation count at
+   * the time it was calculated.
+   */
+  private static class StaleConfigsState {
+    private final boolean stale;
+    private final long version;
+
+    private StaleConfigsState(boolean stale, long version) {
+      this.stale   = stale;
+      this.version = version;
+    }
+  }
 }
@@ -32,6 +32,8 @@ public interface ServiceComponent {
 
   public String getServiceName();
 
+  public Service getService();
+
   public long getClusterId();
 
   public String getClusterName();
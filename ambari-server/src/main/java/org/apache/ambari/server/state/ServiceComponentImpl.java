@@ -163,6 +163,11 @@ public class ServiceComponentImpl implements ServiceComponent {
     return service.getName();
   }
 
+  @Override
+  public Service getService() {
+    return service;
+  }
+
   @Override
   public long getClusterId() {
     return service.getClusterId();
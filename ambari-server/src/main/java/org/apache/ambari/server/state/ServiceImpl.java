@@ -93,7 +93,7 @@ public class ServiceImpl implements Service {
   public ServiceImpl(@Assisted Cluster cluster, @Assisted String serviceName,
       Injector injector) throws AmbariException {
     injector.injectMembers(this);
-    clusterGlobalLock = cluster.getClusterGlobalLock();
+    clusterGlobalLock = cluster.getServiceLock();
     serviceEntity = new ClusterServiceEntity();
     serviceEntity.setServiceName(serviceName);
     serviceDesiredStateEntity = new ServiceDesiredStateEntity();
@@ -119,7 +119,7 @@ public class ServiceImpl implements Service {
   public ServiceImpl(@Assisted Cluster cluster, @Assisted ClusterServiceEntity
       serviceEntity, Injector injector) throws AmbariException {
     injector.injectMembers(this);
-    clusterGlobalLock = cluster.getClusterGlobalLock();
+    clusterGlobalLock = cluster.getServiceLock();
     this.serviceEntity = serviceEntity;
     this.cluster = cluster;
 
@@ -0,0 +1,626 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.alert;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.ambari.server.orm.dao.AlertHostSummaryDTO;
+import org.apache.ambari.server.orm.dao.AlertSummaryDTO;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.state.AlertState;
+import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.services.AlertCurrentFlushService;
+
+import com.google.inject.Singleton;
+
+/**
+ * The {@link AlertCurrentCache} keeps an in-memory copy of the state of every
+ * {@link AlertCurrentEntity}, keyed by cluster, definition and host. It is
+ * maintained by the {@link AlertsDAO} as current alerts are written and is used
+ * to:
+ * <ul>
+ * <li>recognize received alerts whose state and text have not changed without
+ * querying the database</li>
+ * <li>coalesce the {@link AlertCurrentEntity#getLatestTimestamp()} updates of
+ * those alerts so that they can be written periodically by the
+ * {@link AlertCurrentFlushService}</li>
+ * <li>answer the alert summary queries from memory</li>
+ * </ul>
+ * The cache is empty and inactive until it is loaded from the database; while
+ * inactive, all lookups return nothing and the database is used instead.
+ */
+@Singleton
+public class AlertCurrentCache {
+
+  /**
+   * The cached alerts keyed by {@link AlertCurrentEntity#getAlertId()}.
+   */
+  private final ConcurrentMap<Long, CachedAlert> m_alertsById = new ConcurrentHashMap<Long, CachedAlert>();
+
+  /**
+   * The cached alerts keyed by cluster, definition name and host.
+   */
+  private final ConcurrentMap<String, CachedAlert> m_alertsByKey = new ConcurrentHashMap<String, CachedAlert>();
+
+  /**
+   * The latest timestamps which have not been persisted yet, keyed by alert
+   * ID.
+   */
+  private final ConcurrentMap<Long, Long> m_dirtyTimestamps = new ConcurrentHashMap<Long, Long>();
+
+  /**
+   * The IDs of alerts which were written or removed while the cache was being
+   * loaded; their cached state is newer than the loaded state.
+   */
+  private final Set<Long> m_changedDuringLoad = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+  /**
+   * The removals which were made while the cache was being loaded; they are
+   * applied to the loaded state as well.
+   */
+  private final List<Removal> m_removedDuringLoad = new CopyOnWriteArrayList<Removal>();
+
+  /**
+   * Writers of individual alerts hold the read lock; starting and completing a
+   * load hold the write lock so that no concurrent change is lost. The lock is
+   * never held while querying the database.
+   */
+  private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+
+  /**
+   * {@code true} once the cache has been loaded.
+   */
+  private volatile boolean m_active = false;
+
+  /**
+   * {@code true} while the cache is being loaded.
+   */
+  private volatile boolean m_loading = false;
+
+  /**
+   * @return {@code true} if the cache has been loaded and is being maintained.
+   */
+  public boolean isActive() {
+    return m_active;
+  }
+
+  /**
+   * Starts loading the cache. From this point on, alerts which are written or
+   * removed are tracked so that {@link #load(Collection)} does not overwrite
+   * them with the older state read from the database. This must be called
+   * before the current alerts are queried.
+   */
+  public void beginLoad() {
+    m_lock.writeLock().lock();
+    try {
+      m_changedDuringLoad.clear();
+      m_removedDuringLoad.clear();
+      m_loading = true;
+    } finally {
+      m_lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Replaces the contents of the cache with the current alerts read from the
+   * database after {@link #beginLoad()} and activates the cache. Alerts which
+   * changed during the load and timestamps which have not been persisted are
+   * retained.
+   *
+   * @param currentAlerts
+   *          all of the current alerts in the database.
+   */
+  public void load(Collection<AlertCurrentEntity> currentAlerts) {
+    m_lock.writeLock().lock();
+    try {
+      Set<Long> loadedIds = new HashSet<Long>();
+      for (AlertCurrentEntity currentAlert : currentAlerts) {
+        loadedIds.add(currentAlert.getAlertId());
+        if (m_changedDuringLoad.contains(currentAlert.getAlertId())) {
+          continue;
+        }
+
+        CachedAlert alert = new CachedAlert(currentAlert);
+        if (!isRemovedDuringLoad(alert)) {
+          cache(alert);
+        }
+      }
+
+      for (CachedAlert alert : m_alertsById.values()) {
+        if (!loadedIds.contains(alert.m_alertId)
+            && !m_changedDuringLoad.contains(alert.m_alertId)) {
+          evict(alert.m_alertId);
+        }
+      }
+
+      m_changedDuringLoad.clear();
+      m_removedDuringLoad.clear();
+      m_loading = false;
+      m_active = true;
+    } finally {
+      m_lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Deactivates and empties the cache.
+   */
+  public void clear() {
+    m_lock.writeLock().lock();
+    try {
+      m_active = false;
+      m_loading = false;
+      m_changedDuringLoad.clear();
+      m_removedDuringLoad.clear();
+      m_alertsById.clear();
+      m_alertsByKey.clear();
+      m_dirtyTimestamps.clear();
+    } finally {
+      m_lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Caches the state of a current alert which was just created or merged.
+   *
+   * @param currentAlert
+   *          the current alert (not {@code null}).
+   */
+  public void put(AlertCurrentEntity currentAlert) {
+    if (!m_active && !m_loading) {
+      return;
+    }
+
+    m_lock.readLock().lock();
+    try {
+      Long alertId = currentAlert.getAlertId();
+      if (m_loading) {
+        m_changedDuringLoad.add(alertId);
+      }
+
+      // a merge already wrote a timestamp at least as recent as any pending one
+      Long pending = m_dirtyTimestamps.get(alertId);
+      if (null != pending && null != currentAlert.getLatestTimestamp()
+          && pending.longValue() <= currentAlert.getLatestTimestamp().longValue()) {
+        m_dirtyTimestamps.remove(alertId, pending);
+      }
+
+      cache(new CachedAlert(currentAlert));
+    } finally {
+      m_lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the cached current alert for a definition on a host.
+   *
+   * @param clusterId
+   *          the ID of the cluster.
+   * @param definitionName
+   *          the name of the definition.
+   * @param hostName
+   *          the host, or {@code null} for alerts not bound to a host.
+   * @return the cached alert or {@code null} if none.
+   */
+  public CachedAlert get(long clusterId, String definitionName, String hostName) {
+    if (!m_active) {
+      return null;
+    }
+
+    return m_alertsByKey.get(getKey(clusterId, definitionName, hostName));
+  }
+
+  /**
+   * Records a newer latest timestamp for a cached alert whose state and text
+   * are unchanged. The timestamp is persisted by the next flush.
+   *
+   * @param alert
+   *          the cached alert.
+   * @param timestamp
+   *          the timestamp of the received alert.
+   */
+  public void touch(CachedAlert alert, long timestamp) {
+    m_lock.readLock().lock();
+    try {
+      if (timestamp > alert.m_latestTimestamp) {
+        alert.m_latestTimestamp = timestamp;
+        m_dirtyTimestamps.put(alert.m_alertId, timestamp);
+      }
+    } finally {
+      m_lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the latest timestamp of an alert if it is newer than the persisted
+   * one.
+   *
+   * @param alertId
+   *          the ID of the current alert.
+   * @return the unpersisted timestamp, or {@code null} if none.
+   */
+  public Long getPendingTimestamp(long alertId) {
+    return m_dirtyTimestamps.get(alertId);
+  }
+
+  /**
+   * Removes up to {@code maxCount} unpersisted timestamps so that they can be
+   * written. If the write fails, they must be returned with
+   * {@link #restoreTimestamps(Map)}.
+   *
+   * @param maxCount
+   *          the maximum number of timestamps to remove.
+   * @return the timestamps keyed by alert ID (never {@code null}).
+   */
+  public Map<Long, Long> drainTimestamps(int maxCount) {
+    Map<Long, Long> timestamps = new HashMap<Long, Long>();
+
+    Iterator<Map.Entry<Long, Long>> iterator = m_dirtyTimestamps.entrySet().iterator();
+    while (iterator.hasNext() && timestamps.size() < maxCount) {
+      Map.Entry<Long, Long> entry = iterator.next();
+      timestamps.put(entry.getKey(), entry.getValue());
+      iterator.remove();
+    }
+
+    return timestamps;
+  }
+
+  /**
+   * Returns timestamps which could not be persisted so that they are retried.
+   * A newer timestamp recorded in the meantime takes precedence.
+   *
+   * @param timestamps
+   *          the timestamps keyed by alert ID.
+   */
+  public void restoreTimestamps(Map<Long, Long> timestamps) {
+    for (Map.Entry<Long, Long> entry : timestamps.entrySet()) {
+      if (m_alertsById.containsKey(entry.getKey())) {
+        m_dirtyTimestamps.putIfAbsent(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return the number of timestamps waiting to be persisted.
+   */
+  public int getPendingCount() {
+    return m_dirtyTimestamps.size();
+  }
+
+  /**
+   * @return the number of cached current alerts.
+   */
+  public int size() {
+    return m_alertsById.size();
+  }
+
+  /**
+   * Removes a cached alert.
+   *
+   * @param alertId
+   *          the ID of the current alert.
+   */
+  public void removeById(long alertId) {
+    m_lock.readLock().lock();
+    try {
+      if (m_loading) {
+        m_changedDuringLoad.add(alertId);
+      }
+
+      evict(alertId);
+    } finally {
+      m_lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the cached alerts which match every non-{@code null} argument.
+   *
+   * @param definitionId
+   *          the definition ID, or {@code null}.
+   * @param historyId
+   *          the ID of the alert's history, or {@code null}.
+   * @param serviceName
+   *          the service name, or {@code null}.
+   * @param componentName
+   *          the component name, or {@code null}.
+   * @param hostName
+   *          the host name, or {@code null}.
+   */
+  public void remove(Long definitionId, Long historyId, String serviceName,
+      String componentName, String hostName) {
+    Removal removal = new Removal(definitionId, historyId, serviceName,
+        componentName, hostName);
+
+    m_lock.readLock().lock();
+    try {
+      // alerts which are being loaded may match as well
+      if (m_loading) {
+        m_removedDuringLoad.add(removal);
+      }
+
+      for (CachedAlert alert : m_alertsById.values()) {
+        if (removal.matches(alert)) {
+          removeById(alert.m_alertId);
+        }
+      }
+    } finally {
+      m_lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Computes the same summary as
+   * {@link AlertsDAO#findCurrentCounts(long, String, String)} from memory.
+   *
+   * @param clusterId
+   *          the cluster id
+   * @param serviceName
+   *          the service name, or {@code null} to not filter on service.
+   * @param hostName
+   *          the host name, or {@code null} to not filter on host.
+   * @return the summary.
+   */
+  public AlertSummaryDTO getCounts(long clusterId, String serviceName,
+      String hostName) {
+    int[] counts = new int[AlertState.values().length];
+    int maintenanceCount = 0;
+
+    for (CachedAlert alert : m_alertsById.values()) {
+      if (alert.m_clusterId != clusterId
+          || (null != serviceName && !serviceName.equals(alert.m_serviceName))
+          || (null != hostName && !hostName.equals(alert.m_hostName))) {
+        continue;
+      }
+
+      if (alert.m_maintenanceState != MaintenanceState.OFF) {
+        maintenanceCount++;
+      } else {
+        counts[alert.m_alertState.ordinal()]++;
+      }
+    }
+
+    return new AlertSummaryDTO(counts[AlertState.OK.ordinal()],
+        counts[AlertState.WARNING.ordinal()],
+        counts[AlertState.CRITICAL.ordinal()],
+        counts[AlertState.UNKNOWN.ordinal()], maintenanceCount);
+  }
+
+  /**
+   * Computes the same summary as {@link AlertsDAO#findCurrentHostCounts(long)}
+   * from memory; each host is counted once, by its most severe alert.
+   *
+   * @param clusterId
+   *          the cluster id
+   * @return the summary.
+   */
+  public AlertHostSummaryDTO getHostCounts(long clusterId) {
+    Map<String, Integer> hostSeverities = new HashMap<String, Integer>();
+
+    for (CachedAlert alert : m_alertsById.values()) {
+      if (alert.m_clusterId != clusterId || null == alert.m_hostName) {
+        continue;
+      }
+
+      int severity = 0;
+      if (alert.m_maintenanceState == MaintenanceState.OFF) {
+        switch (alert.m_alertState) {
+          case CRITICAL:
+            severity = 3;
+            break;
+          case WARNING:
+            severity = 2;
+            break;
+          case UNKNOWN:
+            severity = 1;
+            break;
+          default:
+            break;
+        }
+      }
+
+      Integer hostSeverity = hostSeverities.get(alert.m_hostName);
+      if (null == hostSeverity || hostSeverity.intValue() < severity) {
+        hostSeverities.put(alert.m_hostName, severity);
+      }
+    }
+
+    int[] counts = new int[4];
+    for (Integer severity : hostSeverities.values()) {
+      counts[severity.intValue()]++;
+    }
+
+    return new AlertHostSummaryDTO(counts[0], counts[1], counts[2], counts[3]);
+  }
+
+  /**
+   * Caches a snapshot of a current alert, replacing any previous snapshot for
+   * the same alert.
+   *
+   * @param alert
+   *          the snapshot of the current alert.
+   */
+  private void cache(CachedAlert alert) {
+    Long pending = m_dirtyTimestamps.get(alert.m_alertId);
+    if (null != pending && pending.longValue() > alert.m_latestTimestamp) {
+      alert.m_latestTimestamp = pending.longValue();
+    }
+
+    CachedAlert previous = m_alertsById.put(alert.m_alertId, alert);
+    if (null != previous && !previous.getKey().equals(alert.getKey())) {
+      m_alertsByKey.remove(previous.getKey(), previous);
+    }
+
+    m_alertsByKey.put(alert.getKey(), alert);
+  }
+
+  /**
+   * @return {@code true} if a removal made during the current load matches the
+   *         specified alert.
+   */
+  private boolean isRemovedDuringLoad(CachedAlert alert) {
+    for (Removal removal : m_removedDuringLoad) {
+      if (removal.matches(alert)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Removes an alert and its unpersisted timestamp from the cache.
+   *
+   * @param alertId
+   *          the ID of the current alert.
+   */
+  private void evict(long alertId) {
+    CachedAlert alert = m_alertsById.remove(alertId);
+    if (null != alert) {
+      m_alertsByKey.remove(alert.getKey(), alert);
+      m_dirtyTimestamps.remove(alertId);
+    }
+  }
+
+  /**
+   * Gets the key of a current alert.
+   */
+  private static String getKey(long clusterId, String definitionName,
+      String hostName) {
+    StringBuilder key = new StringBuilder();
+    key.append(clusterId).append('/').append(definitionName);
+    if (null != hostName) {
+      key.append('/').append(hostName);
+    }
+
+    return key.toString();
+  }
+
+  /**
+   * The criteria of a removal of current alerts; {@code null} criteria match
+   * any alert.
+   */
+  private static final class Removal {
+    private final Long m_definitionId;
+    private final Long m_historyId;
+    private final String m_serviceName;
+    private final String m_componentName;
+    private final String m_hostName;
+
+    private Removal(Long definitionId, Long historyId, String serviceName,
+        String componentName, String hostName) {
+      m_definitionId = definitionId;
+      m_historyId = historyId;
+      m_serviceName = serviceName;
+      m_componentName = componentName;
+      m_hostName = hostName;
+    }
+
+    private boolean matches(CachedAlert alert) {
+      return (null == m_definitionId || m_definitionId.equals(alert.m_definitionId))
+          && (null == m_historyId || m_historyId.equals(alert.m_historyId))
+          && (null == m_serviceName || m_serviceName.equals(alert.m_serviceName))
+          && (null == m_componentName || m_componentName.equals(alert.m_componentName))
+          && (null == m_hostName || m_hostName.equals(alert.m_hostName));
+    }
+  }
+
+  /**
+   * An immutable snapshot of the state of an {@link AlertCurrentEntity}, apart
+   * from its latest timestamp which is advanced as unchanged alerts are
+   * received.
+   */
+  public static final class CachedAlert {
+    private final long m_alertId;
+    private final Long m_historyId;
+    private final long m_clusterId;
+    private final Long m_definitionId;
+    private final String m_definitionName;
+    private final String m_serviceName;
+    private final String m_componentName;
+    private final String m_hostName;
+    private final AlertState m_alertState;
+    private final MaintenanceState m_maintenanceState;
+    private final String m_latestText;
+    private volatile long m_latestTimestamp;
+
+    private CachedAlert(AlertCurrentEntity currentAlert) {
+      AlertHistoryEntity history = currentAlert.getAlertHistory();
+
+      m_alertId = currentAlert.getAlertId();
+      m_historyId = history.getAlertId();
+      m_clusterId = history.getClusterId();
+      m_definitionId = history.getAlertDefinition().getDefinitionId();
+      m_definitionName = history.getAlertDefinition().getDefinitionName();
+      m_serviceName = history.getServiceName();
+      m_componentName = history.getComponentName();
+      m_hostName = history.getHostName();
+      m_alertState = history.getAlertState();
+      m_maintenanceState = currentAlert.getMaintenanceState();
+      m_latestText = currentAlert.getLatestText();
+      m_latestTimestamp = null == currentAlert.getLatestTimestamp() ? 0L
+          : currentAlert.getLatestTimestamp().longValue();
+    }
+
+    private String getKey() {
+      return AlertCurrentCache.getKey(m_clusterId, m_definitionName, m_hostName);
+    }
+
+    /**
+     * @return the ID of the current alert.
+     */
+    public long getAlertId() {
+      return m_alertId;
+    }
+
+    /**
+     * @return the state of the alert.
+     */
+    public AlertState getAlertState() {
+      return m_alertState;
+    }
+
+    /**
+     * @return the latest text of the alert.
+     */
+    public String getLatestText() {
+      return m_latestText;
+    }
+
+    /**
+     * @return the most recent time that the alert was received.
+     */
+    public long getLatestTimestamp() {
+      return m_latestTimestamp;
+    }
+  }
+}
@@ -29,6 +29,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -159,22 +161,59 @@ public class ClusterImpl implements Cluster {
   /**
    * [ HostName -> [ ... ] ]
    */
-  private Map<String, List<ServiceComponentHost>>
+  private final ConcurrentMap<String, List<ServiceComponentHost>>
     serviceComponentHostsByHost;
 
+  /**
+   * Secondary indexes by component, host, current state and desired state.
+   */
+  private final ServiceComponentHostIndex serviceComponentHostIndex =
+    new ServiceComponentHostIndex();
+
   /**
    * Map of existing config groups
    */
-  private Map<Long, ConfigGroup> clusterConfigGroups;
+  private volatile Map<Long, ConfigGroup> clusterConfigGroups;
 
   /**
    * Map of Request schedules for this cluster
    */
   private Map<Long, RequestExecution> requestExecutions;
 
-  private final ReadWriteLock clusterGlobalLock = new ReentrantReadWriteLock();
+  /**
+   * Guards the services, components and host components of this cluster. It
+   * is shared with the {@link Service}, {@link ServiceComponent} and
+   * {@link ServiceComponentHost} instances which belong to the cluster.
+   * <p/>
+   * When more than one of the cluster locks must be held, they are always
+   * acquired in this order: {@link #serviceLock},
+   * {@link #configGroupLock}, {@link #configLock}, {@link #versionLock}.
+   * {@link #requestExecutionLock} is never held with another cluster lock.
+   */
+  private final ReadWriteLock serviceLock = new ReentrantReadWriteLock();
 
-  private ClusterEntity clusterEntity;
+  /**
+   * Serializes changes to {@link #clusterConfigGroups}. Readers use the
+   * copy-on-write snapshot and do not acquire this lock.
+   */
+  private final ReadWriteLock configGroupLock = new ReentrantReadWriteLock();
+
+  /**
+   * Guards {@link #allConfigs} and the desired configuration mappings.
+   */
+  private final ReadWriteLock configLock = new ReentrantReadWriteLock();
+
+  /**
+   * Guards the desired and current stack versions.
+   */
+  private final ReadWriteLock versionLock = new ReentrantReadWriteLock();
+
+  /**
+   * Guards {@link #requestExecutions}.
+   */
+  private final ReadWriteLock requestExecutionLock = new ReentrantReadWriteLock();
+
+  private volatile ClusterEntity clusterEntity;
 
   private final ConfigVersionHelper configVersionHelper;
 
@@ -241,7 +280,7 @@ public class ClusterImpl implements Cluster {
 
     serviceComponentHosts = new HashMap<String,
       Map<String, Map<String, ServiceComponentHost>>>();
-    serviceComponentHostsByHost = new HashMap<String,
+    serviceComponentHostsByHost = new ConcurrentHashMap<String,
       List<ServiceComponentHost>>();
     desiredStackVersion = gson.fromJson(
       clusterEntity.getDesiredStackVersion(), StackId.class);
@@ -268,9 +307,21 @@ public class ClusterImpl implements Cluster {
   }
 
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ReadWriteLock getServiceLock() {
+    return serviceLock;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
   @Override
+  @Deprecated
   public ReadWriteLock getClusterGlobalLock() {
-    return clusterGlobalLock;
+    return serviceLock;
   }
 
 
@@ -320,7 +371,7 @@ public class ClusterImpl implements Cluster {
       return;
     }
 
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
 
     try {
       LOG.info("Loading Service Host Components");
@@ -349,10 +400,12 @@ public class ClusterImpl implements Cluster {
               ServiceComponentHost svcHostComponent = svchost.getValue();
               if (!serviceComponentHostsByHost.containsKey(hostname)) {
                 serviceComponentHostsByHost.put(hostname,
-                    new ArrayList<ServiceComponentHost>());
+                    new CopyOnWriteArrayList<ServiceComponentHost>());
               }
               List<ServiceComponentHost> compList = serviceComponentHostsByHost.get(hostname);
               compList.add(svcHostComponent);
+              serviceComponentHostIndex.add(svcHostComponent,
+                  svcHostComponent.getState(), svcHostComponent.getDesiredState());
 
               if (!serviceComponentHosts.get(service.getName()).get(
                   componentName).containsKey(hostname)) {
@@ -365,13 +418,13 @@ public class ClusterImpl implements Cluster {
       }
       svcHostsLoaded = true;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   private void loadServices() {
     if (services == null) {
-      clusterGlobalLock.writeLock().lock();
+      serviceLock.writeLock().lock();
 
       try {
         if (services == null) {
@@ -396,34 +449,35 @@ public class ClusterImpl implements Cluster {
           }
         }
       } finally {
-        clusterGlobalLock.writeLock().unlock();
+        serviceLock.writeLock().unlock();
       }
     }
   }
 
   private void loadConfigGroups() {
     if (clusterConfigGroups == null) {
-      clusterGlobalLock.writeLock().lock();
+      configGroupLock.writeLock().lock();
 
       try {
         if (clusterConfigGroups == null) {
-          clusterConfigGroups = new HashMap<Long, ConfigGroup>();
+          Map<Long, ConfigGroup> configGroups = new HashMap<Long, ConfigGroup>();
           if (!clusterEntity.getConfigGroupEntities().isEmpty()) {
             for (ConfigGroupEntity configGroupEntity : clusterEntity.getConfigGroupEntities()) {
-              clusterConfigGroups.put(configGroupEntity.getGroupId(),
+              configGroups.put(configGroupEntity.getGroupId(),
                   configGroupFactory.createExisting(this, configGroupEntity));
             }
           }
+          clusterConfigGroups = configGroups;
         }
       } finally {
-        clusterGlobalLock.writeLock().unlock();
+        configGroupLock.writeLock().unlock();
       }
     }
   }
 
   private void loadRequestExecutions() {
     if (requestExecutions == null) {
-      clusterGlobalLock.writeLock().lock();
+      requestExecutionLock.writeLock().lock();
       try {
         if (requestExecutions == null) {
           requestExecutions = new HashMap<Long, RequestExecution>();
@@ -435,7 +489,7 @@ public class ClusterImpl implements Cluster {
           }
         }
       } finally {
-        clusterGlobalLock.writeLock().unlock();
+        requestExecutionLock.writeLock().unlock();
       }
     }
   }
@@ -443,7 +497,7 @@ public class ClusterImpl implements Cluster {
   @Override
   public void addConfigGroup(ConfigGroup configGroup) throws AmbariException {
     loadConfigGroups();
-    clusterGlobalLock.writeLock().lock();
+    configGroupLock.writeLock().lock();
     try {
       LOG.debug("Adding a new Config group" + ", clusterName = "
           + getClusterName() + ", groupName = " + configGroup.getName()
@@ -456,24 +510,21 @@ public class ClusterImpl implements Cluster {
             + ", groupId = " + configGroup.getId() + ", tag = "
             + configGroup.getTag());
       } else {
-        clusterConfigGroups.put(configGroup.getId(), configGroup);
-        configHelper.invalidateStaleConfigsCache();
+        Map<Long, ConfigGroup> configGroups = new HashMap<Long, ConfigGroup>(clusterConfigGroups);
+        configGroups.put(configGroup.getId(), configGroup);
+        clusterConfigGroups = configGroups;
+        configHelper.invalidateStaleConfigsCache(this, configGroup);
       }
 
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      configGroupLock.writeLock().unlock();
     }
   }
 
   @Override
   public Map<Long, ConfigGroup> getConfigGroups() {
     loadConfigGroups();
-    clusterGlobalLock.readLock().lock();
-    try {
-      return Collections.unmodifiableMap(clusterConfigGroups);
-    } finally {
-      clusterGlobalLock.readLock().unlock();
-    }
+    return Collections.unmodifiableMap(clusterConfigGroups);
   }
 
   @Override
@@ -482,30 +533,24 @@ public class ClusterImpl implements Cluster {
     Map<Long, ConfigGroup> configGroups = new HashMap<Long, ConfigGroup>();
     Map<Long, ConfigGroup> configGroupMap = getConfigGroups();
 
-    clusterGlobalLock.readLock().lock();
-    try {
-      Set<ConfigGroupHostMapping> hostMappingEntities = configGroupHostMappingDAO.findByHost(hostname);
-
-      if (hostMappingEntities != null && !hostMappingEntities.isEmpty()) {
-        for (ConfigGroupHostMapping entity : hostMappingEntities) {
-          ConfigGroup configGroup = configGroupMap.get(entity.getConfigGroupId());
-          if (configGroup != null
-              && !configGroups.containsKey(configGroup.getId())) {
-            configGroups.put(configGroup.getId(), configGroup);
-          }
+    Set<ConfigGroupHostMapping> hostMappingEntities = configGroupHostMappingDAO.findByHost(hostname);
+
+    if (hostMappingEntities != null && !hostMappingEntities.isEmpty()) {
+      for (ConfigGroupHostMapping entity : hostMappingEntities) {
+        ConfigGroup configGroup = configGroupMap.get(entity.getConfigGroupId());
+        if (configGroup != null
+            && !configGroups.containsKey(configGroup.getId())) {
+          configGroups.put(configGroup.getId(), configGroup);
         }
       }
-      return configGroups;
-
-    } finally {
-      clusterGlobalLock.readLock().unlock();
     }
+    return configGroups;
   }
 
   @Override
   public void addRequestExecution(RequestExecution requestExecution) throws AmbariException {
     loadRequestExecutions();
-    clusterGlobalLock.writeLock().lock();
+    requestExecutionLock.writeLock().lock();
     try {
       LOG.info("Adding a new request schedule" + ", clusterName = "
           + getClusterName() + ", id = " + requestExecution.getId()
@@ -519,25 +564,25 @@ public class ClusterImpl implements Cluster {
         requestExecutions.put(requestExecution.getId(), requestExecution);
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      requestExecutionLock.writeLock().unlock();
     }
   }
 
   @Override
   public Map<Long, RequestExecution> getAllRequestExecutions() {
     loadRequestExecutions();
-    clusterGlobalLock.readLock().lock();
+    requestExecutionLock.readLock().lock();
     try {
       return Collections.unmodifiableMap(requestExecutions);
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      requestExecutionLock.readLock().unlock();
     }
   }
 
   @Override
   public void deleteRequestExecution(Long id) throws AmbariException {
     loadRequestExecutions();
-    clusterGlobalLock.writeLock().lock();
+    requestExecutionLock.writeLock().lock();
     try {
       RequestExecution requestExecution = requestExecutions.get(id);
       if (requestExecution == null) {
@@ -551,14 +596,18 @@ public class ClusterImpl implements Cluster {
       requestExecution.delete();
       requestExecutions.remove(id);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      requestExecutionLock.writeLock().unlock();
     }
   }
 
   @Override
   public void deleteConfigGroup(Long id) throws AmbariException {
     loadConfigGroups();
-    clusterGlobalLock.writeLock().lock();
+
+    // deleting a config group refreshes the cluster, which needs the services
+    // lock; acquire it first to preserve the lock order
+    serviceLock.writeLock().lock();
+    configGroupLock.writeLock().lock();
     try {
       ConfigGroup configGroup = clusterConfigGroups.get(id);
       if (configGroup == null) {
@@ -569,17 +618,21 @@ public class ClusterImpl implements Cluster {
           + configGroup.getId() + ", tag = " + configGroup.getTag());
 
       configGroup.delete();
-      clusterConfigGroups.remove(id);
-      configHelper.invalidateStaleConfigsCache();
+
+      Map<Long, ConfigGroup> configGroups = new HashMap<Long, ConfigGroup>(clusterConfigGroups);
+      configGroups.remove(id);
+      clusterConfigGroups = configGroups;
+      configHelper.invalidateStaleConfigsCache(this, configGroup);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      configGroupLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   public ServiceComponentHost getServiceComponentHost(String serviceName,
       String serviceComponentName, String hostname) throws AmbariException {
     loadServiceHostComponents();
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     try {
       if (!serviceComponentHosts.containsKey(serviceName)
           || !serviceComponentHosts.get(serviceName).containsKey(
@@ -592,7 +645,7 @@ public class ClusterImpl implements Cluster {
       return serviceComponentHosts.get(serviceName).get(serviceComponentName).get(
           hostname);
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
@@ -603,7 +656,7 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public void setClusterName(String clusterName) {
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       String oldName = clusterEntity.getClusterName();
       clusterEntity.setClusterName(clusterName);
@@ -612,14 +665,14 @@ public class ClusterImpl implements Cluster {
       clusterDAO.merge(clusterEntity);
       clusters.updateClusterName(oldName, clusterName);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   public void addServiceComponentHost(
     ServiceComponentHost svcCompHost) throws AmbariException {
     loadServiceHostComponents();
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
 
     try {
       if (LOG.isDebugEnabled()) {
@@ -666,7 +719,7 @@ public class ClusterImpl implements Cluster {
 
       if (!serviceComponentHostsByHost.containsKey(hostname)) {
         serviceComponentHostsByHost.put(hostname,
-            new ArrayList<ServiceComponentHost>());
+            new CopyOnWriteArrayList<ServiceComponentHost>());
       }
 
       if (LOG.isDebugEnabled()) {
@@ -679,8 +732,10 @@ public class ClusterImpl implements Cluster {
       serviceComponentHosts.get(serviceName).get(componentName).put(hostname,
           svcCompHost);
       serviceComponentHostsByHost.get(hostname).add(svcCompHost);
+      serviceComponentHostIndex.add(svcCompHost, svcCompHost.getState(),
+          svcCompHost.getDesiredState());
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -688,7 +743,7 @@ public class ClusterImpl implements Cluster {
   public void removeServiceComponentHost(ServiceComponentHost svcCompHost)
     throws AmbariException {
     loadServiceHostComponents();
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Trying to remove ServiceComponentHost to ClusterHostMap cache"
@@ -761,8 +816,9 @@ public class ClusterImpl implements Cluster {
       if (schToRemove != null) {
         serviceComponentHostsByHost.get(hostname).remove(schToRemove);
       }
+      serviceComponentHostIndex.remove(schToRemove != null ? schToRemove : svcCompHost);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -775,23 +831,36 @@ public class ClusterImpl implements Cluster {
   public List<ServiceComponentHost> getServiceComponentHosts(
     String hostname) {
     loadServiceHostComponents();
-    clusterGlobalLock.readLock().lock();
-    try {
-      if (serviceComponentHostsByHost.containsKey(hostname)) {
-        return new CopyOnWriteArrayList<ServiceComponentHost>(
-            serviceComponentHostsByHost.get(hostname));
-      }
-      return new ArrayList<ServiceComponentHost>();
-    } finally {
-      clusterGlobalLock.readLock().unlock();
+
+    // the per-host lists are copy-on-write, so heartbeats don't need to
+    // contend with writers for the services lock
+    List<ServiceComponentHost> serviceComponentHostList = serviceComponentHostsByHost.get(hostname);
+    if (null != serviceComponentHostList) {
+      return new CopyOnWriteArrayList<ServiceComponentHost>(serviceComponentHostList);
     }
+    return new ArrayList<ServiceComponentHost>();
+  }
+
+  @Override
+  public List<ServiceComponentHost> getServiceComponentHosts(String serviceName,
+      String componentName, String hostname, State state, State desiredState) {
+    loadServiceHostComponents();
+
+    return serviceComponentHostIndex.find(serviceName, componentName, hostname,
+        state, desiredState);
+  }
+
+  @Override
+  public void updateServiceComponentHostIndex(ServiceComponentHost svcCompHost,
+      State state, State desiredState) {
+    serviceComponentHostIndex.update(svcCompHost, state, desiredState);
   }
 
   @Override
   public void addService(Service service)
     throws AmbariException {
     loadServices();
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Adding a new Service" + ", clusterName=" + getClusterName()
@@ -805,14 +874,14 @@ public class ClusterImpl implements Cluster {
       }
       services.put(service.getName(), service);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   @Override
   public Service addService(String serviceName) throws AmbariException {
     loadServices();
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Adding a new Service" + ", clusterName=" + getClusterName()
@@ -827,7 +896,7 @@ public class ClusterImpl implements Cluster {
       services.put(s.getName(), s);
       return s;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -835,41 +904,41 @@ public class ClusterImpl implements Cluster {
   public Service getService(String serviceName)
     throws AmbariException {
     loadServices();
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     try {
       if (!services.containsKey(serviceName)) {
         throw new ServiceNotFoundException(getClusterName(), serviceName);
       }
       return services.get(serviceName);
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
   @Override
   public Map<String, Service> getServices() {
     loadServices();
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     try {
       return new HashMap<String, Service>(services);
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
   @Override
   public StackId getDesiredStackVersion() {
-    clusterGlobalLock.readLock().lock();
+    versionLock.readLock().lock();
     try {
       return desiredStackVersion;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      versionLock.readLock().unlock();
     }
   }
 
   @Override
   public void setDesiredStackVersion(StackId stackVersion) throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    versionLock.writeLock().lock();
     try {
       if (LOG.isDebugEnabled()) {
         LOG.debug("Changing DesiredStackVersion of Cluster" + ", clusterName="
@@ -882,13 +951,16 @@ public class ClusterImpl implements Cluster {
       clusterDAO.merge(clusterEntity);
       loadServiceConfigTypes();
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      versionLock.writeLock().unlock();
     }
+
+    // the config dependencies of the services come from the stack
+    configHelper.invalidateStaleConfigsCache(this, null, null);
   }
 
   @Override
   public StackId getCurrentStackVersion() {
-    clusterGlobalLock.readLock().lock();
+    versionLock.readLock().lock();
     try {
       ClusterStateEntity clusterStateEntity = clusterEntity.getClusterStateEntity();
       if (clusterStateEntity != null) {
@@ -899,13 +971,13 @@ public class ClusterImpl implements Cluster {
       }
       return null;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      versionLock.readLock().unlock();
     }
   }
 
   @Override
   public State getProvisioningState() {
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     State provisioningState = null;
     try {
       provisioningState = clusterEntity.getProvisioningState();
@@ -916,24 +988,24 @@ public class ClusterImpl implements Cluster {
 
       return provisioningState;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
   @Override
   public void setProvisioningState(State provisioningState) {
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       clusterEntity.setProvisioningState(provisioningState);
       clusterDAO.merge(clusterEntity);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   @Override
   public SecurityType getSecurityType() {
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     SecurityType securityType = null;
     try {
       securityType = clusterEntity.getSecurityType();
@@ -944,18 +1016,18 @@ public class ClusterImpl implements Cluster {
 
       return securityType;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
   @Override
   public void setSecurityType(SecurityType securityType) {
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       clusterEntity.setSecurityType(securityType);
       clusterDAO.merge(clusterEntity);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -998,7 +1070,7 @@ public class ClusterImpl implements Cluster {
       throw new AmbariException("The state must be one of [" + StringUtils.join(validStates, ", ") + "]");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       Map<String, HostVersionEntity> existingHostToHostVersionEntity = new HashMap<String, HostVersionEntity>();
       List<HostVersionEntity> existingHostVersionEntities = hostVersionDAO.findByClusterStackAndVersion(
@@ -1049,7 +1121,7 @@ public class ClusterImpl implements Cluster {
         }
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -1076,7 +1148,7 @@ public class ClusterImpl implements Cluster {
       throw new AmbariException("The state must be one of " + validStates);
     }
 
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       Set<String> existingHostsWithClusterStackAndVersion = new HashSet<String>();
       HashMap<String, HostVersionEntity> existingHostStackVersions = new HashMap<String, HostVersionEntity>();
@@ -1113,7 +1185,7 @@ public class ClusterImpl implements Cluster {
         }
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -1177,7 +1249,7 @@ public class ClusterImpl implements Cluster {
       return;
     }
 
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       // Part 1, bootstrap cluster version if necessary.
       StackId stackId = getCurrentStackVersion();
@@ -1280,7 +1352,7 @@ public class ClusterImpl implements Cluster {
         }
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -1355,7 +1427,7 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public void recalculateAllClusterVersionStates() throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       List<ClusterVersionEntity> clusterVersionEntities = clusterVersionDAO.findByCluster(getClusterName());
       StackId currentStackId = getCurrentStackVersion();
@@ -1367,17 +1439,17 @@ public class ClusterImpl implements Cluster {
         }
       }
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   @Override
   public void createClusterVersion(String stack, String version, String userName, RepositoryVersionState state) throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       createClusterVersionInternal(stack, version, userName, state);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -1425,7 +1497,7 @@ public class ClusterImpl implements Cluster {
   @Transactional
   public void transitionClusterVersion(String stack, String version, RepositoryVersionState state) throws AmbariException {
     Set<RepositoryVersionState> allowedStates = new HashSet<RepositoryVersionState>();
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       ClusterVersionEntity existingClusterVersion = clusterVersionDAO.findByClusterAndStackAndVersion(
           getClusterName(), stack, version);
@@ -1501,14 +1573,14 @@ public class ClusterImpl implements Cluster {
       LOG.warn(message);
       throw new AmbariException(message, e);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   @Override
   public void setCurrentStackVersion(StackId stackVersion)
     throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    versionLock.writeLock().lock();
     try {
       ClusterStateEntity clusterStateEntity = clusterStateDAO.findByPK(clusterEntity.getClusterId());
       if (clusterStateEntity == null) {
@@ -1531,13 +1603,13 @@ public class ClusterImpl implements Cluster {
       throw new AmbariException("Unable to set" + " version=" + stackVersion
           + " for cluster " + getClusterName(), e);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      versionLock.writeLock().unlock();
     }
   }
 
   @Override
   public Map<String, Config> getConfigsByType(String configType) {
-    clusterGlobalLock.readLock().lock();
+    configLock.readLock().lock();
     try {
       if (!allConfigs.containsKey(configType)) {
         return null;
@@ -1545,13 +1617,13 @@ public class ClusterImpl implements Cluster {
 
       return Collections.unmodifiableMap(allConfigs.get(configType));
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      configLock.readLock().unlock();
     }
   }
 
   @Override
   public Config getConfig(String configType, String versionTag) {
-    clusterGlobalLock.readLock().lock();
+    configLock.readLock().lock();
     try {
       if (!allConfigs.containsKey(configType)
           || !allConfigs.get(configType).containsKey(versionTag)) {
@@ -1559,13 +1631,13 @@ public class ClusterImpl implements Cluster {
       }
       return allConfigs.get(configType).get(versionTag);
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      configLock.readLock().unlock();
     }
   }
 
   @Override
   public void addConfig(Config config) {
-    clusterGlobalLock.writeLock().lock();
+    configLock.writeLock().lock();
     try {
       if (config.getType() == null || config.getType().isEmpty()) {
         throw new IllegalArgumentException("Config type cannot be empty");
@@ -1576,13 +1648,13 @@ public class ClusterImpl implements Cluster {
 
       allConfigs.get(config.getType()).put(config.getTag(), config);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      configLock.writeLock().unlock();
     }
   }
 
   @Override
   public Collection<Config> getAllConfigs() {
-    clusterGlobalLock.readLock().lock();
+    configLock.readLock().lock();
     try {
       List<Config> list = new ArrayList<Config>();
       for (Entry<String, Map<String, Config>> entry : allConfigs.entrySet()) {
@@ -1592,14 +1664,14 @@ public class ClusterImpl implements Cluster {
       }
       return Collections.unmodifiableList(list);
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      configLock.readLock().unlock();
     }
   }
 
   @Override
   public ClusterResponse convertToResponse()
     throws AmbariException {
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     try {
       Map<String, Host> hosts = clusters.getHostsForCluster(getClusterName());
 
@@ -1608,14 +1680,14 @@ public class ClusterImpl implements Cluster {
           hosts.size(), getDesiredStackVersion().getStackId(),
           getClusterHealthReport());
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
   @Override
   public void debugDump(StringBuilder sb) {
     loadServices();
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     try {
       sb.append("Cluster={ clusterName=").append(getClusterName()).append(
           ", clusterId=").append(getClusterId()).append(
@@ -1633,19 +1705,24 @@ public class ClusterImpl implements Cluster {
       }
       sb.append(" ] }");
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
   @Override
   @Transactional
   public void refresh() {
-    clusterGlobalLock.writeLock().lock();
+    // the entity is read under the configuration and version locks as well
+    serviceLock.writeLock().lock();
+    configLock.writeLock().lock();
+    versionLock.writeLock().lock();
     try {
       clusterEntity = clusterDAO.findById(clusterEntity.getClusterId());
       clusterDAO.refresh(clusterEntity);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      versionLock.writeLock().unlock();
+      configLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -1653,7 +1730,7 @@ public class ClusterImpl implements Cluster {
   @Transactional
   public void deleteAllServices() throws AmbariException {
     loadServices();
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       LOG.info("Deleting all services for cluster" + ", clusterName="
           + getClusterName());
@@ -1672,7 +1749,7 @@ public class ClusterImpl implements Cluster {
 
       services.clear();
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -1680,7 +1757,7 @@ public class ClusterImpl implements Cluster {
   public void deleteService(String serviceName)
     throws AmbariException {
     loadServices();
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       Service service = getService(serviceName);
       LOG.info("Deleting service for cluster" + ", clusterName="
@@ -1694,14 +1771,14 @@ public class ClusterImpl implements Cluster {
       service.delete();
       services.remove(serviceName);
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   @Override
   public boolean canBeRemoved() {
     loadServices();
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     try {
       boolean safeToRemove = true;
       for (Service service : services.values()) {
@@ -1713,21 +1790,21 @@ public class ClusterImpl implements Cluster {
       }
       return safeToRemove;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
   }
 
   @Override
   @Transactional
   public void delete() throws AmbariException {
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
     try {
       refresh();
       deleteAllServices();
       removeEntities();
       allConfigs.clear();
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
@@ -1751,7 +1828,8 @@ public class ClusterImpl implements Cluster {
       throw new NullPointerException("User must be specified.");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
+    configLock.writeLock().lock();
     try {
       if (configs == null) {
         return null;
@@ -1777,16 +1855,21 @@ public class ClusterImpl implements Cluster {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyConfigs(
           configs, user, serviceConfigVersionNote);
 
-      configHelper.invalidateStaleConfigsCache();
+      Set<String> configTypes = new HashSet<String>();
+      for (Config config : configs) {
+        configTypes.add(config.getType());
+      }
+      configHelper.invalidateStaleConfigsCache(this, configTypes);
       return serviceConfigVersionResponse;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      configLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   @Override
   public Map<String, DesiredConfig> getDesiredConfigs() {
-    clusterGlobalLock.readLock().lock();
+    configLock.readLock().lock();
     try {
       Map<String, DesiredConfig> map = new HashMap<String, DesiredConfig>();
       Collection<String> types = new HashSet<String>();
@@ -1820,7 +1903,7 @@ public class ClusterImpl implements Cluster {
 
       return map;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      configLock.readLock().unlock();
     }
   }
 
@@ -1916,20 +1999,22 @@ public class ClusterImpl implements Cluster {
       throw new NullPointerException("User must be specified.");
     }
 
-    clusterGlobalLock.writeLock().lock();
+    serviceLock.writeLock().lock();
+    configLock.writeLock().lock();
     try {
       ServiceConfigVersionResponse serviceConfigVersionResponse = applyServiceConfigVersion(
           serviceName, version, user, note);
-      configHelper.invalidateStaleConfigsCache();
+      configHelper.invalidateStaleConfigsCache(this, serviceConfigTypes.get(serviceName));
       return serviceConfigVersionResponse;
     } finally {
-      clusterGlobalLock.writeLock().unlock();
+      configLock.writeLock().unlock();
+      serviceLock.writeLock().unlock();
     }
   }
 
   @Override
   public Map<String, Collection<ServiceConfigVersionResponse>> getActiveServiceConfigVersions() {
-    clusterGlobalLock.readLock().lock();
+    configLock.readLock().lock();
     try {
       Map<String, Collection<ServiceConfigVersionResponse>> map = new HashMap<String, Collection<ServiceConfigVersionResponse>>();
 
@@ -1943,14 +2028,14 @@ public class ClusterImpl implements Cluster {
       }
       return map;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      configLock.readLock().unlock();
     }
   }
 
   @Override
   @RequiresSession
   public List<ServiceConfigVersionResponse> getServiceConfigVersions() {
-    clusterGlobalLock.readLock().lock();
+    configLock.readLock().lock();
     try {
       List<ServiceConfigVersionResponse> serviceConfigVersionResponses = new ArrayList<ServiceConfigVersionResponse>();
       Set<Long> activeIds = getActiveServiceConfigVersionIds();
@@ -1977,7 +2062,7 @@ public class ClusterImpl implements Cluster {
 
       return serviceConfigVersionResponses;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      configLock.readLock().unlock();
     }
   }
 
@@ -2212,7 +2297,7 @@ public class ClusterImpl implements Cluster {
 
   @Override
   public Config getDesiredConfigByType(String configType) {
-    clusterGlobalLock.readLock().lock();
+    configLock.readLock().lock();
     try {
       for (ClusterConfigMappingEntity e : clusterEntity.getConfigMappingEntities()) {
         if (e.isSelected() > 0 && e.getType().equals(configType)) {
@@ -2222,7 +2307,7 @@ public class ClusterImpl implements Cluster {
 
       return null;
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      configLock.readLock().unlock();
     }
   }
 
@@ -2299,7 +2384,7 @@ public class ClusterImpl implements Cluster {
   public List<ServiceComponentHostEvent> processServiceComponentHostEvents(ListMultimap<String, ServiceComponentHostEvent> eventMap) {
     List<ServiceComponentHostEvent> failedEvents = new ArrayList<ServiceComponentHostEvent>();
 
-    clusterGlobalLock.readLock().lock();
+    serviceLock.readLock().lock();
     try {
       for (Entry<String, ServiceComponentHostEvent> entry : eventMap.entries()) {
         String serviceName = entry.getKey();
@@ -2326,7 +2411,7 @@ public class ClusterImpl implements Cluster {
         }
       }
     } finally {
-      clusterGlobalLock.readLock().unlock();
+      serviceLock.readLock().unlock();
     }
 
     return failedEvents;
@@ -0,0 +1,250 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.cluster;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.State;
+
+/**
+ * Secondary indexes over the ServiceComponentHosts of a cluster by component,
+ * host, current state and desired state.
+ * <p/>
+ * The indexed values are handed in by the caller rather than read from the
+ * ServiceComponentHost, so the index never takes a ServiceComponentHost or
+ * cluster lock while holding its own.  Reads don't lock at all; a read which
+ * races an update may miss, or see twice, the ServiceComponentHost being
+ * moved, but the result is always filtered against the indexed values.
+ */
+class ServiceComponentHostIndex {
+
+  /**
+   * The indexed values of each ServiceComponentHost.
+   */
+  private final ConcurrentMap<ServiceComponentHost, Entry> entries =
+      new ConcurrentHashMap<ServiceComponentHost, Entry>();
+
+  private final ConcurrentMap<String, Set<ServiceComponentHost>> byComponent =
+      new ConcurrentHashMap<String, Set<ServiceComponentHost>>();
+
+  private final ConcurrentMap<String, Set<ServiceComponentHost>> byHost =
+      new ConcurrentHashMap<String, Set<ServiceComponentHost>>();
+
+  private final ConcurrentMap<State, Set<ServiceComponentHost>> byState =
+      new ConcurrentHashMap<State, Set<ServiceComponentHost>>();
+
+  private final ConcurrentMap<State, Set<ServiceComponentHost>> byDesiredState =
+      new ConcurrentHashMap<State, Set<ServiceComponentHost>>();
+
+
+  // ----- ServiceComponentHostIndex -----------------------------------------
+
+  /**
+   * Add a ServiceComponentHost to the index.
+   *
+   * @param sch           the ServiceComponentHost
+   * @param state         the current state
+   * @param desiredState  the desired state
+   */
+  synchronized void add(ServiceComponentHost sch, State state, State desiredState) {
+    Entry entry = new Entry(sch.getServiceName(), sch.getServiceComponentName(),
+        sch.getHostName(), state, desiredState);
+
+    Entry oldEntry = entries.put(sch, entry);
+    if (oldEntry != null) {
+      removeFromBuckets(sch, oldEntry);
+    }
+    addToBucket(byComponent, entry.componentName, sch);
+    addToBucket(byHost, entry.hostName, sch);
+    addToBucket(byState, state, sch);
+    addToBucket(byDesiredState, desiredState, sch);
+  }
+
+  /**
+   * Remove a ServiceComponentHost from the index.
+   *
+   * @param sch  the ServiceComponentHost
+   */
+  synchronized void remove(ServiceComponentHost sch) {
+    Entry entry = entries.remove(sch);
+    if (entry != null) {
+      removeFromBuckets(sch, entry);
+    }
+  }
+
+  /**
+   * Move a ServiceComponentHost to the buckets of its new states.  A
+   * ServiceComponentHost which isn't indexed yet is ignored; it is indexed
+   * with its states at that point when it is added.
+   *
+   * @param sch           the ServiceComponentHost
+   * @param state         the new current state
+   * @param desiredState  the new desired state
+   */
+  synchronized void update(ServiceComponentHost sch, State state, State desiredState) {
+    Entry entry = entries.get(sch);
+    if (entry == null) {
+      return;
+    }
+    if (entry.state != state) {
+      removeFromBucket(byState, entry.state, sch);
+      entry.state = state;
+      addToBucket(byState, state, sch);
+    }
+    if (entry.desiredState != desiredState) {
+      removeFromBucket(byDesiredState, entry.desiredState, sch);
+      entry.desiredState = desiredState;
+      addToBucket(byDesiredState, desiredState, sch);
+    }
+  }
+
+  /**
+   * Get the ServiceComponentHosts matching all of the given criteria.  Only
+   * the bucket of the most selective criterion is scanned.
+   *
+   * @param serviceName    the service name; null for any service
+   * @param componentName  the component name; null for any component
+   * @param hostname       the host name; null for any host
+   * @param state          the current state; null for any state
+   * @param desiredState   the desired state; null for any desired state
+   *
+   * @return the matching ServiceComponentHosts
+   */
+  List<ServiceComponentHost> find(String serviceName, String componentName,
+                                  String hostname, State state, State desiredState) {
+
+    Set<ServiceComponentHost> candidates = entries.keySet();
+
+    candidates = smaller(candidates, componentName == null ? null : byComponent.get(componentName),
+        componentName != null);
+    candidates = smaller(candidates, hostname == null ? null : byHost.get(hostname),
+        hostname != null);
+    candidates = smaller(candidates, state == null ? null : byState.get(state),
+        state != null);
+    candidates = smaller(candidates, desiredState == null ? null : byDesiredState.get(desiredState),
+        desiredState != null);
+
+    List<ServiceComponentHost> result = new ArrayList<ServiceComponentHost>(candidates.size());
+    for (ServiceComponentHost sch : candidates) {
+      Entry entry = entries.get(sch);
+      if (entry != null && entry.matches(serviceName, componentName, hostname, state, desiredState)) {
+        result.add(sch);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the number of indexed ServiceComponentHosts.
+   *
+   * @return the number of indexed ServiceComponentHosts
+   */
+  int size() {
+    return entries.size();
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  // pick the smaller candidate set; a criterion without a bucket matches nothing
+  private static Set<ServiceComponentHost> smaller(Set<ServiceComponentHost> current,
+                                                   Set<ServiceComponentHost> bucket,
+                                                   boolean criterion) {
+    if (!criterion) {
+      return current;
+    }
+    if (bucket == null) {
+      return Collections.emptySet();
+    }
+    return bucket.size() < current.size() ? bucket : current;
+  }
+
+  private void removeFromBuckets(ServiceComponentHost sch, Entry entry) {
+    removeFromBucket(byComponent, entry.componentName, sch);
+    removeFromBucket(byHost, entry.hostName, sch);
+    removeFromBucket(byState, entry.state, sch);
+    removeFromBucket(byDesiredState, entry.desiredState, sch);
+  }
+
+  private static <K> void addToBucket(
+      ConcurrentMap<K, Set<ServiceComponentHost>> index, K key, ServiceComponentHost sch) {
+
+    if (key == null) {
+      return;
+    }
+    Set<ServiceComponentHost> bucket = index.get(key);
+    if (bucket == null) {
+      bucket = Collections.newSetFromMap(new ConcurrentHashMap<ServiceComponentHost, Boolean>());
+      index.put(key, bucket);
+    }
+    bucket.add(sch);
+  }
+
+  private static <K> void removeFromBucket(
+      ConcurrentMap<K, Set<ServiceComponentHost>> index, K key, ServiceComponentHost sch) {
+
+    if (key == null) {
+      return;
+    }
+    Set<ServiceComponentHost> bucket = index.get(key);
+    if (bucket != null) {
+      bucket.remove(sch);
+      if (bucket.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+
+  // ----- inner classes -----------------------------------------------------
+
+  /**
+   * The indexed values of a ServiceComponentHost.
+   */
+  private static class Entry {
+    private final String serviceName;
+    private final String componentName;
+    private final String hostName;
+    private volatile State state;
+    private volatile State desiredState;
+
+    private Entry(String serviceName, String componentName, String hostName,
+                  State state, State desiredState) {
+      this.serviceName   = serviceName;
+      this.componentName = componentName;
+      this.hostName      = hostName;
+      this.state         = state;
+      this.desiredState  = desiredState;
+    }
+
+    private boolean matches(String serviceName, String componentName, String hostname,
+                            State state, State desiredState) {
+      return (serviceName == null || serviceName.equals(this.serviceName)) &&
+          (componentName == null || componentName.equals(this.componentName)) &&
+          (hostname == null || hostname.equals(hostName)) &&
+          (state == null || state == this.state) &&
+          (desiredState == null || desiredState == this.desiredState);
+    }
+  }
+}
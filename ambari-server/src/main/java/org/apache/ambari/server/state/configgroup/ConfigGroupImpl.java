@@ -416,7 +416,9 @@ public class ConfigGroupImpl implements ConfigGroup {
 
 
           // TODO: Is locking necessary and functional ?
-          cluster.getClusterGlobalLock().writeLock().lock();
+          // refresh() takes the service lock before the config lock, so
+          // serialize on the service lock to keep the lock order
+          cluster.getServiceLock().writeLock().lock();
           try {
             clusterDAO.createConfig(clusterConfigEntity);
             clusterEntity.getClusterConfigEntities().add(clusterConfigEntity);
@@ -424,7 +426,7 @@ public class ConfigGroupImpl implements ConfigGroup {
             clusterDAO.merge(clusterEntity);
             cluster.refresh();
           } finally {
-            cluster.getClusterGlobalLock().writeLock().unlock();
+            cluster.getServiceLock().writeLock().unlock();
           }
         }
 
@@ -0,0 +1,342 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.host;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.HostDAO;
+import org.apache.ambari.server.orm.dao.HostStateDAO;
+import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.services.HostStateFlushService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+
+/**
+ * The {@link HostStateWriteBehindBuffer} coalesces {@link Host} health and
+ * status changes which are computed on every heartbeat. Instead of merging the
+ * {@link HostDAO} and {@link HostStateDAO} entities on the request thread, a
+ * host is marked as dirty and is persisted later, along with every other dirty
+ * host, in a single transaction by the {@link HostStateFlushService}.
+ * <p/>
+ * A host is never left unpersisted for longer than
+ * {@link Configuration#getHostStateWriteBehindMaxStaleness()}; if the flush
+ * service falls behind, the thread marking a stale host dirty will persist the
+ * host itself. When the flush service is not running, hosts are persisted
+ * immediately.
+ * <p/>
+ * The flush statistics are published with the platform MBean server under
+ * {@link #MBEAN_NAME} once the buffer is activated.
+ */
+@Singleton
+public class HostStateWriteBehindBuffer implements HostStateWriteBehindBufferMBean {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(HostStateWriteBehindBuffer.class);
+
+  /**
+   * The name the statistics are registered under with the platform MBean server.
+   */
+  static final String MBEAN_NAME = "org.apache.ambari.server:type=HostStateWriteBehindBuffer";
+
+  /**
+   * The dirty hosts, keyed by host name. Only the first time a host became
+   * dirty is retained since subsequent changes are merged into the same
+   * entities.
+   */
+  private final ConcurrentMap<String, DirtyHost> m_dirtyHosts = new ConcurrentHashMap<String, DirtyHost>();
+
+  /**
+   * {@code true} while the {@link HostStateFlushService} is running.
+   */
+  private volatile boolean m_active = false;
+
+  /**
+   * The number of batches which have been written.
+   */
+  private final AtomicLong m_flushCount = new AtomicLong();
+
+  /**
+   * The total number of hosts written by all flushes.
+   */
+  private final AtomicLong m_flushedHostCount = new AtomicLong();
+
+  /**
+   * The number of hosts written by the most recent batch.
+   */
+  private volatile int m_lastBatchSize = 0;
+
+  /**
+   * The age, in milliseconds, of the oldest host written by the most recent
+   * batch.
+   */
+  private volatile long m_lastFlushLag = 0L;
+
+  /**
+   * The largest flush lag, in milliseconds, observed since startup.
+   */
+  private volatile long m_maxFlushLag = 0L;
+
+  /**
+   * The configuration used to determine staleness and batch sizes.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * Used to persist each batch of hosts in its own transaction.
+   */
+  @Inject
+  private Provider<EntityManager> m_entityManagerProvider;
+
+  /**
+   * Used to release the entity manager of the flushing thread after each
+   * batch.
+   */
+  @Inject
+  private UnitOfWork m_unitOfWork;
+
+  /**
+   * Marks the specified host as dirty so that it will be persisted by the next
+   * flush. If the buffer is not active, the host is persisted immediately.
+   *
+   * @param host
+   *          the host to persist (not {@code null}).
+   */
+  public void markDirty(Host host) {
+    if (!m_active) {
+      host.persist();
+      return;
+    }
+
+    String hostName = host.getHostName();
+    long now = System.currentTimeMillis();
+    DirtyHost dirtyHost = m_dirtyHosts.putIfAbsent(hostName,
+        new DirtyHost(host, now));
+
+    if (null == dirtyHost) {
+      return;
+    }
+
+    // the host changed while a flush is writing it; the flush may already
+    // have read the host, so keep it dirty once that flush commits
+    if (dirtyHost.m_flushing) {
+      DirtyHost remarked = new DirtyHost(host, now);
+      if (!m_dirtyHosts.replace(hostName, dirtyHost, remarked)) {
+        m_dirtyHosts.putIfAbsent(hostName, remarked);
+      }
+
+      return;
+    }
+
+    // the flush service is falling behind; don't let this host get too stale
+    if (now - dirtyHost.m_dirtyTime > m_configuration.getHostStateWriteBehindMaxStaleness()
+        && m_dirtyHosts.remove(hostName, dirtyHost)) {
+      LOG.debug("Host {} exceeded the maximum staleness, persisting inline",
+          hostName);
+
+      host.persist();
+    }
+  }
+
+  /**
+   * Persists the hosts which are dirty when the flush starts, committing a
+   * transaction for every {@code batchSize} hosts. A host is only removed
+   * from the buffer once the transaction which wrote it has committed, and is
+   * kept if it became dirty again while being written; if a transaction
+   * fails, its hosts and those of the remaining batches stay in the buffer to
+   * be retried on the next flush.
+   *
+   * @param batchSize
+   *          the maximum number of hosts to persist in one transaction.
+   * @return the number of hosts persisted.
+   */
+  public int flush(int batchSize) {
+    List<DirtyHost> dirtyHosts = new ArrayList<DirtyHost>(m_dirtyHosts.values());
+
+    int flushed = 0;
+    for (int i = 0; i < dirtyHosts.size(); i += batchSize) {
+      List<DirtyHost> batch = dirtyHosts.subList(i,
+          Math.min(i + batchSize, dirtyHosts.size()));
+
+      persistBatch(batch);
+      flushed += batch.size();
+    }
+
+    return flushed;
+  }
+
+  /**
+   * Persists the hosts in a single transaction and, once it has committed,
+   * removes those which have not changed since from the buffer.
+   *
+   * @param batch
+   *          the hosts to persist (not {@code null}).
+   */
+  private void persistBatch(List<DirtyHost> batch) {
+    long oldest = Long.MAX_VALUE;
+    for (DirtyHost dirtyHost : batch) {
+      dirtyHost.m_flushing = true;
+      oldest = Math.min(oldest, dirtyHost.m_dirtyTime);
+    }
+
+    boolean committed = false;
+    try {
+      EntityManager entityManager = m_entityManagerProvider.get();
+      EntityTransaction transaction = entityManager.getTransaction();
+      transaction.begin();
+      try {
+        for (DirtyHost dirtyHost : batch) {
+          dirtyHost.m_host.persist();
+        }
+
+        transaction.commit();
+        committed = true;
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    } finally {
+      m_unitOfWork.end();
+
+      for (DirtyHost dirtyHost : batch) {
+        if (committed) {
+          m_dirtyHosts.remove(dirtyHost.m_host.getHostName(), dirtyHost);
+        } else {
+          dirtyHost.m_flushing = false;
+        }
+      }
+    }
+
+    long lag = System.currentTimeMillis() - oldest;
+    m_lastBatchSize = batch.size();
+    m_lastFlushLag = lag;
+    m_maxFlushLag = Math.max(m_maxFlushLag, lag);
+    m_flushCount.incrementAndGet();
+    m_flushedHostCount.addAndGet(batch.size());
+
+    LOG.debug("Persisted {} dirty hosts with a flush lag of {}ms",
+        batch.size(), lag);
+  }
+
+  /**
+   * Sets whether hosts should be buffered. Callers deactivating the buffer are
+   * responsible for flushing any hosts which remain.
+   *
+   * @param active
+   *          {@code true} to buffer hosts, {@code false} to persist them
+   *          immediately.
+   */
+  public void setActive(boolean active) {
+    m_active = active && m_configuration.isHostStateWriteBehindEnabled();
+
+    if (m_active) {
+      registerMBean();
+    }
+  }
+
+
+
+  // ----- HostStateWriteBehindBufferMBean -----------------------------------
+
+  @Override
+  public boolean isActive() {
+    return m_active;
+  }
+
+  @Override
+  public int getPendingCount() {
+    return m_dirtyHosts.size();
+  }
+
+  @Override
+  public int getLastBatchSize() {
+    return m_lastBatchSize;
+  }
+
+  @Override
+  public long getLastFlushLag() {
+    return m_lastFlushLag;
+  }
+
+  @Override
+  public long getMaxFlushLag() {
+    return m_maxFlushLag;
+  }
+
+  @Override
+  public long getFlushCount() {
+    return m_flushCount.get();
+  }
+
+  @Override
+  public long getFlushedHostCount() {
+    return m_flushedHostCount.get();
+  }
+
+
+  // ----- helper methods ----------------------------------------------------
+
+  private void registerMBean() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(MBEAN_NAME);
+      if (!server.isRegistered(name)) {
+        server.registerMBean(this, name);
+      }
+    } catch (Exception e) {
+      LOG.warn("Unable to register the host state write-behind statistics with JMX", e);
+    }
+  }
+
+  /**
+   * A host waiting to be persisted along with the time it first became dirty.
+   */
+  private static final class DirtyHost {
+    private final Host m_host;
+    private final long m_dirtyTime;
+
+    /**
+     * {@code true} while a flush is writing the host.
+     */
+    private volatile boolean m_flushing = false;
+
+    private DirtyHost(Host host, long dirtyTime) {
+      m_host = host;
+      m_dirtyTime = dirtyTime;
+    }
+  }
+}
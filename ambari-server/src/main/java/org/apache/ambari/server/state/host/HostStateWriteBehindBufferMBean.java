@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.host;
+
+/**
+ * JMX view of the {@link HostStateWriteBehindBuffer} statistics.
+ */
+public interface HostStateWriteBehindBufferMBean {
+
+  /**
+   * @return {@code true} if host changes are being buffered
+   */
+  public boolean isActive();
+
+  /**
+   * @return the number of hosts waiting to be persisted
+   */
+  public int getPendingCount();
+
+  /**
+   * @return the number of hosts persisted by the most recent batch
+   */
+  public int getLastBatchSize();
+
+  /**
+   * @return the age, in milliseconds, of the oldest host persisted by the most
+   *         recent batch
+   */
+  public long getLastFlushLag();
+
+  /**
+   * @return the largest flush lag, in milliseconds, since startup
+   */
+  public long getMaxFlushLag();
+
+  /**
+   * @return the number of batches which have been persisted
+   */
+  public long getFlushCount();
+
+  /**
+   * @return the total number of hosts persisted by all flushes
+   */
+  public long getFlushedHostCount();
+}
@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.orm.dao.AlertsDAO;
+import org.apache.ambari.server.state.alert.AlertCurrentCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link AlertCurrentFlushService} loads the {@link AlertCurrentCache} from
+ * the database when the server starts and then periodically persists the
+ * latest timestamps of alerts which were received without a change in state.
+ * State changes are not handled here since they are written to the database
+ * as soon as they are received. When the service is stopped, any remaining
+ * timestamps are persisted and the cache is deactivated.
+ */
+@AmbariService
+public class AlertCurrentFlushService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(AlertCurrentFlushService.class);
+
+  /**
+   * The cache of current alerts.
+   */
+  @Inject
+  private AlertCurrentCache m_alertCache;
+
+  /**
+   * Used to load the cache and to persist the timestamps.
+   */
+  @Inject
+  private AlertsDAO m_alertsDao;
+
+  /**
+   * The configuration used to determine whether the cache is enabled and the
+   * flush interval and batch size.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Rebuilds the cache from the database if it is enabled.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    super.startUp();
+
+    if (!m_configuration.isAlertCacheEnabled()) {
+      LOG.info("The current alert cache is disabled");
+      return;
+    }
+
+    m_alertsDao.loadCurrentCache();
+    LOG.info("Loaded {} current alerts into the current alert cache",
+        m_alertCache.size());
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Persists any remaining timestamps and deactivates the cache.
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    flush();
+    m_alertCache.clear();
+    super.shutDown();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      flush();
+    } catch (Exception exception) {
+      LOG.error("Unable to persist {} current alert timestamps",
+          m_alertCache.getPendingCount(), exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = Math.max(1L, m_configuration.getAlertCacheFlushInterval());
+    return Scheduler.newFixedDelaySchedule(interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Persists all pending timestamps, one transaction per batch. A batch which
+   * fails is returned to the cache so that it is retried by the next run.
+   */
+  private void flush() {
+    int batchSize = m_configuration.getAlertCacheFlushBatchSize();
+    while (m_alertCache.getPendingCount() > 0) {
+      Map<Long, Long> timestamps = m_alertCache.drainTimestamps(batchSize);
+      if (timestamps.isEmpty()) {
+        break;
+      }
+
+      try {
+        m_alertsDao.updateLatestTimestamps(timestamps);
+      } catch (RuntimeException exception) {
+        m_alertCache.restoreTimestamps(timestamps);
+        throw exception;
+      }
+    }
+  }
+}
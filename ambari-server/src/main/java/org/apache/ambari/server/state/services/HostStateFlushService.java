@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.services;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariService;
+import org.apache.ambari.server.configuration.Configuration;
+import org.apache.ambari.server.state.host.HostStateWriteBehindBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.inject.Inject;
+
+/**
+ * The {@link HostStateFlushService} periodically persists the hosts which have
+ * been buffered by the {@link HostStateWriteBehindBuffer}. Each run writes the
+ * dirty hosts in batched transactions. When the service is stopped, the buffer
+ * is deactivated and drained so that no host state is lost on shutdown.
+ */
+@AmbariService
+public class HostStateFlushService extends AbstractScheduledService {
+
+  /**
+   * Logger.
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(HostStateFlushService.class);
+
+  /**
+   * The buffer of dirty hosts.
+   */
+  @Inject
+  private HostStateWriteBehindBuffer m_buffer;
+
+  /**
+   * The configuration used to determine the flush interval and batch size.
+   */
+  @Inject
+  private Configuration m_configuration;
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Activates the buffer so that heartbeats stop persisting hosts inline.
+   */
+  @Override
+  protected void startUp() throws Exception {
+    super.startUp();
+    m_buffer.setActive(true);
+
+    LOG.info("Host state write-behind is {}",
+        m_buffer.isActive() ? "enabled" : "disabled");
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Deactivates the buffer and persists any hosts which remain.
+   */
+  @Override
+  protected void shutDown() throws Exception {
+    m_buffer.setActive(false);
+    flush();
+    super.shutDown();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  protected void runOneIteration() throws Exception {
+    try {
+      flush();
+    } catch (Exception exception) {
+      LOG.error("Unable to persist {} buffered hosts",
+          m_buffer.getPendingCount(), exception);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   * <p/>
+   * Returns a schedule which runs twice within the configured maximum
+   * staleness so that a host is normally persisted well before it becomes
+   * stale.
+   */
+  @Override
+  protected Scheduler scheduler() {
+    long interval = Math.max(1L,
+        m_configuration.getHostStateWriteBehindMaxStaleness() / 2);
+
+    return Scheduler.newFixedDelaySchedule(interval, interval,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Persists all buffered hosts, one transaction per batch.
+   */
+  private void flush() {
+    m_buffer.flush(m_configuration.getHostStateWriteBehindBatchSize());
+  }
+}
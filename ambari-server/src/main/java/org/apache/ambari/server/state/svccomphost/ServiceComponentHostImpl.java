@@ -151,6 +151,13 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   private long lastOpLastUpdateTime;
   private Map<String, HostConfig> actualConfigs = new HashMap<String,
     HostConfig>();
+
+  /**
+   * The config tags last reported by the agent; unchanged tags don't
+   * invalidate the stale configs state.
+   */
+  private Map<String, Map<String, String>> actualConfigTags = null;
+
   private List<Map<String, String>> processes = new ArrayList<Map<String, String>>();
 
   private static final StateMachineFactory
@@ -775,6 +782,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
         stateMachine.setCurrentState(state);
         stateEntity.setCurrentState(state);
         saveIfPersisted();
+        updateClusterIndex();
       } finally {
         writeLock.unlock();
       }
@@ -887,6 +895,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
           stateMachine.doTransition(event.getType(), event);
           stateEntity.setCurrentState(stateMachine.getCurrentState());
           saveIfPersisted();
+          updateClusterIndex();
           // TODO Audit logs
         } catch (InvalidStateTransitionException e) {
           LOG.debug("Can't handle ServiceComponentHostEvent event at"
@@ -1047,6 +1056,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
     try {
       desiredStateEntity.setDesiredState(state);
       saveIfPersisted();
+      updateClusterIndex();
     } finally {
       writeLock.unlock();
     }
@@ -1290,6 +1300,19 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
   }
 
 
+  /**
+   * Move this host component to the index buckets of its current and desired
+   * states.  Must be called while holding the write lock so that the updates
+   * for this host component reach the index in order.  The cluster is taken
+   * from the service rather than {@link Clusters}, whose lock must not be
+   * acquired while holding the cluster lock.
+   */
+  private void updateClusterIndex() {
+    Cluster cluster = serviceComponent.getService().getCluster();
+    cluster.updateServiceComponentHostIndex(this, stateMachine.getCurrentState(),
+        desiredStateEntity.getDesiredState());
+  }
+
   @Override
   public void delete() {
     boolean fireRemovalEvent = false;
@@ -1366,8 +1389,13 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
 
     writeLock.lock();
     try {
+      if (configTags.equals(actualConfigTags)) {
+        return;
+      }
+
       LOG.debug("Updating actual config tags: " + configTags);
       actualConfigs = new HashMap<String, HostConfig>();
+      actualConfigTags = new HashMap<String, Map<String, String>>();
 
       for (Entry<String, Map<String, String>> entry : configTags.entrySet()) {
         String type = entry.getKey();
@@ -1377,6 +1405,8 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
         String tag = values.get(ConfigHelper.CLUSTER_DEFAULT_TAG);
         values.remove(ConfigHelper.CLUSTER_DEFAULT_TAG);
 
+        actualConfigTags.put(type, new HashMap<String, String>(entry.getValue()));
+
         HostConfig hc = new HostConfig();
         hc.setDefaultVersionTag(tag);
         actualConfigs.put(type, hc);
@@ -1391,6 +1421,7 @@ public class ServiceComponentHostImpl implements ServiceComponentHost {
           }
         }
       }
+      helper.invalidateStaleConfigsCache(this);
     } finally {
       writeLock.unlock();
     }
@@ -0,0 +1,421 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.hadoop.metrics2.sink.timeline;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The values of a metric keyed by timestamp, held in parallel primitive
+ * arrays sorted by timestamp rather than in boxed tree map entries.
+ * <p/>
+ * Values put in timestamp order are appended; values put out of order are
+ * inserted, replacing the value of an existing timestamp.  Putting all the
+ * values of another instance merges both arrays in a single pass.  Entries
+ * are iterated in timestamp order, as with a {@link java.util.TreeMap}, and
+ * compare equal to any other map with the same entries.
+ * <p/>
+ * Neither null timestamps nor null values are supported.  This class isn't
+ * thread safe.
+ */
+public class TimelineMetricValues extends AbstractMap<Long, Double> {
+
+  private static final int DEFAULT_CAPACITY = 8;
+
+  private long[] timestamps;
+  private double[] values;
+  private int size;
+
+  // changes which invalidate the open iterators
+  private int modCount;
+
+  private transient Set<Map.Entry<Long, Double>> entrySet;
+
+  public TimelineMetricValues() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public TimelineMetricValues(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("Illegal capacity: " + capacity);
+    }
+    timestamps = new long[capacity];
+    values = new double[capacity];
+  }
+
+  public TimelineMetricValues(Map<Long, Double> metricValues) {
+    this(metricValues.size());
+    putAll(metricValues);
+  }
+
+  /**
+   * Create values backed by the given arrays, which are used as is.
+   *
+   * @param timestamps  the timestamps, strictly ascending
+   * @param values      the value of each timestamp
+   * @param size        the number of valid timestamps and values
+   */
+  public TimelineMetricValues(long[] timestamps, double[] values, int size) {
+    if (size < 0 || size > timestamps.length || size > values.length) {
+      throw new IllegalArgumentException("Illegal size: " + size);
+    }
+    for (int i = 1; i < size; i++) {
+      if (timestamps[i] <= timestamps[i - 1]) {
+        throw new IllegalArgumentException("Timestamps aren't strictly ascending at " + i);
+      }
+    }
+    this.timestamps = timestamps;
+    this.values = values;
+    this.size = size;
+  }
+
+  /**
+   * Check whether the given values can be held by an instance of this class.
+   *
+   * @param metricValues  the values
+   *
+   * @return true unless a timestamp or value is null
+   */
+  public static boolean isSupported(Map<Long, Double> metricValues) {
+    if (metricValues instanceof TimelineMetricValues) {
+      return true;
+    }
+    for (Map.Entry<Long, Double> entry : metricValues.entrySet()) {
+      if (entry.getKey() == null || entry.getValue() == null) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // ----- primitive access -----
+
+  /**
+   * Put the value of the given timestamp without boxing.
+   *
+   * @param timestamp  the timestamp
+   * @param value      the value
+   */
+  public void putValue(long timestamp, double value) {
+    if (size == 0 || timestamp > timestamps[size - 1]) {
+      ensureCapacity(size + 1);
+      timestamps[size] = timestamp;
+      values[size] = value;
+      size++;
+      modCount++;
+      return;
+    }
+    int index = indexOf(timestamp);
+    if (index >= 0) {
+      values[index] = value;
+    } else {
+      insert(-(index + 1), timestamp, value);
+    }
+  }
+
+  /**
+   * @return the timestamp at the given position, in ascending order
+   */
+  public long getTimestamp(int index) {
+    checkIndex(index);
+    return timestamps[index];
+  }
+
+  /**
+   * @return the value at the given position, in ascending timestamp order
+   */
+  public double getValue(int index) {
+    checkIndex(index);
+    return values[index];
+  }
+
+  /**
+   * Find the position of the given timestamp.
+   *
+   * @param timestamp  the timestamp
+   *
+   * @return the position of the timestamp if present; otherwise
+   *         (-(insertion point) - 1), as with {@link Arrays#binarySearch}
+   */
+  public int indexOf(long timestamp) {
+    return Arrays.binarySearch(timestamps, 0, size, timestamp);
+  }
+
+  /**
+   * Release the unused capacity.
+   */
+  public void trimToSize() {
+    if (timestamps.length > size) {
+      timestamps = Arrays.copyOf(timestamps, size);
+      values = Arrays.copyOf(values, size);
+    }
+  }
+
+  // ----- Map -----
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof Long && indexOf((Long) key) >= 0;
+  }
+
+  @Override
+  public Double get(Object key) {
+    if (!(key instanceof Long)) {
+      return null;
+    }
+    int index = indexOf((Long) key);
+    return index >= 0 ? values[index] : null;
+  }
+
+  @Override
+  public Double put(Long key, Double value) {
+    if (key == null || value == null) {
+      throw new NullPointerException("Null timestamps and values aren't supported");
+    }
+    long timestamp = key;
+    int index = size == 0 || timestamp > timestamps[size - 1] ? -(size + 1) : indexOf(timestamp);
+    if (index >= 0) {
+      Double previous = values[index];
+      values[index] = value;
+      return previous;
+    }
+    insert(-(index + 1), timestamp, value);
+    return null;
+  }
+
+  @Override
+  public void putAll(Map<? extends Long, ? extends Double> m) {
+    if (m instanceof TimelineMetricValues) {
+      merge((TimelineMetricValues) m);
+    } else {
+      for (Map.Entry<? extends Long, ? extends Double> entry : m.entrySet()) {
+        put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  @Override
+  public Double remove(Object key) {
+    if (!(key instanceof Long)) {
+      return null;
+    }
+    int index = indexOf((Long) key);
+    if (index < 0) {
+      return null;
+    }
+    Double previous = values[index];
+    removeAt(index);
+    return previous;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Set<Map.Entry<Long, Double>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new EntrySet();
+    }
+    return entrySet;
+  }
+
+  // ----- helper methods -----
+
+  // merge the given values, which replace the values of equal timestamps
+  private void merge(TimelineMetricValues other) {
+    int otherSize = other.size;
+    if (otherSize == 0) {
+      return;
+    }
+
+    if (size == 0 || other.timestamps[0] > timestamps[size - 1]) {
+      ensureCapacity(size + otherSize);
+      System.arraycopy(other.timestamps, 0, timestamps, size, otherSize);
+      System.arraycopy(other.values, 0, values, size, otherSize);
+      size += otherSize;
+      modCount++;
+      return;
+    }
+
+    long[] mergedTimestamps = new long[size + otherSize];
+    double[] mergedValues = new double[size + otherSize];
+    int i = 0;
+    int j = 0;
+    int k = 0;
+    while (i < size && j < otherSize) {
+      long timestamp = timestamps[i];
+      long otherTimestamp = other.timestamps[j];
+      if (timestamp < otherTimestamp) {
+        mergedTimestamps[k] = timestamp;
+        mergedValues[k++] = values[i++];
+      } else {
+        if (timestamp == otherTimestamp) {
+          i++;
+        }
+        mergedTimestamps[k] = otherTimestamp;
+        mergedValues[k++] = other.values[j++];
+      }
+    }
+    if (i < size) {
+      System.arraycopy(timestamps, i, mergedTimestamps, k, size - i);
+      System.arraycopy(values, i, mergedValues, k, size - i);
+      k += size - i;
+    }
+    if (j < otherSize) {
+      System.arraycopy(other.timestamps, j, mergedTimestamps, k, otherSize - j);
+      System.arraycopy(other.values, j, mergedValues, k, otherSize - j);
+      k += otherSize - j;
+    }
+    timestamps = mergedTimestamps;
+    values = mergedValues;
+    size = k;
+    modCount++;
+  }
+
+  private void insert(int index, long timestamp, double value) {
+    ensureCapacity(size + 1);
+    if (index < size) {
+      System.arraycopy(timestamps, index, timestamps, index + 1, size - index);
+      System.arraycopy(values, index, values, index + 1, size - index);
+    }
+    timestamps[index] = timestamp;
+    values[index] = value;
+    size++;
+    modCount++;
+  }
+
+  private void removeAt(int index) {
+    int moved = size - index - 1;
+    if (moved > 0) {
+      System.arraycopy(timestamps, index + 1, timestamps, index, moved);
+      System.arraycopy(values, index + 1, values, index, moved);
+    }
+    size--;
+    modCount++;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > timestamps.length) {
+      int newCapacity = Math.max(capacity,
+          Math.max(DEFAULT_CAPACITY, timestamps.length + (timestamps.length >> 1)));
+      timestamps = Arrays.copyOf(timestamps, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  // ----- inner classes -----
+
+  private class EntrySet extends AbstractSet<Map.Entry<Long, Double>> {
+    @Override
+    public Iterator<Map.Entry<Long, Double>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public void clear() {
+      TimelineMetricValues.this.clear();
+    }
+  }
+
+  private class EntryIterator implements Iterator<Map.Entry<Long, Double>> {
+    private int next = 0;
+    private int last = -1;
+    private int expectedModCount = modCount;
+
+    @Override
+    public boolean hasNext() {
+      return next < size;
+    }
+
+    @Override
+    public Map.Entry<Long, Double> next() {
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (next >= size) {
+        throw new NoSuchElementException();
+      }
+      last = next++;
+      return new ValueEntry(last);
+    }
+
+    @Override
+    public void remove() {
+      if (last < 0) {
+        throw new IllegalStateException();
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      removeAt(last);
+      next = last;
+      last = -1;
+      expectedModCount = modCount;
+    }
+  }
+
+  /**
+   * An entry which writes its value through to the arrays.
+   */
+  private class ValueEntry extends SimpleEntry<Long, Double> {
+    private final int index;
+    private final int expectedModCount = modCount;
+
+    private ValueEntry(int index) {
+      super(timestamps[index], values[index]);
+      this.index = index;
+    }
+
+    @Override
+    public Double setValue(Double value) {
+      if (value == null) {
+        throw new NullPointerException("Null values aren't supported");
+      }
+      if (modCount != expectedModCount) {
+        throw new ConcurrentModificationException();
+      }
+      values[index] = value;
+      return super.setValue(value);
+    }
+  }
+}
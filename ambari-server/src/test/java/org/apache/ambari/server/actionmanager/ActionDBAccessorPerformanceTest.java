@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.actionmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.Role;
+import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.svccomphost.ServiceComponentHostStartEvent;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * Times {@link ActionDBAccessor#persistActions(Request)} for requests with
+ * 100, 1,000 and 5,000 tasks, one task per host.
+ */
+@Ignore
+public class ActionDBAccessorPerformanceTest {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ActionDBAccessorPerformanceTest.class);
+
+  private static final String CLUSTER_NAME = "cluster1";
+
+  private static final int[] TASK_COUNTS = { 100, 1000, 5000 };
+
+  private Injector injector;
+  private Clusters clusters;
+  private ActionDBAccessor db;
+
+  @Before
+  public void setUp() throws AmbariException {
+    injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    injector.getInstance(GuiceJpaInitializer.class);
+
+    clusters = injector.getInstance(Clusters.class);
+    clusters.addCluster(CLUSTER_NAME);
+
+    for (int i = 0; i < TASK_COUNTS[TASK_COUNTS.length - 1]; i++) {
+      String hostName = getHostName(i);
+      clusters.addHost(hostName);
+      clusters.getHost(hostName).persist();
+    }
+
+    db = injector.getInstance(ActionDBAccessorImpl.class);
+  }
+
+  @After
+  public void tearDown() throws AmbariException {
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  @Test
+  public void testPersistActions() throws AmbariException {
+    long requestId = 1;
+    for (int taskCount : TASK_COUNTS) {
+      Request request = createRequest(requestId, taskCount);
+
+      long start = System.currentTimeMillis();
+      db.persistActions(request);
+      long elapsed = System.currentTimeMillis() - start;
+
+      LOG.info("Persisted a request with {} tasks in {}ms", taskCount, elapsed);
+      Assert.assertEquals(taskCount, db.getRequestTasks(requestId).size());
+
+      requestId++;
+    }
+  }
+
+  /**
+   * Creates a single stage request with one START command per host.
+   */
+  private Request createRequest(long requestId, int taskCount) {
+    Stage stage = new Stage(requestId, "/a/b", CLUSTER_NAME, 1L,
+        "action db accessor performance test", "clusterHostInfo",
+        "commandParamsStage", "hostParamsStage");
+
+    stage.setStageId(1);
+
+    for (int i = 0; i < taskCount; i++) {
+      String hostName = getHostName(i);
+      stage.addHostRoleExecutionCommand(hostName, Role.DATANODE,
+          RoleCommand.START,
+          new ServiceComponentHostStartEvent(Role.DATANODE.toString(),
+              hostName, System.currentTimeMillis()), CLUSTER_NAME, "HDFS",
+          false);
+    }
+
+    List<Stage> stages = new ArrayList<Stage>();
+    stages.add(stage);
+    return new Request(stages, clusters);
+  }
+
+  private String getHostName(int index) {
+    return "c6" + index + ".ambari.apache.org";
+  }
+}
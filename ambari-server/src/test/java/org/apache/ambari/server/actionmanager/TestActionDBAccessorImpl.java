@@ -283,6 +283,49 @@ public class TestActionDBAccessorImpl {
     assertEquals(3000, stages.size());
   }
 
+  @Test
+  public void testStagesInProgressKeptInMemory() throws AmbariException {
+    populateActionDB(db, hostName, requestId, stageId);
+    List<Stage> stages = db.getStagesInProgress();
+    assertEquals(1, stages.size());
+
+    // a request persisted after the stages were read is added to memory
+    populateActionDB(db, hostName, requestId + 1, stageId);
+    stages = db.getStagesInProgress();
+    assertEquals(2, stages.size());
+    assertEquals(requestId + 1, stages.get(1).getRequestId());
+
+    // completing both commands of the first stage removes it
+    List<CommandReport> reports = new ArrayList<CommandReport>();
+    for (HostRoleCommand command : stages.get(0).getOrderedHostRoleCommands()) {
+      CommandReport cr = new CommandReport();
+      cr.setTaskId(command.getTaskId());
+      cr.setActionId(StageUtils.getActionId(requestId, stageId));
+      cr.setRole(command.getRole().toString());
+      cr.setStatus("COMPLETED");
+      cr.setStdErr("");
+      cr.setStdOut("");
+      cr.setExitCode(0);
+      reports.add(cr);
+    }
+    db.updateHostRoleStates(reports);
+
+    stages = db.getStagesInProgress();
+    assertEquals(1, stages.size());
+    assertEquals(requestId + 1, stages.get(0).getRequestId());
+
+    // a change made without the accessor is only seen after invalidation
+    List<HostRoleCommandEntity> entities = hostRoleCommandDAO.findByRequest(requestId + 1);
+    for (HostRoleCommandEntity entity : entities) {
+      entity.setStatus(HostRoleStatus.COMPLETED);
+    }
+    hostRoleCommandDAO.mergeAll(entities);
+    assertEquals(1, db.getStagesInProgress().size());
+
+    db.invalidateStagesInProgress();
+    assertEquals(0, db.getStagesInProgress().size());
+  }
+
 
   @Test
   public void testPersistActions() throws AmbariException {
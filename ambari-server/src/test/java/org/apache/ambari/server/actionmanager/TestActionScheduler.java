@@ -2255,6 +2255,50 @@ public class TestActionScheduler {
 
   }
 
+  /**
+   * Tests that an idle scheduler only reads the stages in progress from the
+   * database when recovering and that active requests are pruned once they no
+   * longer have stages in progress.
+   */
+  @Test
+  public void testActiveRequestsAndRecovery() throws Exception {
+    ActionDBAccessor db = mock(ActionDBAccessorImpl.class);
+    when(db.getStagesInProgress()).thenReturn(new ArrayList<Stage>());
+
+    ActionScheduler scheduler = new ActionScheduler(100, 50, db,
+        new ActionQueue(), mock(Clusters.class), 3, new HostsMap((String) null),
+        mock(UnitOfWork.class), null, new Configuration(new Properties()));
+
+    // the first run recovers stages left by a previous server instance
+    assertTrue(scheduler.isWorkNeeded(false));
+    scheduler.doWork();
+    verify(db, times(1)).invalidateStagesInProgress();
+
+    // idle, so periodic wakeups are skipped and awakened runs use memory
+    assertFalse(scheduler.isWorkNeeded(false));
+    assertTrue(scheduler.isWorkNeeded(true));
+    scheduler.doWork();
+    verify(db, times(1)).invalidateStagesInProgress();
+
+    // an active request needs every wakeup until it has no stages in progress
+    Request request = mock(Request.class);
+    when(request.getRequestId()).thenReturn(1L);
+    when(request.isExclusive()).thenReturn(false);
+    scheduler.addActiveRequest(request);
+    assertTrue(scheduler.isWorkNeeded(false));
+    scheduler.doWork();
+    assertFalse(scheduler.isWorkNeeded(false));
+    verify(db, times(1)).invalidateStagesInProgress();
+
+    // a failed run forgets the active requests, so the next one recovers
+    scheduler.addActiveRequest(request);
+    scheduler.resetActiveRequests();
+    assertTrue(scheduler.isWorkNeeded(false));
+    scheduler.doWork();
+    verify(db, times(2)).invalidateStagesInProgress();
+    verify(db, times(4)).getStagesInProgress();
+  }
+
 
   public static class MockModule extends AbstractModule {
     @Override
@@ -80,6 +80,7 @@ import org.junit.Test;
 import javax.ws.rs.core.MediaType;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -277,7 +278,7 @@ public class AgentResourceTest extends JerseyTest {
       try {
         when(handler.handleRegistration(any(Register.class))).thenReturn(
             response);
-        when(handler.handleHeartBeat(any(HeartBeat.class))).thenReturn(
+        when(handler.handleHeartBeat(any(HeartBeat.class), anyLong())).thenReturn(
             hresponse);
         when(handler.handleComponents(any(String.class))).thenReturn(
             componentsResponse);
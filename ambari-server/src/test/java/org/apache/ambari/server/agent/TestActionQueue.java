@@ -18,6 +18,8 @@
 package org.apache.ambari.server.agent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -263,4 +265,71 @@ public class TestActionQueue {
     assertEquals(4, queue.size(c6401));
     assertEquals(3, queue.size(c6402));
   }
+
+  /**
+   * Tests that execution commands are dequeued by id, oldest first, without
+   * disturbing the order of the remaining commands.
+   */
+  @Test
+  public void testDequeueCommandId() throws Exception {
+    ActionQueue queue = new ActionQueue();
+    String c6401 = "c6401.ambari.apache.org";
+
+    ExecutionCommand command1 = new ExecutionCommand();
+    command1.setCommandId("1-1");
+    ExecutionCommand command2 = new ExecutionCommand();
+    command2.setCommandId("1-2");
+    ExecutionCommand command3 = new ExecutionCommand();
+    command3.setCommandId("1-1");
+    StatusCommand statusCommand = new StatusCommand();
+
+    queue.enqueue(c6401, command1);
+    queue.enqueue(c6401, statusCommand);
+    queue.enqueue(c6401, command2);
+    queue.enqueue(c6401, command3);
+
+    assertEquals(null, queue.dequeue(c6401, "2-1"));
+    assertSame(command1, queue.dequeue(c6401, "1-1"));
+    assertSame(command3, queue.dequeue(c6401, "1-1"));
+    assertEquals(null, queue.dequeue(c6401, "1-1"));
+
+    List<AgentCommand> commands = queue.dequeueAll(c6401);
+    assertEquals(2, commands.size());
+    assertSame(statusCommand, commands.get(0));
+    assertSame(command2, commands.get(1));
+  }
+
+  /**
+   * Tests that a thread waiting for commands is woken when a command is
+   * enqueued and that the wait times out when none arrive.
+   */
+  @Test(timeout = 10000)
+  public void testAwaitCommands() throws Exception {
+    final ActionQueue queue = new ActionQueue();
+    final String c6401 = "c6401.ambari.apache.org";
+
+    assertFalse(queue.awaitCommands(c6401, 10));
+
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          return;
+        }
+
+        queue.enqueue(c6401, new StatusCommand());
+      }
+    };
+
+    producer.start();
+
+    long start = System.currentTimeMillis();
+    assertTrue(queue.awaitCommands(c6401, 5000));
+    assertTrue(System.currentTimeMillis() - start < 5000);
+    assertEquals(1, queue.size(c6401));
+
+    producer.join();
+  }
 }
@@ -25,13 +25,17 @@ import org.apache.ambari.server.api.util.TreeNode;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.junit.Test;
 
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
+import java.io.ByteArrayOutputStream;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * JSONSerializer unit tests
@@ -72,7 +76,7 @@ public class JsonSerializerTest {
     replay(uriInfo, resource/*, resource2*/);
 
     //execute test
-    Object o = new JsonSerializer().serialize(result).toString().replace("\r", "");
+    Object o = new JsonSerializer(true).serialize(result).toString().replace("\r", "");
 
     String expected = "{\n" +
         "  \"href\" : \"this is an href\",\n" +
@@ -126,7 +130,7 @@ public class JsonSerializerTest {
     replay(uriInfo, resource);
 
     //execute test
-    Object o = new JsonSerializer().serialize(result).toString().replace("\r", "");
+    Object o = new JsonSerializer(true).serialize(result).toString().replace("\r", "");
 
     String expected = "{\n" +
         "  \"resources\" : [\n" +
@@ -182,7 +186,7 @@ public class JsonSerializerTest {
     replay(uriInfo, resource/*, resource2*/);
 
     //execute test
-    Object o = new JsonSerializer().serialize(result).toString().replace("\r", "");
+    Object o = new JsonSerializer(true).serialize(result).toString().replace("\r", "");
     String expected = "[\n" +
     "  {\n" +
     "    \"href\" : \"this is an href\",\n" +
@@ -207,6 +211,42 @@ public class JsonSerializerTest {
 
     verify(uriInfo, resource/*, resource2*/);
   }
-    
-  
+
+  @Test
+  public void testSerializeCompactToStream() throws Exception {
+    Resource resource = createMock(Resource.class);
+
+    Result result = new ResultImpl(true);
+    result.setResultStatus(new ResultStatus(ResultStatus.STATUS.OK));
+    TreeNode<Resource> tree = result.getResultTree();
+    TreeNode<Resource> child = tree.addChild(resource, "resource1");
+    child.setProperty("href", "this is an href");
+
+    Map<String, Object> mapRootProps = new LinkedHashMap<String, Object>();
+    mapRootProps.put("prop1", "value1");
+    mapRootProps.put("prop2", 2);
+
+    Map<String, Map<String, Object>> propertyMap = new HashMap<String, Map<String, Object>>();
+    propertyMap.put(null, mapRootProps);
+
+    //expectations
+    expect(resource.getPropertiesMap()).andReturn(propertyMap).anyTimes();
+    expect(resource.getType()).andReturn(Resource.Type.Cluster).anyTimes();
+
+    replay(resource);
+
+    //execute test
+    Object o = new JsonSerializer().serialize(result);
+    assertTrue(o instanceof StreamingOutput);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((StreamingOutput) o).write(out);
+
+    String expected = "{\"href\":\"this is an href\",\"prop1\":\"value1\",\"prop2\":2}";
+    assertEquals(expected, out.toString("UTF-8"));
+    // the entity can be rendered more than once
+    assertEquals(expected, o.toString());
+
+    verify(resource);
+  }
 }
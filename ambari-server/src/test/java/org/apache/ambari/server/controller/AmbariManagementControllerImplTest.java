@@ -1501,7 +1501,8 @@ public class AmbariManagementControllerImplTest {
     expect(service.getServiceComponent("component1")).andReturn(component);
     expect(component.getName()).andReturn("component1").anyTimes();
 
-    expect(component.getServiceComponentHosts()).andReturn(mapHostComponents);
+    expect(cluster.getServiceComponentHosts("service1", "component1", null, null, null)).andReturn(
+        new ArrayList<ServiceComponentHost>(mapHostComponents.values()));
     expect(componentHost1.convertToResponse()).andReturn(response1);
     expect(componentHost2.convertToResponse()).andReturn(response2);
     expect(componentHost1.getHostName()).andReturn("host1");
@@ -1581,20 +1582,21 @@ public class AmbariManagementControllerImplTest {
       }}).anyTimes();
 
     expect(cluster.getServices()).andReturn(mapServices);
-    expect(service1.getServiceComponents()).andReturn(Collections.singletonMap("foo", component1));
-    expect(service2.getServiceComponents()).andReturn(Collections.singletonMap("bar", component2));
 
     expect(component1.getName()).andReturn("component1").anyTimes();
     expect(component2.getName()).andReturn("component2").anyTimes();
 
-    expect(component1.getServiceComponentHosts()).andReturn(mapHostComponents);
+    List<ServiceComponentHost> serviceComponentHosts =
+        new ArrayList<ServiceComponentHost>(mapHostComponents.values());
+    serviceComponentHosts.add(componentHost3);
+    expect(cluster.getServiceComponentHosts(null, null, null, null, null)).andReturn(serviceComponentHosts);
+
     expect(componentHost1.convertToResponse()).andReturn(response1);
     expect(componentHost2.convertToResponse()).andReturn(response2);
     expect(componentHost1.getHostName()).andReturn("host1");
     expect(componentHost2.getHostName()).andReturn("host1");
     expect(componentHost3.getHostName()).andReturn("host1");
 
-    expect(component2.getServiceComponentHosts()).andReturn(Collections.singletonMap("foobar", componentHost3));
     expect(componentHost3.convertToResponse()).andReturn(response3);
 
     // replay mocks
@@ -29,9 +29,13 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.ambari.server.controller.AlertHistoryRequest;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.spi.SortRequest;
+import org.apache.ambari.server.controller.spi.SortRequestProperty;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.apache.ambari.server.metadata.ActionMetadata;
@@ -168,6 +172,68 @@ public class AlertHistoryResourceProviderTest {
         r.getPropertyValue(AlertHistoryResourceProvider.ALERT_HISTORY_STATE));
   }
 
+  /**
+   * Tests that only what can be turned into a JPA query is reported as
+   * supported.
+   */
+  @Test
+  public void testQueryCapabilities() throws Exception {
+    AlertHistoryResourceProvider provider = createProvider();
+
+    Predicate predicate = new PredicateBuilder().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c1").and().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_TIMESTAMP).greaterThan(1000L).toPredicate();
+    Assert.assertTrue(provider.isPredicateSupported(predicate));
+    Assert.assertTrue(provider.isPredicateSupported(null));
+
+    predicate = new PredicateBuilder().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c1").and().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_TEXT).equals("foo").toPredicate();
+    Assert.assertFalse(provider.isPredicateSupported(predicate));
+
+    predicate = new PredicateBuilder().not().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_STATE).equals("OK").toPredicate();
+    Assert.assertFalse(provider.isPredicateSupported(predicate));
+
+    Assert.assertTrue(provider.isSortSupported(new SortRequestImpl(Arrays.asList(
+        new SortRequestProperty(AlertHistoryResourceProvider.ALERT_HISTORY_TIMESTAMP, SortRequest.Order.DESC)))));
+    Assert.assertFalse(provider.isSortSupported(new SortRequestImpl(Arrays.asList(
+        new SortRequestProperty(AlertHistoryResourceProvider.ALERT_HISTORY_TEXT, SortRequest.Order.ASC)))));
+
+    Assert.assertTrue(provider.isPageSupported(
+        new PageRequestImpl(PageRequest.StartingPoint.OffsetStart, 10, 20, null, null)));
+    Assert.assertFalse(provider.isPageSupported(
+        new PageRequestImpl(PageRequest.StartingPoint.End, 10, 0, null, null)));
+  }
+
+  /**
+   * Tests that a paged query reports the total count from the database.
+   */
+  @Test
+  public void testQueryForResourcesPaged() throws Exception {
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.Beginning, 1, 0, null, null);
+    Request request = PropertyHelper.getReadRequest(
+        Collections.singleton(AlertHistoryResourceProvider.ALERT_HISTORY_ID), null, null, pageRequest, null);
+
+    Predicate predicate = new PredicateBuilder().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c1").toPredicate();
+
+    expect(m_dao.findAll(EasyMock.anyObject(AlertHistoryRequest.class))).andReturn(
+        getMockEntities());
+    expect(m_dao.getCount(predicate)).andReturn(25);
+
+    replay(m_dao);
+
+    QueryResponse response = createProvider().queryForResources(request, predicate);
+
+    assertEquals(1, response.getResources().size());
+    Assert.assertTrue(response.isPagedResponse());
+    Assert.assertTrue(response.isSortedResponse());
+    assertEquals(25, response.getTotalResourceCount());
+
+    verify(m_dao);
+  }
+
   /**
    * @param amc
    * @return
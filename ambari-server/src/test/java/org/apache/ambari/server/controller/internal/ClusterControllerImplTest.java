@@ -40,6 +40,7 @@ import java.util.Set;
 import junit.framework.Assert;
 
 import org.apache.ambari.server.controller.spi.ClusterController;
+import org.apache.ambari.server.controller.spi.ExtendedResourceProvider;
 import org.apache.ambari.server.controller.spi.NoSuchParentResourceException;
 import org.apache.ambari.server.controller.spi.NoSuchResourceException;
 import org.apache.ambari.server.controller.spi.PageRequest;
@@ -47,6 +48,8 @@ import org.apache.ambari.server.controller.spi.PageResponse;
 import org.apache.ambari.server.controller.spi.Predicate;
 import org.apache.ambari.server.controller.spi.PropertyProvider;
 import org.apache.ambari.server.controller.spi.ProviderModule;
+import org.apache.ambari.server.controller.spi.QueryCapabilities;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.RequestStatus;
 import org.apache.ambari.server.controller.spi.Resource;
@@ -928,6 +931,58 @@ public class ClusterControllerImplTest {
     verify(providerModule, resourceProvider, pageRequest, sortRequest);
   }
 
+  /**
+   * Ensures that the sort and page requests are only passed on to a
+   * {@link QueryCapabilities} provider when it supports them.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testQueryCapabilities() throws Exception {
+    final TestQueryCapabilitiesResourceProvider resourceProvider = new TestQueryCapabilitiesResourceProvider();
+
+    ProviderModule providerModule = createNiceMock(ProviderModule.class);
+    expect(providerModule.getResourceProvider(Resource.Type.Host)).andReturn(resourceProvider).anyTimes();
+    replay(providerModule);
+
+    ClusterControllerImpl controller = new ClusterControllerImpl(providerModule);
+
+    String hostNamePropertyId = PropertyHelper.getPropertyId("Hosts", "host_name");
+    String p1PropertyId = PropertyHelper.getPropertyId("c1", "p1");
+
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.Beginning, 2, 0, null, null);
+    SortRequest sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty(hostNamePropertyId, SortRequest.Order.ASC)));
+    Request request = PropertyHelper.getReadRequest(Collections.<String>emptySet(), null, null,
+        pageRequest, sortRequest);
+
+    // supported predicate, sort and page
+    Predicate predicate = new PredicateBuilder().property(hostNamePropertyId).equals("host:1").toPredicate();
+    controller.getResources(Resource.Type.Host, request, predicate);
+
+    Assert.assertSame(sortRequest, resourceProvider.lastRequest.getSortRequest());
+    Assert.assertSame(pageRequest, resourceProvider.lastRequest.getPageRequest());
+
+    // unsupported predicate; the controller has to filter before paging
+    predicate = new PredicateBuilder().property(p1PropertyId).equals(1).toPredicate();
+    controller.getResources(Resource.Type.Host, request, predicate);
+
+    Assert.assertSame(sortRequest, resourceProvider.lastRequest.getSortRequest());
+    Assert.assertNull(resourceProvider.lastRequest.getPageRequest());
+
+    // unsupported sort; neither the sort nor the page are passed on
+    sortRequest = new SortRequestImpl(Collections.singletonList(
+        new SortRequestProperty(p1PropertyId, SortRequest.Order.ASC)));
+    request = PropertyHelper.getReadRequest(Collections.<String>emptySet(), null, null,
+        pageRequest, sortRequest);
+    controller.getResources(Resource.Type.Host, request, null);
+
+    Assert.assertNull(resourceProvider.lastRequest.getSortRequest());
+    Assert.assertNull(resourceProvider.lastRequest.getPageRequest());
+
+    verify(providerModule);
+  }
+
   public static class TestProviderModule implements ProviderModule {
     private Map<Resource.Type, ResourceProvider> providers = new HashMap<Resource.Type, ResourceProvider>();
 
@@ -1025,6 +1080,44 @@ public class ClusterControllerImplTest {
     }
   }
 
+  private static class TestQueryCapabilitiesResourceProvider extends TestResourceProvider
+      implements ExtendedResourceProvider, QueryCapabilities {
+    private Request lastRequest = null;
+
+    private TestQueryCapabilitiesResourceProvider() {
+      super(resourceProviderProperties, keyPropertyIds);
+    }
+
+    @Override
+    public QueryResponse queryForResources(Request request, Predicate predicate)
+        throws SystemException, UnsupportedPropertyException, NoSuchResourceException, NoSuchParentResourceException {
+      lastRequest = request;
+      return new QueryResponseImpl(Collections.<Resource>emptySet());
+    }
+
+    @Override
+    public boolean isPredicateSupported(Predicate predicate) {
+      return SupportedPredicateVisitor.isSupported(predicate,
+          Collections.singleton(PropertyHelper.getPropertyId("Hosts", "host_name")),
+          SupportedPredicateVisitor.EQUALS_OPERATORS);
+    }
+
+    @Override
+    public boolean isSortSupported(SortRequest sortRequest) {
+      for (SortRequestProperty property : sortRequest.getProperties()) {
+        if (!property.getPropertyId().equals(PropertyHelper.getPropertyId("Hosts", "host_name"))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isPageSupported(PageRequest pageRequest) {
+      return true;
+    }
+  }
+
   private static class TestClusterResourceProvider extends TestResourceProvider {
     private TestClusterResourceProvider() {
       super(Resource.Type.Cluster);
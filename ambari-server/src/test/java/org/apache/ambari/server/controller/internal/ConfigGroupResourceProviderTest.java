@@ -40,6 +40,8 @@ import org.easymock.Capture;
 import org.easymock.IAnswer;
 import org.junit.Assert;
 import org.junit.Test;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -248,8 +250,12 @@ public class ConfigGroupResourceProviderTest {
         return configGroupMap;
       }
     });
+    expect(configGroup.getHosts()).andReturn(Collections.<String, Host>singletonMap("h0", h1)).anyTimes();
+    expect(configGroup.getConfigurations()).andReturn(Collections.<String, Config>emptyMap()).anyTimes();
     expect(managementController.getConfigHelper()).andReturn(configHelper).once();
-    configHelper.invalidateStaleConfigsCache();
+    configHelper.invalidateStaleConfigsCache(cluster,
+        new HashSet<String>(Arrays.asList("h0", "h1", "h2")),
+        Collections.singleton("core-site"));
     expectLastCall().once();
 
     replay(managementController, clusters, cluster,
@@ -0,0 +1,220 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ambari.server.controller.spi.PageRequest;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
+import org.apache.ambari.server.controller.spi.Request;
+import org.apache.ambari.server.controller.spi.Resource;
+import org.apache.ambari.server.controller.utilities.PredicateBuilder;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.security.SecurityHelper;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Tests {@link QueryResultCache}.
+ */
+public class QueryResultCacheTest {
+
+  private static final String HOST_NAME_PROPERTY_ID = PropertyHelper.getPropertyId("Hosts", "host_name");
+  private static final String HOST_STATE_PROPERTY_ID = PropertyHelper.getPropertyId("Hosts", "host_state");
+
+  private TestSecurityHelper m_securityHelper;
+  private QueryResultCache m_cache;
+  private Request m_request;
+  private Predicate m_predicate;
+
+  @Before
+  public void before() {
+    m_securityHelper = new TestSecurityHelper();
+    m_securityHelper.setAuthorities("CLUSTER.OPERATE@2");
+    m_cache = new QueryResultCache(Collections.singleton(Resource.Type.Host),
+        60000L, 100, m_securityHelper);
+
+    m_request = PropertyHelper.getReadRequest(HOST_NAME_PROPERTY_ID, HOST_STATE_PROPERTY_ID);
+    m_predicate = new PredicateBuilder().property(HOST_NAME_PROPERTY_ID).equals("h1").toPredicate();
+  }
+
+  @Test
+  public void testIsCacheable() {
+    Assert.assertTrue(m_cache.isEnabled());
+    Assert.assertTrue(m_cache.isCacheable(Resource.Type.Host, m_request));
+    Assert.assertFalse(m_cache.isCacheable(Resource.Type.Cluster, m_request));
+    Assert.assertFalse(m_cache.isCacheable(Resource.Type.Host,
+        PropertyHelper.getReadRequest(Collections.singleton(HOST_NAME_PROPERTY_ID), null,
+            null, new PageRequestImpl(PageRequest.StartingPoint.Beginning, 10, 0, null, null), null)));
+
+    QueryResultCache disabled = new QueryResultCache(
+        Collections.<Resource.Type>emptySet(), 60000L, 100, m_securityHelper);
+    Assert.assertFalse(disabled.isEnabled());
+  }
+
+  @Test
+  public void testHitReturnsCopy() {
+    Assert.assertNull(m_cache.get(Resource.Type.Host, m_request, m_predicate));
+
+    long generation = m_cache.getGeneration(Resource.Type.Host);
+    m_cache.put(Resource.Type.Host, m_request, m_predicate, createResponse("HEALTHY"), generation);
+
+    QueryResponse response = m_cache.get(Resource.Type.Host, m_request, m_predicate);
+    Assert.assertNotNull(response);
+    Resource resource = response.getResources().iterator().next();
+    Assert.assertEquals("HEALTHY", resource.getPropertyValue(HOST_STATE_PROPERTY_ID));
+
+    // populating the returned resource doesn't change the cached one
+    resource.setProperty(HOST_STATE_PROPERTY_ID, "UNHEALTHY");
+    response = m_cache.get(Resource.Type.Host, m_request, m_predicate);
+    Assert.assertEquals("HEALTHY",
+        response.getResources().iterator().next().getPropertyValue(HOST_STATE_PROPERTY_ID));
+
+    Assert.assertEquals(2, m_cache.getHitCount());
+    Assert.assertEquals(1, m_cache.getMissCount());
+    Assert.assertEquals(2.0 / 3.0, m_cache.getHitRate(), 0.001);
+  }
+
+  @Test
+  public void testPopulatedResources() {
+    String metricPropertyId = PropertyHelper.getPropertyId("metrics/cpu", "cpu_user");
+
+    Set<Resource> resources = createResponse("HEALTHY").getResources();
+    Assert.assertNull(m_cache.populate(Resource.Type.Host, resources, m_request, m_predicate));
+
+    // a property provider populates the resources
+    long generation = m_cache.getGeneration(Resource.Type.Host);
+    Map<Resource, Resource> unpopulated = m_cache.copyUnpopulated(resources);
+    resources.iterator().next().setProperty(metricPropertyId, 1.5);
+    m_cache.putPopulated(Resource.Type.Host, unpopulated, resources, m_request,
+        m_predicate, generation);
+
+    // equal resources of a later query are populated in place from the cache
+    resources = createResponse("HEALTHY").getResources();
+    Set<Resource> keepers = m_cache.populate(Resource.Type.Host, resources, m_request, m_predicate);
+    Assert.assertNotNull(keepers);
+    Assert.assertEquals(1, keepers.size());
+    Resource resource = resources.iterator().next();
+    Assert.assertSame(resource, keepers.iterator().next());
+    Assert.assertEquals(1.5, resource.getPropertyValue(metricPropertyId));
+
+    // resources which differ before population are not populated
+    Assert.assertNull(m_cache.populate(Resource.Type.Host,
+        createResponse("UNHEALTHY").getResources(), m_request, m_predicate));
+
+    m_cache.invalidateAll();
+    Assert.assertNull(m_cache.populate(Resource.Type.Host,
+        createResponse("HEALTHY").getResources(), m_request, m_predicate));
+  }
+
+  @Test
+  public void testKeyedOnPredicatePropertiesAndAuthorization() {
+    long generation = m_cache.getGeneration(Resource.Type.Host);
+    m_cache.put(Resource.Type.Host, m_request, m_predicate, createResponse("HEALTHY"), generation);
+
+    Predicate otherPredicate = new PredicateBuilder().property(HOST_NAME_PROPERTY_ID).equals("h2").toPredicate();
+    Assert.assertNull(m_cache.get(Resource.Type.Host, m_request, otherPredicate));
+
+    Request otherRequest = PropertyHelper.getReadRequest(HOST_NAME_PROPERTY_ID);
+    Assert.assertNull(m_cache.get(Resource.Type.Host, otherRequest, m_predicate));
+
+    m_securityHelper.setAuthorities("CLUSTER.READ@2");
+    Assert.assertNull(m_cache.get(Resource.Type.Host, m_request, m_predicate));
+
+    m_securityHelper.setAuthorities("CLUSTER.OPERATE@2");
+    Assert.assertNotNull(m_cache.get(Resource.Type.Host, m_request, m_predicate));
+  }
+
+  @Test
+  public void testInvalidation() {
+    long generation = m_cache.getGeneration(Resource.Type.Host);
+    m_cache.put(Resource.Type.Host, m_request, m_predicate, createResponse("HEALTHY"), generation);
+    Assert.assertEquals(1, m_cache.getSize());
+
+    m_cache.update(new ResourceProviderEvent(Resource.Type.Host,
+        ResourceProviderEvent.Type.Update, m_request, m_predicate));
+
+    Assert.assertEquals(0, m_cache.getSize());
+    Assert.assertNull(m_cache.get(Resource.Type.Host, m_request, m_predicate));
+    Assert.assertEquals(1, m_cache.getInvalidationCount());
+  }
+
+  @Test
+  public void testResultComputedAcrossInvalidationIsDropped() {
+    long generation = m_cache.getGeneration(Resource.Type.Host);
+
+    // a write lands while the query is executing
+    m_cache.invalidateAll();
+
+    m_cache.put(Resource.Type.Host, m_request, m_predicate, createResponse("HEALTHY"), generation);
+    Assert.assertNull(m_cache.get(Resource.Type.Host, m_request, m_predicate));
+  }
+
+  @Test
+  public void testParseTypes() {
+    Set<Resource.Type> types = QueryResultCache.parseTypes("Host, HostComponent,,NotAType");
+    Assert.assertEquals(2, types.size());
+    Assert.assertTrue(types.contains(Resource.Type.Host));
+    Assert.assertTrue(types.contains(Resource.Type.HostComponent));
+  }
+
+  private QueryResponse createResponse(String state) {
+    Resource resource = new ResourceImpl(Resource.Type.Host);
+    resource.setProperty(HOST_NAME_PROPERTY_ID, "h1");
+    resource.setProperty(HOST_STATE_PROPERTY_ID, state);
+
+    Set<Resource> resources = new LinkedHashSet<Resource>();
+    resources.add(resource);
+    return new QueryResponseImpl(resources);
+  }
+
+  private static class TestSecurityHelper implements SecurityHelper {
+    private final List<GrantedAuthority> m_authorities = new ArrayList<GrantedAuthority>();
+
+    private void setAuthorities(final String... names) {
+      m_authorities.clear();
+      for (final String name : names) {
+        m_authorities.add(new GrantedAuthority() {
+          @Override
+          public String getAuthority() {
+            return name;
+          }
+        });
+      }
+    }
+
+    @Override
+    public String getCurrentUserName() {
+      return "admin";
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getCurrentAuthorities() {
+      return m_authorities;
+    }
+  }
+}
@@ -26,6 +26,7 @@ import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -33,18 +34,30 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.ambari.server.Role;
+import org.apache.ambari.server.RoleCommand;
+import org.apache.ambari.server.actionmanager.HostRoleCommand;
+import org.apache.ambari.server.actionmanager.HostRoleCommandFactory;
+import org.apache.ambari.server.actionmanager.HostRoleStatus;
 import org.apache.ambari.server.controller.AmbariManagementController;
 import org.apache.ambari.server.controller.RequestStatusResponse;
 import org.apache.ambari.server.controller.TaskStatusResponse;
+import org.apache.ambari.server.controller.spi.PageRequest;
 import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.spi.QueryResponse;
 import org.apache.ambari.server.controller.spi.Request;
 import org.apache.ambari.server.controller.spi.Resource;
 import org.apache.ambari.server.controller.spi.ResourceProvider;
 import org.apache.ambari.server.controller.utilities.PredicateBuilder;
 import org.apache.ambari.server.controller.utilities.PropertyHelper;
+import org.apache.ambari.server.orm.dao.HostRoleCommandDAO;
+import org.apache.ambari.server.orm.entities.HostRoleCommandEntity;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+
 /**
  * TaskResourceProvider tests.
  */
@@ -283,4 +296,62 @@ public class TaskResourceProviderTest {
     verify(managementController);
   }
 
+  @Test
+  public void testQueryForResourcesPaged() throws Exception {
+    Resource.Type type = Resource.Type.Task;
+
+    AmbariManagementController managementController = createMock(AmbariManagementController.class);
+    final HostRoleCommandDAO dao = createMock(HostRoleCommandDAO.class);
+    final HostRoleCommandFactory factory = createMock(HostRoleCommandFactory.class);
+    HostRoleCommandEntity entity = new HostRoleCommandEntity();
+    HostRoleCommand command = createNiceMock(HostRoleCommand.class);
+
+    Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(HostRoleCommandDAO.class).toInstance(dao);
+        bind(HostRoleCommandFactory.class).toInstance(factory);
+        requestStaticInjection(TaskResourceProvider.class);
+      }
+    });
+
+    Predicate predicate = new PredicateBuilder().property(TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID).equals("c1").
+        and().property(TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals("100").toPredicate();
+    PageRequest pageRequest = new PageRequestImpl(PageRequest.StartingPoint.Beginning, 1, 0, null, null);
+    Request request = PropertyHelper.getReadRequest(null, null, null, pageRequest, null);
+
+    // only the page is loaded, the total comes from a count
+    expect(dao.findAll(request, predicate)).andReturn(Collections.singletonList(entity)).once();
+    expect(dao.getCount(predicate)).andReturn(250).once();
+    expect(factory.createExisting(entity)).andReturn(command).once();
+    expect(command.getTaskId()).andReturn(7L).anyTimes();
+    expect(command.getRequestId()).andReturn(100L).anyTimes();
+    expect(command.getRole()).andReturn(Role.DATANODE).anyTimes();
+    expect(command.getRoleCommand()).andReturn(RoleCommand.START).anyTimes();
+    expect(command.getStatus()).andReturn(HostRoleStatus.COMPLETED).anyTimes();
+
+    replay(managementController, dao, factory, command);
+
+    TaskResourceProvider provider = new TaskResourceProvider(
+        PropertyHelper.getPropertyIds(type),
+        PropertyHelper.getKeyPropertyIds(type), managementController);
+
+    Assert.assertTrue(provider.isPredicateSupported(predicate));
+    Assert.assertFalse(provider.isPredicateSupported(new PredicateBuilder().property(
+        TaskResourceProvider.TASK_STDERR_PROPERTY_ID).equals("error").toPredicate()));
+    Assert.assertFalse(provider.isPageSupported(
+        new PageRequestImpl(PageRequest.StartingPoint.End, 1, 0, null, null)));
+
+    QueryResponse response = provider.queryForResources(request, predicate);
+
+    Assert.assertTrue(response.isPagedResponse());
+    Assert.assertEquals(250, response.getTotalResourceCount());
+    Assert.assertEquals(1, response.getResources().size());
+
+    Resource resource = response.getResources().iterator().next();
+    Assert.assertEquals(7L, resource.getPropertyValue(TaskResourceProvider.TASK_ID_PROPERTY_ID));
+    Assert.assertEquals("c1", resource.getPropertyValue(TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID));
+
+    verify(managementController, dao, factory);
+  }
 }
@@ -0,0 +1,184 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.ambari.server.controller.jmx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link JMXSnapshotCache}.
+ */
+public class JMXSnapshotCacheTest {
+
+  private static final String SPEC = "http://h1:50070/jmx";
+
+  @Test
+  public void testCoalescing() throws Exception {
+    final JMXSnapshotCache cache = new JMXSnapshotCache(60000L);
+    final CountDownLatch latch = new CountDownLatch(1);
+    final CountingLoader loader = new CountingLoader(latch);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(5);
+    try {
+      List<Future<Map<String, Map<String, Object>>>> futures =
+          new ArrayList<Future<Map<String, Map<String, Object>>>>();
+
+      for (int i = 0; i < 5; ++i) {
+        futures.add(executorService.submit(new Callable<Map<String, Map<String, Object>>>() {
+          @Override
+          public Map<String, Map<String, Object>> call() throws Exception {
+            return cache.getSnapshot(SPEC, loader);
+          }
+        }));
+      }
+
+      // let the callers pile up behind the first read
+      Thread.sleep(100L);
+      latch.countDown();
+
+      for (Future<Map<String, Map<String, Object>>> future : futures) {
+        Assert.assertSame(CountingLoader.SNAPSHOT, future.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executorService.shutdownNow();
+    }
+
+    Assert.assertEquals(1, loader.count.get());
+
+    // the snapshot is still live
+    Assert.assertSame(CountingLoader.SNAPSHOT, cache.getSnapshot(SPEC, loader));
+    Assert.assertEquals(1, loader.count.get());
+  }
+
+  @Test
+  public void testExpiry() throws Exception {
+    JMXSnapshotCache cache = new JMXSnapshotCache(50L);
+    CountingLoader loader = new CountingLoader(null);
+
+    cache.getSnapshot(SPEC, loader);
+    cache.getSnapshot(SPEC, loader);
+    Assert.assertEquals(1, loader.count.get());
+
+    Thread.sleep(100L);
+
+    cache.getSnapshot(SPEC, loader);
+    Assert.assertEquals(2, loader.count.get());
+
+    // other specs are read separately
+    cache.getSnapshot("http://h2:50070/jmx", loader);
+    Assert.assertEquals(3, loader.count.get());
+  }
+
+  @Test
+  public void testFailuresNotCached() throws Exception {
+    JMXSnapshotCache cache = new JMXSnapshotCache(60000L);
+    final AtomicInteger count = new AtomicInteger();
+
+    Callable<Map<String, Map<String, Object>>> failingLoader =
+        new Callable<Map<String, Map<String, Object>>>() {
+          @Override
+          public Map<String, Map<String, Object>> call() throws Exception {
+            count.incrementAndGet();
+            throw new IOException("connection refused");
+          }
+        };
+
+    for (int i = 0; i < 2; ++i) {
+      try {
+        cache.getSnapshot(SPEC, failingLoader);
+        Assert.fail("Expected IOException");
+      } catch (IOException e) {
+        Assert.assertEquals("connection refused", e.getMessage());
+      }
+    }
+    Assert.assertEquals(2, count.get());
+    Assert.assertEquals(0, cache.size());
+
+    // skipped endpoints aren't cached either
+    CountingLoader skippingLoader = new CountingLoader(null, null);
+    Assert.assertNull(cache.getSnapshot(SPEC, skippingLoader));
+    Assert.assertNull(cache.getSnapshot(SPEC, skippingLoader));
+    Assert.assertEquals(2, skippingLoader.count.get());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    JMXSnapshotCache cache = new JMXSnapshotCache(0L);
+    CountingLoader loader = new CountingLoader(null);
+
+    Assert.assertSame(CountingLoader.SNAPSHOT, cache.getSnapshot(SPEC, loader));
+    Assert.assertSame(CountingLoader.SNAPSHOT, cache.getSnapshot(SPEC, loader));
+    Assert.assertEquals(2, loader.count.get());
+    Assert.assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testGetInstance() throws Exception {
+    TestStreamProvider streamProvider = new TestStreamProvider();
+
+    Assert.assertSame(JMXSnapshotCache.getInstance(streamProvider),
+        JMXSnapshotCache.getInstance(streamProvider));
+    Assert.assertNotSame(JMXSnapshotCache.getInstance(streamProvider),
+        JMXSnapshotCache.getInstance(new TestStreamProvider()));
+  }
+
+  /**
+   * Loader which counts its calls.
+   */
+  private static class CountingLoader implements Callable<Map<String, Map<String, Object>>> {
+    private static final Map<String, Map<String, Object>> SNAPSHOT =
+        Collections.singletonMap("java.lang:type=Memory", Collections.<String, Object>emptyMap());
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final CountDownLatch latch;
+    private final Map<String, Map<String, Object>> snapshot;
+
+    private CountingLoader(CountDownLatch latch) {
+      this(latch, SNAPSHOT);
+    }
+
+    private CountingLoader(CountDownLatch latch, Map<String, Map<String, Object>> snapshot) {
+      this.latch    = latch;
+      this.snapshot = snapshot;
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> call() throws Exception {
+      count.incrementAndGet();
+      if (latch != null) {
+        latch.await();
+      }
+      return snapshot;
+    }
+  }
+}
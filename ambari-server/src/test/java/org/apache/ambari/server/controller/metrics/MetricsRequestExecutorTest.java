@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.controller.metrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests {@link MetricsRequestExecutor}.
+ */
+public class MetricsRequestExecutorTest {
+
+  @Test
+  public void testHostConcurrency() {
+    MetricsRequestExecutor executor = new MetricsRequestExecutor("test", 1, 1, 1, 2, 5, 60000L);
+
+    // the permits are shared by the endpoints of a host
+    Assert.assertTrue(executor.tryAcquire("h1", "50070"));
+    Assert.assertTrue(executor.tryAcquire("h1", "50075"));
+    Assert.assertFalse(executor.tryAcquire("h1", "50070"));
+    Assert.assertEquals(1, executor.getHostLimitedCount());
+
+    // other hosts aren't affected
+    Assert.assertTrue(executor.tryAcquire("h2", "50070"));
+
+    executor.release("h1", "50070", false, 10L);
+    Assert.assertTrue(executor.tryAcquire("h1", "50070"));
+
+    Assert.assertEquals(1, executor.getRequestCount());
+    Assert.assertEquals(10L, executor.getMaxLatency());
+  }
+
+  @Test
+  public void testCircuitBreaker() {
+    MetricsRequestExecutor executor = new MetricsRequestExecutor("test", 1, 1, 1, 10, 3, 60000L);
+
+    for (int i = 0; i < 3; ++i) {
+      Assert.assertTrue(executor.tryAcquire("h1", "50070"));
+      executor.release("h1", "50070", true, 100L);
+    }
+    Assert.assertEquals(3, executor.getFailureCount());
+    Assert.assertEquals(1, executor.getOpenCircuitCount());
+
+    // the endpoint is skipped while its circuit is open
+    Assert.assertFalse(executor.tryAcquire("h1", "50070"));
+    Assert.assertEquals(1, executor.getCircuitBreakerRejectedCount());
+
+    // other endpoints, even on the same host, aren't affected
+    Assert.assertTrue(executor.tryAcquire("h1", "50075"));
+    Assert.assertTrue(executor.tryAcquire("h2", "50070"));
+  }
+
+  @Test
+  public void testCircuitBreakerProbe() throws Exception {
+    MetricsRequestExecutor executor = new MetricsRequestExecutor("test", 1, 1, 1, 10, 1, 50L);
+
+    Assert.assertTrue(executor.tryAcquire("h1", "50070"));
+    executor.release("h1", "50070", true, 100L);
+    Assert.assertFalse(executor.tryAcquire("h1", "50070"));
+
+    Thread.sleep(100L);
+
+    // a single probe is let through once the circuit's time is up
+    Assert.assertTrue(executor.tryAcquire("h1", "50070"));
+    Assert.assertFalse(executor.tryAcquire("h1", "50070"));
+
+    // a successful probe closes the circuit
+    executor.release("h1", "50070", false, 10L);
+    Assert.assertEquals(0, executor.getOpenCircuitCount());
+    Assert.assertTrue(executor.tryAcquire("h1", "50070"));
+    Assert.assertTrue(executor.tryAcquire("h1", "50070"));
+  }
+
+  @Test
+  public void testRejection() throws Exception {
+    MetricsRequestExecutor executor = new MetricsRequestExecutor("test", 1, 1, 1, 10, 5, 60000L);
+    ExecutorService executorService = executor.getExecutorService();
+
+    final CountDownLatch latch = new CountDownLatch(1);
+    Runnable blocked = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          // exit
+        }
+      }
+    };
+
+    try {
+      // one running and one queued
+      executorService.execute(blocked);
+      executorService.execute(blocked);
+
+      try {
+        executorService.execute(blocked);
+        Assert.fail("Expected RejectedExecutionException");
+      } catch (RejectedExecutionException e) {
+        // expected
+      }
+      Assert.assertEquals(1, executor.getRejectedCount());
+      Assert.assertEquals(1, executor.getQueueDepth());
+    } finally {
+      latch.countDown();
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testSlowHostDoesNotDelayOtherHosts() throws Exception {
+    final MetricsRequestExecutor executor = new MetricsRequestExecutor("test", 2, 2, 10, 1, 5, 60000L);
+    ExecutorService executorService = executor.getExecutorService();
+
+    final CountDownLatch slowStarted = new CountDownLatch(1);
+    final CountDownLatch slowDone = new CountDownLatch(1);
+
+    try {
+      // holds the only permit of h1 until the end of the test
+      Future<Boolean> slow = executorService.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          boolean acquired = executor.tryAcquire("h1", "50070");
+          slowStarted.countDown();
+          slowDone.await();
+          executor.release("h1", "50070", false, 10L);
+          return acquired;
+        }
+      });
+      Assert.assertTrue(slowStarted.await(5, TimeUnit.SECONDS));
+
+      // takes the other pool thread; it must give up on h1 right away
+      Future<Boolean> saturated = executorService.submit(new Request(executor, "h1"));
+      // queued behind the requests to h1
+      Future<Boolean> other = executorService.submit(new Request(executor, "h2"));
+
+      Assert.assertFalse(saturated.get(1, TimeUnit.SECONDS));
+      Assert.assertTrue(other.get(1, TimeUnit.SECONDS));
+      Assert.assertEquals(1, executor.getHostLimitedCount());
+      Assert.assertFalse(slow.isDone());
+
+      slowDone.countDown();
+      Assert.assertTrue(slow.get(5, TimeUnit.SECONDS));
+    } finally {
+      slowDone.countDown();
+      executorService.shutdown();
+    }
+  }
+
+  /**
+   * A request to a host which returns right away.
+   */
+  private static class Request implements Callable<Boolean> {
+    private final MetricsRequestExecutor executor;
+    private final String hostName;
+
+    private Request(MetricsRequestExecutor executor, String hostName) {
+      this.executor = executor;
+      this.hostName = hostName;
+    }
+
+    @Override
+    public Boolean call() {
+      if (!executor.tryAcquire(hostName, "50070")) {
+        return false;
+      }
+      executor.release(hostName, "50070", false, 1L);
+      return true;
+    }
+  }
+}
@@ -33,11 +33,14 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.apache.ambari.server.controller.metrics.MetricsServiceProvider.MetricsService;
 import static org.easymock.EasyMock.createNiceMock;
@@ -58,6 +61,7 @@ public class AMSPropertyProviderTest {
   private static final String CLUSTER_REPORT_METRICS_FILE_PATH = FILE_PATH_PREFIX + "cluster_report_metrics.json";
   private static final String MULTIPLE_COMPONENT_REGEXP_METRICS_FILE_PATH = FILE_PATH_PREFIX + "multiple_component_regexp_metrics.json";
   private static final String EMBEDDED_METRICS_FILE_PATH = FILE_PATH_PREFIX + "embedded_host_metric.json";
+  private static final String MULTIPLE_HOSTS_BATCHED_METRICS_FILE_PATH = FILE_PATH_PREFIX + "multiple_hosts_batched_metrics.json";
 
   @Test
   public void testPopulateResourcesForSingleHostMetric() throws Exception {
@@ -237,6 +241,66 @@ public class AMSPropertyProviderTest {
   }
 
 
+  @Test
+  public void testPopulateResourcesForManyHostsInOneCall() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    TestStreamProvider streamProvider = new TestStreamProvider(MULTIPLE_HOSTS_BATCHED_METRICS_FILE_PATH) {
+      @Override
+      public InputStream readFrom(String spec) throws IOException {
+        calls.incrementAndGet();
+        return super.readFrom(spec);
+      }
+    };
+    TestMetricHostProvider metricHostProvider = new TestMetricHostProvider();
+    ComponentSSLConfiguration sslConfiguration = mock(ComponentSSLConfiguration.class);
+
+    Map<String, Map<String, PropertyInfo>> propertyIds = PropertyHelper.getMetricPropertyIds(Resource.Type.Host);
+    AMSPropertyProvider propertyProvider = new AMSHostPropertyProvider(
+      propertyIds,
+      streamProvider,
+      sslConfiguration,
+      metricHostProvider,
+      CLUSTER_NAME_PROPERTY_ID,
+      HOST_NAME_PROPERTY_ID
+    );
+
+    Resource resource1 = new ResourceImpl(Resource.Type.Host);
+    resource1.setProperty(HOST_NAME_PROPERTY_ID, "h1");
+    Resource resource2 = new ResourceImpl(Resource.Type.Host);
+    resource2.setProperty(HOST_NAME_PROPERTY_ID, "h2");
+    Set<Resource> hostResources = new HashSet<Resource>();
+    hostResources.add(resource1);
+    hostResources.add(resource2);
+    Map<String, TemporalInfo> temporalInfoMap = new HashMap<String, TemporalInfo>();
+    temporalInfoMap.put(PROPERTY_ID1, new TemporalInfoImpl(1416445244701L, 1416445244901L, 1L));
+    Request request = PropertyHelper.getReadRequest(Collections.singleton(PROPERTY_ID1), temporalInfoMap);
+    Set<Resource> resources = propertyProvider.populateResources(hostResources, request, null);
+    Assert.assertEquals(2, resources.size());
+
+    Assert.assertEquals(1, calls.get());
+    URIBuilder uriBuilder = AMSPropertyProvider.getAMSUriBuilder("localhost", 8188);
+    uriBuilder.addParameter("metricNames", "cpu_user");
+    uriBuilder.addParameter("hostname", "h1,h2");
+    uriBuilder.addParameter("appId", "HOST");
+    uriBuilder.addParameter("startTime", "1416445244701");
+    uriBuilder.addParameter("endTime", "1416445244901");
+
+    URIBuilder uriBuilder2 = AMSPropertyProvider.getAMSUriBuilder("localhost", 8188);
+    uriBuilder2.addParameter("metricNames", "cpu_user");
+    uriBuilder2.addParameter("hostname", "h2,h1");
+    uriBuilder2.addParameter("appId", "HOST");
+    uriBuilder2.addParameter("startTime", "1416445244701");
+    uriBuilder2.addParameter("endTime", "1416445244901");
+    Assert.assertTrue(uriBuilder.toString().equals(streamProvider.getLastSpec())
+      || uriBuilder2.toString().equals(streamProvider.getLastSpec()));
+
+    // each host only gets its own series back
+    Number[][] val = (Number[][]) resource1.getPropertyValue(PROPERTY_ID1);
+    Assert.assertEquals(3, val.length);
+    val = (Number[][]) resource2.getPropertyValue(PROPERTY_ID1);
+    Assert.assertEquals(2, val.length);
+  }
+
   @Test
   public void testPopulateResourcesForRegexpMetrics() throws Exception {
     TestStreamProvider streamProvider = new TestStreamProvider(MULTIPLE_COMPONENT_REGEXP_METRICS_FILE_PATH);
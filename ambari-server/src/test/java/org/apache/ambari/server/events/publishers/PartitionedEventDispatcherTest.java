@@ -0,0 +1,257 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.events.publishers;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.ambari.server.events.publishers.PartitionedEventDispatcher.ListenerMetrics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Tests the {@link PartitionedEventDispatcher}.
+ */
+public class PartitionedEventDispatcherTest {
+
+  private PartitionedEventDispatcher m_dispatcher;
+
+  @Before
+  public void setup() {
+    m_dispatcher = new PartitionedEventDispatcher("test-event-bus", 2, 10);
+  }
+
+  @After
+  public void teardown() {
+    m_dispatcher.shutdown();
+  }
+
+  /**
+   * Tests that events with the same key are delivered in order, and that a
+   * blocked partition does not hold up the other partitions.
+   */
+  @Test
+  public void testOrderingAndIsolation() throws Exception {
+    OrderingListener listener = new OrderingListener();
+    m_dispatcher.register(listener);
+
+    // keys 0 and 1 map to different partitions
+    CountDownLatch blocker = new CountDownLatch(1);
+    m_dispatcher.dispatch(0, blocker);
+
+    for (int i = 0; i < 5; i++) {
+      m_dispatcher.dispatch(0, "a" + i);
+      m_dispatcher.dispatch(1, "b" + i);
+    }
+
+    Assert.assertTrue(listener.m_bDelivered.await(5, TimeUnit.SECONDS));
+    Assert.assertTrue(listener.getEvents("a").isEmpty());
+
+    blocker.countDown();
+    Assert.assertTrue(listener.m_aDelivered.await(5, TimeUnit.SECONDS));
+
+    Assert.assertEquals(listener.getEvents("a"),
+        Arrays.asList("a0", "a1", "a2", "a3", "a4"));
+    Assert.assertEquals(listener.getEvents("b"),
+        Arrays.asList("b0", "b1", "b2", "b3", "b4"));
+  }
+
+  /**
+   * Tests that a listener can publish to its own partition when the queue is
+   * full without deadlocking, and that deliveries are counted.
+   */
+  @Test
+  public void testReentrantDispatchAndMetrics() throws Exception {
+    m_dispatcher.shutdown();
+    m_dispatcher = new PartitionedEventDispatcher("test-event-bus", 1, 1);
+
+    ReentrantListener listener = new ReentrantListener(m_dispatcher);
+    m_dispatcher.register(listener);
+
+    m_dispatcher.dispatch(null, Integer.valueOf(3));
+    Assert.assertTrue(listener.m_done.await(5, TimeUnit.SECONDS));
+
+    // the last delivery is counted just after the listener returns
+    List<ListenerMetrics> metrics = m_dispatcher.getListenerMetrics();
+    for (int i = 0; i < 50 && metrics.get(0).getInvocations() < 4; i++) {
+      Thread.sleep(100);
+      metrics = m_dispatcher.getListenerMetrics();
+    }
+
+    Assert.assertEquals(1, metrics.size());
+    Assert.assertEquals(4, metrics.get(0).getInvocations());
+    Assert.assertEquals(0, metrics.get(0).getFailures());
+    Assert.assertEquals(0, m_dispatcher.getQueueDepths()[0]);
+  }
+
+  /**
+   * Tests that the statistics are published with JMX until the dispatcher is
+   * shut down.
+   */
+  @Test
+  public void testStatisticsPublishedWithJmx() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(
+        PartitionedEventDispatcher.MBEAN_NAME_PREFIX + "test-event-bus");
+    Assert.assertTrue(server.isRegistered(name));
+
+    OrderingListener listener = new OrderingListener();
+    m_dispatcher.register(listener);
+
+    CompositeData[] metrics = (CompositeData[]) server.getAttribute(name,
+        "ListenerMetrics");
+    Assert.assertEquals(2, metrics.length);
+    Assert.assertEquals(0L, metrics[0].get("invocations"));
+
+    int[] depths = (int[]) server.getAttribute(name, "QueueDepths");
+    Assert.assertEquals(2, depths.length);
+
+    m_dispatcher.shutdown();
+    Assert.assertFalse(server.isRegistered(name));
+  }
+
+  /**
+   * Tests that listeners on different partitions publishing to each other's
+   * full partitions do not deadlock.
+   */
+  @Test
+  public void testCrossPartitionDispatch() throws Exception {
+    m_dispatcher.shutdown();
+    m_dispatcher = new PartitionedEventDispatcher("test-event-bus", 2, 1);
+
+    // 1 + 2 + 4 + 8 + 16 + 32 events
+    BouncingListener listener = new BouncingListener(m_dispatcher, 63);
+    m_dispatcher.register(listener);
+
+    m_dispatcher.dispatch(0, new Bounce(0, 5));
+    Assert.assertTrue(listener.m_done.await(10, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Records string events and blocks on latches.
+   */
+  public static final class OrderingListener {
+    private final List<String> m_events = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch m_aDelivered = new CountDownLatch(5);
+    private final CountDownLatch m_bDelivered = new CountDownLatch(5);
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent(String event) {
+      m_events.add(event);
+      (event.startsWith("a") ? m_aDelivered : m_bDelivered).countDown();
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onBlock(CountDownLatch latch) throws InterruptedException {
+      latch.await(10, TimeUnit.SECONDS);
+    }
+
+    private List<String> getEvents(String prefix) {
+      List<String> events = new ArrayList<String>();
+      synchronized (m_events) {
+        for (String event : m_events) {
+          if (event.startsWith(prefix)) {
+            events.add(event);
+          }
+        }
+      }
+
+      return events;
+    }
+  }
+
+  /**
+   * Publishes as many events back to the dispatcher as the first event it
+   * receives.
+   */
+  public static final class ReentrantListener {
+    private final PartitionedEventDispatcher m_dispatcher;
+    private final CountDownLatch m_done = new CountDownLatch(3);
+
+    private ReentrantListener(PartitionedEventDispatcher dispatcher) {
+      m_dispatcher = dispatcher;
+    }
+
+    @Subscribe
+    public void onEvent(Integer count) {
+      if (count.intValue() == 0) {
+        m_done.countDown();
+        return;
+      }
+
+      // only the first fits in the queue of size 1
+      for (int i = 0; i < count.intValue(); i++) {
+        m_dispatcher.dispatch(null, Integer.valueOf(0));
+      }
+    }
+  }
+
+  /**
+   * An event which is bounced between partitions.
+   */
+  public static final class Bounce {
+    private final int m_key;
+    private final int m_remaining;
+
+    private Bounce(int key, int remaining) {
+      m_key = key;
+      m_remaining = remaining;
+    }
+  }
+
+  /**
+   * Publishes two bounces to the other partition for every bounce it
+   * receives.
+   */
+  public static final class BouncingListener {
+    private final PartitionedEventDispatcher m_dispatcher;
+    private final CountDownLatch m_done;
+
+    private BouncingListener(PartitionedEventDispatcher dispatcher, int events) {
+      m_dispatcher = dispatcher;
+      m_done = new CountDownLatch(events);
+    }
+
+    @Subscribe
+    public void onEvent(Bounce bounce) {
+      if (bounce.m_remaining > 0) {
+        int key = 1 - bounce.m_key;
+        m_dispatcher.dispatch(key, new Bounce(key, bounce.m_remaining - 1));
+        m_dispatcher.dispatch(key, new Bounce(key, bounce.m_remaining - 1));
+      }
+
+      m_done.countDown();
+    }
+  }
+}
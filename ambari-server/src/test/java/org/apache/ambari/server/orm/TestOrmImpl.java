@@ -23,6 +23,10 @@ import com.google.inject.Injector;
 import com.google.inject.persist.PersistService;
 import org.apache.ambari.server.Role;
 import org.apache.ambari.server.actionmanager.HostRoleStatus;
+import org.apache.ambari.server.controller.internal.TaskResourceProvider;
+import org.apache.ambari.server.controller.spi.Predicate;
+import org.apache.ambari.server.controller.utilities.PredicateBuilder;
+import org.apache.ambari.server.controller.utilities.PropertyHelper;
 import org.apache.ambari.server.orm.dao.*;
 import org.apache.ambari.server.orm.entities.*;
 import org.junit.*;
@@ -224,6 +228,24 @@ public class TestOrmImpl extends Assert {
     assertEquals(1, list.size());
   }
 
+  @Test
+  public void testFindTasksByClusterName() {
+    injector.getInstance(OrmTestHelper.class).createStageCommands();
+    HostRoleCommandDAO hostRoleCommandDAO = injector.getInstance(HostRoleCommandDAO.class);
+
+    Predicate predicate = new PredicateBuilder().property(
+        TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID).equals("test_cluster1").and().property(
+        TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals(1L).toPredicate();
+    assertEquals(3, hostRoleCommandDAO.findAll(PropertyHelper.getReadRequest(), predicate).size());
+    assertEquals(3, hostRoleCommandDAO.getCount(predicate));
+
+    predicate = new PredicateBuilder().property(
+        TaskResourceProvider.TASK_CLUSTER_NAME_PROPERTY_ID).equals("no_such_cluster").and().property(
+        TaskResourceProvider.TASK_REQUEST_ID_PROPERTY_ID).equals(1L).toPredicate();
+    assertEquals(0, hostRoleCommandDAO.findAll(PropertyHelper.getReadRequest(), predicate).size());
+    assertEquals(0, hostRoleCommandDAO.getCount(predicate));
+  }
+
   @Test
   public void testLastRequestId() {
     injector.getInstance(OrmTestHelper.class).createStageCommands();
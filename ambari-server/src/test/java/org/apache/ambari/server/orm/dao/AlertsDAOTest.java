@@ -1049,7 +1049,7 @@ public class AlertsDAOTest {
     Predicate historyIdPredicate = null;
 
     clusterPredicate = new PredicateBuilder().property(
-        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c1").toPredicate();
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals(m_cluster.getClusterName()).toPredicate();
 
     AlertHistoryRequest request = new AlertHistoryRequest();
 
@@ -1057,6 +1057,12 @@ public class AlertsDAOTest {
     List<AlertHistoryEntity> histories = m_dao.findAll(request);
     assertEquals(3, histories.size());
 
+    // the cluster name is part of the query, not ignored
+    request.Predicate = new PredicateBuilder().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c2").toPredicate();
+    histories = m_dao.findAll(request);
+    assertEquals(0, histories.size());
+
     hdfsPredicate = new PredicateBuilder().property(
         AlertHistoryResourceProvider.ALERT_HISTORY_SERVICE_NAME).equals("HDFS").toPredicate();
 
@@ -1064,15 +1070,15 @@ public class AlertsDAOTest {
         AlertHistoryResourceProvider.ALERT_HISTORY_SERVICE_NAME).equals("YARN").toPredicate();
 
     clusterAndHdfsPredicate = new PredicateBuilder().property(
-        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c1").and().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals(m_cluster.getClusterName()).and().property(
         AlertHistoryResourceProvider.ALERT_HISTORY_SERVICE_NAME).equals("HDFS").toPredicate();
 
     clusterAndHdfsPredicate = new PredicateBuilder().property(
-        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c1").and().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals(m_cluster.getClusterName()).and().property(
         AlertHistoryResourceProvider.ALERT_HISTORY_SERVICE_NAME).equals("HDFS").toPredicate();
 
     clusterAndHdfsAndCriticalPredicate = new PredicateBuilder().property(
-        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c1").and().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals(m_cluster.getClusterName()).and().property(
         AlertHistoryResourceProvider.ALERT_HISTORY_SERVICE_NAME).equals("HDFS").and().property(
         AlertHistoryResourceProvider.ALERT_HISTORY_STATE).equals(
         AlertState.CRITICAL.name()).toPredicate();
@@ -1159,6 +1165,35 @@ public class AlertsDAOTest {
 
     histories = m_dao.findAll(request);
     assertEquals(0, histories.size());
+
+    // pages are ordered by ID when there is no sort
+    request.Pagination = new PageRequestImpl(StartingPoint.Beginning, 3, 0,
+        null, null);
+
+    histories = m_dao.findAll(request);
+    assertTrue(histories.get(0).getAlertId() < histories.get(1).getAlertId());
+    assertTrue(histories.get(1).getAlertId() < histories.get(2).getAlertId());
+  }
+
+  /**
+   * Tests that the total count of a paged query is computed by the database.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testAlertHistoryCount() throws Exception {
+    m_helper.installHdfsService(m_cluster, m_serviceFactory,
+        m_componentFactory, m_schFactory, HOSTNAME);
+    m_alertHelper.populateData(m_cluster);
+
+    assertEquals(3, m_dao.getCount(null));
+
+    Predicate hdfsPredicate = new PredicateBuilder().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals(
+        m_cluster.getClusterName()).and().property(
+        AlertHistoryResourceProvider.ALERT_HISTORY_SERVICE_NAME).equals("HDFS").toPredicate();
+
+    assertEquals(2, m_dao.getCount(hdfsPredicate));
   }
 
   /**
@@ -1178,7 +1213,7 @@ public class AlertsDAOTest {
     request.Sort = sortRequest;
 
     Predicate clusterPredicate = new PredicateBuilder().property(
-        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals("c1").toPredicate();
+        AlertHistoryResourceProvider.ALERT_HISTORY_CLUSTER_NAME).equals(m_cluster.getClusterName()).toPredicate();
 
     request.Predicate = clusterPredicate;
 
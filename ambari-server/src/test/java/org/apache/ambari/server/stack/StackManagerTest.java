@@ -41,6 +41,7 @@ import org.apache.ambari.server.state.ClientConfigFileDefinition;
 import org.apache.ambari.server.state.CommandScriptDefinition;
 import org.apache.ambari.server.state.ComponentInfo;
 import org.apache.ambari.server.state.PropertyInfo;
+import org.apache.ambari.server.state.RepositoryInfo;
 import org.apache.ambari.server.state.ServiceInfo;
 import org.apache.ambari.server.state.ServiceOsSpecific;
 import org.apache.ambari.server.state.StackInfo;
@@ -585,5 +586,88 @@ public class StackManagerTest {
         stack.getKerberosDescriptorFileLocation());
   }
 
+  @Test
+  public void testParallelParseMatchesSequentialParse() throws Exception {
+    ClassLoader classLoader = ClassLoader.getSystemClassLoader();
+    File stacks = new File(classLoader.getResource("stacks").getPath());
+    File stacksWithCommonServices = new File(classLoader.getResource("stacks_with_common_services").getPath());
+    File commonServices = new File(classLoader.getResource("common-services").getPath());
+
+    List<String> sequential = describeStacks(createStackManager(stacks, null, 1));
+    assertEquals(sequential, describeStacks(createStackManager(stacks, null, 8)));
+
+    sequential = describeStacks(createStackManager(stacksWithCommonServices, commonServices, 1));
+    assertEquals(sequential,
+        describeStacks(createStackManager(stacksWithCommonServices, commonServices, 8)));
+  }
+
+  private static StackManager createStackManager(File stackRoot, File commonServicesRoot,
+                                                 int parseThreads) throws Exception {
+    MetainfoDAO metainfoDao = createNiceMock(MetainfoDAO.class);
+    ActionMetadata metadata = createNiceMock(ActionMetadata.class);
+    Configuration config = createNiceMock(Configuration.class);
+    expect(config.getSharedResourcesDirPath()).andReturn(
+        ClassLoader.getSystemClassLoader().getResource("").getPath()).anyTimes();
+    replay(config, metainfoDao, metadata);
+
+    return new StackManager(stackRoot, commonServicesRoot,
+        new StackContext(metainfoDao, metadata, new OsFamily(config)), parseThreads);
+  }
+
+  /**
+   * Describe the resolved stacks, services, components, properties and
+   * repositories in a stable order so that two parses can be compared.
+   */
+  private static List<String> describeStacks(StackManager stackManager) {
+    List<String> description = new ArrayList<String>();
+
+    for (StackInfo stack : stackManager.getStacks()) {
+      String stackId = stack.getName() + "-" + stack.getVersion();
+      description.add(stackId + " parent=" + stack.getParentStackVersion()
+          + " minUpgrade=" + stack.getMinUpgradeVersion()
+          + " hooks=" + stack.getStackHooksFolder()
+          + " upgradePacks=" + (stack.getUpgradePacks() == null
+              ? null : new TreeSet<String>(stack.getUpgradePacks().keySet())));
+
+      for (RepositoryInfo repository : stack.getRepositories()) {
+        description.add(stackId + " repo " + repository.getOsType() + " "
+            + repository.getRepoId() + " " + repository.getBaseUrl());
+      }
+      for (PropertyInfo property : stack.getProperties()) {
+        description.add(stackId + " property " + describeProperty(property));
+      }
+
+      for (ServiceInfo service : stack.getServices()) {
+        String serviceId = stackId + " " + service.getName();
+        description.add(serviceId + " version=" + service.getVersion()
+            + " comment=" + service.getComment()
+            + " required=" + service.getRequiredServices()
+            + " configDependencies=" + service.getConfigDependencies()
+            + " excluded=" + service.getExcludedConfigTypes()
+            + " osSpecifics=" + new TreeSet<String>(service.getOsSpecifics().keySet())
+            + " packageFolder=" + service.getServicePackageFolder());
+
+        for (ComponentInfo component : service.getComponents()) {
+          description.add(serviceId + " component " + component.getName()
+              + " category=" + component.getCategory()
+              + " cardinality=" + component.getCardinality()
+              + " dependencies=" + component.getDependencies().size()
+              + " customCommands=" + component.getCustomCommands().size());
+        }
+        for (PropertyInfo property : service.getProperties()) {
+          description.add(serviceId + " property " + describeProperty(property));
+        }
+      }
+    }
+
+    Collections.sort(description);
+    return description;
+  }
+
+  private static String describeProperty(PropertyInfo property) {
+    return property.getFilename() + "/" + property.getName() + "=" + property.getValue()
+        + " " + property.getPropertyTypes() + " " + property.getAttributesMap();
+  }
+
   //todo: component override assertions
 }
@@ -269,6 +269,29 @@ public class ConfigHelperTest {
       Assert.assertEquals("30", coreProps.get("ipc.client.connect.max.retries"));
     }
 
+    @Test
+    public void testEffectiveConfigsShared() throws Exception {
+      Map<String, Map<String, String>> tags = configHelper.getEffectiveDesiredTags(cluster, "h1");
+
+      ConfigHelper.EffectiveConfigs effectiveConfigs = configHelper.getEffectiveConfigs(cluster, tags);
+
+      Assert.assertEquals(configHelper.getEffectiveConfigProperties(cluster, tags),
+          effectiveConfigs.getProperties());
+      Assert.assertEquals(configHelper.getEffectiveConfigAttributes(cluster, tags),
+          effectiveConfigs.getAttributes());
+
+      // the same tags get the same effective configs
+      Assert.assertSame(effectiveConfigs, configHelper.getEffectiveConfigs(cluster,
+          configHelper.getEffectiveDesiredTags(cluster, "h1")));
+
+      try {
+        effectiveConfigs.getProperties().get("global").put("namenode_heapsize", "2222");
+        Assert.fail("Expected UnsupportedOperationException");
+      } catch (UnsupportedOperationException e) {
+        // expected
+      }
+    }
+
     @Test
     public void testEffectivePropertiesAttributesWithOverrides() throws Exception {
       final Config config1 = new ConfigImpl("core-site");
@@ -558,12 +581,13 @@ public class ConfigHelperTest {
       schReturn.put("flume-conf", hc);
       // set up mocks
       ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
-      // set up expectations
-      expect(sch.getActualConfigs()).andReturn(schReturn).times(3);
-      expect(sch.getHostName()).andReturn("h1").times(6);
-      expect(sch.getClusterId()).andReturn(1l).times(3);
-      expect(sch.getServiceName()).andReturn("FLUME").times(3);
-      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").times(3);
+      // set up expectations; invalidated host components are also recomputed
+      // in the background, so the number of calls varies
+      expect(sch.getActualConfigs()).andReturn(schReturn).anyTimes();
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(1l).anyTimes();
+      expect(sch.getServiceName()).andReturn("FLUME").anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
       replay(sch);
       // Cluster level config changes
       Assert.assertTrue(configHelper.isStaleConfigs(sch));
@@ -583,6 +607,32 @@ public class ConfigHelperTest {
       Assert.assertTrue(configHelper.isStaleConfigs(sch));
       verify(sch);
     }
+
+    @Test
+    public void testStackChangeInvalidatesStaleConfigs() throws Exception {
+      Map<String, HostConfig> schReturn = new HashMap<String, HostConfig>();
+      HostConfig hc = new HostConfig();
+      hc.setDefaultVersionTag("version2");
+      schReturn.put("flume-conf", hc);
+      ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+      expect(sch.getActualConfigs()).andReturn(schReturn).anyTimes();
+      expect(sch.getHostName()).andReturn("h1").anyTimes();
+      expect(sch.getClusterId()).andReturn(cluster.getClusterId()).anyTimes();
+      expect(sch.getServiceName()).andReturn("FLUME").anyTimes();
+      expect(sch.getServiceComponentName()).andReturn("FLUME_HANDLER").anyTimes();
+      replay(sch);
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      HostConfig hc2 = new HostConfig();
+      hc2.setDefaultVersionTag("version1");
+      schReturn.put("flume-conf", hc2);
+      // the cached value is kept until something invalidates it
+      Assert.assertTrue(configHelper.isStaleConfigs(sch));
+
+      cluster.setDesiredStackVersion(cluster.getDesiredStackVersion());
+      Assert.assertFalse(configHelper.isStaleConfigs(sch));
+      verify(sch);
+    }
   }
 
   public static class RunWithCustomModule {
@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.alert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ambari.server.orm.dao.AlertHostSummaryDTO;
+import org.apache.ambari.server.orm.dao.AlertSummaryDTO;
+import org.apache.ambari.server.orm.entities.AlertCurrentEntity;
+import org.apache.ambari.server.orm.entities.AlertDefinitionEntity;
+import org.apache.ambari.server.orm.entities.AlertHistoryEntity;
+import org.apache.ambari.server.state.AlertState;
+import org.apache.ambari.server.state.MaintenanceState;
+import org.apache.ambari.server.state.alert.AlertCurrentCache.CachedAlert;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AlertCurrentCache}.
+ */
+public class AlertCurrentCacheTest {
+
+  private static final long CLUSTER_ID = 1L;
+
+  private AlertCurrentCache m_cache;
+
+  @Before
+  public void setup() {
+    m_cache = new AlertCurrentCache();
+  }
+
+  /**
+   * Tests that an inactive cache doesn't hold anything.
+   */
+  @Test
+  public void testInactiveCache() {
+    m_cache.put(createCurrent(1L, "alert1", "h1", AlertState.OK));
+
+    Assert.assertFalse(m_cache.isActive());
+    Assert.assertEquals(0, m_cache.size());
+    Assert.assertNull(m_cache.get(CLUSTER_ID, "alert1", "h1"));
+  }
+
+  /**
+   * Tests that timestamps of unchanged alerts are coalesced until they are
+   * drained, and that a merge supersedes a pending timestamp.
+   */
+  @Test
+  public void testTimestampsAreCoalesced() {
+    load(createCurrent(1L, "alert1", "h1", AlertState.OK),
+        createCurrent(2L, "alert1", "h2", AlertState.OK));
+
+    CachedAlert cached = m_cache.get(CLUSTER_ID, "alert1", "h1");
+    Assert.assertNotNull(cached);
+    Assert.assertNull(m_cache.get(CLUSTER_ID, "alert1", null));
+
+    m_cache.touch(cached, 200L);
+    m_cache.touch(cached, 300L);
+    m_cache.touch(cached, 250L);
+    m_cache.touch(m_cache.get(CLUSTER_ID, "alert1", "h2"), 400L);
+
+    Assert.assertEquals(2, m_cache.getPendingCount());
+    Assert.assertEquals(Long.valueOf(300L), m_cache.getPendingTimestamp(1L));
+
+    Map<Long, Long> drained = m_cache.drainTimestamps(1);
+    Assert.assertEquals(1, drained.size());
+    Assert.assertEquals(1, m_cache.getPendingCount());
+
+    // a failed write is retried
+    m_cache.restoreTimestamps(drained);
+    Assert.assertEquals(2, m_cache.getPendingCount());
+
+    // a merge with a newer timestamp means there is nothing left to write
+    AlertCurrentEntity merged = createCurrent(2L, "alert1", "h2", AlertState.OK);
+    merged.setLatestTimestamp(500L);
+    m_cache.put(merged);
+
+    Assert.assertNull(m_cache.getPendingTimestamp(2L));
+    Assert.assertEquals(500L, m_cache.get(CLUSTER_ID, "alert1", "h2").getLatestTimestamp());
+
+    drained = m_cache.drainTimestamps(10);
+    Assert.assertEquals(Collections.singletonMap(1L, 300L), drained);
+    Assert.assertEquals(0, m_cache.getPendingCount());
+  }
+
+  /**
+   * Tests that the summaries computed from memory match the semantics of the
+   * database queries.
+   */
+  @Test
+  public void testCounts() {
+    AlertCurrentEntity maintenance = createCurrent(5L, "alert3", "h2", AlertState.CRITICAL);
+    maintenance.setMaintenanceState(MaintenanceState.ON);
+
+    load(createCurrent(1L, "alert1", "h1", AlertState.OK),
+        createCurrent(2L, "alert2", "h1", AlertState.WARNING),
+        createCurrent(3L, "alert1", "h2", AlertState.UNKNOWN),
+        createCurrent(4L, "alert4", null, AlertState.CRITICAL), maintenance);
+
+    AlertSummaryDTO summary = m_cache.getCounts(CLUSTER_ID, null, null);
+    Assert.assertEquals(1, summary.getOkCount());
+    Assert.assertEquals(1, summary.getWarningCount());
+    Assert.assertEquals(1, summary.getCriticalCount());
+    Assert.assertEquals(1, summary.getUnknownCount());
+    Assert.assertEquals(1, summary.getMaintenanceCount());
+
+    summary = m_cache.getCounts(CLUSTER_ID, null, "h1");
+    Assert.assertEquals(1, summary.getOkCount());
+    Assert.assertEquals(1, summary.getWarningCount());
+    Assert.assertEquals(0, summary.getCriticalCount());
+
+    summary = m_cache.getCounts(2L, null, null);
+    Assert.assertEquals(0, summary.getOkCount());
+
+    // h1 is WARNING, h2 is UNKNOWN since its CRITICAL is in maintenance
+    AlertHostSummaryDTO hostSummary = m_cache.getHostCounts(CLUSTER_ID);
+    Assert.assertEquals(0, hostSummary.getOkCount());
+    Assert.assertEquals(1, hostSummary.getWarningCount());
+    Assert.assertEquals(1, hostSummary.getUnknownCount());
+    Assert.assertEquals(0, hostSummary.getCriticalCount());
+  }
+
+  /**
+   * Tests that removals are applied to the cache, including those made while
+   * the cache is being loaded.
+   */
+  @Test
+  public void testRemoval() {
+    load(createCurrent(1L, "alert1", "h1", AlertState.OK),
+        createCurrent(2L, "alert1", "h2", AlertState.OK),
+        createCurrent(3L, "alert2", "h2", AlertState.OK));
+
+    m_cache.touch(m_cache.get(CLUSTER_ID, "alert1", "h2"), 200L);
+    m_cache.remove(null, null, null, null, "h2");
+
+    Assert.assertEquals(1, m_cache.size());
+    Assert.assertNull(m_cache.get(CLUSTER_ID, "alert2", "h2"));
+    Assert.assertEquals(0, m_cache.getPendingCount());
+
+    m_cache.removeById(1L);
+    Assert.assertEquals(0, m_cache.size());
+
+    // the rows read before the removal must not be cached
+    List<AlertCurrentEntity> loaded = Arrays.asList(
+        createCurrent(1L, "alert1", "h1", AlertState.OK),
+        createCurrent(2L, "alert1", "h2", AlertState.OK));
+
+    m_cache.beginLoad();
+    m_cache.remove(null, null, null, null, "h2");
+    m_cache.put(createCurrent(1L, "alert1", "h1", AlertState.CRITICAL));
+    m_cache.load(loaded);
+
+    Assert.assertEquals(1, m_cache.size());
+    Assert.assertEquals(AlertState.CRITICAL,
+        m_cache.get(CLUSTER_ID, "alert1", "h1").getAlertState());
+
+    m_cache.clear();
+    Assert.assertFalse(m_cache.isActive());
+    Assert.assertEquals(0, m_cache.size());
+  }
+
+  private void load(AlertCurrentEntity... currentAlerts) {
+    m_cache.beginLoad();
+    m_cache.load(new ArrayList<AlertCurrentEntity>(Arrays.asList(currentAlerts)));
+  }
+
+  private AlertCurrentEntity createCurrent(long alertId, String definitionName,
+      String hostName, AlertState state) {
+    AlertDefinitionEntity definition = new AlertDefinitionEntity();
+    definition.setDefinitionId((long) definitionName.hashCode());
+    definition.setDefinitionName(definitionName);
+
+    AlertHistoryEntity history = new AlertHistoryEntity();
+    history.setAlertId(alertId + 100);
+    history.setClusterId(CLUSTER_ID);
+    history.setAlertDefinition(definition);
+    history.setServiceName("HDFS");
+    history.setComponentName("DATANODE");
+    history.setHostName(hostName);
+    history.setAlertState(state);
+
+    AlertCurrentEntity current = new AlertCurrentEntity();
+    current.setAlertId(alertId);
+    current.setAlertHistory(history);
+    current.setMaintenanceState(MaintenanceState.OFF);
+    current.setLatestTimestamp(100L);
+    current.setLatestText("text");
+    return current;
+  }
+}
@@ -19,9 +19,13 @@ package org.apache.ambari.server.state.alerts;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.ambari.server.events.AlertBatchReceivedEvent;
 import org.apache.ambari.server.events.AlertReceivedEvent;
 import org.apache.ambari.server.events.listeners.alerts.AlertReceivedListener;
 import org.apache.ambari.server.orm.GuiceJpaInitializer;
@@ -44,9 +48,13 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Singleton;
 import com.google.inject.persist.PersistService;
+import com.google.inject.persist.Transactional;
+import com.google.inject.util.Modules;
 
 /**
  * Tests the {@link AlertReceivedListener}.
@@ -57,7 +65,7 @@ public class AlertReceivedListenerTest {
   private static final String HOST1 = "h1";
   private static final String ALERT_LABEL = "My Label";
   private Injector m_injector;
-  private AlertsDAO m_dao;
+  private CountingAlertsDAO m_dao;
   private AlertDefinitionDAO m_definitionDao;
 
   private Clusters m_clusters;
@@ -70,7 +78,8 @@ public class AlertReceivedListenerTest {
 
   @Before
   public void setup() throws Exception {
-    m_injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    m_injector = Guice.createInjector(Modules.override(
+        new InMemoryDefaultTestModule()).with(new MockModule()));
     m_injector.getInstance(GuiceJpaInitializer.class);
 
     m_helper = m_injector.getInstance(OrmTestHelper.class);
@@ -84,7 +93,7 @@ public class AlertReceivedListenerTest {
     m_cluster = m_helper.buildNewCluster(m_clusters, m_serviceFactory,
         m_componentFactory, m_schFactory, HOST1);
 
-    m_dao = m_injector.getInstance(AlertsDAO.class);
+    m_dao = (CountingAlertsDAO) m_injector.getInstance(AlertsDAO.class);
     m_definitionDao = m_injector.getInstance(AlertDefinitionDAO.class);
 
     // create 5 definitions, some with HDFS and some with YARN
@@ -259,4 +268,133 @@ public class AlertReceivedListenerTest {
     allCurrent = m_dao.findCurrent();
     assertEquals(0, allCurrent.size());
   }
+
+  /**
+   * Tests that a batch of alerts only creates history for the alerts whose
+   * state changed, and still records the latest timestamp of the alerts which
+   * are unchanged.
+   */
+  @Test
+  public void testAlertBatch() {
+    String componentName = "DATANODE";
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+
+    List<Alert> alerts = new ArrayList<Alert>();
+    for (int i = 0; i < 3; i++) {
+      Alert alert = new Alert(ALERT_DEFINITION + i, null, "HDFS",
+          componentName, HOST1, AlertState.OK);
+
+      alert.setCluster(m_cluster.getClusterName());
+      alert.setLabel(ALERT_LABEL);
+      alert.setText("HDFS " + componentName + " is OK");
+      alert.setTimestamp(1L);
+      alerts.add(alert);
+    }
+
+    listener.onAlertEvent(new AlertBatchReceivedEvent(
+        m_cluster.getClusterId(), alerts));
+
+    assertEquals(3, m_dao.findCurrent().size());
+    assertEquals(3, m_dao.findAll().size());
+
+    // unchanged, new text, and new state
+    alerts.get(0).setTimestamp(2L);
+    alerts.get(1).setTimestamp(2L);
+    alerts.get(1).setText("HDFS " + componentName + " is still OK");
+    alerts.get(2).setTimestamp(2L);
+    alerts.get(2).setState(AlertState.CRITICAL);
+
+    listener.onAlertEvent(new AlertBatchReceivedEvent(
+        m_cluster.getClusterId(), alerts));
+
+    assertEquals(3, m_dao.findCurrent().size());
+    assertEquals(4, m_dao.findAll().size());
+
+    AlertCurrentEntity current = m_dao.findCurrentByHostAndName(
+        m_cluster.getClusterId(), HOST1, ALERT_DEFINITION + 0);
+    assertEquals(Long.valueOf(2L), current.getLatestTimestamp());
+    assertEquals(Long.valueOf(1L), current.getOriginalTimestamp());
+
+    current = m_dao.findCurrentByHostAndName(m_cluster.getClusterId(), HOST1,
+        ALERT_DEFINITION + 1);
+    assertEquals(Long.valueOf(2L), current.getLatestTimestamp());
+    assertEquals("HDFS " + componentName + " is still OK",
+        current.getLatestText());
+
+    current = m_dao.findCurrentByHostAndName(m_cluster.getClusterId(), HOST1,
+        ALERT_DEFINITION + 2);
+    assertEquals(AlertState.CRITICAL, current.getAlertHistory().getAlertState());
+    assertEquals(Long.valueOf(2L), current.getOriginalTimestamp());
+  }
+
+  /**
+   * Tests that a batch of alerts whose state and text are unchanged only
+   * updates their latest timestamps, even though the alert cache is disabled.
+   */
+  @Test
+  public void testUnchangedAlertBatch() {
+    String componentName = "DATANODE";
+    AlertReceivedListener listener = m_injector.getInstance(AlertReceivedListener.class);
+
+    List<Alert> alerts = new ArrayList<Alert>();
+    for (int i = 0; i < 3; i++) {
+      Alert alert = new Alert(ALERT_DEFINITION + i, null, "HDFS",
+          componentName, HOST1, AlertState.OK);
+
+      alert.setCluster(m_cluster.getClusterName());
+      alert.setLabel(ALERT_LABEL);
+      alert.setText("HDFS " + componentName + " is OK");
+      alert.setTimestamp(1L);
+      alerts.add(alert);
+    }
+
+    listener.onAlertEvent(new AlertBatchReceivedEvent(
+        m_cluster.getClusterId(), alerts));
+
+    assertEquals(1, m_dao.m_createOrUpdateCount.get());
+
+    for (Alert alert : alerts) {
+      alert.setTimestamp(2L);
+    }
+
+    listener.onAlertEvent(new AlertBatchReceivedEvent(
+        m_cluster.getClusterId(), alerts));
+
+    assertEquals(1, m_dao.m_createOrUpdateCount.get());
+    assertEquals(3, m_dao.findAll().size());
+
+    for (int i = 0; i < 3; i++) {
+      AlertCurrentEntity current = m_dao.findCurrentByHostAndName(
+          m_cluster.getClusterId(), HOST1, ALERT_DEFINITION + i);
+      assertEquals(Long.valueOf(2L), current.getLatestTimestamp());
+      assertEquals(Long.valueOf(1L), current.getOriginalTimestamp());
+    }
+  }
+
+  /**
+   * Counts the calls which create or merge current alerts.
+   */
+  @Singleton
+  public static class CountingAlertsDAO extends AlertsDAO {
+    private final AtomicInteger m_createOrUpdateCount = new AtomicInteger();
+
+    @Override
+    @Transactional
+    public List<AlertCurrentEntity> createOrUpdate(
+        Collection<AlertCurrentEntity> newAlerts,
+        List<AlertCurrentEntity> changedAlerts) {
+      m_createOrUpdateCount.incrementAndGet();
+      return super.createOrUpdate(newAlerts, changedAlerts);
+    }
+  }
+
+  /**
+   * Binds the {@link CountingAlertsDAO}.
+   */
+  public static class MockModule extends AbstractModule {
+    @Override
+    protected void configure() {
+      bind(AlertsDAO.class).to(CountingAlertsDAO.class);
+    }
+  }
 }
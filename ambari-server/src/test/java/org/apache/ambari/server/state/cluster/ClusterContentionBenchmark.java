@@ -0,0 +1,230 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.cluster;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ambari.server.AmbariException;
+import org.apache.ambari.server.api.services.AmbariMetaInfo;
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.orm.OrmTestHelper;
+import org.apache.ambari.server.state.Cluster;
+import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Host;
+import org.apache.ambari.server.state.RepositoryVersionState;
+import org.apache.ambari.server.state.Service;
+import org.apache.ambari.server.state.ServiceComponent;
+import org.apache.ambari.server.state.ServiceComponentFactory;
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.ServiceComponentHostFactory;
+import org.apache.ambari.server.state.ServiceFactory;
+import org.apache.ambari.server.state.StackId;
+import org.apache.ambari.server.state.State;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * Measures the contention on the locks of {@link ClusterImpl} in one large
+ * cluster, with agent heartbeats, REST reads and host component state changes
+ * running concurrently against it.
+ * <p/>
+ * Not run as part of the unit tests; run {@link #main} from the test
+ * classpath.
+ */
+@org.openjdk.jmh.annotations.State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ClusterContentionBenchmark {
+
+  @Param({"1000"})
+  private int hosts;
+
+  private Injector injector;
+  private Cluster cluster;
+  private String[] hostNames;
+
+  @Setup
+  public void setUp() throws Exception {
+    injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    injector.getInstance(GuiceJpaInitializer.class);
+
+    Clusters clusters = injector.getInstance(Clusters.class);
+    clusters.addCluster("c1");
+    cluster = clusters.getCluster("c1");
+
+    StackId stackId = new StackId("HDP-0.1");
+    cluster.setDesiredStackVersion(stackId);
+    injector.getInstance(OrmTestHelper.class).getOrCreateRepositoryVersion(
+        stackId.getStackName(), stackId.getStackVersion());
+    cluster.createClusterVersion(stackId.getStackName(),
+        stackId.getStackVersion(), "admin", RepositoryVersionState.UPGRADING);
+    injector.getInstance(AmbariMetaInfo.class).init();
+
+    Service service = injector.getInstance(ServiceFactory.class).createNew(
+        cluster, "HDFS");
+    cluster.addService(service);
+    service.persist();
+
+    ServiceComponent namenode = addServiceComponent(service, "NAMENODE");
+    ServiceComponent datanode = addServiceComponent(service, "DATANODE");
+    ServiceComponent hdfsClient = addServiceComponent(service, "HDFS_CLIENT");
+
+    hostNames = new String[hosts];
+    for (int i = 0; i < hosts; i++) {
+      String hostName = "c64-" + i;
+      hostNames[i] = hostName;
+
+      clusters.addHost(hostName);
+      Host host = clusters.getHost(hostName);
+      Map<String, String> hostAttributes = new HashMap<String, String>();
+      hostAttributes.put("os_family", "redhat");
+      hostAttributes.put("os_release_version", "6.4");
+      host.setHostAttributes(hostAttributes);
+      host.persist();
+      clusters.mapHostToCluster(hostName, "c1");
+
+      if (i == 0) {
+        addServiceComponentHost(namenode, hostName);
+      }
+      addServiceComponentHost(datanode, hostName);
+      addServiceComponentHost(hdfsClient, hostName);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    injector.getInstance(PersistService.class).stop();
+  }
+
+  /**
+   * The host which the next heartbeat or state change of a thread is for.
+   */
+  @org.openjdk.jmh.annotations.State(Scope.Thread)
+  public static class HostCursor {
+    private int next;
+
+    private int next(int hosts) {
+      next = (next + 1) % hosts;
+      return next;
+    }
+  }
+
+  /**
+   * The reads of a heartbeat: the host components of the host with their
+   * states, and the desired configurations and stack to compare their
+   * reported configurations and versions against.
+   */
+  @Benchmark
+  @Group("cluster")
+  @GroupThreads(8)
+  public int heartbeat(HostCursor cursor) {
+    String hostName = hostNames[cursor.next(hostNames.length)];
+
+    int count = 0;
+    for (ServiceComponentHost sch : cluster.getServiceComponentHosts(hostName)) {
+      if (sch.getState() == sch.getDesiredState()) {
+        count++;
+      }
+    }
+
+    count += cluster.getHostsDesiredConfigs(
+        Collections.singleton(hostName)).size();
+    count += cluster.getDesiredConfigs().size();
+    cluster.getDesiredStackVersion();
+    return count;
+  }
+
+  /**
+   * The reads of the REST API listing the cluster and its started datanodes.
+   */
+  @Benchmark
+  @Group("cluster")
+  @GroupThreads(4)
+  public int restRead() throws AmbariException {
+    int count = cluster.getServiceComponentHosts("HDFS", "DATANODE", null,
+        State.STARTED, null).size();
+
+    count += cluster.getConfigGroups().size();
+    cluster.convertToResponse();
+    return count;
+  }
+
+  /**
+   * The state changes of the command reports of heartbeats.
+   */
+  @Benchmark
+  @Group("cluster")
+  @GroupThreads(1)
+  public void stateChange(HostCursor cursor) throws AmbariException {
+    String hostName = hostNames[cursor.next(hostNames.length)];
+    for (ServiceComponentHost sch : cluster.getServiceComponentHosts(hostName)) {
+      sch.setState(sch.getState() == State.STARTED ? State.INSTALLED
+          : State.STARTED);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = new OptionsBuilder()
+        .include(ClusterContentionBenchmark.class.getSimpleName())
+        .build();
+    new Runner(options).run();
+  }
+
+  private ServiceComponent addServiceComponent(Service service,
+      String componentName) throws AmbariException {
+    ServiceComponent component = injector.getInstance(
+        ServiceComponentFactory.class).createNew(service, componentName);
+    service.addServiceComponent(component);
+    component.persist();
+    return component;
+  }
+
+  private void addServiceComponentHost(ServiceComponent component,
+      String hostName) throws AmbariException {
+    ServiceComponentHost sch = injector.getInstance(
+        ServiceComponentHostFactory.class).createNew(component, hostName);
+    component.addServiceComponentHost(sch);
+    sch.persist();
+    sch.setState(State.STARTED);
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.ambari.server.state.cluster;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -33,6 +34,8 @@ import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
 import org.apache.ambari.server.orm.OrmTestHelper;
 import org.apache.ambari.server.state.Cluster;
 import org.apache.ambari.server.state.Clusters;
+import org.apache.ambari.server.state.Config;
+import org.apache.ambari.server.state.ConfigFactory;
 import org.apache.ambari.server.state.Host;
 import org.apache.ambari.server.state.MaintenanceState;
 import org.apache.ambari.server.state.RepositoryVersionState;
@@ -75,6 +78,9 @@ public class ClusterDeadlockTest {
   @Inject
   private ServiceComponentHostFactory serviceComponentHostFactory;
 
+  @Inject
+  private ConfigFactory configFactory;
+
   @Inject
   private AmbariMetaInfo metaInfo;
 
@@ -178,6 +184,86 @@ public class ClusterDeadlockTest {
     }
   }
 
+  /**
+   * Tests that heartbeat style reads of host components, desired configurations
+   * and stack versions don't deadlock with concurrent configuration changes and
+   * host component additions now that each is guarded by its own lock.
+   *
+   * @throws Exception
+   */
+  @Test(timeout = 30000)
+  public void testReadingWhileChangingConfigurations() throws Exception {
+    final Cluster cluster = clusters.getCluster("c1");
+
+    // assertions and exceptions in the workers only end their own thread
+    final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+    Thread.UncaughtExceptionHandler failureHandler = new Thread.UncaughtExceptionHandler() {
+      @Override
+      public void uncaughtException(Thread thread, Throwable throwable) {
+        failures.add(throwable);
+      }
+    };
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int i = 0; i < 3; i++) {
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 50; j++) {
+            Assert.assertFalse(cluster.getServiceComponentHosts("c64-99").isEmpty());
+            cluster.getDesiredConfigs();
+            cluster.getConfigGroups();
+            cluster.getDesiredStackVersion();
+            cluster.convertToResponse();
+          }
+        }
+      };
+
+      thread.setUncaughtExceptionHandler(failureHandler);
+      thread.start();
+      threads.add(thread);
+    }
+
+    Thread configWriter = new Thread() {
+      @Override
+      public void run() {
+        try {
+          for (int j = 0; j < 10; j++) {
+            Map<String, String> properties = new HashMap<String, String>();
+            properties.put("a", "b" + j);
+
+            Config config = configFactory.createNew(cluster, "hdfs-site",
+                properties, new HashMap<String, Map<String, String>>());
+            config.setTag("version" + j);
+            cluster.addConfig(config);
+            cluster.addDesiredConfig("admin", Collections.singleton(config));
+          }
+        } catch (Exception exception) {
+          throw new RuntimeException(exception);
+        }
+      }
+    };
+
+    configWriter.setUncaughtExceptionHandler(failureHandler);
+    configWriter.start();
+    threads.add(configWriter);
+
+    ServiceComponentDeadlockThread componentWriter = new ServiceComponentDeadlockThread();
+    componentWriter.setNamenodeComponent(cluster.getService("HDFS").getServiceComponent("NAMENODE"));
+    componentWriter.setHdfsClientComponent(cluster.getService("HDFS").getServiceComponent("HDFS_CLIENT"));
+    componentWriter.setUncaughtExceptionHandler(failureHandler);
+    componentWriter.start();
+    threads.add(componentWriter);
+
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    Assert.assertTrue("Worker threads failed: " + failures, failures.isEmpty());
+    Assert.assertEquals("version9",
+        cluster.getDesiredConfigByType("hdfs-site").getTag());
+  }
+
   /**
    * Tests AMBARI-9368 which saw a deadlock when adding a service component host
    * while reading a service component.
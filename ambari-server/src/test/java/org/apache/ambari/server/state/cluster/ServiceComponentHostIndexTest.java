@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.cluster;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.util.List;
+
+import org.apache.ambari.server.state.ServiceComponentHost;
+import org.apache.ambari.server.state.State;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ServiceComponentHostIndex}.
+ */
+public class ServiceComponentHostIndexTest {
+
+  private ServiceComponentHostIndex m_index;
+  private ServiceComponentHost m_datanode1;
+  private ServiceComponentHost m_datanode2;
+  private ServiceComponentHost m_namenode1;
+
+  @Before
+  public void before() {
+    m_index = new ServiceComponentHostIndex();
+
+    m_datanode1 = createServiceComponentHost("HDFS", "DATANODE", "h1");
+    m_datanode2 = createServiceComponentHost("HDFS", "DATANODE", "h2");
+    m_namenode1 = createServiceComponentHost("HDFS", "NAMENODE", "h1");
+
+    m_index.add(m_datanode1, State.STARTED, State.STARTED);
+    m_index.add(m_datanode2, State.INSTALL_FAILED, State.INSTALLED);
+    m_index.add(m_namenode1, State.INSTALLED, State.STARTED);
+  }
+
+  @Test
+  public void testFind() {
+    Assert.assertEquals(3, m_index.find(null, null, null, null, null).size());
+    Assert.assertEquals(3, m_index.find("HDFS", null, null, null, null).size());
+    Assert.assertEquals(0, m_index.find("YARN", null, null, null, null).size());
+    Assert.assertEquals(2, m_index.find(null, "DATANODE", null, null, null).size());
+    Assert.assertEquals(2, m_index.find(null, null, "h1", null, null).size());
+    Assert.assertEquals(2, m_index.find(null, null, null, null, State.STARTED).size());
+
+    List<ServiceComponentHost> result = m_index.find(null, null, null, State.INSTALL_FAILED, null);
+    Assert.assertEquals(1, result.size());
+    Assert.assertSame(m_datanode2, result.get(0));
+
+    result = m_index.find(null, "DATANODE", "h1", State.STARTED, State.STARTED);
+    Assert.assertEquals(1, result.size());
+    Assert.assertSame(m_datanode1, result.get(0));
+
+    Assert.assertEquals(0, m_index.find(null, "NAMENODE", null, State.STARTED, null).size());
+    Assert.assertEquals(0, m_index.find(null, null, null, State.UPGRADING, null).size());
+  }
+
+  @Test
+  public void testUpdate() {
+    m_index.update(m_datanode2, State.INSTALLED, State.INSTALLED);
+
+    Assert.assertEquals(0, m_index.find(null, null, null, State.INSTALL_FAILED, null).size());
+    Assert.assertEquals(2, m_index.find(null, null, null, State.INSTALLED, null).size());
+
+    m_index.update(m_namenode1, State.INSTALLED, State.INSTALLED);
+    Assert.assertEquals(2, m_index.find(null, null, null, null, State.INSTALLED).size());
+    Assert.assertEquals(1, m_index.find(null, null, null, null, State.STARTED).size());
+
+    // updates for a host component which isn't indexed are ignored
+    ServiceComponentHost other = createServiceComponentHost("HDFS", "DATANODE", "h3");
+    m_index.update(other, State.STARTED, State.STARTED);
+    Assert.assertEquals(3, m_index.size());
+    Assert.assertEquals(2, m_index.find(null, "DATANODE", null, null, null).size());
+  }
+
+  @Test
+  public void testRemove() {
+    m_index.remove(m_datanode1);
+
+    Assert.assertEquals(2, m_index.size());
+    Assert.assertEquals(0, m_index.find(null, null, null, State.STARTED, null).size());
+    Assert.assertEquals(1, m_index.find(null, null, "h1", null, null).size());
+    Assert.assertEquals(1, m_index.find(null, "DATANODE", null, null, null).size());
+
+    // removing twice is harmless
+    m_index.remove(m_datanode1);
+    Assert.assertEquals(2, m_index.size());
+  }
+
+  private static ServiceComponentHost createServiceComponentHost(String serviceName,
+                                                                 String componentName,
+                                                                 String hostName) {
+    ServiceComponentHost sch = createNiceMock(ServiceComponentHost.class);
+    expect(sch.getServiceName()).andReturn(serviceName).anyTimes();
+    expect(sch.getServiceComponentName()).andReturn(componentName).anyTimes();
+    expect(sch.getHostName()).andReturn(hostName).anyTimes();
+    replay(sch);
+    return sch;
+  }
+}
@@ -0,0 +1,217 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.ambari.server.state.host;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.ambari.server.orm.GuiceJpaInitializer;
+import org.apache.ambari.server.orm.InMemoryDefaultTestModule;
+import org.apache.ambari.server.state.Host;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * Tests the {@link HostStateWriteBehindBuffer}.
+ */
+public class HostStateWriteBehindBufferTest {
+
+  private Injector m_injector;
+  private HostStateWriteBehindBuffer m_buffer;
+
+  @Before
+  public void setup() {
+    m_injector = Guice.createInjector(new InMemoryDefaultTestModule());
+    m_injector.getInstance(GuiceJpaInitializer.class);
+    m_buffer = m_injector.getInstance(HostStateWriteBehindBuffer.class);
+  }
+
+  @After
+  public void teardown() {
+    m_injector.getInstance(PersistService.class).stop();
+  }
+
+  /**
+   * Tests that hosts are persisted immediately when the buffer is inactive.
+   */
+  @Test
+  public void testInactiveBufferPersistsImmediately() {
+    Host host = createMock(Host.class);
+    host.persist();
+    expectLastCall().once();
+    replay(host);
+
+    Assert.assertFalse(m_buffer.isActive());
+    m_buffer.markDirty(host);
+
+    Assert.assertEquals(0, m_buffer.getPendingCount());
+    verify(host);
+  }
+
+  /**
+   * Tests that repeated changes to the same host are coalesced and written in
+   * batches.
+   */
+  @Test
+  public void testDirtyHostsAreCoalescedAndBatched() {
+    m_buffer.setActive(true);
+    Assert.assertTrue(m_buffer.isActive());
+
+    Host host1 = createHost("h1");
+    Host host2 = createHost("h2");
+    Host host3 = createHost("h3");
+
+    m_buffer.markDirty(host1);
+    m_buffer.markDirty(host1);
+    m_buffer.markDirty(host2);
+    m_buffer.markDirty(host3);
+
+    Assert.assertEquals(3, m_buffer.getPendingCount());
+
+    Assert.assertEquals(3, m_buffer.flush(2));
+    Assert.assertEquals(1, m_buffer.getLastBatchSize());
+    Assert.assertEquals(0, m_buffer.getPendingCount());
+    Assert.assertEquals(0, m_buffer.flush(2));
+
+    Assert.assertEquals(2, m_buffer.getFlushCount());
+    Assert.assertEquals(3, m_buffer.getFlushedHostCount());
+    Assert.assertTrue(m_buffer.getMaxFlushLag() >= m_buffer.getLastFlushLag());
+
+    verify(host1, host2, host3);
+  }
+
+  /**
+   * Tests that the flush statistics are published with JMX once the buffer is
+   * activated.
+   */
+  @Test
+  public void testStatisticsPublishedWithJmx() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(HostStateWriteBehindBuffer.MBEAN_NAME);
+
+    // another test may have registered its own buffer
+    if (server.isRegistered(name)) {
+      server.unregisterMBean(name);
+    }
+
+    m_buffer.setActive(true);
+    Assert.assertTrue(server.isRegistered(name));
+
+    Host host1 = createHost("h1");
+    m_buffer.markDirty(host1);
+    Assert.assertEquals(1, server.getAttribute(name, "PendingCount"));
+
+    m_buffer.flush(10);
+    Assert.assertEquals(0, server.getAttribute(name, "PendingCount"));
+    Assert.assertEquals(1, server.getAttribute(name, "LastBatchSize"));
+    Assert.assertEquals(1L, server.getAttribute(name, "FlushCount"));
+    Assert.assertEquals(1L, server.getAttribute(name, "FlushedHostCount"));
+    Assert.assertEquals(Boolean.TRUE, server.getAttribute(name, "Active"));
+
+    verify(host1);
+  }
+
+  /**
+   * Tests that hosts stay in the buffer when their batch fails to persist.
+   */
+  @Test
+  public void testFailedBatchKeepsHostsDirty() {
+    m_buffer.setActive(true);
+
+    Host host1 = createMock(Host.class);
+    expect(host1.getHostName()).andReturn("h1").anyTimes();
+    host1.persist();
+    expectLastCall().andThrow(new RuntimeException("failed"));
+    replay(host1);
+
+    m_buffer.markDirty(host1);
+
+    try {
+      m_buffer.flush(10);
+      Assert.fail("Expected the batch to fail");
+    } catch (RuntimeException expected) {
+    }
+
+    Assert.assertEquals(1, m_buffer.getPendingCount());
+    Assert.assertEquals(0, m_buffer.getFlushCount());
+    verify(host1);
+  }
+
+  /**
+   * Tests that a host which changes while it is being persisted is persisted
+   * again by the next flush.
+   */
+  @Test
+  public void testHostChangedDuringFlushStaysDirty() {
+    m_buffer.setActive(true);
+
+    final Host host1 = createMock(Host.class);
+    expect(host1.getHostName()).andReturn("h1").anyTimes();
+    host1.persist();
+    expectLastCall().andAnswer(new IAnswer<Object>() {
+      @Override
+      public Object answer() throws Throwable {
+        m_buffer.markDirty(host1);
+        return null;
+      }
+    });
+    host1.persist();
+    expectLastCall().once();
+    replay(host1);
+
+    m_buffer.markDirty(host1);
+
+    Assert.assertEquals(1, m_buffer.flush(10));
+    Assert.assertEquals(1, m_buffer.getPendingCount());
+
+    Assert.assertEquals(1, m_buffer.flush(10));
+    Assert.assertEquals(0, m_buffer.getPendingCount());
+    verify(host1);
+  }
+
+  /**
+   * Creates a host which expects to be persisted exactly once.
+   *
+   * @param hostName
+   *          the host name.
+   * @return the mock host.
+   */
+  private Host createHost(String hostName) {
+    Host host = createMock(Host.class);
+    expect(host.getHostName()).andReturn(hostName).anyTimes();
+    host.persist();
+    expectLastCall().once();
+    replay(host);
+    return host;
+  }
+}